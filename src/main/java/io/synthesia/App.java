@@ -2,6 +2,8 @@ package io.synthesia;
 
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
 import io.javalin.Javalin;
 import io.javalin.micrometer.MicrometerPlugin;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -9,12 +11,20 @@ import io.micrometer.prometheus.PrometheusMeterRegistry;
 import io.prometheus.client.exporter.common.TextFormat;
 import io.synthesia.api.SignApi;
 import io.synthesia.api.WebhookApi;
+import io.synthesia.async.AsyncMessageSigningProcessor;
 import io.synthesia.async.MessageSigningConsumer;
+import io.synthesia.async.MessageSigningQueue;
 import io.synthesia.async.MessageSingingProcessor;
+import io.synthesia.async.WebhookClient;
+import io.synthesia.async.WebhookDeliveryProcessor;
+import io.synthesia.crypto.limiter.RateLimiter;
+import io.synthesia.di.ApiModule;
 import io.synthesia.di.AsyncModule;
 import io.synthesia.di.CryptoModule;
 import io.synthesia.di.MetricsModule;
 import io.synthesia.di.QueueModule;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -24,9 +34,15 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class App {
   public static void main(String[] args) {
+    applyHttpConnectionPoolSettings();
+
     Injector injector =
         Guice.createInjector(
-            new MetricsModule(), new CryptoModule(), new QueueModule(), new AsyncModule());
+            new MetricsModule(),
+            new CryptoModule(),
+            new QueueModule(),
+            new AsyncModule(),
+            new ApiModule());
 
     SignApi signApi = injector.getInstance(SignApi.class);
     WebhookApi webhookApi = injector.getInstance(WebhookApi.class);
@@ -40,6 +56,7 @@ public class App {
     Javalin app =
         Javalin.create(config -> config.plugins.register(micrometerPlugin))
             .get("/webhook", webhookApi::notify)
+            .post("/webhook", webhookApi::notifyBatch)
             .get("/crypto/sign", signApi::sign)
             .get(
                 "/prometheus",
@@ -48,23 +65,88 @@ public class App {
 
     MessageSigningConsumer messageSigningConsumer =
         injector.getInstance(MessageSigningConsumer.class);
-    MessageSingingProcessor messageSingingProcessor =
-        injector.getInstance(MessageSingingProcessor.class);
 
     ExecutorService consumerPool =
         Executors.newFixedThreadPool(Configuration.getConsumerPoolSize());
     consumerPool.execute(messageSigningConsumer);
 
+    ExecutorService processorPool = startProcessors(injector);
+
+    RateLimiter rateLimiter = injector.getInstance(RateLimiter.class);
+    WebhookClient webhookClient = injector.getInstance(WebhookClient.class);
+    MessageSigningQueue messageSigningQueue = injector.getInstance(MessageSigningQueue.class);
+
+    List<ExecutorService> pools = new ArrayList<>(List.of(consumerPool, processorPool));
+    List<MessageSigningQueue> queues = new ArrayList<>(List.of(messageSigningQueue));
+
+    if (Configuration.isWebhookDeliveryStageEnabled()) {
+      pools.add(startDeliveryConsumer(injector));
+      pools.add(startDeliveryProcessors(injector));
+      queues.add(injector.getInstance(Key.get(MessageSigningQueue.class, Names.named("delivery"))));
+    }
+
+    // SQS queues point at their dead-letter queue by URL, the other backends keep one of their own
+    if (!"sqs".equals(Configuration.getQueueBackend())) {
+      queues.add(
+          injector.getInstance(Key.get(MessageSigningQueue.class, Names.named("dead-letter"))));
+    }
+
+    scheduleShutdown(app, pools, rateLimiter, webhookClient, queues);
+  }
+
+  private static ExecutorService startDeliveryConsumer(Injector injector) {
+    MessageSigningConsumer deliveryConsumer =
+        injector.getInstance(Key.get(MessageSigningConsumer.class, Names.named("delivery")));
+
+    ExecutorService deliveryConsumerPool = Executors.newSingleThreadExecutor();
+    deliveryConsumerPool.execute(deliveryConsumer);
+
+    return deliveryConsumerPool;
+  }
+
+  private static ExecutorService startDeliveryProcessors(Injector injector) {
+    WebhookDeliveryProcessor webhookDeliveryProcessor =
+        injector.getInstance(WebhookDeliveryProcessor.class);
+
+    int poolSize = Configuration.getWebhookDeliveryPoolSize();
+    ExecutorService deliveryPool = Executors.newFixedThreadPool(poolSize);
+
+    IntStream.range(0, poolSize).forEach(i -> deliveryPool.execute(webhookDeliveryProcessor));
+
+    return deliveryPool;
+  }
+
+  private static ExecutorService startProcessors(Injector injector) {
+    if (Configuration.isNonBlockingProcessorEnabled()) {
+      AsyncMessageSigningProcessor asyncMessageSigningProcessor =
+          injector.getInstance(AsyncMessageSigningProcessor.class);
+
+      int poolSize = Configuration.getNonBlockingProcessorPoolSize();
+      ExecutorService processorPool = Executors.newFixedThreadPool(poolSize);
+
+      IntStream.range(0, poolSize)
+          .forEach(i -> processorPool.execute(asyncMessageSigningProcessor));
+
+      return processorPool;
+    }
+
+    MessageSingingProcessor messageSingingProcessor =
+        injector.getInstance(MessageSingingProcessor.class);
+
     ExecutorService processorPool =
         Executors.newFixedThreadPool(Configuration.getProcessorPoolSize());
 
     IntStream.range(0, 10).forEach(i -> processorPool.execute(messageSingingProcessor));
 
-    scheduleShutdown(app, consumerPool, processorPool);
+    return processorPool;
   }
 
   private static void scheduleShutdown(
-      Javalin app, ExecutorService consumerPool, ExecutorService processorPool) {
+      Javalin app,
+      List<ExecutorService> pools,
+      RateLimiter rateLimiter,
+      WebhookClient webhookClient,
+      List<MessageSigningQueue> queues) {
     Runtime.getRuntime()
         .addShutdownHook(
             new Thread(
@@ -72,11 +154,16 @@ public class App {
                   try {
                     app.stop();
 
-                    consumerPool.shutdown();
-                    processorPool.shutdown();
+                    pools.forEach(ExecutorService::shutdown);
 
-                    consumerPool.awaitTermination(2, TimeUnit.SECONDS);
-                    processorPool.awaitTermination(2, TimeUnit.SECONDS);
+                    for (ExecutorService pool : pools) {
+                      pool.awaitTermination(2, TimeUnit.SECONDS);
+                    }
+
+                    // Buffered notifications still acknowledge their messages once delivered
+                    webhookClient.close();
+                    rateLimiter.close();
+                    queues.forEach(MessageSigningQueue::close);
 
                     log.info("Shutdown completed");
                   } catch (InterruptedException e) {
@@ -85,4 +172,20 @@ public class App {
                   }
                 }));
   }
+
+  /**
+   * The JDK reads its connection pool settings from system properties once, when the first client
+   * is built, so they apply to every HttpClient in the process and are set before any exists.
+   */
+  private static void applyHttpConnectionPoolSettings() {
+    setIfAbsent("jdk.httpclient.connectionPoolSize", Configuration.getHttpConnectionPoolSize());
+    setIfAbsent("jdk.httpclient.keepalive.timeout", Configuration.getHttpKeepAliveInSeconds());
+    setIfAbsent("jdk.httpclient.maxstreams", Configuration.getHttpMaxStreamsPerConnection());
+  }
+
+  private static void setIfAbsent(String property, String value) {
+    if (value != null && System.getProperty(property) == null) {
+      System.setProperty(property, value);
+    }
+  }
 }
@@ -1,10 +1,30 @@
 package io.synthesia;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 public final class Configuration {
   public static String getSynthesiaApiKey() {
     return System.getenv("API_KEY");
   }
 
+  /** Comma separated pool of API keys, used instead of API_KEY when set. */
+  public static List<String> getSynthesiaApiKeys() {
+    String maybeApiKeys = System.getenv("API_KEYS");
+
+    if (maybeApiKeys == null) {
+      return List.of();
+    }
+
+    return Arrays.stream(maybeApiKeys.split(","))
+        .map(String::trim)
+        .filter(apiKey -> !apiKey.isEmpty())
+        .collect(Collectors.toList());
+  }
+
   public static String getRedisUrl() {
     String maybeRedisUrl = System.getenv("REDIS_URL");
 
@@ -46,4 +66,432 @@ public final class Configuration {
 
     return maybeTimeoutInSeconds == null ? 2 : Integer.parseInt(maybeTimeoutInSeconds);
   }
+
+  public static int getSignatureCacheSize() {
+    String maybeCacheSize = System.getenv("SIGNATURE_CACHE_SIZE");
+
+    return maybeCacheSize == null ? 1000 : Integer.parseInt(maybeCacheSize);
+  }
+
+  public static int getSignatureCacheTtlInSeconds() {
+    String maybeTtlInSeconds = System.getenv("SIGNATURE_CACHE_TTL");
+
+    return maybeTtlInSeconds == null ? 3600 : Integer.parseInt(maybeTtlInSeconds);
+  }
+
+  public static int getRateLimiterLeaseSize() {
+    String maybeLeaseSize = System.getenv("RATE_LIMITER_LEASE_SIZE");
+
+    return maybeLeaseSize == null ? 0 : Integer.parseInt(maybeLeaseSize);
+  }
+
+  public static int getRateLimiterLeaseDurationInSeconds() {
+    String maybeLeaseDuration = System.getenv("RATE_LIMITER_LEASE_DURATION");
+
+    return maybeLeaseDuration == null ? 5 : Integer.parseInt(maybeLeaseDuration);
+  }
+
+  public static boolean isNonBlockingProcessorEnabled() {
+    String maybeEnabled = System.getenv("NON_BLOCKING_PROCESSOR_ENABLED");
+
+    return maybeEnabled != null && Boolean.parseBoolean(maybeEnabled);
+  }
+
+  public static int getNonBlockingProcessorPoolSize() {
+    String maybePoolSize = System.getenv("NON_BLOCKING_PROCESSOR_POOL_SIZE");
+
+    return maybePoolSize == null ? 2 : Integer.parseInt(maybePoolSize);
+  }
+
+  public static int getNonBlockingProcessorMaxInFlight() {
+    String maybeMaxInFlight = System.getenv("NON_BLOCKING_PROCESSOR_MAX_IN_FLIGHT");
+
+    return maybeMaxInFlight == null ? 200 : Integer.parseInt(maybeMaxInFlight);
+  }
+
+  public static int getSyncResponseBudgetInMillis() {
+    String maybeBudgetInMillis = System.getenv("SYNC_RESPONSE_BUDGET_MS");
+
+    return maybeBudgetInMillis == null ? 1500 : Integer.parseInt(maybeBudgetInMillis);
+  }
+
+  public static boolean isSqsSendBatchingEnabled() {
+    String maybeEnabled = System.getenv("SQS_SEND_BATCHING_ENABLED");
+
+    return maybeEnabled != null && Boolean.parseBoolean(maybeEnabled);
+  }
+
+  public static int getSqsSendBatchLingerInMillis() {
+    String maybeLingerInMillis = System.getenv("SQS_SEND_BATCH_LINGER_MS");
+
+    return maybeLingerInMillis == null ? 20 : Integer.parseInt(maybeLingerInMillis);
+  }
+
+  public static boolean isSqsDeleteBatchingEnabled() {
+    String maybeEnabled = System.getenv("SQS_DELETE_BATCHING_ENABLED");
+
+    return maybeEnabled != null && Boolean.parseBoolean(maybeEnabled);
+  }
+
+  public static int getSqsDeleteBatchIntervalInMillis() {
+    String maybeIntervalInMillis = System.getenv("SQS_DELETE_BATCH_INTERVAL_MS");
+
+    return maybeIntervalInMillis == null ? 200 : Integer.parseInt(maybeIntervalInMillis);
+  }
+
+  public static boolean isTokenGatedDispatchEnabled() {
+    String maybeEnabled = System.getenv("TOKEN_GATED_DISPATCH_ENABLED");
+
+    return maybeEnabled != null && Boolean.parseBoolean(maybeEnabled);
+  }
+
+  public static int getDispatchReleaseThresholdInMillis() {
+    String maybeThresholdInMillis = System.getenv("DISPATCH_RELEASE_THRESHOLD_MS");
+
+    return maybeThresholdInMillis == null ? 2000 : Integer.parseInt(maybeThresholdInMillis);
+  }
+
+  public static int getSigningMaxAttempts() {
+    String maybeMaxAttempts = System.getenv("SIGNING_MAX_ATTEMPTS");
+
+    return maybeMaxAttempts == null ? 5 : Integer.parseInt(maybeMaxAttempts);
+  }
+
+  public static int getSigningMaxBackoffInSeconds() {
+    String maybeMaxBackoffInSeconds = System.getenv("SIGNING_MAX_BACKOFF_SECONDS");
+
+    return maybeMaxBackoffInSeconds == null ? 900 : Integer.parseInt(maybeMaxBackoffInSeconds);
+  }
+
+  public static boolean isWebhookDeliveryStageEnabled() {
+    String maybeEnabled = System.getenv("WEBHOOK_DELIVERY_STAGE_ENABLED");
+
+    return maybeEnabled != null && Boolean.parseBoolean(maybeEnabled);
+  }
+
+  public static int getWebhookDeliveryPoolSize() {
+    String maybePoolSize = System.getenv("WEBHOOK_DELIVERY_POOL_SIZE");
+
+    return maybePoolSize == null ? 10 : Integer.parseInt(maybePoolSize);
+  }
+
+  public static int getWebhookConnectTimeoutInMillis() {
+    String maybeTimeout = System.getenv("WEBHOOK_CONNECT_TIMEOUT_MS");
+
+    return maybeTimeout == null ? 500 : Integer.parseInt(maybeTimeout);
+  }
+
+  public static int getWebhookMaxConcurrencyPerHost() {
+    String maybeMaxConcurrency = System.getenv("WEBHOOK_MAX_CONCURRENCY_PER_HOST");
+
+    return maybeMaxConcurrency == null ? 4 : Integer.parseInt(maybeMaxConcurrency);
+  }
+
+  public static int getWebhookHostFailureThreshold() {
+    String maybeFailureThreshold = System.getenv("WEBHOOK_HOST_FAILURE_THRESHOLD");
+
+    return maybeFailureThreshold == null ? 3 : Integer.parseInt(maybeFailureThreshold);
+  }
+
+  public static int getWebhookHostCooldownInSeconds() {
+    String maybeCooldownInSeconds = System.getenv("WEBHOOK_HOST_COOLDOWN_SECONDS");
+
+    return maybeCooldownInSeconds == null ? 30 : Integer.parseInt(maybeCooldownInSeconds);
+  }
+
+  public static int getWebhookHostPermitWaitInMillis() {
+    String maybeWaitInMillis = System.getenv("WEBHOOK_HOST_PERMIT_WAIT_MS");
+
+    return maybeWaitInMillis == null ? 2000 : Integer.parseInt(maybeWaitInMillis);
+  }
+
+  public static int getWebhookMaxTrackedHosts() {
+    String maybeMaxHosts = System.getenv("WEBHOOK_MAX_TRACKED_HOSTS");
+
+    return maybeMaxHosts == null ? 1000 : Integer.parseInt(maybeMaxHosts);
+  }
+
+  /** Comma separated hosts whose webhooks accept batches, none by default. */
+  public static Set<String> getWebhookBatchingHosts() {
+    String maybeHosts = System.getenv("WEBHOOK_BATCHING_HOSTS");
+
+    if (maybeHosts == null) {
+      return Set.of();
+    }
+
+    return Arrays.stream(maybeHosts.split(","))
+        .map(host -> host.trim().toLowerCase(Locale.ROOT))
+        .filter(host -> !host.isEmpty())
+        .collect(Collectors.toUnmodifiableSet());
+  }
+
+  public static int getWebhookBatchLingerInMillis() {
+    String maybeLingerInMillis = System.getenv("WEBHOOK_BATCH_LINGER_MS");
+
+    return maybeLingerInMillis == null ? 50 : Integer.parseInt(maybeLingerInMillis);
+  }
+
+  public static int getWebhookMaxBatchSize() {
+    String maybeMaxBatchSize = System.getenv("WEBHOOK_MAX_BATCH_SIZE");
+
+    return maybeMaxBatchSize == null ? 20 : Integer.parseInt(maybeMaxBatchSize);
+  }
+
+  public static String getHttpVersion() {
+    String maybeVersion = System.getenv("HTTP_VERSION");
+
+    return maybeVersion == null ? "HTTP_2" : maybeVersion;
+  }
+
+  public static int getHttpClientExecutorThreads() {
+    String maybeThreads = System.getenv("HTTP_CLIENT_EXECUTOR_THREADS");
+
+    return maybeThreads == null ? 4 : Integer.parseInt(maybeThreads);
+  }
+
+  /** Maximum idle connections kept, process-wide, JDK default (unbounded) when not set. */
+  public static String getHttpConnectionPoolSize() {
+    return System.getenv("HTTP_CONNECTION_POOL_SIZE");
+  }
+
+  /** Seconds an idle connection is kept open, process-wide, JDK default (1200) when not set. */
+  public static String getHttpKeepAliveInSeconds() {
+    return System.getenv("HTTP_KEEP_ALIVE_SECONDS");
+  }
+
+  /** Concurrent HTTP/2 streams per connection, process-wide, JDK default (100) when not set. */
+  public static String getHttpMaxStreamsPerConnection() {
+    return System.getenv("HTTP_MAX_STREAMS_PER_CONNECTION");
+  }
+
+  public static boolean isCircuitBreakerEnabled() {
+    String maybeEnabled = System.getenv("CIRCUIT_BREAKER_ENABLED");
+
+    return maybeEnabled != null && Boolean.parseBoolean(maybeEnabled);
+  }
+
+  public static int getCircuitBreakerFailureRatePercentage() {
+    String maybePercentage = System.getenv("CIRCUIT_BREAKER_FAILURE_RATE");
+
+    return maybePercentage == null ? 50 : Integer.parseInt(maybePercentage);
+  }
+
+  public static int getCircuitBreakerSlowCallRatePercentage() {
+    String maybePercentage = System.getenv("CIRCUIT_BREAKER_SLOW_CALL_RATE");
+
+    return maybePercentage == null ? 50 : Integer.parseInt(maybePercentage);
+  }
+
+  public static int getCircuitBreakerSlowCallInMillis() {
+    String maybeSlowCallInMillis = System.getenv("CIRCUIT_BREAKER_SLOW_CALL_MS");
+
+    return maybeSlowCallInMillis == null ? 1500 : Integer.parseInt(maybeSlowCallInMillis);
+  }
+
+  public static int getCircuitBreakerOpenInSeconds() {
+    String maybeOpenInSeconds = System.getenv("CIRCUIT_BREAKER_OPEN_SECONDS");
+
+    return maybeOpenInSeconds == null ? 30 : Integer.parseInt(maybeOpenInSeconds);
+  }
+
+  public static int getSyncRetryMaxAttempts() {
+    String maybeMaxAttempts = System.getenv("SYNC_RETRY_MAX_ATTEMPTS");
+
+    return maybeMaxAttempts == null ? 3 : Integer.parseInt(maybeMaxAttempts);
+  }
+
+  public static int getRateLimitCapacity() {
+    String maybeCapacity = System.getenv("RATE_LIMIT_CAPACITY");
+
+    return maybeCapacity == null ? 5 : Integer.parseInt(maybeCapacity);
+  }
+
+  public static int getRateLimitPeriodInSeconds() {
+    String maybePeriodInSeconds = System.getenv("RATE_LIMIT_PERIOD_SECONDS");
+
+    return maybePeriodInSeconds == null ? 60 : Integer.parseInt(maybePeriodInSeconds);
+  }
+
+  public static boolean isTokenAllocationEnabled() {
+    String maybeEnabled = System.getenv("TOKEN_ALLOCATION_ENABLED");
+
+    return maybeEnabled != null && Boolean.parseBoolean(maybeEnabled);
+  }
+
+  public static int getSyncTokenShare() {
+    String maybeShare = System.getenv("SYNC_TOKEN_SHARE");
+
+    return maybeShare == null ? 2 : Integer.parseInt(maybeShare);
+  }
+
+  public static int getAsyncTokenShare() {
+    String maybeShare = System.getenv("ASYNC_TOKEN_SHARE");
+
+    return maybeShare == null ? 2 : Integer.parseInt(maybeShare);
+  }
+
+  public static boolean isClientQuotaEnabled() {
+    String maybeEnabled = System.getenv("CLIENT_QUOTA_ENABLED");
+
+    return maybeEnabled != null && Boolean.parseBoolean(maybeEnabled);
+  }
+
+  public static int getClientQuotaCapacity() {
+    String maybeCapacity = System.getenv("CLIENT_QUOTA_CAPACITY");
+
+    return maybeCapacity == null ? 60 : Integer.parseInt(maybeCapacity);
+  }
+
+  public static int getClientQuotaPeriodInSeconds() {
+    String maybePeriodInSeconds = System.getenv("CLIENT_QUOTA_PERIOD_SECONDS");
+
+    return maybePeriodInSeconds == null ? 60 : Integer.parseInt(maybePeriodInSeconds);
+  }
+
+  /** Comma separated API keys that identify clients for their quota, callers without one use IP. */
+  public static List<String> getClientApiKeys() {
+    String maybeApiKeys = System.getenv("CLIENT_API_KEYS");
+
+    if (maybeApiKeys == null) {
+      return List.of();
+    }
+
+    return Arrays.stream(maybeApiKeys.split(","))
+        .map(String::trim)
+        .filter(apiKey -> !apiKey.isEmpty())
+        .collect(Collectors.toList());
+  }
+
+  public static int getClientQuotaMaxRejectedClients() {
+    String maybeMaxClients = System.getenv("CLIENT_QUOTA_MAX_REJECTED_CLIENTS");
+
+    return maybeMaxClients == null ? 10000 : Integer.parseInt(maybeMaxClients);
+  }
+
+  public static boolean isRateLimiterFallbackEnabled() {
+    String maybeEnabled = System.getenv("RATE_LIMITER_FALLBACK_ENABLED");
+
+    return maybeEnabled != null && Boolean.parseBoolean(maybeEnabled);
+  }
+
+  public static int getInstanceCount() {
+    String maybeInstanceCount = System.getenv("INSTANCE_COUNT");
+
+    return maybeInstanceCount == null ? 1 : Integer.parseInt(maybeInstanceCount);
+  }
+
+  public static int getRedisLatencyThresholdInMillis() {
+    String maybeThresholdInMillis = System.getenv("REDIS_LATENCY_THRESHOLD_MS");
+
+    return maybeThresholdInMillis == null ? 50 : Integer.parseInt(maybeThresholdInMillis);
+  }
+
+  public static int getRedisCommandTimeoutInMillis() {
+    String maybeTimeoutInMillis = System.getenv("REDIS_COMMAND_TIMEOUT_MS");
+
+    return maybeTimeoutInMillis == null ? 250 : Integer.parseInt(maybeTimeoutInMillis);
+  }
+
+  public static String getRateLimiterBackend() {
+    String maybeBackend = System.getenv("RATE_LIMITER_BACKEND");
+
+    return maybeBackend == null ? "cas" : maybeBackend;
+  }
+
+  public static int getApiKeySidelineInSeconds() {
+    String maybeSidelineInSeconds = System.getenv("API_KEY_SIDELINE_SECONDS");
+
+    return maybeSidelineInSeconds == null ? 60 : Integer.parseInt(maybeSidelineInSeconds);
+  }
+
+  public static String getQueueBackend() {
+    String maybeBackend = System.getenv("QUEUE_BACKEND");
+
+    return maybeBackend == null ? "sqs" : maybeBackend;
+  }
+
+  public static String getJournalDirectory() {
+    String maybeDirectory = System.getenv("JOURNAL_DIRECTORY");
+
+    return maybeDirectory == null ? "data/journal" : maybeDirectory;
+  }
+
+  public static int getJournalSegmentSizeInMegabytes() {
+    String maybeSegmentSize = System.getenv("JOURNAL_SEGMENT_SIZE_MB");
+
+    return maybeSegmentSize == null ? 64 : Integer.parseInt(maybeSegmentSize);
+  }
+
+  public static boolean isJournalFsyncEnabled() {
+    String maybeEnabled = System.getenv("JOURNAL_FSYNC_ENABLED");
+
+    return maybeEnabled != null && Boolean.parseBoolean(maybeEnabled);
+  }
+
+  public static String getAsyncQueueType() {
+    String maybeType = System.getenv("ASYNC_QUEUE_TYPE");
+
+    return maybeType == null ? "deque" : maybeType;
+  }
+
+  public static String getAsyncQueueWaitStrategy() {
+    String maybeWaitStrategy = System.getenv("ASYNC_QUEUE_WAIT_STRATEGY");
+
+    return maybeWaitStrategy == null ? "blocking" : maybeWaitStrategy;
+  }
+
+  public static String getMessageCodec() {
+    String maybeCodec = System.getenv("MESSAGE_CODEC");
+
+    return maybeCodec == null ? "json" : maybeCodec;
+  }
+
+  public static int getMessageCompressionThresholdInBytes() {
+    String maybeThreshold = System.getenv("MESSAGE_COMPRESSION_THRESHOLD_BYTES");
+
+    return maybeThreshold == null ? 1024 : Integer.parseInt(maybeThreshold);
+  }
+
+  public static boolean isClaimCheckEnabled() {
+    String maybeEnabled = System.getenv("CLAIM_CHECK_ENABLED");
+
+    return maybeEnabled != null && Boolean.parseBoolean(maybeEnabled);
+  }
+
+  public static int getClaimCheckThresholdInBytes() {
+    String maybeThreshold = System.getenv("CLAIM_CHECK_THRESHOLD_BYTES");
+
+    return maybeThreshold == null ? 64 * 1024 : Integer.parseInt(maybeThreshold);
+  }
+
+  public static String getBlobStoreBackend() {
+    String maybeBackend = System.getenv("BLOB_STORE_BACKEND");
+
+    return maybeBackend == null ? "filesystem" : maybeBackend;
+  }
+
+  public static String getBlobStoreDirectory() {
+    String maybeDirectory = System.getenv("BLOB_STORE_DIRECTORY");
+
+    return maybeDirectory == null ? "data/blobs" : maybeDirectory;
+  }
+
+  /** Days a payload is kept at most, SQS itself never keeps a message for longer than 14. */
+  public static int getBlobStoreRetentionInDays() {
+    String maybeRetention = System.getenv("BLOB_STORE_RETENTION_DAYS");
+
+    return maybeRetention == null ? 14 : Integer.parseInt(maybeRetention);
+  }
+
+  public static String getBlobStoreBucket() {
+    String maybeBucket = System.getenv("BLOB_STORE_BUCKET");
+
+    return maybeBucket == null ? "sign-messages" : maybeBucket;
+  }
+
+  public static String getS3Url() {
+    String maybeS3Url = System.getenv("S3_URL");
+
+    return maybeS3Url == null ? "http://localhost:4566" : maybeS3Url;
+  }
 }
@@ -0,0 +1,138 @@
+package io.synthesia.api;
+
+import io.github.bucket4j.Bucket;
+import io.javalin.http.Context;
+import io.micrometer.core.instrument.Counter;
+import io.synthesia.crypto.Hashes;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Limits how many sign requests each client can make. Every client has its own bucket in Redis, so
+ * the quota holds across instances. Once a client is rejected, further requests are rejected
+ * locally until its bucket refills, without a round trip to Redis.
+ *
+ * <p>Clients are identified by one of the configured API keys, or by their IP otherwise, so that a
+ * caller cannot pick a fresh identity (and a fresh bucket) for every request. Keys are hashed
+ * before they are used as bucket names.
+ */
+@Slf4j
+public class ClientQuota {
+  static final String API_KEY_HEADER = "X-Api-Key";
+
+  private final Function<String, Bucket> bucketForClient;
+  private final Set<String> clientKeyDigests;
+  private final int maxRejectedClients;
+  private final Clock clock;
+  private final Counter localRejections;
+  private final Counter sharedRejections;
+  private final Counter errors;
+  private final Map<String, Long> rejectedUntil = new ConcurrentHashMap<>();
+
+  public ClientQuota(
+      Function<String, Bucket> bucketForClient,
+      Collection<String> clientApiKeys,
+      int maxRejectedClients,
+      Clock clock,
+      Counter localRejections,
+      Counter sharedRejections,
+      Counter errors) {
+    this.bucketForClient = bucketForClient;
+    this.clientKeyDigests =
+        clientApiKeys.stream().map(Hashes::sha256Hex).collect(Collectors.toUnmodifiableSet());
+    this.maxRejectedClients = maxRejectedClients;
+    this.clock = clock;
+    this.localRejections = localRejections;
+    this.sharedRejections = sharedRejections;
+    this.errors = errors;
+  }
+
+  /**
+   * Takes one request from the client's quota. When the quota is exhausted the response is set to
+   * 429 with a Retry-After header and false is returned. Requests are let through when Redis cannot
+   * be reached, since the upstream rate limiter still protects the API.
+   */
+  public boolean tryAcquire(Context context) {
+    var clientId = clientId(context);
+    var now = this.clock.millis();
+    var blockedUntil = this.rejectedUntil.get(clientId);
+
+    if (blockedUntil != null) {
+      if (now < blockedUntil) {
+        this.localRejections.increment();
+        reject(context, Duration.ofMillis(blockedUntil - now));
+        return false;
+      }
+
+      this.rejectedUntil.remove(clientId, blockedUntil);
+    }
+
+    Duration retryAfter;
+
+    try {
+      var probe = this.bucketForClient.apply(clientId).tryConsumeAndReturnRemaining(1);
+
+      if (probe.isConsumed()) {
+        return true;
+      }
+
+      retryAfter = Duration.ofNanos(probe.getNanosToWaitForRefill());
+    } catch (Exception e) {
+      this.errors.increment();
+      log.warn("Unable to check the quota of client {}, letting the request through", clientId, e);
+      return true;
+    }
+
+    rememberRejection(clientId, now + retryAfter.toMillis(), now);
+    this.sharedRejections.increment();
+    log.info("Client {} exceeded its quota", clientId);
+
+    reject(context, retryAfter);
+    return false;
+  }
+
+  /**
+   * Rejections lapse once the bucket has refilled. When too many clients are being rejected at
+   * once, the lapsed ones are dropped first, and if there is still no room the client is checked
+   * against its bucket again next time.
+   */
+  private void rememberRejection(String clientId, long until, long now) {
+    if (this.rejectedUntil.size() >= this.maxRejectedClients) {
+      this.rejectedUntil.values().removeIf(blockedUntil -> blockedUntil <= now);
+
+      if (this.rejectedUntil.size() >= this.maxRejectedClients) {
+        return;
+      }
+    }
+
+    this.rejectedUntil.put(clientId, until);
+  }
+
+  private void reject(Context context, Duration retryAfter) {
+    var retryAfterSeconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+
+    context.header("Retry-After", String.valueOf(retryAfterSeconds));
+    context.status(429);
+  }
+
+  private String clientId(Context context) {
+    var apiKey = context.header(API_KEY_HEADER);
+
+    if (apiKey != null && !apiKey.isBlank()) {
+      var keyDigest = Hashes.sha256Hex(apiKey);
+
+      if (this.clientKeyDigests.contains(keyDigest)) {
+        return "key:" + keyDigest;
+      }
+    }
+
+    return "ip:" + context.ip();
+  }
+}
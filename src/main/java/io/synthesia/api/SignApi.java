@@ -1,23 +1,61 @@
 package io.synthesia.api;
 
-import com.google.inject.Inject;
 import io.javalin.http.Context;
 import io.synthesia.api.dto.SignRequestDTO;
 import io.synthesia.async.MessageSigningQueue;
+import io.synthesia.async.WebhookClient;
 import io.synthesia.crypto.CryptoClient;
+import io.synthesia.crypto.SignRejectedException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import lombok.AllArgsConstructor;
+import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.validator.routines.UrlValidator;
 
 @Slf4j
-@AllArgsConstructor(onConstructor = @__(@Inject))
+@AllArgsConstructor
 public class SignApi {
   private CryptoClient cryptoClient;
   private MessageSigningQueue messageSigningQueue;
+  private WebhookClient webhookClient;
+  private Duration responseBudget;
 
+  /** Retries fast upstream failures within the response budget when present. */
+  private SyncRetryPolicy retryPolicy;
+
+  /** Rejects callers over their per-client quota when present. */
+  private ClientQuota clientQuota;
+
+  public SignApi(
+      CryptoClient cryptoClient,
+      MessageSigningQueue messageSigningQueue,
+      WebhookClient webhookClient,
+      Duration responseBudget) {
+    this(cryptoClient, messageSigningQueue, webhookClient, responseBudget, null, null);
+  }
+
+  public SignApi(
+      CryptoClient cryptoClient,
+      MessageSigningQueue messageSigningQueue,
+      WebhookClient webhookClient,
+      Duration responseBudget,
+      SyncRetryPolicy retryPolicy) {
+    this(cryptoClient, messageSigningQueue, webhookClient, responseBudget, retryPolicy, null);
+  }
+
+  @SneakyThrows
   public void sign(Context context) {
     log.info("Received Sign request");
 
+    if (this.clientQuota != null && !this.clientQuota.tryAcquire(context)) {
+      return;
+    }
+
     var message = context.queryParam("message");
     var webhookUrl = context.queryParam("webhookUrl");
 
@@ -28,12 +66,48 @@ public class SignApi {
       return;
     }
 
-    var maybeSignature = cryptoClient.sign(signRequestDTO.getMessage());
+    var deadline = System.nanoTime() + this.responseBudget.toNanos();
+    var attempts = 0;
 
-    if (maybeSignature.isPresent()) {
-      context.result(maybeSignature.get());
-      log.info("Sign request processed synchronously");
-      return;
+    while (true) {
+      var attemptStart = System.nanoTime();
+      var pendingSignature = cryptoClient.signAsync(signRequestDTO.getMessage());
+      attempts++;
+
+      try {
+        var maybeSignature = pendingSignature.get(deadline - attemptStart, TimeUnit.NANOSECONDS);
+
+        if (maybeSignature.isPresent()) {
+          if (this.retryPolicy != null) {
+            this.retryPolicy.recordSuccess(Duration.ofNanos(System.nanoTime() - attemptStart));
+          }
+
+          context.result(maybeSignature.get());
+          log.info("Sign request processed synchronously after {} attempts", attempts);
+          return;
+        }
+      } catch (TimeoutException e) {
+        // The call keeps running, so its signature is delivered from here. Queueing the message
+        // straight away would have a processor sign it a second time.
+        deliverWhenSigned(pendingSignature, signRequestDTO);
+        context.status(202);
+        log.info("Sign request exceeded its response budget, delivering its signature once ready");
+        return;
+      } catch (ExecutionException e) {
+        if (SignRejectedException.isRejection(e.getCause())) {
+          log.info("Sign request rejected before reaching the upstream API");
+        } else {
+          log.error("Unable to sign message", e.getCause());
+        }
+      }
+
+      var remainingBudget = Duration.ofNanos(deadline - System.nanoTime());
+
+      if (this.retryPolicy == null || !this.retryPolicy.shouldRetry(attempts, remainingBudget)) {
+        break;
+      }
+
+      log.info("Retrying sign request with {} left of its response budget", remainingBudget);
     }
 
     this.messageSigningQueue.scheduleMessageSigning(signRequestDTO.toSignRequestMessage());
@@ -41,6 +115,39 @@ public class SignApi {
     log.info("Sign request processed asynchronously");
   }
 
+  /**
+   * Notifies the webhook once the pending call lands. The message is only queued for a processor if
+   * the call or the notification fails.
+   */
+  private void deliverWhenSigned(
+      CompletableFuture<Optional<String>> pendingSignature, SignRequestDTO signRequestDTO) {
+    pendingSignature
+        .thenCompose(
+            maybeSignature ->
+                maybeSignature.isPresent()
+                    ? this.webhookClient.notifyAsync(
+                        signRequestDTO.getWebhookUrl(), maybeSignature.get())
+                    : CompletableFuture.completedFuture(false))
+        .whenComplete(
+            (delivered, error) -> {
+              if (error == null && Boolean.TRUE.equals(delivered)) {
+                log.info("Sign request delivered after exceeding its response budget");
+                return;
+              }
+
+              log.warn("Unable to deliver late signature, processing asynchronously", error);
+
+              this.messageSigningQueue
+                  .scheduleMessageSigningAsync(signRequestDTO.toSignRequestMessage())
+                  .whenComplete(
+                      (ignored, scheduleError) -> {
+                        if (scheduleError != null) {
+                          log.error("Unable to schedule message signing", scheduleError);
+                        }
+                      });
+            });
+  }
+
   private boolean isValidRequestDTO(SignRequestDTO signRequestDTO) {
     return signRequestDTO != null
         && signRequestDTO.getMessage() != null
@@ -0,0 +1,60 @@
+package io.synthesia.api;
+
+import io.micrometer.core.instrument.Counter;
+import io.synthesia.crypto.limiter.RateLimiter;
+import java.time.Duration;
+
+/**
+ * Decides whether a failed upstream call on the synchronous path is worth another attempt. A retry
+ * only starts while there are tokens left and the remaining response budget covers how long a
+ * successful attempt usually takes, so it never pushes the response past its budget.
+ */
+public class SyncRetryPolicy {
+  /** Weight given to the latest successful attempt in the latency estimate. */
+  private static final double SMOOTHING = 0.2;
+
+  private final RateLimiter rateLimiter;
+  private final int maxAttempts;
+  private final Counter retries;
+
+  private volatile long estimatedAttemptNanos;
+
+  public SyncRetryPolicy(
+      RateLimiter rateLimiter, int maxAttempts, Duration initialAttemptLatency, Counter retries) {
+    this.rateLimiter = rateLimiter;
+    this.maxAttempts = maxAttempts;
+    this.retries = retries;
+    this.estimatedAttemptNanos = initialAttemptLatency.toNanos();
+  }
+
+  /**
+   * @param attempts number of attempts made so far
+   * @param remainingBudget time left before the response is due
+   */
+  public boolean shouldRetry(int attempts, Duration remainingBudget) {
+    if (attempts >= this.maxAttempts) {
+      return false;
+    }
+
+    if (remainingBudget.toNanos() < this.estimatedAttemptNanos) {
+      return false;
+    }
+
+    if (this.rateLimiter.availableTokens() <= 0) {
+      return false;
+    }
+
+    this.retries.increment();
+    return true;
+  }
+
+  public void recordSuccess(Duration latency) {
+    var current = this.estimatedAttemptNanos;
+
+    this.estimatedAttemptNanos = (long) (SMOOTHING * latency.toNanos() + (1 - SMOOTHING) * current);
+  }
+
+  public Duration estimatedAttemptLatency() {
+    return Duration.ofNanos(this.estimatedAttemptNanos);
+  }
+}
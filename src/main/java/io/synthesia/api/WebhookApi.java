@@ -2,6 +2,7 @@ package io.synthesia.api;
 
 import com.google.inject.Inject;
 import io.javalin.http.Context;
+import java.util.Arrays;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -13,4 +14,13 @@ public class WebhookApi {
     log.info("Webhook notification received with message {}", signedMessage);
     context.result(signedMessage);
   }
+
+  public void notifyBatch(Context context) {
+    var signedMessages = context.bodyAsClass(String[].class);
+    log.info("Webhook notification received with {} messages", signedMessages.length);
+
+    var delivered = new boolean[signedMessages.length];
+    Arrays.fill(delivered, true);
+    context.json(delivered);
+  }
 }
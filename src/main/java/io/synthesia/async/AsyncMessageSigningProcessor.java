@@ -0,0 +1,180 @@
+package io.synthesia.async;
+
+import io.synthesia.async.claimcheck.ClaimCheck;
+import io.synthesia.async.dto.SignRequestMessage;
+import io.synthesia.crypto.CryptoClient;
+import io.synthesia.crypto.SignRejectedException;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Non-blocking counterpart of {@link MessageSingingProcessor}. Each message is processed as a chain
+ * of sign, notify and acknowledge stages, so the polling thread is only blocked while waiting for
+ * new messages or for a free slot among the messages allowed to be in flight.
+ */
+@Slf4j
+@Builder
+public class AsyncMessageSigningProcessor implements Runnable {
+  private final CryptoClient cryptoClient;
+  private final WebhookClient webhookClient;
+  private final BlockingQueue<SignRequestMessage> processorsQueue;
+  private final int producerQueueTimeoutInSeconds;
+  private final MessageSigningQueue messageSigningQueue;
+  private final Semaphore inFlight;
+
+  /** Reserves a token for each message before signing it when present. */
+  private final TokenGate tokenGate;
+
+  /** Backs off and dead-letters failed messages when present. */
+  private final SigningRetryPolicy retryPolicy;
+
+  /**
+   * Signed messages are handed to this queue for delivery when present, otherwise the webhook is
+   * notified inline.
+   */
+  private final MessageSigningQueue deliveryQueue;
+
+  @Builder.Default private final ClaimCheck claimCheck = ClaimCheck.disabled();
+
+  @Override
+  public void run() {
+    log.info("AsyncMessageSigningProcessor started");
+
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        this.inFlight.acquire();
+
+        final SignRequestMessage signRequestMessage =
+            this.processorsQueue.poll(this.producerQueueTimeoutInSeconds, TimeUnit.SECONDS);
+
+        if (signRequestMessage == null) {
+          this.inFlight.release();
+          continue;
+        }
+
+        if (signRequestMessage.getReceiptHandle() == null) {
+          log.error("Missing receipt handle on message");
+          this.inFlight.release();
+          continue;
+        }
+
+        if (this.tokenGate != null && !this.tokenGate.reserveToken(signRequestMessage)) {
+          this.inFlight.release();
+          continue;
+        }
+
+        process(signRequestMessage)
+            .whenComplete(
+                (result, error) -> {
+                  this.inFlight.release();
+
+                  if (error != null) {
+                    log.error("Encountered an error while processing SignRequestMessage", error);
+                  }
+                });
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (final Exception e) {
+        log.error("Encountered an error while processing SignRequestMessage", e);
+      }
+    }
+  }
+
+  private CompletableFuture<Void> process(SignRequestMessage signRequestMessage) {
+    if (signRequestMessage.getSignedMessage() != null) {
+      return notify(signRequestMessage, signRequestMessage.getSignedMessage());
+    }
+
+    return CompletableFuture.completedFuture(signRequestMessage)
+        .thenApply(this.claimCheck::payload)
+        .thenCompose(this.cryptoClient::signAsync)
+        .exceptionally(
+            e -> {
+              if (SignRejectedException.isRejection(e)) {
+                log.info("SignRequestMessage rejected before reaching the upstream API");
+                signRejected(signRequestMessage);
+                return null;
+              }
+
+              log.error("Encountered an error while signing SignRequestMessage", e);
+              return Optional.empty();
+            })
+        .thenCompose(
+            maybeSignedMessage -> {
+              // Rejected calls have been handed back already
+              if (maybeSignedMessage == null) {
+                return CompletableFuture.completedFuture(null);
+              }
+
+              if (maybeSignedMessage.isEmpty()) {
+                signFailed(signRequestMessage);
+                return CompletableFuture.completedFuture(null);
+              }
+
+              if (this.deliveryQueue != null) {
+                return handOffForDelivery(signRequestMessage, maybeSignedMessage.get());
+              }
+
+              return notify(signRequestMessage, maybeSignedMessage.get());
+            });
+  }
+
+  private CompletableFuture<Void> handOffForDelivery(
+      SignRequestMessage signRequestMessage, String signedMessage) {
+    return this.deliveryQueue
+        .scheduleMessageSigningAsync(this.claimCheck.checkOut(signRequestMessage, signedMessage))
+        .thenRun(
+            () -> {
+              this.messageSigningQueue.acknowledge(signRequestMessage);
+              log.info("SignRequestMessage signed and scheduled for delivery");
+            });
+  }
+
+  private CompletableFuture<Void> notify(
+      SignRequestMessage signRequestMessage, String signedMessage) {
+    return this.webhookClient
+        .notifyAsync(signRequestMessage.getWebhookUrl(), signedMessage)
+        .exceptionally(
+            e -> {
+              log.error("Encountered an error while notifying the webhook", e);
+              return false;
+            })
+        .thenAccept(
+            success -> {
+              if (!success) {
+                webhookFailed(signRequestMessage);
+                return;
+              }
+
+              this.messageSigningQueue.acknowledge(signRequestMessage);
+              log.info("SignRequestMessage processed successfully");
+            });
+  }
+
+  private void signFailed(SignRequestMessage signRequestMessage) {
+    if (this.retryPolicy != null) {
+      this.retryPolicy.signFailed(signRequestMessage);
+    } else if (this.tokenGate != null) {
+      this.tokenGate.releaseIfRateLimited(signRequestMessage);
+    }
+  }
+
+  private void signRejected(SignRequestMessage signRequestMessage) {
+    if (this.retryPolicy != null) {
+      this.retryPolicy.signRejected(signRequestMessage);
+    } else {
+      signFailed(signRequestMessage);
+    }
+  }
+
+  private void webhookFailed(SignRequestMessage signRequestMessage) {
+    if (this.retryPolicy != null) {
+      this.retryPolicy.webhookFailed(signRequestMessage);
+    }
+  }
+}
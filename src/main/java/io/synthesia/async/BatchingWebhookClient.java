@@ -0,0 +1,193 @@
+package io.synthesia.async;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Combines notifications bound for the same webhook URL into a single batch request. A batch is
+ * sent once {@code maxBatchSize} notifications are buffered for a URL or once the oldest of them
+ * has waited for the linger duration, whichever comes first.
+ *
+ * <p>Every notification keeps its own future, which completes with whether that particular signed
+ * message was delivered, so each message is still acknowledged on its own.
+ *
+ * <p>Only webhooks on {@code batchingHosts} are batched, since they must take a JSON array and
+ * report on each message. Notifications for any other host are sent on their own.
+ *
+ * <p>Only asynchronous notifications are batched. A synchronous caller holds its thread until the
+ * notification is delivered, so it is sent on its own rather than waiting out the linger.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class BatchingWebhookClient implements WebhookClient {
+  private final WebhookClient delegate;
+  private final Set<String> batchingHosts;
+  private final Duration linger;
+  private final int maxBatchSize;
+  private final ScheduledExecutorService flusher;
+  private final DistributionSummary batchSize;
+
+  private final Map<String, List<Notification>> buffers = new HashMap<>();
+  private final Map<String, ScheduledFuture<?>> scheduledFlushes = new HashMap<>();
+  private boolean closed;
+
+  @Override
+  public boolean notify(String webhookUrl, String signedMessage) {
+    return this.delegate.notify(webhookUrl, signedMessage);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> notifyAsync(String webhookUrl, String signedMessage) {
+    if (!acceptsBatches(webhookUrl)) {
+      return this.delegate.notifyAsync(webhookUrl, signedMessage);
+    }
+
+    var notification = new Notification(signedMessage);
+    List<Notification> fullBatch = null;
+
+    synchronized (this) {
+      if (this.closed) {
+        return CompletableFuture.failedFuture(
+            new IllegalStateException("BatchingWebhookClient is closed"));
+      }
+
+      var buffer = this.buffers.computeIfAbsent(webhookUrl, url -> new ArrayList<>());
+      buffer.add(notification);
+
+      if (buffer.size() >= this.maxBatchSize) {
+        fullBatch = drain(webhookUrl);
+      } else if (!this.scheduledFlushes.containsKey(webhookUrl) && !this.flusher.isShutdown()) {
+        this.scheduledFlushes.put(
+            webhookUrl,
+            this.flusher.schedule(
+                () -> flushBuffered(webhookUrl), this.linger.toMillis(), TimeUnit.MILLISECONDS));
+      }
+    }
+
+    if (fullBatch != null) {
+      flush(webhookUrl, fullBatch);
+    }
+
+    return notification.result;
+  }
+
+  @Override
+  public CompletableFuture<List<Boolean>> notifyBatchAsync(
+      String webhookUrl, List<String> signedMessages) {
+    return this.delegate.notifyBatchAsync(webhookUrl, signedMessages);
+  }
+
+  /**
+   * Sends every buffered notification, waits for them to be delivered and stops the background
+   * flusher. Notifications made afterwards fail straight away.
+   */
+  @Override
+  public void close() {
+    this.flusher.shutdown();
+
+    Map<String, List<Notification>> remaining = new HashMap<>();
+
+    synchronized (this) {
+      this.closed = true;
+
+      for (var webhookUrl : new ArrayList<>(this.buffers.keySet())) {
+        remaining.put(webhookUrl, drain(webhookUrl));
+      }
+    }
+
+    remaining.forEach(this::flush);
+
+    remaining.values().stream()
+        .flatMap(List::stream)
+        .forEach(notification -> notification.result.exceptionally(e -> false).join());
+
+    this.delegate.close();
+  }
+
+  private boolean acceptsBatches(String webhookUrl) {
+    try {
+      var host = URI.create(webhookUrl).getHost();
+      return host != null && this.batchingHosts.contains(host.toLowerCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  private void flushBuffered(String webhookUrl) {
+    List<Notification> batch;
+
+    synchronized (this) {
+      batch = drain(webhookUrl);
+    }
+
+    if (!batch.isEmpty()) {
+      flush(webhookUrl, batch);
+    }
+  }
+
+  private List<Notification> drain(String webhookUrl) {
+    var drained = this.buffers.remove(webhookUrl);
+    var scheduledFlush = this.scheduledFlushes.remove(webhookUrl);
+
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+    }
+
+    return drained == null ? List.of() : drained;
+  }
+
+  private void flush(String webhookUrl, List<Notification> batch) {
+    this.batchSize.record(batch.size());
+
+    var signedMessages =
+        batch.stream().map(notification -> notification.signedMessage).collect(Collectors.toList());
+
+    CompletableFuture<List<Boolean>> delivery;
+
+    try {
+      delivery = this.delegate.notifyBatchAsync(webhookUrl, signedMessages);
+    } catch (Exception e) {
+      delivery = CompletableFuture.failedFuture(e);
+    }
+
+    delivery.whenComplete(
+        (results, error) -> {
+          if (error != null) {
+            log.warn("Unable to deliver batch of {} notifications", batch.size(), error);
+          }
+
+          for (int i = 0; i < batch.size(); i++) {
+            var result = batch.get(i).result;
+
+            if (error != null) {
+              result.completeExceptionally(error);
+            } else {
+              result.complete(i < results.size() && Boolean.TRUE.equals(results.get(i)));
+            }
+          }
+        });
+  }
+
+  private static class Notification {
+    private final String signedMessage;
+    private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+    private Notification(String signedMessage) {
+      this.signedMessage = signedMessage;
+    }
+  }
+}
@@ -0,0 +1,310 @@
+package io.synthesia.async;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToIntFunction;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Isolates webhook destinations from each other. Every host gets a limited number of concurrent
+ * deliveries, so a hanging endpoint can only hold up that many threads, and hosts that keep timing
+ * out or refusing connections are skipped until a single probe shows they have recovered.
+ *
+ * <p>A delivery to a host at its limit waits up to {@code permitWait} for another delivery to that
+ * host to finish. Deliveries that are skipped, or still waiting at the end of that time, are
+ * reported as failed, so the message is retried later like any other failed notification.
+ *
+ * <p>Webhook URLs come from callers, so at most {@code maxHosts} hosts are tracked. Past that,
+ * hosts without deliveries in flight are forgotten, along with their failures.
+ */
+@Slf4j
+public class BulkheadWebhookClient implements WebhookClient {
+  private final WebhookClient delegate;
+  private final int maxConcurrentDeliveriesPerHost;
+  private final Duration permitWait;
+  private final int maxHosts;
+  private final int failureThreshold;
+  private final long cooldownInMillis;
+  private final Clock clock;
+
+  private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+  public BulkheadWebhookClient(
+      WebhookClient delegate,
+      int maxConcurrentDeliveriesPerHost,
+      Duration permitWait,
+      int maxHosts,
+      int failureThreshold,
+      long cooldownInMillis,
+      Clock clock,
+      MeterRegistry meterRegistry) {
+    this.delegate = delegate;
+    this.maxConcurrentDeliveriesPerHost = maxConcurrentDeliveriesPerHost;
+    this.permitWait = permitWait;
+    this.maxHosts = maxHosts;
+    this.failureThreshold = failureThreshold;
+    this.cooldownInMillis = cooldownInMillis;
+    this.clock = clock;
+
+    // Tagging by host would create a time series for every URL a caller makes up
+    Gauge.builder("webhook_in_flight", this.hosts, hosts -> sum(hosts, Host::inFlight))
+        .register(meterRegistry);
+    Gauge.builder("webhook_unhealthy_hosts", this.hosts, hosts -> sum(hosts, Host::unhealthy))
+        .register(meterRegistry);
+    Gauge.builder("webhook_tracked_hosts", this.hosts, Map::size).register(meterRegistry);
+  }
+
+  @Override
+  public boolean notify(String webhookUrl, String signedMessage) {
+    var host = host(webhookUrl);
+
+    if (!host.enter().join()) {
+      return false;
+    }
+
+    try {
+      var success = this.delegate.notify(webhookUrl, signedMessage);
+      host.succeeded();
+      return success;
+    } catch (Exception e) {
+      host.failed(e);
+      throw e;
+    } finally {
+      host.leave();
+    }
+  }
+
+  @Override
+  public CompletableFuture<Boolean> notifyAsync(String webhookUrl, String signedMessage) {
+    var host = host(webhookUrl);
+
+    return host.enter()
+        .thenCompose(
+            entered -> {
+              if (!entered) {
+                return CompletableFuture.completedFuture(false);
+              }
+
+              CompletableFuture<Boolean> delivery;
+
+              try {
+                delivery = this.delegate.notifyAsync(webhookUrl, signedMessage);
+              } catch (Exception e) {
+                delivery = CompletableFuture.failedFuture(e);
+              }
+
+              return delivery.whenComplete((success, error) -> completed(host, error));
+            });
+  }
+
+  @Override
+  public CompletableFuture<List<Boolean>> notifyBatchAsync(
+      String webhookUrl, List<String> signedMessages) {
+    var host = host(webhookUrl);
+
+    return host.enter()
+        .thenCompose(
+            entered -> {
+              if (!entered) {
+                return CompletableFuture.completedFuture(
+                    Collections.nCopies(signedMessages.size(), false));
+              }
+
+              CompletableFuture<List<Boolean>> delivery;
+
+              try {
+                delivery = this.delegate.notifyBatchAsync(webhookUrl, signedMessages);
+              } catch (Exception e) {
+                delivery = CompletableFuture.failedFuture(e);
+              }
+
+              return delivery.whenComplete((results, error) -> completed(host, error));
+            });
+  }
+
+  private Host host(String webhookUrl) {
+    var hostName = hostName(webhookUrl);
+    var host = this.hosts.get(hostName);
+
+    if (host != null) {
+      return host;
+    }
+
+    if (this.hosts.size() >= this.maxHosts) {
+      this.hosts.values().removeIf(Host::isIdle);
+    }
+
+    return this.hosts.computeIfAbsent(hostName, Host::new);
+  }
+
+  private static int sum(Map<String, Host> hosts, ToIntFunction<Host> value) {
+    return hosts.values().stream().mapToInt(value).sum();
+  }
+
+  private static void completed(Host host, Throwable error) {
+    if (error == null) {
+      host.succeeded();
+    } else {
+      host.failed(error);
+    }
+
+    host.leave();
+  }
+
+  private static String hostName(String webhookUrl) {
+    try {
+      var host = URI.create(webhookUrl).getHost();
+      return host == null ? webhookUrl : host;
+    } catch (IllegalArgumentException e) {
+      return webhookUrl;
+    }
+  }
+
+  /** Whether the error means the host itself is unreachable, rather than the request being bad. */
+  private static boolean isHostFailure(Throwable error) {
+    for (var cause = error; cause != null; cause = cause.getCause()) {
+      if (cause instanceof HttpTimeoutException || cause instanceof ConnectException) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private class Host {
+    private final String name;
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    private int inFlight;
+    private int consecutiveFailures;
+    private volatile long openUntil;
+
+    private Host(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Completes with whether the delivery may go ahead. When it does, {@link #leave()} must be
+     * called once it is over.
+     */
+    CompletableFuture<Boolean> enter() {
+      if (isOpen()) {
+        if (clock.millis() < this.openUntil || !this.probing.compareAndSet(false, true)) {
+          return CompletableFuture.completedFuture(false);
+        }
+
+        log.info("Probing webhook host {}", this.name);
+      }
+
+      var waiter = new CompletableFuture<Void>();
+
+      synchronized (this) {
+        if (this.inFlight < maxConcurrentDeliveriesPerHost) {
+          this.inFlight++;
+          return CompletableFuture.completedFuture(true);
+        }
+
+        this.waiters.add(waiter);
+      }
+
+      return waiter
+          .orTimeout(permitWait.toMillis(), TimeUnit.MILLISECONDS)
+          .handle(
+              (permit, error) -> {
+                if (error == null) {
+                  return true;
+                }
+
+                synchronized (this) {
+                  this.waiters.remove(waiter);
+                }
+
+                log.debug("Webhook host {} stayed busy for {}", this.name, permitWait);
+                this.probing.set(false);
+                return false;
+              });
+    }
+
+    /** Hands the permit to the next waiting delivery, if any is still waiting. */
+    void leave() {
+      while (true) {
+        CompletableFuture<Void> waiter;
+
+        synchronized (this) {
+          waiter = this.waiters.poll();
+
+          if (waiter == null) {
+            this.inFlight--;
+            return;
+          }
+        }
+
+        // Completed outside the lock, as the delivery it lets through starts right away
+        if (waiter.complete(null)) {
+          return;
+        }
+      }
+    }
+
+    synchronized void succeeded() {
+      if (isOpen()) {
+        log.info("Webhook host {} recovered", this.name);
+      }
+
+      this.consecutiveFailures = 0;
+      this.openUntil = 0;
+      this.probing.set(false);
+    }
+
+    synchronized void failed(Throwable error) {
+      if (!isHostFailure(error)) {
+        this.probing.set(false);
+        return;
+      }
+
+      this.consecutiveFailures++;
+
+      if (isOpen() || this.consecutiveFailures >= failureThreshold) {
+        log.warn(
+            "Skipping webhook host {} for {}ms after {} consecutive failures",
+            this.name,
+            cooldownInMillis,
+            this.consecutiveFailures);
+        this.openUntil = clock.millis() + cooldownInMillis;
+      }
+
+      this.probing.set(false);
+    }
+
+    boolean isOpen() {
+      return this.openUntil != 0;
+    }
+
+    synchronized boolean isIdle() {
+      return this.inFlight == 0 && this.waiters.isEmpty();
+    }
+
+    synchronized int inFlight() {
+      return this.inFlight;
+    }
+
+    int unhealthy() {
+      return isOpen() ? 1 : 0;
+    }
+  }
+}
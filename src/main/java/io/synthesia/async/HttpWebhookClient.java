@@ -1,30 +1,109 @@
 package io.synthesia.async;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 @RequiredArgsConstructor
 public class HttpWebhookClient implements WebhookClient {
   private final HttpClient webhookClient;
   private final Duration timeout;
+  private final ObjectMapper mapper;
 
   @SneakyThrows
   @Override
   public boolean notify(String webhookUrl, String signedMessage) {
-    HttpRequest request =
-        HttpRequest.newBuilder()
-            .uri(new URI(String.format("%s?signedMessage=%s", webhookUrl, signedMessage)))
-            .timeout(timeout)
-            .GET()
-            .build();
-
-    var response = this.webhookClient.send(request, HttpResponse.BodyHandlers.discarding());
+    var response =
+        this.webhookClient.send(
+            notifyRequest(webhookUrl, signedMessage), HttpResponse.BodyHandlers.discarding());
 
     return response.statusCode() < 300;
   }
+
+  @Override
+  public CompletableFuture<Boolean> notifyAsync(String webhookUrl, String signedMessage) {
+    return this.webhookClient
+        .sendAsync(notifyRequest(webhookUrl, signedMessage), HttpResponse.BodyHandlers.discarding())
+        .thenApply(response -> response.statusCode() < 300);
+  }
+
+  /**
+   * Sends the signed messages as a JSON array in the body of a {@code POST}. The webhook must
+   * answer with a JSON array holding a boolean for each message. Any other answer fails all of
+   * them, as there is no telling which were delivered.
+   */
+  @Override
+  public CompletableFuture<List<Boolean>> notifyBatchAsync(
+      String webhookUrl, List<String> signedMessages) {
+    try {
+      return this.webhookClient
+          .sendAsync(
+              notifyBatchRequest(webhookUrl, signedMessages), HttpResponse.BodyHandlers.ofString())
+          .thenApply(response -> batchResults(response, signedMessages.size()));
+    } catch (Exception e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  @SneakyThrows
+  private HttpRequest notifyRequest(String webhookUrl, String signedMessage) {
+    return HttpRequest.newBuilder()
+        .uri(new URI(String.format("%s?signedMessage=%s", webhookUrl, signedMessage)))
+        .timeout(timeout)
+        .GET()
+        .build();
+  }
+
+  @SneakyThrows
+  private HttpRequest notifyBatchRequest(String webhookUrl, List<String> signedMessages) {
+    return HttpRequest.newBuilder()
+        .uri(new URI(webhookUrl))
+        .timeout(timeout)
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(this.mapper.writeValueAsString(signedMessages)))
+        .build();
+  }
+
+  private List<Boolean> batchResults(HttpResponse<String> response, int batchSize) {
+    if (response.statusCode() >= 300) {
+      return Collections.nCopies(batchSize, false);
+    }
+
+    try {
+      var results = this.mapper.readTree(response.body());
+
+      if (results.isArray() && results.size() == batchSize) {
+        var delivered = new ArrayList<Boolean>(batchSize);
+
+        for (var result : results) {
+          if (!result.isBoolean()) {
+            break;
+          }
+
+          delivered.add(result.booleanValue());
+        }
+
+        if (delivered.size() == batchSize) {
+          return delivered;
+        }
+      }
+    } catch (Exception e) {
+      log.debug("Unable to read the batch results", e);
+    }
+
+    log.warn("Webhook did not report on each of {} messages, failing them all", batchSize);
+
+    return Collections.nCopies(batchSize, false);
+  }
 }
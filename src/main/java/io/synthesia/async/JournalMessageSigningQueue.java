@@ -0,0 +1,542 @@
+package io.synthesia.async;
+
+import io.synthesia.async.codec.MessageCodec;
+import io.synthesia.async.dto.SignRequestMessage;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Queue kept in a local append-only journal, for deployments that do not want an external broker.
+ * The journal is split into fixed size, memory-mapped segments. Every message is appended as an
+ * enqueue record and every acknowledgement as an ack record, each with a checksum. On startup the
+ * segments are replayed and every message without an ack becomes visible again, so nothing accepted
+ * before a crash or restart is lost. Segments are deleted, oldest first, once all their messages
+ * have been acknowledged. So that a few slow messages cannot hold back every segment written after
+ * them, the oldest segment is compacted once another full segment has piled up behind it and at
+ * most a quarter of it is still live: its pending messages are appended again to the active segment
+ * under the same ids, and the segment is deleted.
+ *
+ * <p>Visibility timeouts and attempts only live in memory, so after a restart every pending message
+ * is delivered again straight away with its attempts counted from zero. Writes reach the page cache
+ * immediately, which survives the process dying; with fsync enabled every append is also flushed to
+ * disk, which survives the machine dying at the cost of enqueue latency.
+ */
+@Slf4j
+public class JournalMessageSigningQueue implements MessageSigningQueue {
+  private static final int MAX_MESSAGES_PER_RECEIVE = 10;
+
+  private static final byte ENQUEUE = 1;
+  private static final byte ACK = 2;
+
+  /** Record size, type, message id and checksum precede every payload. */
+  private static final int HEADER_SIZE = Integer.BYTES + Byte.BYTES + Long.BYTES + Integer.BYTES;
+
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  private final Path directory;
+  private final int segmentSize;
+  private final long waitTimeInNanos;
+  private final long visibilityTimeoutInNanos;
+  private final boolean fsync;
+  private final MessageCodec codec;
+
+  /** Where messages that run out of attempts are moved to. */
+  private final MessageSigningQueue deadLetterQueue;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition messagesAvailable = this.lock.newCondition();
+
+  private final TreeMap<Long, Segment> segments = new TreeMap<>();
+  private final Map<Long, Entry> pending = new HashMap<>();
+  private final ArrayDeque<Entry> visible = new ArrayDeque<>();
+  private final PriorityQueue<Entry> invisible =
+      new PriorityQueue<>(Comparator.comparingLong(entry -> entry.visibleAt));
+
+  private Segment activeSegment;
+  private long nextId;
+
+  public JournalMessageSigningQueue(
+      Path directory,
+      int segmentSize,
+      Duration waitTime,
+      Duration visibilityTimeout,
+      boolean fsync,
+      MessageCodec codec,
+      MessageSigningQueue deadLetterQueue) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.waitTimeInNanos = waitTime.toNanos();
+    this.visibilityTimeoutInNanos = visibilityTimeout.toNanos();
+    this.fsync = fsync;
+    this.codec = codec;
+    this.deadLetterQueue = deadLetterQueue;
+
+    recover();
+  }
+
+  @Override
+  public void scheduleMessageSigning(SignRequestMessage signRequestMessage) {
+    var payload = this.codec.encode(signRequestMessage).getBytes(StandardCharsets.UTF_8);
+
+    this.lock.lock();
+    try {
+      var id = this.nextId++;
+      var offset = append(ENQUEUE, id, payload);
+      var entry = new Entry(id, this.activeSegment, offset, payload.length);
+
+      this.activeSegment.add(entry);
+      this.pending.put(id, entry);
+      this.visible.add(entry);
+      this.messagesAvailable.signal();
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  @Override
+  public CompletableFuture<Void> scheduleMessageSigningAsync(
+      SignRequestMessage signRequestMessage) {
+    try {
+      this.scheduleMessageSigning(signRequestMessage);
+      return CompletableFuture.completedFuture(null);
+    } catch (Exception e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  @Override
+  public List<SignRequestMessage> getMessagesToSign() {
+    return this.getMessagesToSign(MAX_MESSAGES_PER_RECEIVE);
+  }
+
+  @Override
+  public List<SignRequestMessage> getMessagesToSign(int maxMessages) {
+    final List<SignRequestMessage> messages = new ArrayList<>();
+
+    this.lock.lock();
+    try {
+      var now = awaitVisibleMessages();
+
+      while (!this.visible.isEmpty() && messages.size() < maxMessages) {
+        var entry = this.visible.poll();
+
+        try {
+          final SignRequestMessage message =
+              this.codec.decode(new String(read(entry), StandardCharsets.UTF_8));
+
+          // Deliveries that timed out count as failed attempts, released ones do not
+          if (!entry.released) {
+            entry.attempt++;
+          }
+          entry.released = false;
+          entry.visibleAt = now + this.visibilityTimeoutInNanos;
+          this.invisible.add(entry);
+
+          message.setReceiptHandle(String.valueOf(entry.id));
+          message.setAttempt(entry.attempt);
+          messages.add(message);
+        } catch (Exception e) {
+          log.error("Couldn't deserialize message {}, dropping it", entry.id, e);
+          acknowledge(entry);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      this.lock.unlock();
+    }
+
+    return messages;
+  }
+
+  @Override
+  public void acknowledge(SignRequestMessage signRequestMessage) {
+    log.debug("Acknowledge message with receipt {}", signRequestMessage.getReceiptHandle());
+
+    this.lock.lock();
+    try {
+      var entry = this.pending.get(Long.parseLong(signRequestMessage.getReceiptHandle()));
+
+      if (entry != null) {
+        acknowledge(entry);
+      }
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  @Override
+  public void release(SignRequestMessage signRequestMessage, Duration delay) {
+    log.debug(
+        "Release message with receipt {} for {}", signRequestMessage.getReceiptHandle(), delay);
+
+    delay(signRequestMessage, delay, true);
+  }
+
+  @Override
+  public void retry(SignRequestMessage signRequestMessage, Duration delay) {
+    log.debug("Retry message with receipt {} in {}", signRequestMessage.getReceiptHandle(), delay);
+
+    delay(signRequestMessage, delay, false);
+  }
+
+  @Override
+  public void deadLetter(SignRequestMessage signRequestMessage) {
+    if (this.deadLetterQueue == null) {
+      log.error(
+          "No dead-letter queue configured, message with receipt {} will be delivered again",
+          signRequestMessage.getReceiptHandle());
+      return;
+    }
+
+    log.debug("Dead-letter message with receipt {}", signRequestMessage.getReceiptHandle());
+
+    this.deadLetterQueue.scheduleMessageSigning(signRequestMessage);
+    this.acknowledge(signRequestMessage);
+  }
+
+  @Override
+  public void close() {
+    this.lock.lock();
+    try {
+      this.segments.values().forEach(segment -> segment.buffer.force());
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /** Returns the current time once a message is visible or the wait time has passed. */
+  private long awaitVisibleMessages() throws InterruptedException {
+    var deadline = System.nanoTime() + this.waitTimeInNanos;
+
+    while (true) {
+      var now = System.nanoTime();
+
+      while (!this.invisible.isEmpty() && this.invisible.peek().visibleAt <= now) {
+        this.visible.add(this.invisible.poll());
+      }
+
+      if (!this.visible.isEmpty() || deadline <= now) {
+        return now;
+      }
+
+      var wait = deadline - now;
+
+      if (!this.invisible.isEmpty()) {
+        wait = Math.min(wait, this.invisible.peek().visibleAt - now);
+      }
+
+      this.messagesAvailable.awaitNanos(wait);
+    }
+  }
+
+  private void delay(SignRequestMessage signRequestMessage, Duration delay, boolean released) {
+    this.lock.lock();
+    try {
+      var entry = this.pending.get(Long.parseLong(signRequestMessage.getReceiptHandle()));
+
+      if (entry == null || !this.invisible.remove(entry)) {
+        return;
+      }
+
+      entry.released = released;
+      entry.visibleAt = System.nanoTime() + delay.toNanos();
+      this.invisible.add(entry);
+      this.messagesAvailable.signal();
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  private void acknowledge(Entry entry) {
+    append(ACK, entry.id, new byte[0]);
+    remove(entry);
+  }
+
+  private void remove(Entry entry) {
+    if (!this.invisible.remove(entry)) {
+      this.visible.remove(entry);
+    }
+
+    this.pending.remove(entry.id);
+    entry.segment.remove(entry);
+
+    deleteAcknowledgedSegments();
+  }
+
+  /**
+   * Only the oldest segment is ever deleted, so acks written to later segments are never lost while
+   * the messages they refer to are still in the journal.
+   */
+  @SneakyThrows
+  private void deleteAcknowledgedSegments() {
+    while (this.segments.size() > 1) {
+      var oldest = this.segments.firstEntry().getValue();
+
+      if (oldest.live > 0 && !compact(oldest)) {
+        return;
+      }
+
+      this.segments.pollFirstEntry();
+      Files.deleteIfExists(oldest.path);
+      log.debug("Deleted journal segment {}", oldest.path);
+    }
+  }
+
+  /**
+   * Moves the pending messages of a mostly acknowledged segment to the active one, returning
+   * whether the segment can now be deleted. The copies keep their ids, so on replay they replace
+   * the originals, and acks written later still match them.
+   */
+  private boolean compact(Segment segment) {
+    if (this.segments.size() <= 2 || segment.liveBytes > this.segmentSize / 4) {
+      return false;
+    }
+
+    var entries =
+        this.pending.values().stream()
+            .filter(entry -> entry.segment == segment)
+            .sorted(Comparator.comparingLong(entry -> entry.id))
+            .collect(Collectors.toList());
+
+    for (var entry : entries) {
+      var payload = read(entry);
+      var offset = append(ENQUEUE, entry.id, payload);
+
+      segment.remove(entry);
+      entry.segment = this.activeSegment;
+      entry.offset = offset;
+      this.activeSegment.add(entry);
+    }
+
+    log.debug(
+        "Compacted {} pending messages out of journal segment {}", entries.size(), segment.path);
+
+    return true;
+  }
+
+  /** Returns the offset of the payload within the active segment. */
+  private int append(byte type, long id, byte[] payload) {
+    var recordSize = HEADER_SIZE + payload.length;
+
+    if (recordSize > this.segmentSize) {
+      throw new IllegalArgumentException(
+          "Message of " + payload.length + " bytes does not fit in a journal segment");
+    }
+
+    if (this.activeSegment.position + recordSize > this.segmentSize) {
+      this.activeSegment = openSegment(this.activeSegment.index + 1);
+    }
+
+    var buffer = this.activeSegment.buffer;
+    var position = this.activeSegment.position;
+
+    buffer.put(position + Integer.BYTES, type);
+    buffer.putLong(position + Integer.BYTES + Byte.BYTES, id);
+    buffer.putInt(position + Integer.BYTES + Byte.BYTES + Long.BYTES, checksum(type, id, payload));
+    buffer.duplicate().position(position + HEADER_SIZE).put(payload);
+    // The size goes last, so a record is not seen on recovery until it is complete
+    buffer.putInt(position, recordSize);
+
+    if (this.fsync) {
+      buffer.force();
+    }
+
+    this.activeSegment.position += recordSize;
+
+    return position + HEADER_SIZE;
+  }
+
+  private byte[] read(Entry entry) {
+    var payload = new byte[entry.length];
+
+    entry.segment.buffer.duplicate().position(entry.offset).get(payload);
+
+    return payload;
+  }
+
+  @SneakyThrows
+  private void recover() {
+    Files.createDirectories(this.directory);
+
+    List<Path> paths;
+    try (Stream<Path> files = Files.list(this.directory)) {
+      paths =
+          files
+              .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+              .sorted()
+              .collect(Collectors.toList());
+    }
+
+    for (var path : paths) {
+      var name = path.getFileName().toString();
+      var segment =
+          openSegment(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+
+      replay(segment);
+      this.activeSegment = segment;
+    }
+
+    if (this.activeSegment == null) {
+      this.activeSegment = openSegment(0);
+    }
+
+    this.pending.values().stream()
+        .sorted(Comparator.comparingLong(entry -> entry.id))
+        .forEach(this.visible::add);
+
+    deleteAcknowledgedSegments();
+
+    log.info(
+        "Recovered {} pending messages from {} journal segments in {}",
+        this.pending.size(),
+        this.segments.size(),
+        this.directory);
+  }
+
+  private void replay(Segment segment) {
+    var buffer = segment.buffer;
+
+    while (segment.position + HEADER_SIZE <= this.segmentSize) {
+      var position = segment.position;
+      var recordSize = buffer.getInt(position);
+
+      // Unwritten space is zeroed, anything else out of range is a partial write
+      if (recordSize < HEADER_SIZE || position + recordSize > this.segmentSize) {
+        return;
+      }
+
+      var length = recordSize - HEADER_SIZE;
+      var type = buffer.get(position + Integer.BYTES);
+      var id = buffer.getLong(position + Integer.BYTES + Byte.BYTES);
+      var payload = new byte[length];
+      buffer.duplicate().position(position + HEADER_SIZE).get(payload);
+
+      if (buffer.getInt(position + Integer.BYTES + Byte.BYTES + Long.BYTES)
+          != checksum(type, id, payload)) {
+        log.warn("Ignoring torn record at {} in {}", position, segment.path);
+        return;
+      }
+
+      if (type == ENQUEUE) {
+        var entry = new Entry(id, segment, position + HEADER_SIZE, length);
+        // A message that was compacted is found again in a later segment
+        var original = this.pending.put(id, entry);
+
+        if (original != null) {
+          original.segment.remove(original);
+        }
+
+        segment.add(entry);
+      } else if (type == ACK) {
+        var entry = this.pending.remove(id);
+
+        if (entry != null) {
+          entry.segment.remove(entry);
+        }
+      }
+
+      this.nextId = Math.max(this.nextId, id + 1);
+      segment.position += recordSize;
+    }
+  }
+
+  private Segment openSegment(long index) {
+    var path = this.directory.resolve(String.format("%020d%s", index, SEGMENT_SUFFIX));
+
+    try (var file = new RandomAccessFile(path.toFile(), "rw")) {
+      if (file.length() < this.segmentSize) {
+        file.setLength(this.segmentSize);
+      }
+
+      // The mapping stays valid after the file is closed
+      var buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize);
+      var segment = new Segment(index, path, buffer);
+
+      this.segments.put(index, segment);
+
+      return segment;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to open journal segment " + path, e);
+    }
+  }
+
+  private static int checksum(byte type, long id, byte[] payload) {
+    var crc = new CRC32();
+
+    crc.update(type);
+    for (var shift = 56; shift >= 0; shift -= 8) {
+      crc.update((int) (id >>> shift));
+    }
+    crc.update(payload);
+
+    return (int) crc.getValue();
+  }
+
+  private static class Segment {
+    private final long index;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private int position;
+    private int live;
+    private int liveBytes;
+
+    private Segment(long index, Path path, MappedByteBuffer buffer) {
+      this.index = index;
+      this.path = path;
+      this.buffer = buffer;
+    }
+
+    private void add(Entry entry) {
+      this.live++;
+      this.liveBytes += entry.length;
+    }
+
+    private void remove(Entry entry) {
+      this.live--;
+      this.liveBytes -= entry.length;
+    }
+  }
+
+  private static class Entry {
+    private final long id;
+    private final int length;
+    private Segment segment;
+    private int offset;
+    private long visibleAt;
+    private int attempt;
+
+    /** Whether the last delivery was handed back without being attempted. */
+    private boolean released;
+
+    private Entry(long id, Segment segment, int offset, int length) {
+      this.id = id;
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+}
@@ -1,31 +1,69 @@
 package io.synthesia.async;
 
 import io.synthesia.async.dto.SignRequestMessage;
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
-import lombok.RequiredArgsConstructor;
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
-@RequiredArgsConstructor
+@AllArgsConstructor
 public class MessageSigningConsumer implements Runnable {
+  private static final int MAX_MESSAGES_PER_RECEIVE = 10;
+  private static final Duration MAX_GATE_WAIT = Duration.ofSeconds(1);
+  private static final Duration BUSY_PROCESSORS_WAIT = Duration.ofMillis(100);
+
   private final MessageSigningQueue messageSigningQueue;
   private final BlockingQueue<SignRequestMessage> processorsQueue;
 
+  /** Only receives as many messages as can be signed right now when present. */
+  private final TokenGate tokenGate;
+
+  public MessageSigningConsumer(
+      MessageSigningQueue messageSigningQueue, BlockingQueue<SignRequestMessage> processorsQueue) {
+    this(messageSigningQueue, processorsQueue, null);
+  }
+
   @Override
   public void run() {
     log.info("MessageSigningConsumer started");
 
     while (!Thread.currentThread().isInterrupted()) {
       try {
-        final List<SignRequestMessage> messages = this.messageSigningQueue.getMessagesToSign();
+        final List<SignRequestMessage> messages = this.receiveMessages();
 
         for (final SignRequestMessage message : messages) {
           this.processorsQueue.put(message);
         }
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
       } catch (final Exception e) {
         log.error("Encountered an error while pulling from queue", e);
       }
     }
   }
+
+  private List<SignRequestMessage> receiveMessages() throws InterruptedException {
+    if (this.tokenGate == null) {
+      return this.messageSigningQueue.getMessagesToSign();
+    }
+
+    if (!this.processorsQueue.isEmpty()) {
+      Thread.sleep(BUSY_PROCESSORS_WAIT.toMillis());
+      return List.of();
+    }
+
+    if (!this.tokenGate.awaitToken(MAX_GATE_WAIT)) {
+      return List.of();
+    }
+
+    final int availableDispatches = this.tokenGate.availableDispatches(MAX_MESSAGES_PER_RECEIVE);
+
+    if (availableDispatches == 0) {
+      return List.of();
+    }
+
+    return this.messageSigningQueue.getMessagesToSign(availableDispatches);
+  }
 }
@@ -1,12 +1,38 @@
 package io.synthesia.async;
 
 import io.synthesia.async.dto.SignRequestMessage;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
-public interface MessageSigningQueue {
+public interface MessageSigningQueue extends AutoCloseable {
   void scheduleMessageSigning(SignRequestMessage signRequestMessage);
 
+  /** Completes once the queue has durably accepted the message. */
+  CompletableFuture<Void> scheduleMessageSigningAsync(SignRequestMessage signRequestMessage);
+
   List<SignRequestMessage> getMessagesToSign();
 
+  List<SignRequestMessage> getMessagesToSign(int maxMessages);
+
   void acknowledge(SignRequestMessage signRequestMessage);
+
+  /**
+   * Makes a received message visible again once the given delay has elapsed. The delivery is not
+   * counted as an attempt, so this is for messages that were not processed at all.
+   */
+  void release(SignRequestMessage signRequestMessage, Duration delay);
+
+  /**
+   * Makes a message whose processing failed visible again once the given delay has elapsed. Its
+   * next delivery comes with the attempt after this one.
+   */
+  void retry(SignRequestMessage signRequestMessage, Duration delay);
+
+  /** Moves a message that keeps failing out of the way, so it is not delivered again. */
+  void deadLetter(SignRequestMessage signRequestMessage);
+
+  /** Flushes anything still buffered. Called once on shutdown. */
+  @Override
+  void close();
 }
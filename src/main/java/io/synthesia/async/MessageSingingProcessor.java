@@ -1,14 +1,17 @@
 package io.synthesia.async;
 
+import io.synthesia.async.claimcheck.ClaimCheck;
 import io.synthesia.async.dto.SignRequestMessage;
 import io.synthesia.crypto.CryptoClient;
+import io.synthesia.crypto.SignRejectedException;
+import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
-import lombok.RequiredArgsConstructor;
+import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
-@RequiredArgsConstructor
+@Builder
 public class MessageSingingProcessor implements Runnable {
   private final CryptoClient cryptoClient;
   private final WebhookClient webhookClient;
@@ -16,6 +19,20 @@ public class MessageSingingProcessor implements Runnable {
   private final int producerQueueTimeoutInSeconds;
   private final MessageSigningQueue messageSigningQueue;
 
+  /** Reserves a token for each message before signing it when present. */
+  private final TokenGate tokenGate;
+
+  /** Backs off and dead-letters failed messages when present. */
+  private final SigningRetryPolicy retryPolicy;
+
+  /**
+   * Signed messages are handed to this queue for delivery when present, otherwise the webhook is
+   * notified inline.
+   */
+  private final MessageSigningQueue deliveryQueue;
+
+  @Builder.Default private final ClaimCheck claimCheck = ClaimCheck.disabled();
+
   @Override
   public void run() {
     log.info("MessageSingingProcessor started");
@@ -34,24 +51,105 @@ public class MessageSingingProcessor implements Runnable {
           continue;
         }
 
-        var maybeSignedMessage = this.cryptoClient.sign(signRequestMessage.getMessage());
-
-        if (maybeSignedMessage.isEmpty()) {
+        if (this.tokenGate != null && !this.tokenGate.reserveToken(signRequestMessage)) {
           continue;
         }
 
-        var signedMessage = maybeSignedMessage.get();
-
-        var success = this.webhookClient.notify(signRequestMessage.getWebhookUrl(), signedMessage);
-
-        if (success) {
-          this.messageSigningQueue.acknowledge(signRequestMessage);
-        }
-
-        log.info("SignRequestMessage processed successfully");
+        process(signRequestMessage);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
       } catch (final Exception e) {
         log.error("Encountered an error while processing SignRequestMessage", e);
       }
     }
   }
+
+  private void process(SignRequestMessage signRequestMessage) {
+    if (signRequestMessage.getSignedMessage() != null) {
+      notify(signRequestMessage, signRequestMessage.getSignedMessage());
+      return;
+    }
+
+    Optional<String> maybeSignedMessage;
+
+    try {
+      maybeSignedMessage = this.cryptoClient.sign(this.claimCheck.payload(signRequestMessage));
+    } catch (final SignRejectedException e) {
+      log.info("SignRequestMessage rejected before reaching the upstream API");
+      signRejected(signRequestMessage);
+      return;
+    } catch (final Exception e) {
+      log.error("Encountered an error while signing SignRequestMessage", e);
+      maybeSignedMessage = Optional.empty();
+    }
+
+    if (maybeSignedMessage.isEmpty()) {
+      signFailed(signRequestMessage);
+      return;
+    }
+
+    if (this.deliveryQueue != null) {
+      handOffForDelivery(signRequestMessage, maybeSignedMessage.get());
+      return;
+    }
+
+    notify(signRequestMessage, maybeSignedMessage.get());
+  }
+
+  private void handOffForDelivery(SignRequestMessage signRequestMessage, String signedMessage) {
+    try {
+      this.deliveryQueue.scheduleMessageSigning(
+          this.claimCheck.checkOut(signRequestMessage, signedMessage));
+    } catch (final Exception e) {
+      log.error("Encountered an error while scheduling the delivery of SignRequestMessage", e);
+      return;
+    }
+
+    this.messageSigningQueue.acknowledge(signRequestMessage);
+
+    log.info("SignRequestMessage signed and scheduled for delivery");
+  }
+
+  private void notify(SignRequestMessage signRequestMessage, String signedMessage) {
+
+    boolean success;
+
+    try {
+      success = this.webhookClient.notify(signRequestMessage.getWebhookUrl(), signedMessage);
+    } catch (final Exception e) {
+      log.error("Encountered an error while notifying the webhook", e);
+      success = false;
+    }
+
+    if (!success) {
+      webhookFailed(signRequestMessage);
+      return;
+    }
+
+    this.messageSigningQueue.acknowledge(signRequestMessage);
+
+    log.info("SignRequestMessage processed successfully");
+  }
+
+  private void signFailed(SignRequestMessage signRequestMessage) {
+    if (this.retryPolicy != null) {
+      this.retryPolicy.signFailed(signRequestMessage);
+    } else if (this.tokenGate != null) {
+      this.tokenGate.releaseIfRateLimited(signRequestMessage);
+    }
+  }
+
+  private void signRejected(SignRequestMessage signRequestMessage) {
+    if (this.retryPolicy != null) {
+      this.retryPolicy.signRejected(signRequestMessage);
+    } else {
+      signFailed(signRequestMessage);
+    }
+  }
+
+  private void webhookFailed(SignRequestMessage signRequestMessage) {
+    if (this.retryPolicy != null) {
+      this.retryPolicy.webhookFailed(signRequestMessage);
+    }
+  }
 }
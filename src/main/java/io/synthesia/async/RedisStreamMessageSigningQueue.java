@@ -0,0 +1,338 @@
+package io.synthesia.async;
+
+import io.lettuce.core.Consumer;
+import io.lettuce.core.Limit;
+import io.lettuce.core.Range;
+import io.lettuce.core.RedisBusyException;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XAutoClaimArgs;
+import io.lettuce.core.XGroupCreateArgs;
+import io.lettuce.core.XReadArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.synthesia.async.codec.MessageCodec;
+import io.synthesia.async.dto.SignRequestMessage;
+import io.synthesia.redis.LuaScript;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Queue kept in a Redis stream, read through a consumer group so every message goes to a single
+ * instance. Received messages stay pending in the group until they are acknowledged; any that are
+ * still pending after the visibility timeout, for instance because their instance died, are claimed
+ * by the next instance that polls.
+ *
+ * <p>Streams cannot hide a message for a given time, so released messages are moved to a sorted set
+ * scored by when they become visible, and put back on the stream once that time has passed. The
+ * number of failed attempts travels with the message. Deliveries that timed out are added from the
+ * group's delivery count when the message is claimed, so a message that keeps timing out still runs
+ * out of attempts.
+ *
+ * <p>Commands go over the shared connection, where Lettuce pipelines them. Blocking reads use a
+ * dedicated connection, owned by the queue, so they never hold up other commands.
+ */
+@Slf4j
+public class RedisStreamMessageSigningQueue implements MessageSigningQueue {
+  private static final int MAX_MESSAGES_PER_RECEIVE = 10;
+
+  private static final LuaScript PROMOTE_DELAYED = LuaScript.load("/scripts/promote-delayed.lua");
+  private static final LuaScript DELAY_MESSAGE = LuaScript.load("/scripts/delay-message.lua");
+
+  private static final String BODY_FIELD = "body";
+  private static final String ATTEMPTS_FIELD = "attempts";
+
+  private static final Duration MIN_ERROR_BACKOFF = Duration.ofMillis(100);
+
+  private final RedisAsyncCommands<String, String> commands;
+  private final StatefulRedisConnection<String, String> blockingConnection;
+  private final String stream;
+  private final String delayedKey;
+  private final String group;
+  private final Consumer<String> consumer;
+  private final Duration waitTime;
+  private final Duration visibilityTimeout;
+  private final MessageCodec codec;
+
+  /** Where messages that run out of attempts are moved to. */
+  private final MessageSigningQueue deadLetterQueue;
+
+  /** Consecutive failed reads, which spread out further reads while Redis is unavailable. */
+  private final AtomicInteger readErrors = new AtomicInteger();
+
+  public RedisStreamMessageSigningQueue(
+      RedisAsyncCommands<String, String> commands,
+      StatefulRedisConnection<String, String> blockingConnection,
+      String stream,
+      String group,
+      String consumerName,
+      Duration waitTime,
+      Duration visibilityTimeout,
+      MessageCodec codec,
+      MessageSigningQueue deadLetterQueue) {
+    this.commands = commands;
+    this.blockingConnection = blockingConnection;
+    this.stream = stream;
+    // Hash tagged so that the scripts touching both keys also work on Redis Cluster
+    this.delayedKey = "{" + stream + "}:delayed";
+    this.group = group;
+    this.consumer = Consumer.from(group, consumerName);
+    this.waitTime = waitTime;
+    this.visibilityTimeout = visibilityTimeout;
+    this.codec = codec;
+    this.deadLetterQueue = deadLetterQueue;
+
+    createGroup();
+  }
+
+  @Override
+  public void scheduleMessageSigning(SignRequestMessage signRequestMessage) {
+    this.scheduleMessageSigningAsync(signRequestMessage).join();
+  }
+
+  @Override
+  public CompletableFuture<Void> scheduleMessageSigningAsync(
+      SignRequestMessage signRequestMessage) {
+    try {
+      final String messageBody = this.codec.encode(signRequestMessage);
+
+      log.trace("Adding message with body {}", messageBody);
+
+      return this.commands
+          .xadd(this.stream, Map.of(BODY_FIELD, messageBody, ATTEMPTS_FIELD, "0"))
+          .toCompletableFuture()
+          .thenApply(id -> null);
+    } catch (Exception e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  @Override
+  public List<SignRequestMessage> getMessagesToSign() {
+    return this.getMessagesToSign(MAX_MESSAGES_PER_RECEIVE);
+  }
+
+  /**
+   * Due released messages are moved back and abandoned ones claimed in one pipelined round trip;
+   * only when that does not fill the batch does the call block for new messages. When Redis cannot
+   * be reached the call waits before returning, doubling the wait up to the wait time, so callers
+   * polling in a loop do not hammer it.
+   */
+  @Override
+  public List<SignRequestMessage> getMessagesToSign(int maxMessages) {
+    final List<SignRequestMessage> messages = new ArrayList<>();
+
+    try {
+      var promoted =
+          PROMOTE_DELAYED.<Long>run(
+              this.commands,
+              ScriptOutputType.INTEGER,
+              new String[] {this.delayedKey, this.stream},
+              String.valueOf(System.currentTimeMillis()),
+              String.valueOf(maxMessages));
+      var claimed =
+          this.commands
+              .xautoclaim(
+                  this.stream,
+                  XAutoClaimArgs.Builder.xautoclaim(this.consumer, this.visibilityTimeout, "0-0")
+                      .count(maxMessages))
+              .toCompletableFuture();
+
+      promoted.join();
+      addClaimedMessages(claimed.join().getMessages(), messages);
+
+      if (messages.size() < maxMessages) {
+        readNewMessages(maxMessages - messages.size())
+            .join()
+            .forEach(entry -> addMessage(entry, 1, messages));
+      }
+
+      this.readErrors.set(0);
+    } catch (CompletionException | RedisException e) {
+      log.error("Unable to read messages from {}", this.stream, e);
+      backOff();
+    }
+
+    return messages;
+  }
+
+  @Override
+  public void acknowledge(SignRequestMessage signRequestMessage) {
+    log.debug(
+        "Acknowledge message from {} with id {}",
+        this.stream,
+        signRequestMessage.getReceiptHandle());
+
+    remove(signRequestMessage.getReceiptHandle()).join();
+  }
+
+  @Override
+  public void release(SignRequestMessage signRequestMessage, Duration delay) {
+    log.debug(
+        "Release message from {} with id {} for {}",
+        this.stream,
+        signRequestMessage.getReceiptHandle(),
+        delay);
+
+    delay(signRequestMessage, delay, signRequestMessage.getAttempt() - 1);
+  }
+
+  @Override
+  public void retry(SignRequestMessage signRequestMessage, Duration delay) {
+    log.debug(
+        "Retry message from {} with id {} in {}",
+        this.stream,
+        signRequestMessage.getReceiptHandle(),
+        delay);
+
+    delay(signRequestMessage, delay, signRequestMessage.getAttempt());
+  }
+
+  @Override
+  public void deadLetter(SignRequestMessage signRequestMessage) {
+    if (this.deadLetterQueue == null) {
+      log.error(
+          "No dead-letter queue configured, message with id {} will be delivered again",
+          signRequestMessage.getReceiptHandle());
+      return;
+    }
+
+    log.debug(
+        "Dead-letter message from {} with id {}",
+        this.stream,
+        signRequestMessage.getReceiptHandle());
+
+    this.deadLetterQueue.scheduleMessageSigning(signRequestMessage);
+    this.acknowledge(signRequestMessage);
+  }
+
+  /**
+   * Commands are sent as soon as they are issued, so there is nothing buffered to flush. Only the
+   * blocking connection is closed, the shared one belongs to everybody else too.
+   */
+  @Override
+  public void close() {
+    this.blockingConnection.close();
+  }
+
+  /** Moves the message to the delayed set, along with the attempts that failed so far. */
+  private void delay(SignRequestMessage signRequestMessage, Duration delay, int failedAttempts) {
+    var id = signRequestMessage.getReceiptHandle();
+    var member = id + ":" + failedAttempts + ":" + this.codec.encode(signRequestMessage);
+
+    DELAY_MESSAGE
+        .<Long>run(
+            this.commands,
+            ScriptOutputType.INTEGER,
+            new String[] {this.stream, this.delayedKey},
+            this.group,
+            id,
+            String.valueOf(System.currentTimeMillis() + delay.toMillis()),
+            member)
+        .join();
+  }
+
+  /** Lettuce only takes the stream offsets as generic varargs. */
+  @SuppressWarnings("unchecked")
+  private CompletableFuture<List<StreamMessage<String, String>>> readNewMessages(int count) {
+    return this.blockingConnection
+        .async()
+        .xreadgroup(
+            this.consumer,
+            XReadArgs.Builder.block(this.waitTime).count(count),
+            XReadArgs.StreamOffset.lastConsumed(this.stream))
+        .toCompletableFuture();
+  }
+
+  /** Acknowledging alone would leave the entry in the stream, so it is deleted as well. */
+  private CompletableFuture<Void> remove(String id) {
+    var acknowledged = this.commands.xack(this.stream, this.group, id).toCompletableFuture();
+    var deleted = this.commands.xdel(this.stream, id).toCompletableFuture();
+
+    return CompletableFuture.allOf(acknowledged, deleted);
+  }
+
+  /**
+   * Claimed messages were delivered before, so their delivery counts are looked up, pipelined, to
+   * count the deliveries that timed out as failed attempts.
+   */
+  private void addClaimedMessages(
+      List<StreamMessage<String, String>> claimed, List<SignRequestMessage> messages) {
+    var deliveries =
+        claimed.stream()
+            .map(
+                entry ->
+                    this.commands
+                        .xpending(
+                            this.stream,
+                            this.consumer,
+                            Range.create(entry.getId(), entry.getId()),
+                            Limit.from(1))
+                        .toCompletableFuture())
+            .collect(Collectors.toList());
+
+    for (var i = 0; i < claimed.size(); i++) {
+      var pending = deliveries.get(i).join();
+      var deliveryCount = pending.isEmpty() ? 1 : pending.get(0).getRedeliveryCount();
+
+      addMessage(claimed.get(i), deliveryCount, messages);
+    }
+  }
+
+  /** Failed attempts travel with the message, and each delivery is an attempt of its own. */
+  private void addMessage(
+      StreamMessage<String, String> entry, long deliveryCount, List<SignRequestMessage> messages) {
+    try {
+      log.trace("Received message with body {}", entry.getBody());
+      final SignRequestMessage message = this.codec.decode(entry.getBody().get(BODY_FIELD));
+
+      if (message != null) {
+        var failedAttempts = Integer.parseInt(entry.getBody().getOrDefault(ATTEMPTS_FIELD, "0"));
+
+        message.setReceiptHandle(entry.getId());
+        message.setAttempt(failedAttempts + (int) deliveryCount);
+        messages.add(message);
+      }
+    } catch (final Exception e) {
+      // Claiming it again would not make it any more readable, so it is dropped
+      log.error("Couldn't deserialize message {}, dropping it", entry.getId(), e);
+      remove(entry.getId());
+    }
+  }
+
+  private void backOff() {
+    var errors = Math.min(this.readErrors.incrementAndGet(), 16);
+    var backoff = MIN_ERROR_BACKOFF.multipliedBy(1L << (errors - 1));
+
+    try {
+      Thread.sleep(Math.min(backoff.toMillis(), this.waitTime.toMillis()));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Creates the stream and its group on first use; both may already exist. */
+  private void createGroup() {
+    try {
+      this.commands
+          .xgroupCreate(
+              XReadArgs.StreamOffset.from(this.stream, "0"),
+              this.group,
+              XGroupCreateArgs.Builder.mkstream())
+          .toCompletableFuture()
+          .join();
+    } catch (CompletionException e) {
+      if (!(e.getCause() instanceof RedisBusyException)) {
+        throw e;
+      }
+    }
+  }
+}
@@ -0,0 +1,276 @@
+package io.synthesia.async;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, lock-free queue for handing messages from the consumer to the processors without
+ * allocating per message. Any number of threads may produce and consume.
+ *
+ * <p>Slots are pre-allocated and claimed by incrementing the head or tail position. Every slot has
+ * a sequence number that tells whether it is waiting to be written or to be read for the current
+ * lap around the buffer, so producers and consumers only ever contend on the position they move.
+ * Threads that find the queue full or empty wait according to the {@link WaitStrategy}.
+ *
+ * <p>The iterator is weakly consistent and read only, which is enough for {@code toString} and
+ * friends but makes {@code remove(Object)} unsupported.
+ */
+public class RingBufferBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+  private final int capacity;
+  private final Object[] elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+  private final WaitStrategy waitStrategy;
+
+  public RingBufferBlockingQueue(int capacity, WaitStrategy waitStrategy) {
+    // With a single slot, "published" and "free for the next lap" would share a sequence number
+    if (capacity < 2) {
+      throw new IllegalArgumentException("Capacity must be at least 2");
+    }
+
+    this.capacity = capacity;
+    this.elements = new Object[capacity];
+    this.sequences = new AtomicLongArray(capacity);
+    this.waitStrategy = waitStrategy;
+
+    for (int i = 0; i < capacity; i++) {
+      this.sequences.set(i, i);
+    }
+  }
+
+  @Override
+  public boolean offer(E e) {
+    Objects.requireNonNull(e);
+
+    var position = this.tail.get();
+
+    while (true) {
+      var index = index(position);
+      var available = this.sequences.get(index) - position;
+
+      if (available == 0) {
+        if (this.tail.compareAndSet(position, position + 1)) {
+          this.elements[index] = e;
+          // Publishes the element to the consumer that reads this sequence
+          this.sequences.set(index, position + 1);
+          this.waitStrategy.signalAll();
+          return true;
+        }
+
+        position = this.tail.get();
+      } else if (available < 0) {
+        return false;
+      } else {
+        position = this.tail.get();
+      }
+    }
+  }
+
+  @Override
+  public E poll() {
+    var position = this.head.get();
+
+    while (true) {
+      var index = index(position);
+      var available = this.sequences.get(index) - (position + 1);
+
+      if (available == 0) {
+        if (this.head.compareAndSet(position, position + 1)) {
+          @SuppressWarnings("unchecked")
+          var element = (E) this.elements[index];
+
+          this.elements[index] = null;
+          // Hands the slot back to the producer of the next lap
+          this.sequences.set(index, position + this.capacity);
+          this.waitStrategy.signalAll();
+          return element;
+        }
+
+        position = this.head.get();
+      } else if (available < 0) {
+        return null;
+      } else {
+        position = this.head.get();
+      }
+    }
+  }
+
+  @Override
+  public E peek() {
+    var position = this.head.get();
+    var index = index(position);
+
+    if (this.sequences.get(index) != position + 1) {
+      return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    var element = (E) this.elements[index];
+
+    return element;
+  }
+
+  @Override
+  public void put(E e) throws InterruptedException {
+    while (!offer(e)) {
+      this.waitStrategy.await(this::isWritable, Long.MAX_VALUE);
+    }
+  }
+
+  @Override
+  public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+    var deadline = System.nanoTime() + unit.toNanos(timeout);
+
+    while (!offer(e)) {
+      var remaining = deadline - System.nanoTime();
+
+      if (remaining <= 0 || !this.waitStrategy.await(this::isWritable, remaining)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  @Override
+  public E take() throws InterruptedException {
+    while (true) {
+      var element = poll();
+
+      if (element != null) {
+        return element;
+      }
+
+      this.waitStrategy.await(this::isReadable, Long.MAX_VALUE);
+    }
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+    var deadline = System.nanoTime() + unit.toNanos(timeout);
+
+    while (true) {
+      var element = poll();
+
+      if (element != null) {
+        return element;
+      }
+
+      var remaining = deadline - System.nanoTime();
+
+      if (remaining <= 0 || !this.waitStrategy.await(this::isReadable, remaining)) {
+        return null;
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    // Read head first, so that a concurrent poll can only make the result smaller than the truth
+    var head = this.head.get();
+    var tail = this.tail.get();
+
+    return (int) Math.max(0, Math.min(this.capacity, tail - head));
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return this.capacity - size();
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c, int maxElements) {
+    Objects.requireNonNull(c);
+
+    if (c == this) {
+      throw new IllegalArgumentException();
+    }
+
+    var drained = 0;
+
+    while (drained < maxElements) {
+      var element = poll();
+
+      if (element == null) {
+        break;
+      }
+
+      c.add(element);
+      drained++;
+    }
+
+    return drained;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return new Iterator<>() {
+      private long position = RingBufferBlockingQueue.this.head.get();
+      private E next = advance();
+
+      @Override
+      public boolean hasNext() {
+        return this.next != null;
+      }
+
+      @Override
+      public E next() {
+        if (this.next == null) {
+          throw new NoSuchElementException();
+        }
+
+        var current = this.next;
+        this.next = advance();
+        return current;
+      }
+
+      @SuppressWarnings("unchecked")
+      private E advance() {
+        var tail = RingBufferBlockingQueue.this.tail.get();
+
+        while (this.position < tail) {
+          var index = index(this.position);
+          var published = RingBufferBlockingQueue.this.sequences.get(index) == this.position + 1;
+          var element = (E) RingBufferBlockingQueue.this.elements[index];
+
+          this.position++;
+
+          if (published && element != null) {
+            return element;
+          }
+        }
+
+        return null;
+      }
+    };
+  }
+
+  private boolean isReadable() {
+    var position = this.head.get();
+
+    return this.sequences.get(index(position)) - (position + 1) >= 0;
+  }
+
+  private boolean isWritable() {
+    var position = this.tail.get();
+
+    return this.sequences.get(index(position)) - position >= 0;
+  }
+
+  private int index(long position) {
+    return (int) (position % this.capacity);
+  }
+}
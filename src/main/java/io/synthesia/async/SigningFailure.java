@@ -0,0 +1,23 @@
+package io.synthesia.async;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/** Reasons a message can fail to be processed, each retried on its own schedule. */
+@Getter
+@RequiredArgsConstructor
+public enum SigningFailure {
+  /**
+   * The upstream API was not called, for lack of a token or because the circuit is open. Never
+   * counts towards dead-lettering.
+   */
+  RATE_LIMITED(Duration.ofSeconds(1)),
+  /** The upstream API failed to sign the message. */
+  SIGN_FAILED(Duration.ofSeconds(5)),
+  /** The message was signed but the webhook did not accept it. */
+  WEBHOOK_FAILED(Duration.ofSeconds(30));
+
+  /** Backoff before the first retry, doubled on every following attempt. */
+  private final Duration baseBackoff;
+}
@@ -0,0 +1,99 @@
+package io.synthesia.async;
+
+import io.micrometer.core.instrument.Counter;
+import io.synthesia.async.dto.SignRequestMessage;
+import io.synthesia.crypto.limiter.RateLimiter;
+import java.time.Duration;
+import java.util.function.DoubleSupplier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Decides what happens to a message that could not be processed. Messages are handed back to the
+ * queue with an exponential backoff with jitter, based on how many attempts have failed, and are
+ * dead-lettered once they run out of attempts so they stop consuming signing tokens.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class SigningRetryPolicy {
+  private final MessageSigningQueue messageSigningQueue;
+  private final RateLimiter rateLimiter;
+  private final int maxAttempts;
+  private final Duration maxBackoff;
+
+  /** Returns a value between 0 (inclusive) and 1 (exclusive), the share of jitter to apply. */
+  private final DoubleSupplier jitter;
+
+  private final Counter retriedCounter;
+  private final Counter deadLetteredCounter;
+
+  /**
+   * Handles a message the upstream API did not sign. Failures caused by the rate limiter running
+   * dry are retried once the next token is due, without counting towards the attempts.
+   */
+  public void signFailed(SignRequestMessage signRequestMessage) {
+    var wait = this.rateLimiter.timeUntilAvailable();
+
+    if (!wait.isZero()) {
+      release(signRequestMessage, wait);
+      return;
+    }
+
+    retry(signRequestMessage, SigningFailure.SIGN_FAILED);
+  }
+
+  /**
+   * Handles a message whose sign call was turned down before reaching the upstream API, by an open
+   * circuit or for lack of a token. It is retried without counting towards the attempts.
+   */
+  public void signRejected(SignRequestMessage signRequestMessage) {
+    release(signRequestMessage, this.rateLimiter.timeUntilAvailable());
+  }
+
+  /** Handles a signed message that the webhook did not accept. */
+  public void webhookFailed(SignRequestMessage signRequestMessage) {
+    retry(signRequestMessage, SigningFailure.WEBHOOK_FAILED);
+  }
+
+  /** Backoff for the given attempt, starting at 1, before jitter is applied. */
+  Duration backoff(SigningFailure failure, int attempt) {
+    var exponent = Math.min(Math.max(attempt - 1, 0), 30);
+    var backoffInMillis = failure.getBaseBackoff().toMillis() << exponent;
+
+    return backoffInMillis > this.maxBackoff.toMillis() || backoffInMillis < 0
+        ? this.maxBackoff
+        : Duration.ofMillis(backoffInMillis);
+  }
+
+  private void release(SignRequestMessage signRequestMessage, Duration wait) {
+    this.messageSigningQueue.release(
+        signRequestMessage, wait.plus(jitter(SigningFailure.RATE_LIMITED.getBaseBackoff())));
+    this.retriedCounter.increment();
+  }
+
+  private void retry(SignRequestMessage signRequestMessage, SigningFailure failure) {
+    var attempt = signRequestMessage.getAttempt();
+
+    if (attempt >= this.maxAttempts) {
+      log.warn("Dead-lettering message after {} attempts, last failure {}", attempt, failure);
+      this.messageSigningQueue.deadLetter(signRequestMessage);
+      this.deadLetteredCounter.increment();
+      return;
+    }
+
+    // Equal jitter: keeps at least half of the backoff so retries still spread out over time
+    var backoff = backoff(failure, attempt);
+    var half = backoff.dividedBy(2);
+
+    this.messageSigningQueue.retry(signRequestMessage, half.plus(jitter(half)));
+    this.retriedCounter.increment();
+  }
+
+  private Duration jitter(Duration upTo) {
+    if (upTo.isZero()) {
+      return Duration.ZERO;
+    }
+
+    return Duration.ofMillis((long) (this.jitter.getAsDouble() * upTo.toMillis()));
+  }
+}
@@ -0,0 +1,10 @@
+package io.synthesia.async;
+
+/** Thrown when SQS rejects an individual entry of a batch request. */
+public class SqsBatchEntryException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  public SqsBatchEntryException(String message) {
+    super(message);
+  }
+}
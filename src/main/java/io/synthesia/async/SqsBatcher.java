@@ -0,0 +1,192 @@
+package io.synthesia.async;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+
+/**
+ * Buffers entries bound for one of the SQS batch APIs and flushes them from a background thread,
+ * either once {@link #MAX_BATCH_SIZE} entries are buffered or once the oldest buffered entry has
+ * waited for the linger duration, whichever comes first.
+ *
+ * <p>Every entry gets its own future, which completes once SQS has accepted that entry. Entries
+ * rejected by SQS are retried individually in a later batch until they run out of attempts.
+ */
+@Slf4j
+public abstract class SqsBatcher<T> implements AutoCloseable {
+  /** Maximum number of entries accepted by a single SQS batch request. */
+  public static final int MAX_BATCH_SIZE = 10;
+
+  private final Duration linger;
+  private final int maxAttempts;
+  private final ScheduledExecutorService flusher;
+  private final DistributionSummary batchFillRatio;
+  private final Timer flushLatency;
+
+  private List<Entry<T>> buffer = new ArrayList<>();
+  private ScheduledFuture<?> scheduledFlush;
+
+  protected SqsBatcher(
+      Duration linger,
+      int maxAttempts,
+      ScheduledExecutorService flusher,
+      DistributionSummary batchFillRatio,
+      Timer flushLatency) {
+    this.linger = linger;
+    this.maxAttempts = maxAttempts;
+    this.flusher = flusher;
+    this.batchFillRatio = batchFillRatio;
+    this.flushLatency = flushLatency;
+  }
+
+  /**
+   * Sends a batch of entries keyed by their batch entry id.
+   *
+   * @return the reason why each rejected entry failed, keyed by its batch entry id
+   */
+  protected abstract Map<String, String> execute(Map<String, T> entries);
+
+  protected static String describe(BatchResultErrorEntry error) {
+    return String.format("%s: %s", error.code(), error.message());
+  }
+
+  protected CompletableFuture<Void> submit(T value) {
+    var entry = new Entry<>(value);
+
+    enqueue(entry);
+
+    return entry.result;
+  }
+
+  /** Flushes every buffered entry and stops the background flusher. */
+  @Override
+  public void close() {
+    this.flusher.shutdown();
+
+    try {
+      this.flusher.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    List<Entry<T>> remaining;
+
+    synchronized (this) {
+      remaining = drain();
+    }
+
+    for (int i = 0; i < remaining.size(); i += MAX_BATCH_SIZE) {
+      flush(remaining.subList(i, Math.min(i + MAX_BATCH_SIZE, remaining.size())), false);
+    }
+  }
+
+  private void enqueue(Entry<T> entry) {
+    List<Entry<T>> fullBatch = null;
+
+    synchronized (this) {
+      this.buffer.add(entry);
+
+      if (this.buffer.size() >= MAX_BATCH_SIZE) {
+        fullBatch = drain();
+      } else if (this.scheduledFlush == null && !this.flusher.isShutdown()) {
+        this.scheduledFlush =
+            this.flusher.schedule(
+                this::flushBuffered, this.linger.toMillis(), TimeUnit.MILLISECONDS);
+      }
+    }
+
+    if (fullBatch != null) {
+      var batch = fullBatch;
+
+      try {
+        this.flusher.execute(() -> flush(batch, true));
+      } catch (RejectedExecutionException e) {
+        flush(batch, false);
+      }
+    }
+  }
+
+  private void flushBuffered() {
+    List<Entry<T>> batch;
+
+    synchronized (this) {
+      batch = drain();
+    }
+
+    if (!batch.isEmpty()) {
+      flush(batch, true);
+    }
+  }
+
+  private List<Entry<T>> drain() {
+    var drained = this.buffer;
+
+    this.buffer = new ArrayList<>();
+
+    if (this.scheduledFlush != null) {
+      this.scheduledFlush.cancel(false);
+      this.scheduledFlush = null;
+    }
+
+    return drained;
+  }
+
+  private void flush(List<Entry<T>> batch, boolean retryFailures) {
+    Map<String, Entry<T>> entriesById = new LinkedHashMap<>();
+    Map<String, T> valuesById = new LinkedHashMap<>();
+
+    for (int i = 0; i < batch.size(); i++) {
+      entriesById.put(String.valueOf(i), batch.get(i));
+      valuesById.put(String.valueOf(i), batch.get(i).value);
+    }
+
+    this.batchFillRatio.record((double) batch.size() / MAX_BATCH_SIZE);
+
+    Map<String, String> failures;
+
+    try {
+      failures = this.flushLatency.recordCallable(() -> execute(valuesById));
+    } catch (Exception e) {
+      log.error("Unable to flush batch of {} entries", batch.size(), e);
+      failures = new LinkedHashMap<>();
+
+      for (var id : valuesById.keySet()) {
+        failures.put(id, String.valueOf(e));
+      }
+    }
+
+    for (var idAndEntry : entriesById.entrySet()) {
+      var entry = idAndEntry.getValue();
+      var failure = failures.get(idAndEntry.getKey());
+
+      if (!failures.containsKey(idAndEntry.getKey())) {
+        entry.result.complete(null);
+      } else if (retryFailures && ++entry.attempts < this.maxAttempts) {
+        enqueue(entry);
+      } else {
+        entry.result.completeExceptionally(new SqsBatchEntryException(failure));
+      }
+    }
+  }
+
+  private static class Entry<T> {
+    private final T value;
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+    private int attempts;
+
+    private Entry(T value) {
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package io.synthesia.async;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+
+/**
+ * Groups receipt handles into {@code DeleteMessageBatch} requests. Handles rejected by SQS are
+ * retried in later batches, after which the message simply becomes visible again.
+ */
+public class SqsDeleteMessageBatcher extends SqsBatcher<String> {
+  private static final int MAX_ATTEMPTS = 3;
+
+  private final SqsClient client;
+  private final String queueUrl;
+
+  public SqsDeleteMessageBatcher(
+      SqsClient client,
+      String queueUrl,
+      Duration interval,
+      ScheduledExecutorService flusher,
+      DistributionSummary batchFillRatio,
+      Timer flushLatency) {
+    super(interval, MAX_ATTEMPTS, flusher, batchFillRatio, flushLatency);
+    this.client = client;
+    this.queueUrl = queueUrl;
+  }
+
+  public CompletableFuture<Void> delete(String receiptHandle) {
+    return submit(receiptHandle);
+  }
+
+  @Override
+  protected Map<String, String> execute(Map<String, String> receiptHandles) {
+    var entries =
+        receiptHandles.entrySet().stream()
+            .map(
+                idAndHandle ->
+                    DeleteMessageBatchRequestEntry.builder()
+                        .id(idAndHandle.getKey())
+                        .receiptHandle(idAndHandle.getValue())
+                        .build())
+            .collect(Collectors.toList());
+
+    var response =
+        this.client.deleteMessageBatch(
+            DeleteMessageBatchRequest.builder().queueUrl(this.queueUrl).entries(entries).build());
+
+    return response.failed().stream()
+        .collect(Collectors.toMap(BatchResultErrorEntry::id, SqsBatcher::describe));
+  }
+}
@@ -1,40 +1,117 @@
 package io.synthesia.async;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.synthesia.async.claimcheck.ClaimCheck;
+import io.synthesia.async.codec.MessageCodec;
 import io.synthesia.async.dto.SignRequestMessage;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import lombok.AllArgsConstructor;
-import lombok.SneakyThrows;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityRequest;
 import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
 import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
 import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse;
 import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
 
 @Slf4j
-@AllArgsConstructor
+@Builder
 public class SqsMessageSigningQueue implements MessageSigningQueue {
+  private static final int MAX_MESSAGES_PER_RECEIVE = 10;
+
+  /** SQS does not allow messages to stay invisible for longer than 12 hours. */
+  private static final Duration MAX_VISIBILITY_TIMEOUT = Duration.ofHours(12);
+
+  /** SQS does not allow messages to be delayed for longer than 15 minutes. */
+  private static final Duration MAX_DELAY = Duration.ofMinutes(15);
+
+  /**
+   * The attempt the next delivery will be. SQS's own receive count also goes up when a message is
+   * released, so retried messages are sent again with this attribute instead.
+   */
+  private static final String ATTEMPT_ATTRIBUTE = "Attempt";
+
   private final SqsClient client;
   private final String queueUrl;
   private final int waitTimeInSeconds;
   private final int visibilityTimeout;
-  private final ObjectMapper mapper;
+  private final MessageCodec codec;
+
+  /** Batches outgoing messages when present, otherwise every message is sent on its own. */
+  private final SqsSendMessageBatcher sendBatcher;
+
+  /** Batches acknowledgements when present, otherwise every message is deleted on its own. */
+  private final SqsDeleteMessageBatcher deleteBatcher;
+
+  /** Where messages that run out of attempts are moved to. */
+  private final String deadLetterQueueUrl;
+
+  @Builder.Default private final ClaimCheck claimCheck = ClaimCheck.disabled();
 
-  @SneakyThrows
   @Override
   public void scheduleMessageSigning(SignRequestMessage signRequestMessage) {
-    final String messageBody = this.mapper.writeValueAsString(signRequestMessage);
+    final SignRequestMessage checkedIn = this.claimCheck.checkIn(signRequestMessage);
 
-    log.trace("Sending message with body {}", messageBody);
+    try {
+      final String messageBody = this.codec.encode(checkedIn);
 
-    this.client.sendMessage(
-        SendMessageRequest.builder().messageBody(messageBody).queueUrl(this.queueUrl).build());
+      log.trace("Sending message with body {}", messageBody);
+
+      if (this.sendBatcher != null) {
+        this.sendBatcher.send(messageBody).join();
+        return;
+      }
+
+      this.client.sendMessage(
+          SendMessageRequest.builder().messageBody(messageBody).queueUrl(this.queueUrl).build());
+    } catch (RuntimeException e) {
+      this.discardUnsent(signRequestMessage, checkedIn);
+      throw e;
+    }
+  }
+
+  @Override
+  public CompletableFuture<Void> scheduleMessageSigningAsync(
+      SignRequestMessage signRequestMessage) {
+    try {
+      if (this.sendBatcher == null) {
+        this.scheduleMessageSigning(signRequestMessage);
+        return CompletableFuture.completedFuture(null);
+      }
+
+      final SignRequestMessage checkedIn = this.claimCheck.checkIn(signRequestMessage);
+
+      return CompletableFuture.completedFuture(checkedIn)
+          .thenApply(this.codec::encode)
+          .thenCompose(
+              messageBody -> {
+                log.trace("Sending message with body {}", messageBody);
+
+                return this.sendBatcher.send(messageBody);
+              })
+          .whenComplete(
+              (result, error) -> {
+                if (error != null) {
+                  this.discardUnsent(signRequestMessage, checkedIn);
+                }
+              });
+    } catch (Exception e) {
+      return CompletableFuture.failedFuture(e);
+    }
   }
 
   @Override
   public List<SignRequestMessage> getMessagesToSign() {
+    return this.getMessagesToSign(MAX_MESSAGES_PER_RECEIVE);
+  }
+
+  @Override
+  public List<SignRequestMessage> getMessagesToSign(int maxMessages) {
     log.trace("Receive messages from {}", this.queueUrl);
     final ReceiveMessageResponse response =
         this.client.receiveMessage(
@@ -42,7 +119,8 @@ public class SqsMessageSigningQueue implements MessageSigningQueue {
                 .waitTimeSeconds(this.waitTimeInSeconds)
                 .visibilityTimeout(this.visibilityTimeout)
                 .queueUrl(this.queueUrl)
-                .maxNumberOfMessages(10)
+                .maxNumberOfMessages(Math.min(maxMessages, MAX_MESSAGES_PER_RECEIVE))
+                .messageAttributeNames(ATTEMPT_ATTRIBUTE)
                 .build());
 
     final List<SignRequestMessage> messages = new ArrayList<>();
@@ -53,11 +131,11 @@ public class SqsMessageSigningQueue implements MessageSigningQueue {
             sqsMessage -> {
               try {
                 log.trace("Received message with body {}", sqsMessage.body());
-                final SignRequestMessage message =
-                    this.mapper.readValue(sqsMessage.body(), SignRequestMessage.class);
+                final SignRequestMessage message = this.codec.decode(sqsMessage.body());
 
                 if (message != null) {
                   message.setReceiptHandle(sqsMessage.receiptHandle());
+                  message.setAttempt(attempt(sqsMessage));
                   messages.add(message);
                 }
               } catch (final Exception e) {
@@ -74,10 +152,144 @@ public class SqsMessageSigningQueue implements MessageSigningQueue {
         "Delete message from {} with receipt {}",
         this.queueUrl,
         signRequestMessage.getReceiptHandle());
+
+    this.deleteMessage(signRequestMessage)
+        .thenRun(() -> this.claimCheck.discard(signRequestMessage))
+        .exceptionally(
+            e -> {
+              log.warn("Unable to delete message, it will be delivered again", e);
+              return null;
+            });
+  }
+
+  @Override
+  public void release(SignRequestMessage signRequestMessage, Duration delay) {
+    var visibilityTimeout =
+        Math.min((delay.toMillis() + 999) / 1000, MAX_VISIBILITY_TIMEOUT.toSeconds());
+
+    log.debug(
+        "Release message from {} with receipt {} for {} seconds",
+        this.queueUrl,
+        signRequestMessage.getReceiptHandle(),
+        visibilityTimeout);
+
+    this.client.changeMessageVisibility(
+        ChangeMessageVisibilityRequest.builder()
+            .queueUrl(this.queueUrl)
+            .receiptHandle(signRequestMessage.getReceiptHandle())
+            .visibilityTimeout((int) visibilityTimeout)
+            .build());
+  }
+
+  /**
+   * Visibility can be changed but attributes cannot, so the message is sent again with the next
+   * attempt and a delay, and then the original is deleted. Should the delete fail, the original is
+   * delivered again with its old attempt once its visibility timeout expires.
+   */
+  @Override
+  public void retry(SignRequestMessage signRequestMessage, Duration delay) {
+    var delaySeconds = Math.min((delay.toMillis() + 999) / 1000, MAX_DELAY.toSeconds());
+    var nextAttempt = signRequestMessage.getAttempt() + 1;
+
+    log.debug(
+        "Retry message from {} with receipt {} in {} seconds",
+        this.queueUrl,
+        signRequestMessage.getReceiptHandle(),
+        delaySeconds);
+
+    this.client.sendMessage(
+        SendMessageRequest.builder()
+            .messageBody(this.codec.encode(signRequestMessage))
+            .queueUrl(this.queueUrl)
+            .delaySeconds((int) delaySeconds)
+            .messageAttributes(
+                Map.of(
+                    ATTEMPT_ATTRIBUTE,
+                    MessageAttributeValue.builder()
+                        .dataType("Number")
+                        .stringValue(String.valueOf(nextAttempt))
+                        .build()))
+            .build());
+
+    // The new message still points at the payload, so it is kept
+    this.deleteMessage(signRequestMessage)
+        .exceptionally(
+            e -> {
+              log.warn("Unable to delete retried message, it will be delivered twice", e);
+              return null;
+            });
+  }
+
+  @Override
+  public void deadLetter(SignRequestMessage signRequestMessage) {
+    if (this.deadLetterQueueUrl == null) {
+      log.error(
+          "No dead-letter queue configured, message with receipt {} will be delivered again",
+          signRequestMessage.getReceiptHandle());
+      return;
+    }
+
+    final String messageBody = this.codec.encode(signRequestMessage);
+
+    log.debug(
+        "Dead-letter message from {} with receipt {}",
+        this.queueUrl,
+        signRequestMessage.getReceiptHandle());
+
+    this.client.sendMessage(
+        SendMessageRequest.builder()
+            .messageBody(messageBody)
+            .queueUrl(this.deadLetterQueueUrl)
+            .build());
+
+    // The dead letter still points at the payload, so it is kept
+    this.deleteMessage(signRequestMessage)
+        .exceptionally(
+            e -> {
+              log.warn("Unable to delete message, it will be delivered again", e);
+              return null;
+            });
+  }
+
+  @Override
+  public void close() {
+    if (this.sendBatcher != null) {
+      this.sendBatcher.close();
+    }
+
+    if (this.deleteBatcher != null) {
+      this.deleteBatcher.close();
+    }
+  }
+
+  /**
+   * Deletes the payload checked in for a message that never reached the queue. A message that
+   * already carried a reference is left alone, its payload is still needed by the original.
+   */
+  private void discardUnsent(SignRequestMessage signRequestMessage, SignRequestMessage checkedIn) {
+    if (checkedIn != signRequestMessage) {
+      this.claimCheck.discard(checkedIn);
+    }
+  }
+
+  /** Completes once the message is deleted. Without a batcher that is before returning. */
+  private CompletableFuture<Void> deleteMessage(SignRequestMessage signRequestMessage) {
+    if (this.deleteBatcher != null) {
+      return this.deleteBatcher.delete(signRequestMessage.getReceiptHandle());
+    }
+
     this.client.deleteMessage(
         DeleteMessageRequest.builder()
             .queueUrl(this.queueUrl)
             .receiptHandle(signRequestMessage.getReceiptHandle())
             .build());
+
+    return CompletableFuture.completedFuture(null);
+  }
+
+  private static int attempt(Message sqsMessage) {
+    var maybeAttempt = sqsMessage.messageAttributes().get(ATTEMPT_ATTRIBUTE);
+
+    return maybeAttempt == null ? 1 : Integer.parseInt(maybeAttempt.stringValue());
   }
 }
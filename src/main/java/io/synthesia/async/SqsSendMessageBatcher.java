@@ -0,0 +1,55 @@
+package io.synthesia.async;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+
+/** Groups message bodies into {@code SendMessageBatch} requests. */
+public class SqsSendMessageBatcher extends SqsBatcher<String> {
+  private final SqsClient client;
+  private final String queueUrl;
+
+  public SqsSendMessageBatcher(
+      SqsClient client,
+      String queueUrl,
+      Duration linger,
+      ScheduledExecutorService flusher,
+      DistributionSummary batchFillRatio,
+      Timer flushLatency) {
+    super(linger, 1, flusher, batchFillRatio, flushLatency);
+    this.client = client;
+    this.queueUrl = queueUrl;
+  }
+
+  public CompletableFuture<Void> send(String messageBody) {
+    return submit(messageBody);
+  }
+
+  @Override
+  protected Map<String, String> execute(Map<String, String> messageBodies) {
+    var entries =
+        messageBodies.entrySet().stream()
+            .map(
+                idAndBody ->
+                    SendMessageBatchRequestEntry.builder()
+                        .id(idAndBody.getKey())
+                        .messageBody(idAndBody.getValue())
+                        .build())
+            .collect(Collectors.toList());
+
+    var response =
+        this.client.sendMessageBatch(
+            SendMessageBatchRequest.builder().queueUrl(this.queueUrl).entries(entries).build());
+
+    return response.failed().stream()
+        .collect(Collectors.toMap(BatchResultErrorEntry::id, SqsBatcher::describe));
+  }
+}
@@ -0,0 +1,124 @@
+package io.synthesia.async;
+
+import io.synthesia.async.dto.SignRequestMessage;
+import io.synthesia.crypto.CryptoClient;
+import io.synthesia.crypto.limiter.ReservingRateLimiter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the consumer and processors in step with the rate limiter, so that messages are only
+ * received when there is a token to sign them with, and only signed with a token reserved for them.
+ *
+ * <p>Messages that cannot be signed soon are handed back to the queue with a delay matching the
+ * next refill, instead of sitting in memory until their visibility timeout runs out.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class TokenGate {
+  private final ReservingRateLimiter rateLimiter;
+  private final CryptoClient cryptoClient;
+  private final MessageSigningQueue messageSigningQueue;
+  private final BlockingQueue<SignRequestMessage> processorsQueue;
+  private final Duration releaseThreshold;
+
+  /**
+   * Returns immediately if a token is available, otherwise waits for at most {@code maxWait}.
+   *
+   * @return whether a token was available
+   */
+  public boolean awaitToken(Duration maxWait) throws InterruptedException {
+    var wait = this.rateLimiter.timeUntilAvailable();
+
+    if (wait.isZero()) {
+      return true;
+    }
+
+    if (wait.compareTo(this.releaseThreshold) > 0) {
+      releaseBufferedMessages(wait);
+    }
+
+    Thread.sleep(Math.min(wait.toMillis(), maxWait.toMillis()));
+
+    return false;
+  }
+
+  /**
+   * Reserves a token for the call that signs the message, waiting for the next refill if needed.
+   * Messages that are already signed, or whose signature is cached, go through without one. A
+   * message that cannot get a token within the release threshold is handed back to the queue along
+   * with the buffered ones.
+   *
+   * @return whether the message may be processed
+   */
+  public boolean reserveToken(SignRequestMessage signRequestMessage) throws InterruptedException {
+    if (!needsToken(signRequestMessage)) {
+      return true;
+    }
+
+    var deadline = System.nanoTime() + this.releaseThreshold.toNanos();
+
+    while (!this.rateLimiter.reserve()) {
+      var wait = this.rateLimiter.timeUntilAvailable();
+
+      if (System.nanoTime() + wait.toNanos() > deadline) {
+        this.messageSigningQueue.release(signRequestMessage, wait);
+        releaseBufferedMessages(wait);
+        return false;
+      }
+
+      Thread.sleep(Math.max(1, wait.toMillis()));
+    }
+
+    return true;
+  }
+
+  /** Number of messages that could be signed right now, capped at {@code max}. */
+  public int availableDispatches(int max) {
+    return (int) Math.min(this.rateLimiter.availableTokens(), max);
+  }
+
+  /**
+   * Hands a message that could not be signed back to the queue until the next token, if the failure
+   * was caused by the rate limiter running dry.
+   */
+  public void releaseIfRateLimited(SignRequestMessage signRequestMessage) {
+    var wait = this.rateLimiter.timeUntilAvailable();
+
+    if (!wait.isZero()) {
+      this.messageSigningQueue.release(signRequestMessage, wait);
+    }
+  }
+
+  private boolean needsToken(SignRequestMessage signRequestMessage) {
+    if (signRequestMessage.getSignedMessage() != null) {
+      return false;
+    }
+
+    // Checked in payloads would have to be fetched first, so they always take a token
+    return signRequestMessage.getMessage() == null
+        || this.cryptoClient.cached(signRequestMessage.getMessage()).isEmpty();
+  }
+
+  private void releaseBufferedMessages(Duration wait) {
+    List<SignRequestMessage> buffered = new ArrayList<>();
+
+    this.processorsQueue.drainTo(buffered);
+
+    if (!buffered.isEmpty()) {
+      log.info("Releasing {} messages until the next token in {}", buffered.size(), wait);
+    }
+
+    for (var signRequestMessage : buffered) {
+      try {
+        this.messageSigningQueue.release(signRequestMessage, wait);
+      } catch (Exception e) {
+        log.warn("Unable to release message, it will be retried after its visibility timeout", e);
+      }
+    }
+  }
+}
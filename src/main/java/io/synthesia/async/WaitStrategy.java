@@ -0,0 +1,153 @@
+package io.synthesia.async;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * How threads wait on a {@link RingBufferBlockingQueue} that is empty (consumers) or full
+ * (producers). Trades CPU usage for the time it takes a waiting thread to notice a change.
+ */
+public interface WaitStrategy {
+  String BLOCKING = "blocking";
+  String YIELDING = "yielding";
+  String BUSY_SPIN = "busy-spin";
+
+  /**
+   * Waits until {@code ready} returns true or {@code timeoutNanos} have elapsed.
+   *
+   * @return whether {@code ready} returned true
+   */
+  boolean await(BooleanSupplier ready, long timeoutNanos) throws InterruptedException;
+
+  /** Called after every change to the queue, so that waiting threads can check again. */
+  void signalAll();
+
+  static WaitStrategy named(String name) {
+    switch (name) {
+      case BLOCKING:
+        return new Blocking();
+      case YIELDING:
+        return new Yielding();
+      case BUSY_SPIN:
+        return new BusySpin();
+      default:
+        throw new IllegalArgumentException("Unknown wait strategy " + name);
+    }
+  }
+
+  /**
+   * Parks waiting threads on a condition. Idle threads use no CPU, and changes only take the lock
+   * when somebody is waiting.
+   */
+  final class Blocking implements WaitStrategy {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = this.lock.newCondition();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    @Override
+    public boolean await(BooleanSupplier ready, long timeoutNanos) throws InterruptedException {
+      if (ready.getAsBoolean()) {
+        return true;
+      }
+
+      var remaining = timeoutNanos;
+
+      this.lock.lockInterruptibly();
+      // Registering before checking again means a change made in between always signals us
+      this.waiting.incrementAndGet();
+
+      try {
+        while (!ready.getAsBoolean()) {
+          if (remaining <= 0) {
+            return false;
+          }
+
+          remaining = this.changed.awaitNanos(remaining);
+        }
+
+        return true;
+      } finally {
+        this.waiting.decrementAndGet();
+        this.lock.unlock();
+      }
+    }
+
+    @Override
+    public void signalAll() {
+      if (this.waiting.get() == 0) {
+        return;
+      }
+
+      this.lock.lock();
+
+      try {
+        this.changed.signalAll();
+      } finally {
+        this.lock.unlock();
+      }
+    }
+  }
+
+  /** Spins for a short while, then keeps yielding the CPU to other threads. */
+  final class Yielding implements WaitStrategy {
+    private static final int SPIN_TRIES = 100;
+
+    @Override
+    public boolean await(BooleanSupplier ready, long timeoutNanos) throws InterruptedException {
+      var deadline = System.nanoTime() + timeoutNanos;
+      var tries = 0;
+
+      while (!ready.getAsBoolean()) {
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+
+        if (System.nanoTime() - deadline >= 0) {
+          return false;
+        }
+
+        if (tries < SPIN_TRIES) {
+          tries++;
+          Thread.onSpinWait();
+        } else {
+          Thread.yield();
+        }
+      }
+
+      return true;
+    }
+
+    @Override
+    public void signalAll() {}
+  }
+
+  /**
+   * Never gives up the CPU. Lowest latency, but every waiting thread keeps a core busy, so only
+   * suitable when there are spare cores for them.
+   */
+  final class BusySpin implements WaitStrategy {
+    @Override
+    public boolean await(BooleanSupplier ready, long timeoutNanos) throws InterruptedException {
+      var deadline = System.nanoTime() + timeoutNanos;
+
+      while (!ready.getAsBoolean()) {
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+
+        if (System.nanoTime() - deadline >= 0) {
+          return false;
+        }
+
+        Thread.onSpinWait();
+      }
+
+      return true;
+    }
+
+    @Override
+    public void signalAll() {}
+  }
+}
@@ -1,5 +1,21 @@
 package io.synthesia.async;
 
-public interface WebhookClient {
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface WebhookClient extends AutoCloseable {
   boolean notify(String webhookUrl, String signedMessage);
+
+  CompletableFuture<Boolean> notifyAsync(String webhookUrl, String signedMessage);
+
+  /**
+   * Delivers several signed messages to the same webhook in a single request.
+   *
+   * @return whether each signed message was delivered, in the order they were given
+   */
+  CompletableFuture<List<Boolean>> notifyBatchAsync(String webhookUrl, List<String> signedMessages);
+
+  /** Sends anything held back for later. Called once on shutdown. */
+  @Override
+  default void close() {}
 }
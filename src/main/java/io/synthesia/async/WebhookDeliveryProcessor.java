@@ -0,0 +1,75 @@
+package io.synthesia.async;
+
+import io.synthesia.async.dto.SignRequestMessage;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Delivers messages that have already been signed to their webhook. Runs on its own pool so that
+ * slow or failing webhooks are retried without holding up, or spending tokens on, signing.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class WebhookDeliveryProcessor implements Runnable {
+  private final WebhookClient webhookClient;
+  private final BlockingQueue<SignRequestMessage> deliveriesQueue;
+  private final int deliveriesQueueTimeoutInSeconds;
+  private final MessageSigningQueue deliveryQueue;
+  private final SigningRetryPolicy retryPolicy;
+
+  @Override
+  public void run() {
+    log.info("WebhookDeliveryProcessor started");
+
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        final SignRequestMessage signedRequestMessage =
+            this.deliveriesQueue.poll(this.deliveriesQueueTimeoutInSeconds, TimeUnit.SECONDS);
+
+        if (signedRequestMessage == null) {
+          continue;
+        }
+
+        if (signedRequestMessage.getReceiptHandle() == null) {
+          log.error("Missing receipt handle on message");
+          continue;
+        }
+
+        if (signedRequestMessage.getSignedMessage() == null) {
+          log.error("Missing signature on message to deliver");
+          continue;
+        }
+
+        deliver(signedRequestMessage);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (final Exception e) {
+        log.error("Encountered an error while delivering SignRequestMessage", e);
+      }
+    }
+  }
+
+  private void deliver(SignRequestMessage signedRequestMessage) {
+    boolean success;
+
+    try {
+      success =
+          this.webhookClient.notify(
+              signedRequestMessage.getWebhookUrl(), signedRequestMessage.getSignedMessage());
+    } catch (final Exception e) {
+      log.error("Encountered an error while notifying the webhook", e);
+      success = false;
+    }
+
+    if (!success) {
+      this.retryPolicy.webhookFailed(signedRequestMessage);
+      return;
+    }
+
+    this.deliveryQueue.acknowledge(signedRequestMessage);
+
+    log.info("SignRequestMessage delivered successfully");
+  }
+}
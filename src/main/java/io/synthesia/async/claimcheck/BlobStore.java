@@ -0,0 +1,16 @@
+package io.synthesia.async.claimcheck;
+
+/** Keeps payloads that are too large to travel through the queue. */
+public interface BlobStore {
+  /**
+   * Stores the content under a new key.
+   *
+   * @return the key to read or delete the content with
+   */
+  String put(String content);
+
+  String get(String key);
+
+  /** Does nothing if there is nothing stored under the key. */
+  void delete(String key);
+}
@@ -0,0 +1,85 @@
+package io.synthesia.async.claimcheck;
+
+import io.synthesia.async.dto.SignRequestMessage;
+import java.nio.charset.StandardCharsets;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps queue messages small whatever the size of the message to sign. Payloads larger than {@code
+ * thresholdInBytes} are put in the {@link BlobStore} and only their reference travels through the
+ * queue. The payload is fetched when it is about to be signed, and deleted once the message has
+ * been acknowledged.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ClaimCheck {
+  private static final ClaimCheck DISABLED =
+      new ClaimCheck(new UnavailableBlobStore(), Integer.MAX_VALUE);
+
+  private final BlobStore blobStore;
+  private final int thresholdInBytes;
+
+  /** Returns a claim check that never checks payloads in and cannot fetch them. */
+  public static ClaimCheck disabled() {
+    return DISABLED;
+  }
+
+  /** Returns the message to enqueue, with a large payload swapped for its reference. */
+  public SignRequestMessage checkIn(SignRequestMessage signRequestMessage) {
+    var message = signRequestMessage.getMessage();
+
+    if (message == null || !isAboveThreshold(message)) {
+      return signRequestMessage;
+    }
+
+    var reference = this.blobStore.put(message);
+
+    log.debug("Stored payload of {} characters as {}", message.length(), reference);
+
+    return new SignRequestMessage(
+        null, signRequestMessage.getWebhookUrl(), signRequestMessage.getSignedMessage(), reference);
+  }
+
+  /**
+   * Returns the message to sign. Payloads that were too large for the queue are fetched from the
+   * blob store.
+   */
+  public String payload(SignRequestMessage signRequestMessage) {
+    if (signRequestMessage.getMessageReference() == null) {
+      return signRequestMessage.getMessage();
+    }
+
+    return this.blobStore.get(signRequestMessage.getMessageReference());
+  }
+
+  /**
+   * Returns the signed message to hand to delivery, without its reference. The stored payload goes
+   * away when the message is acknowledged, and delivering only needs the signature.
+   */
+  public SignRequestMessage checkOut(SignRequestMessage signRequestMessage, String signedMessage) {
+    return signRequestMessage.withSignedMessage(signedMessage).withMessageReference(null);
+  }
+
+  /** Deletes the stored payload, once the message it belongs to will not be delivered again. */
+  public void discard(SignRequestMessage signRequestMessage) {
+    if (signRequestMessage.getMessageReference() == null) {
+      return;
+    }
+
+    try {
+      this.blobStore.delete(signRequestMessage.getMessageReference());
+    } catch (Exception e) {
+      log.warn("Unable to delete payload {}", signRequestMessage.getMessageReference(), e);
+    }
+  }
+
+  private boolean isAboveThreshold(String message) {
+    // A UTF-8 character takes at most three bytes per char, so short messages need no encoding
+    if ((long) message.length() * 3 <= this.thresholdInBytes) {
+      return false;
+    }
+
+    return message.getBytes(StandardCharsets.UTF_8).length > this.thresholdInBytes;
+  }
+}
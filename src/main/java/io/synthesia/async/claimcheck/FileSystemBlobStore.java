@@ -0,0 +1,108 @@
+package io.synthesia.async.claimcheck;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps every payload in its own file under {@code directory}. Only works when every instance
+ * shares the directory, e.g. on a single node or with a network volume.
+ */
+@Slf4j
+public class FileSystemBlobStore implements BlobStore {
+  private final Path directory;
+
+  public FileSystemBlobStore(Path directory) {
+    try {
+      this.directory = Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public String put(String content) {
+    var key = UUID.randomUUID().toString();
+
+    try {
+      // Written aside and moved, so that a reader never sees a partial payload
+      var temporary = Files.createTempFile(this.directory, key, ".tmp");
+      Files.writeString(temporary, content, StandardCharsets.UTF_8);
+      Files.move(temporary, path(key), StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return key;
+  }
+
+  @Override
+  public String get(String key) {
+    try {
+      return Files.readString(path(key), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void delete(String key) {
+    try {
+      Files.deleteIfExists(path(key));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Deletes the payloads written before {@code cutoff}, so that those whose message was
+   * dead-lettered or lost do not pile up.
+   *
+   * @return the number of payloads deleted
+   */
+  public int deleteOlderThan(Instant cutoff) {
+    var deleted = 0;
+
+    try (var files = Files.newDirectoryStream(this.directory)) {
+      for (var file : files) {
+        if (deleteIfOlderThan(file, cutoff)) {
+          deleted++;
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return deleted;
+  }
+
+  private static boolean deleteIfOlderThan(Path file, Instant cutoff) {
+    try {
+      if (!Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+        return false;
+      }
+
+      return Files.deleteIfExists(file);
+    } catch (IOException e) {
+      log.warn("Unable to delete expired payload {}", file, e);
+      return false;
+    }
+  }
+
+  private Path path(String key) {
+    // Keys come back through the queue, never let one point outside of the directory
+    var path = this.directory.resolve(key).normalize();
+
+    if (!this.directory.equals(path.getParent())) {
+      throw new IllegalArgumentException("Invalid blob key " + key);
+    }
+
+    return path;
+  }
+}
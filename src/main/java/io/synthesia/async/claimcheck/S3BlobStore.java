@@ -0,0 +1,40 @@
+package io.synthesia.async.claimcheck;
+
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+/** Keeps every payload as an object under {@code prefix} in an S3 bucket. */
+@RequiredArgsConstructor
+public class S3BlobStore implements BlobStore {
+  private final S3Client client;
+  private final String bucket;
+  private final String prefix;
+
+  @Override
+  public String put(String content) {
+    var key = this.prefix + UUID.randomUUID();
+
+    this.client.putObject(
+        PutObjectRequest.builder().bucket(this.bucket).key(key).build(),
+        RequestBody.fromString(content));
+
+    return key;
+  }
+
+  @Override
+  public String get(String key) {
+    return this.client
+        .getObjectAsBytes(GetObjectRequest.builder().bucket(this.bucket).key(key).build())
+        .asUtf8String();
+  }
+
+  @Override
+  public void delete(String key) {
+    this.client.deleteObject(DeleteObjectRequest.builder().bucket(this.bucket).key(key).build());
+  }
+}
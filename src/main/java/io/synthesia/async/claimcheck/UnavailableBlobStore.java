@@ -0,0 +1,19 @@
+package io.synthesia.async.claimcheck;
+
+/** Stands in for the blob store when the claim check is disabled. */
+class UnavailableBlobStore implements BlobStore {
+  @Override
+  public String put(String content) {
+    throw new IllegalStateException("The claim check is disabled");
+  }
+
+  @Override
+  public String get(String key) {
+    throw new IllegalStateException("The claim check is disabled, unable to fetch " + key);
+  }
+
+  @Override
+  public void delete(String key) {
+    throw new IllegalStateException("The claim check is disabled, unable to delete " + key);
+  }
+}
@@ -0,0 +1,233 @@
+package io.synthesia.async.codec;
+
+import io.synthesia.async.dto.SignRequestMessage;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary body, Base64 encoded so that it can travel as SQS text.
+ *
+ * <p>Layout: {@code [byte version][byte flags][fields]}, where every field (message, webhook URL,
+ * signed message and message reference) is a varint of its UTF-8 length plus one, zero meaning
+ * null, followed by its bytes. Field names are never written, so a body is a fraction of the JSON
+ * one. When the fields are larger than {@code compressionThreshold} bytes they are deflated, and
+ * the flags record it together with the inflated size.
+ *
+ * <p>JSON bodies, recognised by their leading brace, are handed to the JSON codec, so messages
+ * enqueued before the switch are still processed.
+ */
+public class BinaryMessageCodec implements MessageCodec {
+  static final byte VERSION = 1;
+
+  private static final byte COMPRESSED = 1;
+  private static final int HEADER_SIZE = 2;
+
+  /** Far above anything SQS accepts, only there to stop a corrupted size from exhausting memory. */
+  private static final int MAX_INFLATED_SIZE = 4 * 1024 * 1024;
+
+  private static final Base64.Encoder ENCODER = Base64.getEncoder();
+  private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+  private final int compressionThreshold;
+  private final MessageCodec jsonCodec;
+
+  private final ThreadLocal<Deflater> deflaters =
+      ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+  private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+  public BinaryMessageCodec(int compressionThreshold, MessageCodec jsonCodec) {
+    this.compressionThreshold = compressionThreshold;
+    this.jsonCodec = jsonCodec;
+  }
+
+  @Override
+  public String encode(SignRequestMessage signRequestMessage) {
+    var message = utf8(signRequestMessage.getMessage());
+    var webhookUrl = utf8(signRequestMessage.getWebhookUrl());
+    var signedMessage = utf8(signRequestMessage.getSignedMessage());
+    var messageReference = utf8(signRequestMessage.getMessageReference());
+
+    var fieldsSize =
+        fieldSize(message)
+            + fieldSize(webhookUrl)
+            + fieldSize(signedMessage)
+            + fieldSize(messageReference);
+    var buffer = ByteBuffer.allocate(HEADER_SIZE + fieldsSize);
+
+    buffer.put(VERSION).put((byte) 0);
+    putField(buffer, message);
+    putField(buffer, webhookUrl);
+    putField(buffer, signedMessage);
+    putField(buffer, messageReference);
+
+    if (fieldsSize > this.compressionThreshold) {
+      var compressed = compress(buffer.array(), fieldsSize);
+
+      if (compressed != null) {
+        return ENCODER.encodeToString(compressed);
+      }
+    }
+
+    return ENCODER.encodeToString(buffer.array());
+  }
+
+  @Override
+  public SignRequestMessage decode(String body) {
+    if (body.startsWith("{")) {
+      return this.jsonCodec.decode(body);
+    }
+
+    try {
+      var buffer = ByteBuffer.wrap(DECODER.decode(body));
+      var version = buffer.get();
+
+      if (version != VERSION) {
+        throw new MessageCodecException("Unsupported message version " + version);
+      }
+
+      if ((buffer.get() & COMPRESSED) != 0) {
+        buffer = inflate(buffer);
+      }
+
+      var message = getField(buffer);
+      var webhookUrl = getField(buffer);
+      var signedMessage = getField(buffer);
+      var messageReference = getField(buffer);
+
+      return new SignRequestMessage(message, webhookUrl, signedMessage, messageReference);
+    } catch (IllegalArgumentException | BufferUnderflowException e) {
+      throw new MessageCodecException("Malformed message body", e);
+    }
+  }
+
+  /** Returns null when deflating does not make the body any smaller. */
+  private byte[] compress(byte[] uncompressed, int fieldsSize) {
+    var deflater = this.deflaters.get();
+    var compressed = new byte[uncompressed.length];
+    var buffer = ByteBuffer.wrap(compressed);
+
+    buffer.put(VERSION).put(COMPRESSED);
+    putVarint(buffer, fieldsSize);
+
+    deflater.reset();
+    deflater.setInput(uncompressed, HEADER_SIZE, fieldsSize);
+    deflater.finish();
+
+    var length =
+        deflater.deflate(compressed, buffer.position(), compressed.length - buffer.position());
+
+    if (!deflater.finished()) {
+      return null;
+    }
+
+    return Arrays.copyOf(compressed, buffer.position() + length);
+  }
+
+  private ByteBuffer inflate(ByteBuffer buffer) {
+    var inflatedSize = getVarint(buffer);
+
+    if (inflatedSize < 0 || inflatedSize > MAX_INFLATED_SIZE) {
+      throw new MessageCodecException("Inflated message would be " + inflatedSize + " bytes");
+    }
+
+    var inflater = this.inflaters.get();
+    var inflated = new byte[inflatedSize];
+
+    inflater.reset();
+    inflater.setInput(buffer.array(), buffer.position(), buffer.remaining());
+
+    try {
+      var length = inflater.inflate(inflated);
+
+      if (length != inflatedSize || !inflater.finished()) {
+        throw new MessageCodecException("Compressed message does not match its size");
+      }
+    } catch (DataFormatException e) {
+      throw new MessageCodecException("Malformed compressed message", e);
+    }
+
+    return ByteBuffer.wrap(inflated);
+  }
+
+  private static byte[] utf8(String value) {
+    return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static int fieldSize(byte[] value) {
+    return value == null ? 1 : varintSize(value.length + 1) + value.length;
+  }
+
+  private static void putField(ByteBuffer buffer, byte[] value) {
+    if (value == null) {
+      putVarint(buffer, 0);
+      return;
+    }
+
+    putVarint(buffer, value.length + 1);
+    buffer.put(value);
+  }
+
+  private static String getField(ByteBuffer buffer) {
+    var encodedLength = getVarint(buffer);
+
+    if (encodedLength == 0) {
+      return null;
+    }
+
+    var length = encodedLength - 1;
+
+    if (length < 0 || length > buffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+
+    var value =
+        new String(
+            buffer.array(),
+            buffer.arrayOffset() + buffer.position(),
+            length,
+            StandardCharsets.UTF_8);
+    buffer.position(buffer.position() + length);
+
+    return value;
+  }
+
+  private static int varintSize(int value) {
+    var size = 1;
+
+    while ((value >>>= 7) != 0) {
+      size++;
+    }
+
+    return size;
+  }
+
+  private static void putVarint(ByteBuffer buffer, int value) {
+    while ((value & ~0x7F) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+
+    buffer.put((byte) value);
+  }
+
+  private static int getVarint(ByteBuffer buffer) {
+    var value = 0;
+
+    for (int shift = 0; shift < 32; shift += 7) {
+      var b = buffer.get();
+      value |= (b & 0x7F) << shift;
+
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+
+    throw new MessageCodecException("Malformed length in message body");
+  }
+}
@@ -0,0 +1,49 @@
+package io.synthesia.async.codec;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.synthesia.async.dto.MessageBodyWithReceipt;
+import io.synthesia.async.dto.SignRequestMessage;
+
+/**
+ * The original JSON body. Reader and writer are bound to {@link SignRequestMessage} once, instead
+ * of looking the type up on every call. Bodies written before the receipt handle was left out are
+ * still read, the stale handle is simply ignored.
+ */
+public class JsonMessageCodec implements MessageCodec {
+  private final ObjectReader reader;
+  private final ObjectWriter writer;
+
+  public JsonMessageCodec(ObjectMapper mapper) {
+    var bodyMapper = mapper.copy().addMixIn(MessageBodyWithReceipt.class, WithoutReceipt.class);
+
+    this.reader = bodyMapper.readerFor(SignRequestMessage.class);
+    this.writer = bodyMapper.writerFor(SignRequestMessage.class);
+  }
+
+  @Override
+  public String encode(SignRequestMessage signRequestMessage) {
+    try {
+      return this.writer.writeValueAsString(signRequestMessage);
+    } catch (JsonProcessingException e) {
+      throw new MessageCodecException("Unable to encode message", e);
+    }
+  }
+
+  @Override
+  public SignRequestMessage decode(String body) {
+    try {
+      return this.reader.readValue(body);
+    } catch (JsonProcessingException e) {
+      throw new MessageCodecException("Unable to decode message", e);
+    }
+  }
+
+  private abstract static class WithoutReceipt {
+    @JsonIgnore
+    abstract String getReceiptHandle();
+  }
+}
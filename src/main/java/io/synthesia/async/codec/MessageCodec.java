@@ -0,0 +1,13 @@
+package io.synthesia.async.codec;
+
+import io.synthesia.async.dto.SignRequestMessage;
+
+/**
+ * Turns a {@link SignRequestMessage} into a queue message body and back. The receipt handle and
+ * attempt belong to a single delivery, so they are never part of the body.
+ */
+public interface MessageCodec {
+  String encode(SignRequestMessage signRequestMessage);
+
+  SignRequestMessage decode(String body);
+}
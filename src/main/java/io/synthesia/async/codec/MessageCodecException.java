@@ -0,0 +1,14 @@
+package io.synthesia.async.codec;
+
+/** Thrown when a message cannot be encoded, or a body is not something the codec can decode. */
+public class MessageCodecException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  public MessageCodecException(String message) {
+    super(message);
+  }
+
+  public MessageCodecException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
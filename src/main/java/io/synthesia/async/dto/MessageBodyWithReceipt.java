@@ -1,5 +1,6 @@
 package io.synthesia.async.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -14,4 +15,10 @@ public abstract class MessageBodyWithReceipt {
    * queue
    */
   @Setter private String receiptHandle;
+
+  /**
+   * Which attempt at processing this message the current delivery is, starting at 1. Deliveries
+   * that were handed back without failing, for instance because of rate limiting, do not count.
+   */
+  @JsonIgnore @EqualsAndHashCode.Exclude @Setter private int attempt;
 }
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.With;
 
 @Getter
 @AllArgsConstructor
@@ -12,4 +13,24 @@ import lombok.NoArgsConstructor;
 public class SignRequestMessage extends MessageBodyWithReceipt {
   private String message;
   private String webhookUrl;
+
+  /**
+   * Set once the message has been signed, so that delivering it to the webhook again never needs
+   * another call to the upstream API
+   */
+  @With private String signedMessage;
+
+  /**
+   * Set instead of {@code message} when the payload was too large for the queue and has been put in
+   * a blob store, see {@link io.synthesia.async.claimcheck.ClaimCheck}
+   */
+  @With private String messageReference;
+
+  public SignRequestMessage(String message, String webhookUrl) {
+    this(message, webhookUrl, null);
+  }
+
+  public SignRequestMessage(String message, String webhookUrl, String signedMessage) {
+    this(message, webhookUrl, signedMessage, null);
+  }
 }
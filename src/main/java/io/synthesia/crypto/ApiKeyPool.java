@@ -0,0 +1,157 @@
+package io.synthesia.crypto;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.synthesia.crypto.limiter.RateLimiter;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Spreads upstream calls over several API keys, each with its own rate limiter, so capacity grows
+ * with the number of keys. Keys are tried in turn starting after the last one used. A key the
+ * upstream API throttles anyway is skipped until its Retry-After (or the default sideline period)
+ * has passed.
+ *
+ * <p>As a {@link RateLimiter} the pool reports the combined capacity of the keys in use, so the
+ * components that plan around the limiter see the whole pool.
+ */
+@Slf4j
+public class ApiKeyPool implements RateLimiter {
+  private final List<PooledKey> keys = new ArrayList<>();
+  private final Duration sidelineDuration;
+  private final Clock clock;
+  private final AtomicInteger nextKey = new AtomicInteger();
+
+  public ApiKeyPool(
+      List<String> apiKeys,
+      List<RateLimiter> rateLimiters,
+      Duration sidelineDuration,
+      Clock clock,
+      MeterRegistry meterRegistry) {
+    this.sidelineDuration = sidelineDuration;
+    this.clock = clock;
+
+    for (var i = 0; i < apiKeys.size(); i++) {
+      var key =
+          new PooledKey(
+              apiKeys.get(i),
+              keyId(apiKeys.get(i)),
+              rateLimiters.get(i),
+              Counter.builder("client_api_key_throttled")
+                  .tag("key", keyId(apiKeys.get(i)))
+                  .register(meterRegistry));
+
+      Gauge.builder(
+              "client_api_key_sidelined",
+              key,
+              k -> k.sidelinedUntil.get() > this.clock.millis() ? 1 : 0)
+          .tag("key", key.id)
+          .register(meterRegistry);
+
+      this.keys.add(key);
+    }
+  }
+
+  /**
+   * Identifies an API key in bucket names, metrics and logs without giving the key away. Unlike its
+   * position in the pool, it stays the same when the keys are reordered.
+   */
+  public static String keyId(String apiKey) {
+    return Hashes.sha256Hex(apiKey).substring(0, 16);
+  }
+
+  /** Takes a token from the first key in turn that has one, returning that key. */
+  public Optional<String> acquireKey() {
+    var start = Math.floorMod(this.nextKey.getAndIncrement(), this.keys.size());
+    var now = this.clock.millis();
+
+    for (var i = 0; i < this.keys.size(); i++) {
+      var key = this.keys.get((start + i) % this.keys.size());
+
+      if (!key.isSidelined(now) && key.rateLimiter.tryAcquire()) {
+        return Optional.of(key.apiKey);
+      }
+    }
+
+    return Optional.empty();
+  }
+
+  /** Stops using a key the upstream API throttled until it is expected to accept calls again. */
+  public void onRateLimited(String apiKey, Duration retryAfter) {
+    var sideline = retryAfter.compareTo(Duration.ZERO) > 0 ? retryAfter : this.sidelineDuration;
+
+    for (var key : this.keys) {
+      if (key.apiKey.equals(apiKey)) {
+        key.throttled.increment();
+        key.sidelinedUntil.set(this.clock.millis() + sideline.toMillis());
+        log.warn("API key {} throttled upstream, sidelined for {}", key.id, sideline);
+        return;
+      }
+    }
+  }
+
+  @Override
+  public boolean tryAcquire() {
+    return acquireKey().isPresent();
+  }
+
+  @Override
+  public Duration timeUntilAvailable() {
+    var now = this.clock.millis();
+    Duration earliest = null;
+
+    for (var key : this.keys) {
+      var wait =
+          key.isSidelined(now)
+              ? Duration.ofMillis(key.sidelinedUntil.get() - now)
+              : key.rateLimiter.timeUntilAvailable();
+
+      if (earliest == null || wait.compareTo(earliest) < 0) {
+        earliest = wait;
+      }
+    }
+
+    return earliest;
+  }
+
+  @Override
+  public long availableTokens() {
+    var now = this.clock.millis();
+
+    return this.keys.stream()
+        .filter(key -> !key.isSidelined(now))
+        .mapToLong(key -> key.rateLimiter.availableTokens())
+        .sum();
+  }
+
+  @Override
+  public void close() {
+    this.keys.forEach(key -> key.rateLimiter.close());
+  }
+
+  private static class PooledKey {
+    private final String apiKey;
+    private final String id;
+    private final RateLimiter rateLimiter;
+    private final Counter throttled;
+    private final AtomicLong sidelinedUntil = new AtomicLong();
+
+    private PooledKey(String apiKey, String id, RateLimiter rateLimiter, Counter throttled) {
+      this.apiKey = apiKey;
+      this.id = id;
+      this.rateLimiter = rateLimiter;
+      this.throttled = throttled;
+    }
+
+    private boolean isSidelined(long now) {
+      return now < this.sidelinedUntil.get();
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package io.synthesia.crypto;
+
+import io.micrometer.core.instrument.Counter;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Serves repeated messages from a local cache first and a shared cache second, only reaching the
+ * rate limited delegate when neither of them knows the signature.
+ *
+ * <p>Cache lookups are synchronous in both variants, since they are bounded by the Redis command
+ * timeout and are orders of magnitude cheaper than a call to the upstream API.
+ */
+@RequiredArgsConstructor
+public class CachingCryptoClient implements CryptoClient {
+  private final CryptoClient delegate;
+  private final SignatureCache localCache;
+  private final SignatureCache sharedCache;
+
+  private final Counter localHits;
+  private final Counter sharedHits;
+  private final Counter misses;
+
+  @Override
+  public Optional<String> sign(String message) {
+    var maybeSignature = lookup(message);
+
+    if (maybeSignature.isPresent()) {
+      return maybeSignature;
+    }
+
+    maybeSignature = this.delegate.sign(message);
+    store(message, maybeSignature);
+
+    return maybeSignature;
+  }
+
+  @Override
+  public CompletableFuture<Optional<String>> signAsync(String message) {
+    var maybeSignature = lookup(message);
+
+    if (maybeSignature.isPresent()) {
+      return CompletableFuture.completedFuture(maybeSignature);
+    }
+
+    return this.delegate
+        .signAsync(message)
+        .thenApply(
+            maybeSignedMessage -> {
+              store(message, maybeSignedMessage);
+              return maybeSignedMessage;
+            });
+  }
+
+  /**
+   * Peeks at both caches without counting a hit or a miss, which is left to the sign call that
+   * follows. A shared hit is copied to the local cache so that the sign call does not reach Redis
+   * again.
+   */
+  @Override
+  public Optional<String> cached(String message) {
+    var maybeSignature = this.localCache.get(message);
+
+    if (maybeSignature.isPresent()) {
+      return maybeSignature;
+    }
+
+    maybeSignature = this.sharedCache.get(message);
+    maybeSignature.ifPresent(signature -> this.localCache.put(message, signature));
+
+    return maybeSignature;
+  }
+
+  private Optional<String> lookup(String message) {
+    var maybeSignature = this.localCache.get(message);
+
+    if (maybeSignature.isPresent()) {
+      this.localHits.increment();
+      return maybeSignature;
+    }
+
+    maybeSignature = this.sharedCache.get(message);
+
+    if (maybeSignature.isPresent()) {
+      this.sharedHits.increment();
+      this.localCache.put(message, maybeSignature.get());
+      return maybeSignature;
+    }
+
+    this.misses.increment();
+    return Optional.empty();
+  }
+
+  private void store(String message, Optional<String> maybeSignature) {
+    maybeSignature.ifPresent(
+        signature -> {
+          this.localCache.put(message, signature);
+          this.sharedCache.put(message, signature);
+        });
+  }
+}
@@ -0,0 +1,190 @@
+package io.synthesia.crypto;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stops calling the upstream API while it is failing. The outcome of the last calls is kept in a
+ * sliding window, and once enough of them failed or were slow the circuit opens and every call is
+ * rejected straight away. After the open duration a few probe calls are let through, which either
+ * close the circuit again or keep it open for another round.
+ */
+@Slf4j
+public class CircuitBreaker {
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final int windowSize;
+  private final int minimumCalls;
+  private final double failureRateThreshold;
+  private final double slowCallRateThreshold;
+  private final Duration slowCallDuration;
+  private final Duration openDuration;
+  private final int halfOpenPermits;
+  private final Clock clock;
+  private final MeterRegistry meterRegistry;
+  private final Counter rejections;
+
+  private final boolean[] failures;
+  private final boolean[] slowCalls;
+  private int recordedCalls;
+  private int nextIndex;
+  private int failuresInWindow;
+  private int slowCallsInWindow;
+
+  private volatile State state = State.CLOSED;
+  private long openedAt;
+  private int halfOpenInFlight;
+  private int halfOpenSuccesses;
+
+  public CircuitBreaker(
+      int windowSize,
+      int minimumCalls,
+      double failureRateThreshold,
+      double slowCallRateThreshold,
+      Duration slowCallDuration,
+      Duration openDuration,
+      int halfOpenPermits,
+      Clock clock,
+      MeterRegistry meterRegistry) {
+    this.windowSize = windowSize;
+    this.minimumCalls = minimumCalls;
+    this.failureRateThreshold = failureRateThreshold;
+    this.slowCallRateThreshold = slowCallRateThreshold;
+    this.slowCallDuration = slowCallDuration;
+    this.openDuration = openDuration;
+    this.halfOpenPermits = halfOpenPermits;
+    this.clock = clock;
+    this.meterRegistry = meterRegistry;
+    this.failures = new boolean[windowSize];
+    this.slowCalls = new boolean[windowSize];
+
+    this.rejections = Counter.builder("client_circuit_rejection").register(meterRegistry);
+    Gauge.builder("client_circuit_state", this, breaker -> breaker.getState().ordinal())
+        .register(meterRegistry);
+  }
+
+  public State getState() {
+    return this.state;
+  }
+
+  /**
+   * Asks whether a call may go ahead. Every permitted call must be followed by {@link #onSuccess},
+   * {@link #onFailure} or {@link #release}.
+   */
+  public synchronized boolean tryAcquirePermission() {
+    if (this.state == State.OPEN) {
+      if (this.clock.millis() - this.openedAt < this.openDuration.toMillis()) {
+        this.rejections.increment();
+        return false;
+      }
+
+      transitionTo(State.HALF_OPEN);
+    }
+
+    if (this.state == State.HALF_OPEN) {
+      if (this.halfOpenInFlight >= this.halfOpenPermits) {
+        this.rejections.increment();
+        return false;
+      }
+
+      this.halfOpenInFlight++;
+    }
+
+    return true;
+  }
+
+  /** Gives back a permission that ended up not being used for a call. */
+  public synchronized void release() {
+    if (this.state == State.HALF_OPEN && this.halfOpenInFlight > 0) {
+      this.halfOpenInFlight--;
+    }
+  }
+
+  public void onSuccess(Duration latency) {
+    record(false, latency);
+  }
+
+  public void onFailure(Duration latency) {
+    record(true, latency);
+  }
+
+  private synchronized void record(boolean failed, Duration latency) {
+    var slow = latency.compareTo(this.slowCallDuration) >= 0;
+
+    if (this.state == State.HALF_OPEN) {
+      this.halfOpenInFlight = Math.max(0, this.halfOpenInFlight - 1);
+
+      if (failed || slow) {
+        transitionTo(State.OPEN);
+      } else if (++this.halfOpenSuccesses >= this.halfOpenPermits) {
+        transitionTo(State.CLOSED);
+      }
+
+      return;
+    }
+
+    if (this.state == State.OPEN) {
+      return;
+    }
+
+    addToWindow(failed, slow);
+
+    if (this.recordedCalls < this.minimumCalls) {
+      return;
+    }
+
+    var failureRate = (double) this.failuresInWindow / this.recordedCalls;
+    var slowCallRate = (double) this.slowCallsInWindow / this.recordedCalls;
+
+    if (failureRate >= this.failureRateThreshold || slowCallRate >= this.slowCallRateThreshold) {
+      log.warn(
+          "Opening circuit with failure rate {} and slow call rate {}", failureRate, slowCallRate);
+      transitionTo(State.OPEN);
+    }
+  }
+
+  private void addToWindow(boolean failed, boolean slow) {
+    if (this.recordedCalls == this.windowSize) {
+      this.failuresInWindow -= this.failures[this.nextIndex] ? 1 : 0;
+      this.slowCallsInWindow -= this.slowCalls[this.nextIndex] ? 1 : 0;
+    } else {
+      this.recordedCalls++;
+    }
+
+    this.failures[this.nextIndex] = failed;
+    this.slowCalls[this.nextIndex] = slow;
+    this.failuresInWindow += failed ? 1 : 0;
+    this.slowCallsInWindow += slow ? 1 : 0;
+    this.nextIndex = (this.nextIndex + 1) % this.windowSize;
+  }
+
+  private void transitionTo(State next) {
+    log.info("Circuit moving from {} to {}", this.state, next);
+
+    Counter.builder("client_circuit_transition")
+        .tag("to", next.name())
+        .register(this.meterRegistry)
+        .increment();
+
+    this.state = next;
+    this.halfOpenInFlight = 0;
+    this.halfOpenSuccesses = 0;
+
+    if (next == State.OPEN) {
+      this.openedAt = this.clock.millis();
+    } else if (next == State.CLOSED) {
+      this.recordedCalls = 0;
+      this.nextIndex = 0;
+      this.failuresInWindow = 0;
+      this.slowCallsInWindow = 0;
+    }
+  }
+}
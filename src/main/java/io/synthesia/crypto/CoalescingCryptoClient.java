@@ -0,0 +1,89 @@
+package io.synthesia.crypto;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Lets concurrent callers signing the same message share a single call to the delegate. The first
+ * caller (the leader) performs the call while everybody else waits for its result. Synchronous and
+ * asynchronous callers share the same flights.
+ */
+@RequiredArgsConstructor
+public class CoalescingCryptoClient implements CryptoClient {
+  private final CryptoClient delegate;
+  private final DistributionSummary callersPerFlight;
+
+  private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+  @Override
+  public Optional<String> sign(String message) {
+    var newFlight = new Flight();
+    var flight = this.flights.compute(message, (key, current) -> join(current, newFlight));
+
+    if (flight != newFlight) {
+      return flight.result.join();
+    }
+
+    try {
+      var result = this.delegate.sign(message);
+      land(message, flight);
+      flight.result.complete(result);
+      return result;
+    } catch (Throwable e) {
+      // Errors too, otherwise the flight never lands and its followers wait forever
+      land(message, flight);
+      flight.result.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  @Override
+  public CompletableFuture<Optional<String>> signAsync(String message) {
+    var newFlight = new Flight();
+    var flight = this.flights.compute(message, (key, current) -> join(current, newFlight));
+
+    if (flight == newFlight) {
+      CompletableFuture.completedFuture(message)
+          .thenCompose(this.delegate::signAsync)
+          .whenComplete(
+              (result, error) -> {
+                land(message, flight);
+
+                if (error != null) {
+                  flight.result.completeExceptionally(error);
+                } else {
+                  flight.result.complete(result);
+                }
+              });
+    }
+
+    return flight.result.copy();
+  }
+
+  private static Flight join(Flight current, Flight newFlight) {
+    if (current == null) {
+      return newFlight;
+    }
+
+    current.callers++;
+    return current;
+  }
+
+  /**
+   * Removing the flight happens under the same map lock used to join it, so no caller can join once
+   * the number of callers has been recorded.
+   */
+  private void land(String message, Flight flight) {
+    this.flights.remove(message, flight);
+    this.callersPerFlight.record(flight.callers);
+  }
+
+  private static class Flight {
+    private final CompletableFuture<Optional<String>> result = new CompletableFuture<>();
+    private volatile int callers = 1;
+  }
+}
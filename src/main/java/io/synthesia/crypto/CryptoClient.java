@@ -1,7 +1,15 @@
 package io.synthesia.crypto;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface CryptoClient {
   Optional<String> sign(String message);
+
+  CompletableFuture<Optional<String>> signAsync(String message);
+
+  /** Returns the signature if it is already known, without calling the upstream API. */
+  default Optional<String> cached(String message) {
+    return Optional.empty();
+  }
 }
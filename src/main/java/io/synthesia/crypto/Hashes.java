@@ -0,0 +1,19 @@
+package io.synthesia.crypto;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import lombok.SneakyThrows;
+
+public final class Hashes {
+  private Hashes() {}
+
+  /** SHA-256 of the UTF-8 bytes of {@code value}, as 64 lowercase hex digits. */
+  @SneakyThrows
+  public static String sha256Hex(String value) {
+    var digest =
+        MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+
+    return String.format("%064x", new BigInteger(1, digest));
+  }
+}
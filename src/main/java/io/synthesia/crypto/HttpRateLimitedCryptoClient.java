@@ -1,7 +1,7 @@
 package io.synthesia.crypto;
 
-import io.github.bucket4j.Bucket;
 import io.micrometer.core.instrument.Counter;
+import io.synthesia.crypto.limiter.RateLimiter;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
@@ -10,17 +10,16 @@ import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Optional;
-import lombok.RequiredArgsConstructor;
+import java.util.concurrent.CompletableFuture;
+import lombok.Builder;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
-@RequiredArgsConstructor
+@Builder
 public class HttpRateLimitedCryptoClient implements CryptoClient {
   private final HttpClient client;
-  private final Bucket bucket;
   private final String baseUrl;
-  private final String apiKey;
   private final Duration timeout;
 
   private final Counter success;
@@ -28,46 +27,163 @@ public class HttpRateLimitedCryptoClient implements CryptoClient {
   private final Counter apiRateLimitError;
   private final Counter rateLimit;
 
+  /** Short-circuits calls while the upstream API is failing when present. */
+  private final CircuitBreaker circuitBreaker;
+
+  /** Limits the calls made with the single apiKey, when there is no key pool. */
+  private final RateLimiter rateLimiter;
+
+  private final String apiKey;
+
+  /** Picks the API key for each call instead of the single apiKey when present. */
+  private final ApiKeyPool apiKeyPool;
+
   @Override
   @SneakyThrows
   public Optional<String> sign(String message) {
+    var apiKey = tryAcquire();
+    var start = System.nanoTime();
+
     try {
-      if (!bucket.tryConsume(1)) {
-        this.rateLimit.increment();
-        return Optional.empty();
-      }
+      var response =
+          this.client.send(signRequest(message, apiKey), HttpResponse.BodyHandlers.ofString());
 
-      var encodedMessage = URLEncoder.encode(message, StandardCharsets.UTF_8);
+      recordOutcome(response.statusCode() < 500, start);
 
-      HttpRequest request =
-          HttpRequest.newBuilder()
-              .uri(new URI(baseUrl + "/crypto/sign?message=" + encodedMessage))
-              .headers("Authorization", apiKey)
-              .timeout(timeout)
-              .GET()
-              .build();
+      return handleResponse(response, apiKey);
+    } catch (Exception e) {
+      log.error("Unable to sign message", e);
+      recordOutcome(false, start);
+      return Optional.empty();
+    }
+  }
 
-      var response = this.client.send(request, HttpResponse.BodyHandlers.ofString());
+  @Override
+  public CompletableFuture<Optional<String>> signAsync(String message) {
+    String apiKey;
 
-      if (response.statusCode() != 200) {
-        log.warn(
-            "Remote API failed with status {} and error {}",
-            response.statusCode(),
-            response.body());
-        this.errors.increment();
+    try {
+      apiKey = tryAcquire();
+    } catch (SignRejectedException e) {
+      return CompletableFuture.failedFuture(e);
+    }
 
-        if (response.statusCode() == 429) {
-          this.apiRateLimitError.increment();
-        }
+    var start = System.nanoTime();
+
+    try {
+      return this.client
+          .sendAsync(signRequest(message, apiKey), HttpResponse.BodyHandlers.ofString())
+          .whenComplete(
+              (response, error) ->
+                  recordOutcome(error == null && response.statusCode() < 500, start))
+          .thenApply(response -> handleResponse(response, apiKey))
+          .exceptionally(
+              e -> {
+                log.error("Unable to sign message", e);
+                return Optional.empty();
+              });
+    } catch (Exception e) {
+      log.error("Unable to sign message", e);
+      recordOutcome(false, start);
+      return CompletableFuture.completedFuture(Optional.empty());
+    }
+  }
+
+  /**
+   * Checks the circuit before taking a token, so that no token is spent while the upstream API is
+   * known to be failing. Returns the API key to call with, or throws a {@link
+   * SignRejectedException} when the call cannot be made.
+   */
+  private String tryAcquire() {
+    if (this.circuitBreaker != null && !this.circuitBreaker.tryAcquirePermission()) {
+      throw new SignRejectedException("Circuit is open");
+    }
 
-        return Optional.empty();
+    try {
+      var apiKey = acquireApiKey();
+
+      if (apiKey != null) {
+        return apiKey;
       }
 
-      success.increment();
-      return Optional.of(response.body());
+      this.rateLimit.increment();
     } catch (Exception e) {
       log.error("Unable to sign message", e);
+    }
+
+    if (this.circuitBreaker != null) {
+      this.circuitBreaker.release();
+    }
+
+    throw new SignRejectedException("No token available");
+  }
+
+  private String acquireApiKey() {
+    if (this.apiKeyPool != null) {
+      return this.apiKeyPool.acquireKey().orElse(null);
+    }
+
+    return this.rateLimiter.tryAcquire() ? this.apiKey : null;
+  }
+
+  /** Rate limited (429) and other client errors still show the upstream API is responding. */
+  private void recordOutcome(boolean responded, long start) {
+    if (this.circuitBreaker == null) {
+      return;
+    }
+
+    var latency = Duration.ofNanos(System.nanoTime() - start);
+
+    if (responded) {
+      this.circuitBreaker.onSuccess(latency);
+    } else {
+      this.circuitBreaker.onFailure(latency);
+    }
+  }
+
+  @SneakyThrows
+  private HttpRequest signRequest(String message, String apiKey) {
+    var encodedMessage = URLEncoder.encode(message, StandardCharsets.UTF_8);
+
+    return HttpRequest.newBuilder()
+        .uri(new URI(baseUrl + "/crypto/sign?message=" + encodedMessage))
+        .headers("Authorization", apiKey)
+        .timeout(timeout)
+        .GET()
+        .build();
+  }
+
+  private Optional<String> handleResponse(HttpResponse<String> response, String apiKey) {
+    if (response.statusCode() != 200) {
+      log.warn(
+          "Remote API failed with status {} and error {}", response.statusCode(), response.body());
+      this.errors.increment();
+
+      if (response.statusCode() == 429) {
+        this.apiRateLimitError.increment();
+
+        if (this.apiKeyPool != null) {
+          this.apiKeyPool.onRateLimited(apiKey, retryAfter(response));
+        }
+      }
+
       return Optional.empty();
     }
+
+    success.increment();
+    return Optional.of(response.body());
+  }
+
+  /** Only the delay-seconds form of Retry-After is understood; anything else counts as absent. */
+  private static Duration retryAfter(HttpResponse<String> response) {
+    try {
+      return response
+          .headers()
+          .firstValue("Retry-After")
+          .map(seconds -> Duration.ofSeconds(Long.parseLong(seconds.trim())))
+          .orElse(Duration.ZERO);
+    } catch (NumberFormatException e) {
+      return Duration.ZERO;
+    }
   }
 }
@@ -0,0 +1,66 @@
+package io.synthesia.crypto;
+
+import io.micrometer.core.instrument.Counter;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import lombok.AllArgsConstructor;
+
+/**
+ * Bounded in-process cache of signatures. Entries are evicted in least-recently-used order once the
+ * cache is full, and are dropped on read once their TTL has elapsed.
+ */
+public class InMemorySignatureCache implements SignatureCache {
+  private final Map<String, Entry> entries;
+  private final Duration ttl;
+  private final Clock clock;
+  private final Counter evictions;
+
+  public InMemorySignatureCache(int maxSize, Duration ttl, Clock clock, Counter evictions) {
+    this.ttl = ttl;
+    this.clock = clock;
+    this.evictions = evictions;
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > maxSize) {
+              evictions.increment();
+              return true;
+            }
+
+            return false;
+          }
+        };
+  }
+
+  @Override
+  public synchronized Optional<String> get(String message) {
+    var entry = this.entries.get(message);
+
+    if (entry == null) {
+      return Optional.empty();
+    }
+
+    if (entry.expiresAt <= this.clock.millis()) {
+      this.entries.remove(message);
+      this.evictions.increment();
+      return Optional.empty();
+    }
+
+    return Optional.of(entry.signature);
+  }
+
+  @Override
+  public synchronized void put(String message, String signature) {
+    this.entries.put(message, new Entry(signature, this.clock.millis() + this.ttl.toMillis()));
+  }
+
+  @AllArgsConstructor
+  private static class Entry {
+    private final String signature;
+    private final long expiresAt;
+  }
+}
@@ -0,0 +1,44 @@
+package io.synthesia.crypto;
+
+import io.lettuce.core.api.sync.RedisCommands;
+import java.time.Duration;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Signature cache shared by every instance of the app. Failures are logged and treated as misses so
+ * that an unavailable Redis never prevents a message from being signed.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class RedisSignatureCache implements SignatureCache {
+  private static final String KEY_PREFIX = "signature:";
+
+  private final RedisCommands<String, String> commands;
+  private final Duration ttl;
+
+  @Override
+  public Optional<String> get(String message) {
+    try {
+      return Optional.ofNullable(this.commands.get(key(message)));
+    } catch (Exception e) {
+      log.warn("Unable to read signature from Redis", e);
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public void put(String message, String signature) {
+    try {
+      this.commands.setex(key(message), this.ttl.toSeconds(), signature);
+    } catch (Exception e) {
+      log.warn("Unable to write signature to Redis", e);
+    }
+  }
+
+  /** Messages can be arbitrarily large, so they are hashed to keep the keys bounded. */
+  private static String key(String message) {
+    return KEY_PREFIX + Hashes.sha256Hex(message);
+  }
+}
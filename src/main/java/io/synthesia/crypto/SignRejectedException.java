@@ -0,0 +1,20 @@
+package io.synthesia.crypto;
+
+/**
+ * Thrown when a sign call is turned down locally, by the circuit breaker or the rate limiter, so
+ * the upstream API was never called.
+ */
+public class SignRejectedException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  public SignRejectedException(String message) {
+    // Rejections are routine while the circuit is open, a stack trace would only cost time
+    super(message, null, false, false);
+  }
+
+  /** Tells whether the error, or the one it wraps, is a rejection. */
+  public static boolean isRejection(Throwable error) {
+    return error instanceof SignRejectedException
+        || (error != null && error.getCause() instanceof SignRejectedException);
+  }
+}
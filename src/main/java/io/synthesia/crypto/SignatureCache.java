@@ -0,0 +1,9 @@
+package io.synthesia.crypto;
+
+import java.util.Optional;
+
+public interface SignatureCache {
+  Optional<String> get(String message);
+
+  void put(String message, String signature);
+}
@@ -0,0 +1,30 @@
+package io.synthesia.crypto.limiter;
+
+import io.github.bucket4j.Bucket;
+import java.time.Duration;
+import lombok.RequiredArgsConstructor;
+
+/** Consumes every token straight from the (usually Redis backed) bucket. */
+@RequiredArgsConstructor
+public class BucketRateLimiter implements RateLimiter {
+  private final Bucket bucket;
+
+  @Override
+  public boolean tryAcquire() {
+    return this.bucket.tryConsume(1);
+  }
+
+  @Override
+  public Duration timeUntilAvailable() {
+    var probe = this.bucket.estimateAbilityToConsume(1);
+
+    return probe.canBeConsumed()
+        ? Duration.ZERO
+        : Duration.ofNanos(probe.getNanosToWaitForRefill());
+  }
+
+  @Override
+  public long availableTokens() {
+    return this.bucket.getAvailableTokens();
+  }
+}
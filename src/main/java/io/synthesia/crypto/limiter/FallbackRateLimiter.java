@@ -0,0 +1,131 @@
+package io.synthesia.crypto.limiter;
+
+import io.github.bucket4j.Bucket;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps limiting calls when Redis is slow or down. Tokens normally come from the shared limiter,
+ * but once a Redis call fails or takes longer than the latency threshold they come from an
+ * in-process bucket sized to this instance's part of the global rate. While in local mode a single
+ * call per probe interval goes to Redis, and the limiter switches back as soon as one answers in
+ * time.
+ */
+@Slf4j
+public class FallbackRateLimiter implements RateLimiter {
+  public enum Mode {
+    SHARED,
+    LOCAL
+  }
+
+  private final RateLimiter sharedRateLimiter;
+  private final Bucket localBucket;
+  private final Duration latencyThreshold;
+  private final Duration probeInterval;
+  private final Clock clock;
+  private final Timer redisLatency;
+
+  private final AtomicReference<Mode> mode = new AtomicReference<>(Mode.SHARED);
+  private final AtomicLong nextProbeAt = new AtomicLong();
+
+  public FallbackRateLimiter(
+      RateLimiter sharedRateLimiter,
+      Bucket localBucket,
+      Duration latencyThreshold,
+      Duration probeInterval,
+      Clock clock,
+      String name,
+      MeterRegistry meterRegistry) {
+    this.sharedRateLimiter = sharedRateLimiter;
+    this.localBucket = localBucket;
+    this.latencyThreshold = latencyThreshold;
+    this.probeInterval = probeInterval;
+    this.clock = clock;
+    this.redisLatency =
+        Timer.builder("rate_limiter_redis_latency").tag("limiter", name).register(meterRegistry);
+
+    Gauge.builder("rate_limiter_mode", this.mode, mode -> mode.get() == Mode.LOCAL ? 1 : 0)
+        .tag("limiter", name)
+        .register(meterRegistry);
+  }
+
+  @Override
+  public boolean tryAcquire() {
+    return call(this.sharedRateLimiter::tryAcquire, () -> this.localBucket.tryConsume(1));
+  }
+
+  @Override
+  public Duration timeUntilAvailable() {
+    return call(
+        this.sharedRateLimiter::timeUntilAvailable,
+        () -> {
+          var probe = this.localBucket.estimateAbilityToConsume(1);
+
+          return probe.canBeConsumed()
+              ? Duration.ZERO
+              : Duration.ofNanos(probe.getNanosToWaitForRefill());
+        });
+  }
+
+  @Override
+  public long availableTokens() {
+    return call(this.sharedRateLimiter::availableTokens, this.localBucket::getAvailableTokens);
+  }
+
+  @Override
+  public void close() {
+    this.sharedRateLimiter.close();
+  }
+
+  public Mode getMode() {
+    return this.mode.get();
+  }
+
+  private <T> T call(Supplier<T> shared, Supplier<T> local) {
+    if (this.mode.get() == Mode.LOCAL && !isProbeDue()) {
+      return local.get();
+    }
+
+    var start = this.clock.millis();
+
+    try {
+      var result = shared.get();
+      var latency = Duration.ofMillis(this.clock.millis() - start);
+      this.redisLatency.record(latency);
+
+      if (latency.compareTo(this.latencyThreshold) > 0) {
+        switchToLocal("Redis answered in " + latency.toMillis() + "ms");
+      } else if (this.mode.compareAndSet(Mode.LOCAL, Mode.SHARED)) {
+        log.info("Redis recovered, taking tokens from the shared limiter again");
+      }
+
+      return result;
+    } catch (RuntimeException e) {
+      switchToLocal(e.getMessage());
+      return local.get();
+    }
+  }
+
+  private boolean isProbeDue() {
+    var now = this.clock.millis();
+    var probeAt = this.nextProbeAt.get();
+
+    return now >= probeAt
+        && this.nextProbeAt.compareAndSet(probeAt, now + probeInterval.toMillis());
+  }
+
+  private void switchToLocal(String reason) {
+    this.nextProbeAt.set(this.clock.millis() + this.probeInterval.toMillis());
+
+    if (this.mode.compareAndSet(Mode.SHARED, Mode.LOCAL)) {
+      log.warn("Falling back to the local rate limiter: {}", reason);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package io.synthesia.crypto.limiter;
+
+import io.github.bucket4j.Bucket;
+import io.micrometer.core.instrument.Counter;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reserves small batches of tokens from the shared bucket and hands them out locally, so that only
+ * one in every {@code leaseSize} acquisitions costs a round trip to Redis.
+ *
+ * <p>Tokens that are not used before the lease expires are given back to the shared bucket, which
+ * keeps other instances from being starved. When the shared bucket is found empty, this instance
+ * remembers until when it is expected to stay empty and rejects locally in the meantime.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class LeasingRateLimiter implements RateLimiter {
+  private final Bucket bucket;
+  private final long leaseSize;
+  private final Duration leaseDuration;
+  private final Clock clock;
+
+  private final Counter leasedTokens;
+  private final Counter returnedTokens;
+  private final Counter localRejections;
+
+  private long availableTokens;
+  private long leaseExpiresAt;
+  private long dryUntil;
+
+  @Override
+  public synchronized boolean tryAcquire() {
+    var now = this.clock.millis();
+
+    if (now >= this.leaseExpiresAt) {
+      returnLease();
+    }
+
+    if (this.availableTokens > 0) {
+      this.availableTokens--;
+      return true;
+    }
+
+    if (now < this.dryUntil) {
+      this.localRejections.increment();
+      return false;
+    }
+
+    var acquired = this.bucket.tryConsumeAsMuchAsPossible(this.leaseSize);
+
+    if (acquired == 0) {
+      markDry(now);
+      return false;
+    }
+
+    this.leasedTokens.increment(acquired);
+    this.availableTokens = acquired - 1;
+    this.leaseExpiresAt = now + this.leaseDuration.toMillis();
+
+    return true;
+  }
+
+  @Override
+  public synchronized Duration timeUntilAvailable() {
+    var now = this.clock.millis();
+
+    if (this.availableTokens > 0 && now < this.leaseExpiresAt) {
+      return Duration.ZERO;
+    }
+
+    if (now < this.dryUntil) {
+      return Duration.ofMillis(this.dryUntil - now);
+    }
+
+    var probe = this.bucket.estimateAbilityToConsume(1);
+
+    return probe.canBeConsumed()
+        ? Duration.ZERO
+        : Duration.ofNanos(probe.getNanosToWaitForRefill());
+  }
+
+  @Override
+  public synchronized long availableTokens() {
+    var now = this.clock.millis();
+    var leased = now < this.leaseExpiresAt ? this.availableTokens : 0;
+
+    if (now < this.dryUntil) {
+      return leased;
+    }
+
+    return leased + this.bucket.getAvailableTokens();
+  }
+
+  /** Gives back the unused part of the current lease once it has expired. */
+  public synchronized void expireLease() {
+    if (this.clock.millis() >= this.leaseExpiresAt) {
+      returnLease();
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    returnLease();
+  }
+
+  /**
+   * Other instances may return their leases before the bucket refills, so the bucket is never
+   * assumed to stay dry for longer than a lease.
+   */
+  private void markDry(long now) {
+    var probe = this.bucket.estimateAbilityToConsume(1);
+    var millisToRefill = TimeUnit.NANOSECONDS.toMillis(probe.getNanosToWaitForRefill());
+
+    this.dryUntil = now + Math.min(millisToRefill, this.leaseDuration.toMillis());
+  }
+
+  private void returnLease() {
+    if (this.availableTokens == 0) {
+      return;
+    }
+
+    var unused = this.availableTokens;
+    this.availableTokens = 0;
+
+    try {
+      this.bucket.addTokens(unused);
+      this.returnedTokens.increment(unused);
+    } catch (Exception e) {
+      log.warn("Unable to return {} leased tokens", unused, e);
+    }
+  }
+}
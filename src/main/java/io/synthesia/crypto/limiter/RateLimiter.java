@@ -0,0 +1,19 @@
+package io.synthesia.crypto.limiter;
+
+import java.time.Duration;
+
+/** Guards the upstream API so that it is never called more often than it allows. */
+public interface RateLimiter extends AutoCloseable {
+  /** Takes a single token, returning false when none is available. */
+  boolean tryAcquire();
+
+  /** Estimates how long until a token can be taken, without taking it. */
+  Duration timeUntilAvailable();
+
+  /** Estimates how many tokens can be taken right now, without taking them. */
+  long availableTokens();
+
+  /** Gives back any capacity held locally. Called once on shutdown. */
+  @Override
+  default void close() {}
+}
@@ -0,0 +1,81 @@
+package io.synthesia.crypto.limiter;
+
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.synthesia.redis.LuaScript;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.SneakyThrows;
+
+/**
+ * Token bucket kept in Redis and updated by a Lua script, so each call is a single round trip no
+ * matter how many instances compete for the key. Calls are sent over the shared async connection,
+ * where Lettuce pipelines them with the rest of the traffic.
+ */
+public class RedisScriptRateLimiter implements RateLimiter {
+  private static final LuaScript SCRIPT = LuaScript.load("/scripts/token-bucket.lua");
+
+  private final RedisAsyncCommands<String, String> commands;
+  private final String[] keys;
+  private final String capacity;
+  private final String periodInMicros;
+  private final Duration timeout;
+
+  public RedisScriptRateLimiter(
+      RedisAsyncCommands<String, String> commands,
+      String key,
+      long capacity,
+      Duration period,
+      Duration timeout) {
+    this.commands = commands;
+    this.keys = new String[] {key};
+    this.capacity = String.valueOf(capacity);
+    this.periodInMicros = String.valueOf(TimeUnit.NANOSECONDS.toMicros(period.toNanos()));
+    this.timeout = timeout;
+  }
+
+  @Override
+  public boolean tryAcquire() {
+    return run(1).get(0) == 1;
+  }
+
+  @Override
+  public Duration timeUntilAvailable() {
+    return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(run(0).get(2)));
+  }
+
+  @Override
+  public long availableTokens() {
+    return run(0).get(1);
+  }
+
+  private List<Long> run(long requested) {
+    return await(
+        this.timeout,
+        SCRIPT.run(
+            this.commands,
+            ScriptOutputType.MULTI,
+            this.keys,
+            this.capacity,
+            this.periodInMicros,
+            String.valueOf(requested)));
+  }
+
+  /** Waits for a script result, failing like a Redis command would when it takes too long. */
+  @SneakyThrows
+  static List<Long> await(Duration timeout, CompletableFuture<List<Long>> result) {
+    try {
+      return result.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      throw e.getCause();
+    } catch (TimeoutException e) {
+      result.cancel(true);
+      throw new RedisCommandTimeoutException("Rate limiter script timed out after " + timeout);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package io.synthesia.crypto.limiter;
+
+import java.time.Duration;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Lets a thread take a token ahead of the call that spends it. A reserved token is taken from the
+ * delegate straight away and held for the thread that reserved it, whose next {@link #tryAcquire()}
+ * spends it, so whoever waited for a token is sure to have one however many other threads woke up
+ * for it.
+ *
+ * <p>A token that was not spent, because the call was served from a cache or joined another one,
+ * stays with the thread and covers its next reservation.
+ */
+@RequiredArgsConstructor
+public class ReservingRateLimiter implements RateLimiter {
+  private final RateLimiter delegate;
+
+  private final ThreadLocal<Boolean> reserved = ThreadLocal.withInitial(() -> false);
+
+  /** Takes a token for the current thread, returning false when none is available. */
+  public boolean reserve() {
+    if (this.reserved.get()) {
+      return true;
+    }
+
+    if (!this.delegate.tryAcquire()) {
+      return false;
+    }
+
+    this.reserved.set(true);
+    return true;
+  }
+
+  @Override
+  public boolean tryAcquire() {
+    if (this.reserved.get()) {
+      this.reserved.set(false);
+      return true;
+    }
+
+    return this.delegate.tryAcquire();
+  }
+
+  @Override
+  public Duration timeUntilAvailable() {
+    return this.delegate.timeUntilAvailable();
+  }
+
+  @Override
+  public long availableTokens() {
+    return this.delegate.availableTokens();
+  }
+
+  @Override
+  public void close() {
+    this.delegate.close();
+  }
+}
@@ -0,0 +1,102 @@
+package io.synthesia.crypto.limiter;
+
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.micrometer.core.instrument.Counter;
+import io.synthesia.redis.LuaScript;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Splits the upstream budget between live requests and the backlog. The bucket that enforces the
+ * upstream limit and what is left of each lane's guaranteed share for the current period are kept
+ * in a single Redis hash, and a Lua script takes a token from both in one atomic round trip.
+ *
+ * <p>A lane within its share takes from its share and the bucket. A lane past its share may only
+ * borrow the tokens above what is left of both shares, so the other lane always keeps its unused
+ * share, whether it has been active or not.
+ */
+public class TokenAllocator {
+  private static final LuaScript SCRIPT = LuaScript.load("/scripts/token-allocation.lua");
+
+  public enum Lane {
+    SYNC,
+    ASYNC
+  }
+
+  private final RedisAsyncCommands<String, String> commands;
+  private final String[] keys;
+  private final String capacity;
+  private final String periodInMicros;
+  private final String syncShare;
+  private final String asyncShare;
+  private final Map<Lane, Counter> borrowedTokens;
+  private final Duration timeout;
+
+  public TokenAllocator(
+      RedisAsyncCommands<String, String> commands,
+      String key,
+      long capacity,
+      Duration period,
+      Map<Lane, Long> laneShares,
+      Map<Lane, Counter> borrowedTokens,
+      Duration timeout) {
+    this.commands = commands;
+    this.keys = new String[] {key};
+    this.capacity = String.valueOf(capacity);
+    this.periodInMicros = String.valueOf(TimeUnit.NANOSECONDS.toMicros(period.toNanos()));
+    this.syncShare = String.valueOf(laneShares.get(Lane.SYNC));
+    this.asyncShare = String.valueOf(laneShares.get(Lane.ASYNC));
+    this.borrowedTokens = borrowedTokens;
+    this.timeout = timeout;
+  }
+
+  public RateLimiter rateLimiterFor(Lane lane) {
+    return new LaneRateLimiter(lane);
+  }
+
+  private List<Long> run(Lane lane, long requested) {
+    return RedisScriptRateLimiter.await(
+        this.timeout,
+        SCRIPT.run(
+            this.commands,
+            ScriptOutputType.MULTI,
+            this.keys,
+            this.capacity,
+            this.periodInMicros,
+            this.syncShare,
+            this.asyncShare,
+            lane.name().toLowerCase(Locale.ROOT),
+            String.valueOf(requested)));
+  }
+
+  @RequiredArgsConstructor
+  private class LaneRateLimiter implements RateLimiter {
+    private final Lane lane;
+
+    @Override
+    public boolean tryAcquire() {
+      var result = run(this.lane, 1);
+
+      if (result.get(1) == 1) {
+        borrowedTokens.get(this.lane).increment();
+      }
+
+      return result.get(0) == 1;
+    }
+
+    @Override
+    public Duration timeUntilAvailable() {
+      return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(run(this.lane, 0).get(3)));
+    }
+
+    @Override
+    public long availableTokens() {
+      return run(this.lane, 0).get(2);
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package io.synthesia.di;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.redis.lettuce.cas.LettuceBasedProxyManager;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.synthesia.Configuration;
+import io.synthesia.api.ClientQuota;
+import io.synthesia.api.SignApi;
+import io.synthesia.api.SyncRetryPolicy;
+import io.synthesia.async.MessageSigningQueue;
+import io.synthesia.async.WebhookClient;
+import io.synthesia.crypto.CryptoClient;
+import io.synthesia.crypto.limiter.RateLimiter;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+
+public class ApiModule extends AbstractModule {
+  @Provides
+  @Singleton
+  public SignApi signApiProvider(
+      @Named("sync") CryptoClient cryptoClient,
+      MessageSigningQueue messageSigningQueue,
+      WebhookClient webhookClient,
+      @Named("sync") RateLimiter rateLimiter,
+      LettuceBasedProxyManager<byte[]> proxyManager,
+      MeterRegistry meterRegistry) {
+    Counter retriesCounter = Counter.builder("api_sync_retry").register(meterRegistry);
+
+    var retryPolicy =
+        new SyncRetryPolicy(
+            rateLimiter,
+            Configuration.getSyncRetryMaxAttempts(),
+            Duration.ofMillis(Configuration.getClientTimeoutInSeconds() * 1000L / 2),
+            retriesCounter);
+
+    return new SignApi(
+        cryptoClient,
+        messageSigningQueue,
+        webhookClient,
+        Duration.ofMillis(Configuration.getSyncResponseBudgetInMillis()),
+        retryPolicy,
+        clientQuota(proxyManager, meterRegistry));
+  }
+
+  private ClientQuota clientQuota(
+      LettuceBasedProxyManager<byte[]> proxyManager, MeterRegistry meterRegistry) {
+    if (!Configuration.isClientQuotaEnabled()) {
+      return null;
+    }
+
+    Bandwidth limit =
+        Bandwidth.simple(
+            Configuration.getClientQuotaCapacity(),
+            Duration.ofSeconds(Configuration.getClientQuotaPeriodInSeconds()));
+
+    BucketConfiguration configuration = BucketConfiguration.builder().addLimit(limit).build();
+
+    Counter localRejectionsCounter =
+        Counter.builder("api_quota_rejection").tag("path", "local").register(meterRegistry);
+    Counter sharedRejectionsCounter =
+        Counter.builder("api_quota_rejection").tag("path", "shared").register(meterRegistry);
+    Counter errorsCounter = Counter.builder("api_quota_error").register(meterRegistry);
+
+    // Buckets expire once they have refilled, so idle clients do not leave keys behind
+    return new ClientQuota(
+        clientId ->
+            proxyManager
+                .builder()
+                .build(("quota:" + clientId).getBytes(StandardCharsets.UTF_8), configuration),
+        Configuration.getClientApiKeys(),
+        Configuration.getClientQuotaMaxRejectedClients(),
+        Clock.systemUTC(),
+        localRejectionsCounter,
+        sharedRejectionsCounter,
+        errorsCounter);
+  }
+}
@@ -1,42 +1,140 @@
 package io.synthesia.di;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.synthesia.Configuration;
+import io.synthesia.async.AsyncMessageSigningProcessor;
+import io.synthesia.async.BatchingWebhookClient;
+import io.synthesia.async.BulkheadWebhookClient;
 import io.synthesia.async.HttpWebhookClient;
 import io.synthesia.async.MessageSigningConsumer;
 import io.synthesia.async.MessageSigningQueue;
 import io.synthesia.async.MessageSingingProcessor;
+import io.synthesia.async.RingBufferBlockingQueue;
+import io.synthesia.async.SigningRetryPolicy;
+import io.synthesia.async.TokenGate;
+import io.synthesia.async.WaitStrategy;
 import io.synthesia.async.WebhookClient;
+import io.synthesia.async.WebhookDeliveryProcessor;
+import io.synthesia.async.claimcheck.ClaimCheck;
 import io.synthesia.async.dto.SignRequestMessage;
 import io.synthesia.crypto.CryptoClient;
-import java.net.http.HttpClient;
+import io.synthesia.crypto.limiter.RateLimiter;
+import io.synthesia.crypto.limiter.ReservingRateLimiter;
+import java.time.Clock;
 import java.time.Duration;
+import java.util.Random;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
 
 public class AsyncModule extends AbstractModule {
+  private static final String RING_BUFFER_QUEUE_TYPE = "ring-buffer";
+
   @Provides
   @Singleton
   public BlockingQueue<SignRequestMessage> blockingQueueProvider() {
-    return new LinkedBlockingDeque<>(Configuration.getAsyncQueueSize());
+    return handoffQueue();
+  }
+
+  @Provides
+  @Singleton
+  @Named("delivery")
+  public BlockingQueue<SignRequestMessage> deliveriesBlockingQueueProvider() {
+    return handoffQueue();
   }
 
   @Provides
   @Singleton
-  public WebhookClient webhookClientProvider() {
-    var httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(500)).build();
+  public WebhookClient webhookClientProvider(MeterRegistry meterRegistry) {
+    var httpClient =
+        HttpClients.newHttpClient(
+            "webhook",
+            Duration.ofMillis(Configuration.getWebhookConnectTimeoutInMillis()),
+            meterRegistry);
 
-    return new HttpWebhookClient(
-        httpClient, Duration.ofSeconds(Configuration.getClientTimeoutInSeconds()));
+    var webhookClient =
+        new HttpWebhookClient(
+            httpClient,
+            Duration.ofSeconds(Configuration.getClientTimeoutInSeconds()),
+            new ObjectMapper());
+
+    var bulkheadWebhookClient =
+        new BulkheadWebhookClient(
+            webhookClient,
+            Configuration.getWebhookMaxConcurrencyPerHost(),
+            Duration.ofMillis(Configuration.getWebhookHostPermitWaitInMillis()),
+            Configuration.getWebhookMaxTrackedHosts(),
+            Configuration.getWebhookHostFailureThreshold(),
+            Duration.ofSeconds(Configuration.getWebhookHostCooldownInSeconds()).toMillis(),
+            Clock.systemUTC(),
+            meterRegistry);
+
+    var batchingHosts = Configuration.getWebhookBatchingHosts();
+
+    if (batchingHosts.isEmpty()) {
+      return bulkheadWebhookClient;
+    }
+
+    DistributionSummary batchSize =
+        DistributionSummary.builder("webhook_batch_size").register(meterRegistry);
+
+    return new BatchingWebhookClient(
+        bulkheadWebhookClient,
+        batchingHosts,
+        Duration.ofMillis(Configuration.getWebhookBatchLingerInMillis()),
+        Configuration.getWebhookMaxBatchSize(),
+        Schedulers.newDaemonScheduler("webhook-batcher"),
+        batchSize);
   }
 
   @Provides
   @Singleton
   public MessageSigningConsumer messageSigningConsumerProvider(
-      MessageSigningQueue messageSigningQueue, BlockingQueue<SignRequestMessage> consumerQueue) {
-    return new MessageSigningConsumer(messageSigningQueue, consumerQueue);
+      MessageSigningQueue messageSigningQueue,
+      BlockingQueue<SignRequestMessage> consumerQueue,
+      CryptoClient cryptoClient,
+      Provider<ReservingRateLimiter> rateLimiter) {
+    return new MessageSigningConsumer(
+        messageSigningQueue,
+        consumerQueue,
+        tokenGate(rateLimiter, cryptoClient, messageSigningQueue, consumerQueue));
+  }
+
+  @Provides
+  @Singleton
+  @Named("delivery")
+  public MessageSigningConsumer deliveryConsumerProvider(
+      @Named("delivery") MessageSigningQueue deliveryQueue,
+      @Named("delivery") BlockingQueue<SignRequestMessage> deliveriesQueue) {
+    return new MessageSigningConsumer(deliveryQueue, deliveriesQueue);
+  }
+
+  @Provides
+  @Singleton
+  public SigningRetryPolicy signingRetryPolicyProvider(
+      MeterRegistry meterRegistry,
+      MessageSigningQueue messageSigningQueue,
+      RateLimiter rateLimiter) {
+    Counter retriedCounter = Counter.builder("processor_message_retried").register(meterRegistry);
+    Counter deadLetteredCounter =
+        Counter.builder("processor_message_dead_lettered").register(meterRegistry);
+
+    return new SigningRetryPolicy(
+        messageSigningQueue,
+        rateLimiter,
+        Configuration.getSigningMaxAttempts(),
+        Duration.ofSeconds(Configuration.getSigningMaxBackoffInSeconds()),
+        new Random()::nextDouble,
+        retriedCounter,
+        deadLetteredCounter);
   }
 
   @Provides
@@ -45,9 +143,110 @@ public class AsyncModule extends AbstractModule {
       CryptoClient cryptoClient,
       WebhookClient webhookClient,
       BlockingQueue<SignRequestMessage> producerQueue,
-      MessageSigningQueue messageSigningQueue) {
+      MessageSigningQueue messageSigningQueue,
+      Provider<ReservingRateLimiter> rateLimiter,
+      SigningRetryPolicy retryPolicy,
+      @Named("delivery") Provider<MessageSigningQueue> deliveryQueue,
+      ClaimCheck claimCheck) {
+
+    return MessageSingingProcessor.builder()
+        .cryptoClient(cryptoClient)
+        .webhookClient(webhookClient)
+        .processorsQueue(producerQueue)
+        .producerQueueTimeoutInSeconds(10)
+        .messageSigningQueue(messageSigningQueue)
+        .tokenGate(tokenGate(rateLimiter, cryptoClient, messageSigningQueue, producerQueue))
+        .retryPolicy(retryPolicy)
+        .deliveryQueue(deliveryQueue(deliveryQueue))
+        .claimCheck(claimCheck)
+        .build();
+  }
+
+  @Provides
+  @Singleton
+  public AsyncMessageSigningProcessor asyncMessageSigningProcessorProvider(
+      CryptoClient cryptoClient,
+      WebhookClient webhookClient,
+      BlockingQueue<SignRequestMessage> producerQueue,
+      MessageSigningQueue messageSigningQueue,
+      Provider<ReservingRateLimiter> rateLimiter,
+      SigningRetryPolicy retryPolicy,
+      @Named("delivery") Provider<MessageSigningQueue> deliveryQueue,
+      ClaimCheck claimCheck) {
+
+    return AsyncMessageSigningProcessor.builder()
+        .cryptoClient(cryptoClient)
+        .webhookClient(webhookClient)
+        .processorsQueue(producerQueue)
+        .producerQueueTimeoutInSeconds(10)
+        .messageSigningQueue(messageSigningQueue)
+        .inFlight(new Semaphore(Configuration.getNonBlockingProcessorMaxInFlight()))
+        .tokenGate(tokenGate(rateLimiter, cryptoClient, messageSigningQueue, producerQueue))
+        .retryPolicy(retryPolicy)
+        .deliveryQueue(deliveryQueue(deliveryQueue))
+        .claimCheck(claimCheck)
+        .build();
+  }
+
+  @Provides
+  @Singleton
+  public WebhookDeliveryProcessor webhookDeliveryProcessorProvider(
+      MeterRegistry meterRegistry,
+      WebhookClient webhookClient,
+      @Named("delivery") BlockingQueue<SignRequestMessage> deliveriesQueue,
+      @Named("delivery") MessageSigningQueue deliveryQueue,
+      RateLimiter rateLimiter) {
+    Counter retriedCounter = Counter.builder("delivery_message_retried").register(meterRegistry);
+    Counter deadLetteredCounter =
+        Counter.builder("delivery_message_dead_lettered").register(meterRegistry);
+
+    var retryPolicy =
+        new SigningRetryPolicy(
+            deliveryQueue,
+            rateLimiter,
+            Configuration.getSigningMaxAttempts(),
+            Duration.ofSeconds(Configuration.getSigningMaxBackoffInSeconds()),
+            new Random()::nextDouble,
+            retriedCounter,
+            deadLetteredCounter);
+
+    return new WebhookDeliveryProcessor(
+        webhookClient, deliveriesQueue, 10, deliveryQueue, retryPolicy);
+  }
+
+  private BlockingQueue<SignRequestMessage> handoffQueue() {
+    if (RING_BUFFER_QUEUE_TYPE.equals(Configuration.getAsyncQueueType())) {
+      return new RingBufferBlockingQueue<>(
+          Configuration.getAsyncQueueSize(),
+          WaitStrategy.named(Configuration.getAsyncQueueWaitStrategy()));
+    }
+
+    return new LinkedBlockingDeque<>(Configuration.getAsyncQueueSize());
+  }
+
+  private MessageSigningQueue deliveryQueue(Provider<MessageSigningQueue> deliveryQueue) {
+    if (!Configuration.isWebhookDeliveryStageEnabled()) {
+      return null;
+    }
+
+    return deliveryQueue.get();
+  }
+
+  /** The key pool picks a key per call, so there is no single limiter to reserve tokens from. */
+  private TokenGate tokenGate(
+      Provider<ReservingRateLimiter> rateLimiter,
+      CryptoClient cryptoClient,
+      MessageSigningQueue messageSigningQueue,
+      BlockingQueue<SignRequestMessage> processorsQueue) {
+    if (!Configuration.isTokenGatedDispatchEnabled() || CryptoModule.usesApiKeyPool()) {
+      return null;
+    }
 
-    return new MessageSingingProcessor(
-        cryptoClient, webhookClient, producerQueue, 10, messageSigningQueue);
+    return new TokenGate(
+        rateLimiter.get(),
+        cryptoClient,
+        messageSigningQueue,
+        processorsQueue,
+        Duration.ofMillis(Configuration.getDispatchReleaseThresholdInMillis()));
   }
 }
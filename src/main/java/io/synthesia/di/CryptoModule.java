@@ -1,63 +1,441 @@
 package io.synthesia.di;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
+import com.google.inject.name.Named;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
 import io.github.bucket4j.BucketConfiguration;
 import io.github.bucket4j.distributed.ExpirationAfterWriteStrategy;
 import io.github.bucket4j.redis.lettuce.cas.LettuceBasedProxyManager;
+import io.lettuce.core.ClientOptions;
 import io.lettuce.core.RedisClient;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.api.StatefulRedisConnection;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.synthesia.Configuration;
+import io.synthesia.crypto.ApiKeyPool;
+import io.synthesia.crypto.CachingCryptoClient;
+import io.synthesia.crypto.CircuitBreaker;
+import io.synthesia.crypto.CoalescingCryptoClient;
 import io.synthesia.crypto.CryptoClient;
 import io.synthesia.crypto.HttpRateLimitedCryptoClient;
+import io.synthesia.crypto.InMemorySignatureCache;
+import io.synthesia.crypto.RedisSignatureCache;
+import io.synthesia.crypto.SignatureCache;
+import io.synthesia.crypto.limiter.BucketRateLimiter;
+import io.synthesia.crypto.limiter.FallbackRateLimiter;
+import io.synthesia.crypto.limiter.LeasingRateLimiter;
+import io.synthesia.crypto.limiter.RateLimiter;
+import io.synthesia.crypto.limiter.RedisScriptRateLimiter;
+import io.synthesia.crypto.limiter.ReservingRateLimiter;
+import io.synthesia.crypto.limiter.TokenAllocator;
 import java.net.http.HttpClient;
 import java.nio.charset.StandardCharsets;
+import java.time.Clock;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class CryptoModule extends AbstractModule {
+  private static final int CIRCUIT_BREAKER_WINDOW_SIZE = 10;
+  private static final int CIRCUIT_BREAKER_MINIMUM_CALLS = 4;
+  private static final Duration FALLBACK_PROBE_INTERVAL = Duration.ofSeconds(5);
+  private static final String SCRIPT_BACKEND = "script";
+
   @Provides
   @Singleton
-  public CryptoClient cryptoClientProvider(MeterRegistry meterRegistry) {
-    Bandwidth limit = Bandwidth.simple(5, Duration.ofMinutes(1));
+  public RedisClient redisClientProvider() {
+    var redisClient = RedisClient.create(Configuration.getRedisUrl());
 
-    BucketConfiguration configuration = BucketConfiguration.builder().addLimit(limit).build();
+    if (Configuration.isRateLimiterFallbackEnabled()) {
+      redisClient.setOptions(
+          ClientOptions.builder()
+              .timeoutOptions(
+                  TimeoutOptions.enabled(
+                      Duration.ofMillis(Configuration.getRedisCommandTimeoutInMillis())))
+              .build());
+    }
+
+    return redisClient;
+  }
+
+  @Provides
+  @Singleton
+  public StatefulRedisConnection<String, String> redisConnectionProvider(RedisClient redisClient) {
+    return redisClient.connect();
+  }
+
+  @Provides
+  @Singleton
+  public LettuceBasedProxyManager<byte[]> proxyManagerProvider(RedisClient redisClient) {
+    return LettuceBasedProxyManager.builderFor(redisClient)
+        .withExpirationStrategy(
+            ExpirationAfterWriteStrategy.basedOnTimeForRefillingBucketUpToMax(
+                Duration.ofSeconds(Configuration.getRateLimitPeriodInSeconds() * 2L)))
+        .build();
+  }
+
+  @Provides
+  @Singleton
+  public RateLimiter rateLimiterProvider(
+      Provider<ReservingRateLimiter> reservingRateLimiter, Provider<ApiKeyPool> apiKeyPool) {
+    if (usesApiKeyPool()) {
+      return apiKeyPool.get();
+    }
+
+    return reservingRateLimiter.get();
+  }
+
+  /** Lets the token gate take a token for a message ahead of the call that signs it. */
+  @Provides
+  @Singleton
+  public ReservingRateLimiter reservingRateLimiterProvider(
+      MeterRegistry meterRegistry,
+      LettuceBasedProxyManager<byte[]> proxyManager,
+      Provider<TokenAllocator> tokenAllocator,
+      StatefulRedisConnection<String, String> redisConnection,
+      @Named("local") Provider<Bucket> localBucket) {
+    return new ReservingRateLimiter(
+        rateLimiter(meterRegistry, proxyManager, tokenAllocator, redisConnection, localBucket));
+  }
+
+  @Provides
+  @Singleton
+  @Named("sync")
+  public RateLimiter syncRateLimiterProvider(
+      MeterRegistry meterRegistry,
+      RateLimiter rateLimiter,
+      Provider<TokenAllocator> tokenAllocator,
+      @Named("local") Provider<Bucket> localBucket) {
+    if (!usesApiKeyPool() && Configuration.isTokenAllocationEnabled()) {
+      var syncRateLimiter = tokenAllocator.get().rateLimiterFor(TokenAllocator.Lane.SYNC);
+
+      return fallbackRateLimiter(syncRateLimiter, "client-sync", localBucket, meterRegistry);
+    }
+
+    return rateLimiter;
+  }
+
+  /** The part of the global rate this instance may use on its own while Redis is unavailable. */
+  @Provides
+  @Singleton
+  @Named("local")
+  public Bucket localBucketProvider() {
+    return localBucket();
+  }
+
+  /**
+   * Every key gets a bucket of its own, so the capacity grows with the number of keys. Buckets are
+   * named after a hash of the key rather than its position, so reordering API_KEYS does not hand a
+   * key another one's bucket. The same goes for the local fallback buckets.
+   */
+  @Provides
+  @Singleton
+  public ApiKeyPool apiKeyPoolProvider(
+      MeterRegistry meterRegistry, LettuceBasedProxyManager<byte[]> proxyManager) {
+    var apiKeys = Configuration.getSynthesiaApiKeys();
+    var rateLimiters = new ArrayList<RateLimiter>();
+
+    for (var apiKey : apiKeys) {
+      var name = "client:" + ApiKeyPool.keyId(apiKey);
+      var bucket = bucket(proxyManager, name, Configuration.getRateLimitCapacity());
+
+      rateLimiters.add(
+          fallbackRateLimiter(
+              new BucketRateLimiter(bucket), name, CryptoModule::localBucket, meterRegistry));
+    }
+
+    return new ApiKeyPool(
+        apiKeys,
+        rateLimiters,
+        Duration.ofSeconds(Configuration.getApiKeySidelineInSeconds()),
+        Clock.systemUTC(),
+        meterRegistry);
+  }
+
+  @Provides
+  @Singleton
+  public TokenAllocator tokenAllocatorProvider(
+      MeterRegistry meterRegistry, StatefulRedisConnection<String, String> redisConnection) {
+    Counter syncBorrowedCounter =
+        Counter.builder("rate_limiter_borrowed_tokens").tag("lane", "sync").register(meterRegistry);
+    Counter asyncBorrowedCounter =
+        Counter.builder("rate_limiter_borrowed_tokens")
+            .tag("lane", "async")
+            .register(meterRegistry);
+
+    return new TokenAllocator(
+        redisConnection.async(),
+        "limiter:client-allocation",
+        Configuration.getRateLimitCapacity(),
+        Duration.ofSeconds(Configuration.getRateLimitPeriodInSeconds()),
+        Map.of(
+            TokenAllocator.Lane.SYNC,
+            (long) Configuration.getSyncTokenShare(),
+            TokenAllocator.Lane.ASYNC,
+            (long) Configuration.getAsyncTokenShare()),
+        Map.of(
+            TokenAllocator.Lane.SYNC, syncBorrowedCounter,
+            TokenAllocator.Lane.ASYNC, asyncBorrowedCounter),
+        Duration.ofMillis(Configuration.getRedisCommandTimeoutInMillis()));
+  }
+
+  @Provides
+  @Singleton
+  public CryptoClient cryptoClientProvider(
+      MeterRegistry meterRegistry,
+      RateLimiter rateLimiter,
+      @Named("crypto") HttpClient client,
+      Provider<CircuitBreaker> circuitBreaker,
+      @Named("local") SignatureCache localCache,
+      @Named("shared") SignatureCache sharedCache,
+      Provider<ApiKeyPool> apiKeyPool) {
+    var rateLimitedClient =
+        usesApiKeyPool()
+            ? HttpRateLimitedCryptoClient.builder().apiKeyPool(apiKeyPool.get())
+            : singleKeyClient(rateLimiter);
+
+    return cryptoClient(
+        meterRegistry, rateLimitedClient, client, circuitBreaker, localCache, sharedCache);
+  }
+
+  @Provides
+  @Singleton
+  @Named("sync")
+  public CryptoClient syncCryptoClientProvider(
+      CryptoClient cryptoClient,
+      MeterRegistry meterRegistry,
+      @Named("sync") RateLimiter rateLimiter,
+      @Named("crypto") HttpClient client,
+      Provider<CircuitBreaker> circuitBreaker,
+      @Named("local") SignatureCache localCache,
+      @Named("shared") SignatureCache sharedCache) {
+    if (usesApiKeyPool() || !Configuration.isTokenAllocationEnabled()) {
+      return cryptoClient;
+    }
+
+    return cryptoClient(
+        meterRegistry,
+        singleKeyClient(rateLimiter),
+        client,
+        circuitBreaker,
+        localCache,
+        sharedCache);
+  }
+
+  @Provides
+  @Singleton
+  @Named("crypto")
+  public HttpClient cryptoHttpClientProvider(MeterRegistry meterRegistry) {
+    return HttpClients.newHttpClient(
+        "crypto", Duration.ofSeconds(Configuration.getClientTimeoutInSeconds()), meterRegistry);
+  }
+
+  @Provides
+  @Singleton
+  public CircuitBreaker circuitBreakerProvider(MeterRegistry meterRegistry) {
+    return new CircuitBreaker(
+        CIRCUIT_BREAKER_WINDOW_SIZE,
+        CIRCUIT_BREAKER_MINIMUM_CALLS,
+        Configuration.getCircuitBreakerFailureRatePercentage() / 100.0,
+        Configuration.getCircuitBreakerSlowCallRatePercentage() / 100.0,
+        Duration.ofMillis(Configuration.getCircuitBreakerSlowCallInMillis()),
+        Duration.ofSeconds(Configuration.getCircuitBreakerOpenInSeconds()),
+        1,
+        Clock.systemUTC(),
+        meterRegistry);
+  }
+
+  @Provides
+  @Singleton
+  @Named("local")
+  public SignatureCache localSignatureCacheProvider(MeterRegistry meterRegistry) {
+    Counter evictionCounter = Counter.builder("client_cache_eviction").register(meterRegistry);
 
-    RedisClient redisClient = RedisClient.create(Configuration.getRedisUrl());
+    return new InMemorySignatureCache(
+        Configuration.getSignatureCacheSize(),
+        Duration.ofSeconds(Configuration.getSignatureCacheTtlInSeconds()),
+        Clock.systemUTC(),
+        evictionCounter);
+  }
 
-    LettuceBasedProxyManager<byte[]> proxyManager =
-        LettuceBasedProxyManager.builderFor(redisClient)
-            .withExpirationStrategy(
-                ExpirationAfterWriteStrategy.basedOnTimeForRefillingBucketUpToMax(
-                    Duration.ofMinutes(2)))
-            .build();
+  @Provides
+  @Singleton
+  @Named("shared")
+  public SignatureCache sharedSignatureCacheProvider(
+      StatefulRedisConnection<String, String> redisConnection) {
+    return new RedisSignatureCache(
+        redisConnection.sync(), Duration.ofSeconds(Configuration.getSignatureCacheTtlInSeconds()));
+  }
 
-    Bucket bucket =
-        proxyManager.builder().build("client".getBytes(StandardCharsets.UTF_8), configuration);
+  private static HttpRateLimitedCryptoClient.HttpRateLimitedCryptoClientBuilder singleKeyClient(
+      RateLimiter rateLimiter) {
+    return HttpRateLimitedCryptoClient.builder()
+        .rateLimiter(rateLimiter)
+        .apiKey(Configuration.getSynthesiaApiKey());
+  }
 
+  /**
+   * Completes the rate limited client, already given its keys, and wraps it to coalesce and cache.
+   */
+  private CryptoClient cryptoClient(
+      MeterRegistry meterRegistry,
+      HttpRateLimitedCryptoClient.HttpRateLimitedCryptoClientBuilder rateLimitedClientBuilder,
+      HttpClient client,
+      Provider<CircuitBreaker> circuitBreaker,
+      SignatureCache localCache,
+      SignatureCache sharedCache) {
     Counter success = Counter.builder("client_success").register(meterRegistry);
     Counter clientErrorsCounter = Counter.builder("client_error").register(meterRegistry);
     Counter apiRateLimitErrorCounter =
         Counter.builder("client_api_rate_limit_error").register(meterRegistry);
     Counter rateLimitCounter = Counter.builder("client_rate_limit_count").register(meterRegistry);
 
-    var client =
-        HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(Configuration.getClientTimeoutInSeconds()))
-            .build();
+    rateLimitedClientBuilder
+        .client(client)
+        .baseUrl(Configuration.getApiBaseURL())
+        .timeout(Duration.ofSeconds(Configuration.getClientTimeoutInSeconds()))
+        .success(success)
+        .errors(clientErrorsCounter)
+        .apiRateLimitError(apiRateLimitErrorCounter)
+        .rateLimit(rateLimitCounter);
 
-    return new HttpRateLimitedCryptoClient(
-        client,
-        bucket,
-        Configuration.getApiBaseURL(),
-        Configuration.getSynthesiaApiKey(),
-        Duration.ofSeconds(Configuration.getClientTimeoutInSeconds()),
-        success,
-        clientErrorsCounter,
-        apiRateLimitErrorCounter,
-        rateLimitCounter);
+    if (Configuration.isCircuitBreakerEnabled()) {
+      rateLimitedClientBuilder.circuitBreaker(circuitBreaker.get());
+    }
+
+    var rateLimitedClient = rateLimitedClientBuilder.build();
+
+    DistributionSummary callersPerFlight =
+        DistributionSummary.builder("client_coalesced_callers").register(meterRegistry);
+
+    var coalescingClient = new CoalescingCryptoClient(rateLimitedClient, callersPerFlight);
+
+    Counter localHitCounter =
+        Counter.builder("client_cache_hit").tag("tier", "local").register(meterRegistry);
+    Counter sharedHitCounter =
+        Counter.builder("client_cache_hit").tag("tier", "shared").register(meterRegistry);
+    Counter missCounter = Counter.builder("client_cache_miss").register(meterRegistry);
+
+    return new CachingCryptoClient(
+        coalescingClient, localCache, sharedCache, localHitCounter, sharedHitCounter, missCounter);
+  }
+
+  private RateLimiter rateLimiter(
+      MeterRegistry meterRegistry,
+      LettuceBasedProxyManager<byte[]> proxyManager,
+      Provider<TokenAllocator> tokenAllocator,
+      StatefulRedisConnection<String, String> redisConnection,
+      Provider<Bucket> localBucket) {
+    if (Configuration.isTokenAllocationEnabled()) {
+      var rateLimiter = tokenAllocator.get().rateLimiterFor(TokenAllocator.Lane.ASYNC);
+
+      return fallbackRateLimiter(rateLimiter, "client-async", localBucket, meterRegistry);
+    }
+
+    if (SCRIPT_BACKEND.equals(Configuration.getRateLimiterBackend())) {
+      var rateLimiter =
+          new RedisScriptRateLimiter(
+              redisConnection.async(),
+              "limiter:client",
+              Configuration.getRateLimitCapacity(),
+              Duration.ofSeconds(Configuration.getRateLimitPeriodInSeconds()),
+              Duration.ofMillis(Configuration.getRedisCommandTimeoutInMillis()));
+
+      return fallbackRateLimiter(rateLimiter, "client", localBucket, meterRegistry);
+    }
+
+    Bucket bucket = bucket(proxyManager, "client", Configuration.getRateLimitCapacity());
+
+    if (Configuration.getRateLimiterLeaseSize() <= 0) {
+      return fallbackRateLimiter(
+          new BucketRateLimiter(bucket), "client", localBucket, meterRegistry);
+    }
+
+    return fallbackRateLimiter(
+        leasingRateLimiter(bucket, meterRegistry), "client", localBucket, meterRegistry);
+  }
+
+  private Bucket bucket(LettuceBasedProxyManager<byte[]> proxyManager, String key, long capacity) {
+    Bandwidth limit =
+        Bandwidth.simple(capacity, Duration.ofSeconds(Configuration.getRateLimitPeriodInSeconds()));
+
+    BucketConfiguration configuration = BucketConfiguration.builder().addLimit(limit).build();
+
+    return proxyManager.builder().build(key.getBytes(StandardCharsets.UTF_8), configuration);
+  }
+
+  /** Each limiter that falls back gets a bucket of its own, sized by the global rate per key. */
+  private static Bucket localBucket() {
+    var capacity =
+        Math.max(1, Configuration.getRateLimitCapacity() / Configuration.getInstanceCount());
+
+    return Bucket.builder()
+        .addLimit(
+            Bandwidth.simple(
+                capacity, Duration.ofSeconds(Configuration.getRateLimitPeriodInSeconds())))
+        .build();
+  }
+
+  /** The key pool replaces token allocation and the other single-key limiters when configured. */
+  static boolean usesApiKeyPool() {
+    return !Configuration.getSynthesiaApiKeys().isEmpty();
+  }
+
+  private RateLimiter fallbackRateLimiter(
+      RateLimiter rateLimiter,
+      String name,
+      Provider<Bucket> localBucket,
+      MeterRegistry meterRegistry) {
+    if (!Configuration.isRateLimiterFallbackEnabled()) {
+      return rateLimiter;
+    }
+
+    return new FallbackRateLimiter(
+        rateLimiter,
+        localBucket.get(),
+        Duration.ofMillis(Configuration.getRedisLatencyThresholdInMillis()),
+        FALLBACK_PROBE_INTERVAL,
+        Clock.systemUTC(),
+        name,
+        meterRegistry);
+  }
+
+  private RateLimiter leasingRateLimiter(Bucket bucket, MeterRegistry meterRegistry) {
+    var leaseDuration = Duration.ofSeconds(Configuration.getRateLimiterLeaseDurationInSeconds());
+
+    Counter leasedTokensCounter =
+        Counter.builder("rate_limiter_leased_tokens").register(meterRegistry);
+    Counter returnedTokensCounter =
+        Counter.builder("rate_limiter_returned_tokens").register(meterRegistry);
+    Counter localRejectionsCounter =
+        Counter.builder("rate_limiter_local_rejection").register(meterRegistry);
+
+    var rateLimiter =
+        new LeasingRateLimiter(
+            bucket,
+            Configuration.getRateLimiterLeaseSize(),
+            leaseDuration,
+            Clock.systemUTC(),
+            leasedTokensCounter,
+            returnedTokensCounter,
+            localRejectionsCounter);
+
+    ScheduledExecutorService leaseExpiration = Schedulers.newDaemonScheduler("lease-expiration");
+
+    leaseExpiration.scheduleAtFixedRate(
+        rateLimiter::expireLease,
+        leaseDuration.toMillis(),
+        leaseDuration.toMillis(),
+        TimeUnit.MILLISECONDS);
+
+    return rateLimiter;
   }
 }
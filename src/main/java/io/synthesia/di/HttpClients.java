@@ -0,0 +1,39 @@
+package io.synthesia.di;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.synthesia.Configuration;
+import io.synthesia.http.InstrumentedHttpClient;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class HttpClients {
+  private HttpClients() {}
+
+  /**
+   * Builds an instrumented client using the configured protocol version and its own executor. Plain
+   * {@code http://} URLs are upgraded to h2c through the {@code Upgrade} header on the first
+   * request of each connection.
+   */
+  static HttpClient newHttpClient(String name, Duration connectTimeout, MeterRegistry registry) {
+    var threadCount = new AtomicInteger();
+
+    var client =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.valueOf(Configuration.getHttpVersion()))
+            .connectTimeout(connectTimeout)
+            .executor(
+                Executors.newFixedThreadPool(
+                    Configuration.getHttpClientExecutorThreads(),
+                    runnable -> {
+                      var thread =
+                          new Thread(runnable, name + "-http-" + threadCount.incrementAndGet());
+                      thread.setDaemon(true);
+                      return thread;
+                    }))
+            .build();
+
+    return new InstrumentedHttpClient(client, name, registry);
+  }
+}
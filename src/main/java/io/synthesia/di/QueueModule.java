@@ -2,16 +2,51 @@ package io.synthesia.di;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.synthesia.Configuration;
+import io.synthesia.async.JournalMessageSigningQueue;
 import io.synthesia.async.MessageSigningQueue;
+import io.synthesia.async.RedisStreamMessageSigningQueue;
+import io.synthesia.async.SqsDeleteMessageBatcher;
 import io.synthesia.async.SqsMessageSigningQueue;
+import io.synthesia.async.SqsSendMessageBatcher;
+import io.synthesia.async.claimcheck.BlobStore;
+import io.synthesia.async.claimcheck.ClaimCheck;
+import io.synthesia.async.claimcheck.FileSystemBlobStore;
+import io.synthesia.async.claimcheck.S3BlobStore;
+import io.synthesia.async.codec.BinaryMessageCodec;
+import io.synthesia.async.codec.JsonMessageCodec;
+import io.synthesia.async.codec.MessageCodec;
 import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.BucketAlreadyOwnedByYouException;
+import software.amazon.awssdk.services.s3.model.BucketLifecycleConfiguration;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.ExpirationStatus;
+import software.amazon.awssdk.services.s3.model.LifecycleExpiration;
+import software.amazon.awssdk.services.s3.model.LifecycleRule;
+import software.amazon.awssdk.services.s3.model.LifecycleRuleFilter;
+import software.amazon.awssdk.services.s3.model.PutBucketLifecycleConfigurationRequest;
 import software.amazon.awssdk.services.sqs.SqsClient;
 import software.amazon.awssdk.services.sqs.model.CreateQueueRequest;
 import software.amazon.awssdk.services.sqs.model.CreateQueueResponse;
@@ -19,29 +54,316 @@ import software.amazon.awssdk.services.sqs.model.CreateQueueResponse;
 @Slf4j
 public class QueueModule extends AbstractModule {
   private static final String QUEUE_NAME = "sign-queue";
+  private static final String DELIVERY_QUEUE_NAME = "sign-delivery-queue";
+  private static final String DEAD_LETTER_QUEUE_NAME = "sign-queue-dead-letter";
+  private static final String JOURNAL_BACKEND = "journal";
+  private static final String REDIS_STREAM_BACKEND = "redis-stream";
+  private static final String CONSUMER_GROUP = "signers";
+  private static final String BINARY_CODEC = "binary";
+  private static final String S3_BLOB_STORE = "s3";
+  private static final String BLOB_KEY_PREFIX = "messages/";
+
+  /** Pending messages of consumers that are gone are claimed by others after the timeout. */
+  private static final String CONSUMER_NAME = "consumer-" + UUID.randomUUID();
+
+  private static final int WAIT_TIME_IN_SECONDS = 10;
+  private static final int VISIBILITY_TIMEOUT_IN_SECONDS = 20;
 
   @SneakyThrows
   @Provides
   @Singleton
-  public MessageSigningQueue messageSigningQueueProvider() {
+  public SqsClient sqsClientProvider() {
     final var clientBuilder =
         SqsClient.builder()
             .credentialsProvider(EnvironmentVariableCredentialsProvider.create())
             .region(Region.US_EAST_1)
             .endpointOverride(new URI(Configuration.getSqsUrl()));
 
-    final var client = clientBuilder.build();
+    return clientBuilder.build();
+  }
+
+  /** Either codec reads JSON bodies, so switching is safe on every backend. */
+  @Provides
+  @Singleton
+  public MessageCodec messageCodecProvider() {
+    var jsonCodec = new JsonMessageCodec(new ObjectMapper());
+
+    if (!BINARY_CODEC.equals(Configuration.getMessageCodec())) {
+      return jsonCodec;
+    }
+
+    return new BinaryMessageCodec(Configuration.getMessageCompressionThresholdInBytes(), jsonCodec);
+  }
+
+  @SneakyThrows
+  @Provides
+  @Singleton
+  public S3Client s3ClientProvider() {
+    return S3Client.builder()
+        .credentialsProvider(EnvironmentVariableCredentialsProvider.create())
+        .region(Region.US_EAST_1)
+        .endpointOverride(new URI(Configuration.getS3Url()))
+        // LocalStack only serves buckets on the path, not as a subdomain
+        .forcePathStyle(true)
+        .build();
+  }
+
+  @Provides
+  @Singleton
+  public BlobStore blobStoreProvider(Provider<S3Client> s3Client) {
+    var retentionInDays = Configuration.getBlobStoreRetentionInDays();
+
+    if (!S3_BLOB_STORE.equals(Configuration.getBlobStoreBackend())) {
+      return this.fileSystemBlobStore(Duration.ofDays(retentionInDays));
+    }
+
+    var client = s3Client.get();
+    this.createS3Bucket(client, Configuration.getBlobStoreBucket());
+    this.expireS3Objects(client, Configuration.getBlobStoreBucket(), retentionInDays);
+
+    return new S3BlobStore(client, Configuration.getBlobStoreBucket(), BLOB_KEY_PREFIX);
+  }
+
+  /**
+   * Payloads of dead-lettered messages are kept so they can be inspected, a daily sweep deletes
+   * them once they are older than the retention.
+   */
+  private BlobStore fileSystemBlobStore(Duration retention) {
+    var blobStore = new FileSystemBlobStore(Path.of(Configuration.getBlobStoreDirectory()));
+
+    ScheduledExecutorService expiration = Schedulers.newDaemonScheduler("blob-expiration");
+
+    expiration.scheduleWithFixedDelay(
+        () -> {
+          try {
+            var deleted = blobStore.deleteOlderThan(Instant.now().minus(retention));
+            log.debug("Deleted {} expired payloads", deleted);
+          } catch (Exception e) {
+            log.warn("Unable to delete expired payloads", e);
+          }
+        },
+        0,
+        1,
+        TimeUnit.DAYS);
+
+    return blobStore;
+  }
+
+  @Provides
+  @Singleton
+  public ClaimCheck claimCheckProvider(Provider<BlobStore> blobStore) {
+    if (!Configuration.isClaimCheckEnabled()) {
+      return ClaimCheck.disabled();
+    }
+
+    return new ClaimCheck(blobStore.get(), Configuration.getClaimCheckThresholdInBytes());
+  }
+
+  @Provides
+  @Singleton
+  public MessageSigningQueue messageSigningQueueProvider(
+      MeterRegistry meterRegistry,
+      MessageCodec messageCodec,
+      Provider<ClaimCheck> claimCheck,
+      Provider<SqsClient> sqsClient,
+      @Named("dead-letter") Provider<MessageSigningQueue> deadLetterQueue,
+      Provider<RedisClient> redisClient,
+      Provider<StatefulRedisConnection<String, String>> redisConnection) {
+    if (JOURNAL_BACKEND.equals(Configuration.getQueueBackend())) {
+      return this.journalQueue(QUEUE_NAME, messageCodec, deadLetterQueue.get());
+    }
+
+    if (REDIS_STREAM_BACKEND.equals(Configuration.getQueueBackend())) {
+      return this.redisStreamQueue(
+          QUEUE_NAME,
+          redisClient.get(),
+          redisConnection.get(),
+          messageCodec,
+          deadLetterQueue.get());
+    }
+
+    final SqsClient client = sqsClient.get();
+    final String queueUrl = this.createSqsQueue(client, QUEUE_NAME);
+    final String deadLetterQueueUrl = this.createSqsQueue(client, DEAD_LETTER_QUEUE_NAME);
+
+    return SqsMessageSigningQueue.builder()
+        .client(client)
+        .queueUrl(queueUrl)
+        .waitTimeInSeconds(WAIT_TIME_IN_SECONDS)
+        .visibilityTimeout(VISIBILITY_TIMEOUT_IN_SECONDS)
+        .codec(messageCodec)
+        .sendBatcher(this.sendMessageBatcher(client, queueUrl, meterRegistry))
+        .deleteBatcher(this.deleteMessageBatcher(client, queueUrl, meterRegistry))
+        .deadLetterQueueUrl(deadLetterQueueUrl)
+        .claimCheck(claimCheck.get())
+        .build();
+  }
+
+  /** Holds messages that have been signed but not yet delivered to their webhook. */
+  @Provides
+  @Singleton
+  @Named("delivery")
+  public MessageSigningQueue deliveryQueueProvider(
+      MessageCodec messageCodec,
+      Provider<SqsClient> sqsClient,
+      @Named("dead-letter") Provider<MessageSigningQueue> deadLetterQueue,
+      Provider<RedisClient> redisClient,
+      Provider<StatefulRedisConnection<String, String>> redisConnection) {
+    if (JOURNAL_BACKEND.equals(Configuration.getQueueBackend())) {
+      return this.journalQueue(DELIVERY_QUEUE_NAME, messageCodec, deadLetterQueue.get());
+    }
+
+    if (REDIS_STREAM_BACKEND.equals(Configuration.getQueueBackend())) {
+      return this.redisStreamQueue(
+          DELIVERY_QUEUE_NAME,
+          redisClient.get(),
+          redisConnection.get(),
+          messageCodec,
+          deadLetterQueue.get());
+    }
+
+    final SqsClient client = sqsClient.get();
+    final String queueUrl = this.createSqsQueue(client, DELIVERY_QUEUE_NAME);
+    final String deadLetterQueueUrl = this.createSqsQueue(client, DEAD_LETTER_QUEUE_NAME);
+
+    return SqsMessageSigningQueue.builder()
+        .client(client)
+        .queueUrl(queueUrl)
+        .waitTimeInSeconds(WAIT_TIME_IN_SECONDS)
+        .visibilityTimeout(VISIBILITY_TIMEOUT_IN_SECONDS)
+        .codec(messageCodec)
+        .deadLetterQueueUrl(deadLetterQueueUrl)
+        .build();
+  }
+
+  /** Not used by the SQS backend, SQS queues point at their dead-letter queue by URL. */
+  @Provides
+  @Singleton
+  @Named("dead-letter")
+  public MessageSigningQueue deadLetterQueueProvider(
+      MessageCodec messageCodec,
+      Provider<RedisClient> redisClient,
+      Provider<StatefulRedisConnection<String, String>> redisConnection) {
+    if (REDIS_STREAM_BACKEND.equals(Configuration.getQueueBackend())) {
+      return this.redisStreamQueue(
+          DEAD_LETTER_QUEUE_NAME, redisClient.get(), redisConnection.get(), messageCodec, null);
+    }
+
+    return this.journalQueue(DEAD_LETTER_QUEUE_NAME, messageCodec, null);
+  }
+
+  /** Only the signing queue carries payloads, signed messages are delivered without theirs. */
+  private MessageSigningQueue redisStreamQueue(
+      String queueName,
+      RedisClient redisClient,
+      StatefulRedisConnection<String, String> redisConnection,
+      MessageCodec messageCodec,
+      MessageSigningQueue deadLetterQueue) {
+    var waitTime = Duration.ofSeconds(WAIT_TIME_IN_SECONDS);
+
+    // Reads block for up to the wait time, which is longer than the command timeout the shared
+    // client may enforce, so they go through a client of their own sharing its event loops
+    var blockingClient =
+        RedisClient.create(redisClient.getResources(), Configuration.getRedisUrl());
+    blockingClient.setOptions(
+        ClientOptions.builder().timeoutOptions(TimeoutOptions.enabled()).build());
+
+    var blockingConnection = blockingClient.connect();
+    blockingConnection.setTimeout(waitTime.multipliedBy(2));
+
+    return new RedisStreamMessageSigningQueue(
+        redisConnection.async(),
+        blockingConnection,
+        queueName,
+        CONSUMER_GROUP,
+        CONSUMER_NAME,
+        waitTime,
+        Duration.ofSeconds(VISIBILITY_TIMEOUT_IN_SECONDS),
+        messageCodec,
+        deadLetterQueue);
+  }
+
+  private MessageSigningQueue journalQueue(
+      String queueName, MessageCodec messageCodec, MessageSigningQueue deadLetterQueue) {
+    return new JournalMessageSigningQueue(
+        Path.of(Configuration.getJournalDirectory(), queueName),
+        Configuration.getJournalSegmentSizeInMegabytes() * 1024 * 1024,
+        Duration.ofSeconds(WAIT_TIME_IN_SECONDS),
+        Duration.ofSeconds(VISIBILITY_TIMEOUT_IN_SECONDS),
+        Configuration.isJournalFsyncEnabled(),
+        messageCodec,
+        deadLetterQueue);
+  }
+
+  private SqsSendMessageBatcher sendMessageBatcher(
+      SqsClient client, String queueUrl, MeterRegistry meterRegistry) {
+    if (!Configuration.isSqsSendBatchingEnabled()) {
+      return null;
+    }
+
+    DistributionSummary batchFillRatio =
+        DistributionSummary.builder("queue_send_batch_fill_ratio").register(meterRegistry);
+    Timer flushLatency = Timer.builder("queue_send_batch_flush").register(meterRegistry);
+
+    return new SqsSendMessageBatcher(
+        client,
+        queueUrl,
+        Duration.ofMillis(Configuration.getSqsSendBatchLingerInMillis()),
+        Schedulers.newDaemonScheduler("sqs-send-batcher"),
+        batchFillRatio,
+        flushLatency);
+  }
+
+  private SqsDeleteMessageBatcher deleteMessageBatcher(
+      SqsClient client, String queueUrl, MeterRegistry meterRegistry) {
+    if (!Configuration.isSqsDeleteBatchingEnabled()) {
+      return null;
+    }
+
+    DistributionSummary batchFillRatio =
+        DistributionSummary.builder("queue_delete_batch_fill_ratio").register(meterRegistry);
+    Timer flushLatency = Timer.builder("queue_delete_batch_flush").register(meterRegistry);
+
+    return new SqsDeleteMessageBatcher(
+        client,
+        queueUrl,
+        Duration.ofMillis(Configuration.getSqsDeleteBatchIntervalInMillis()),
+        Schedulers.newDaemonScheduler("sqs-delete-batcher"),
+        batchFillRatio,
+        flushLatency);
+  }
+
+  private void createS3Bucket(S3Client client, String bucket) {
+    try {
+      client.createBucket(CreateBucketRequest.builder().bucket(bucket).build());
+      log.debug("Created bucket {}", bucket);
+    } catch (BucketAlreadyOwnedByYouException e) {
+      log.debug("Bucket {} already exists", bucket);
+    }
+  }
 
-    final String queueUrl = this.createSqsQueue(client);
+  /** The S3 counterpart of the file system sweep, S3 deletes the expired payloads itself. */
+  private void expireS3Objects(S3Client client, String bucket, int retentionInDays) {
+    var rule =
+        LifecycleRule.builder()
+            .id("expire-payloads")
+            .filter(LifecycleRuleFilter.builder().prefix(BLOB_KEY_PREFIX).build())
+            .expiration(LifecycleExpiration.builder().days(retentionInDays).build())
+            .status(ExpirationStatus.ENABLED)
+            .build();
 
-    return new SqsMessageSigningQueue(client, queueUrl, 10, 20, new ObjectMapper());
+    client.putBucketLifecycleConfiguration(
+        PutBucketLifecycleConfigurationRequest.builder()
+            .bucket(bucket)
+            .lifecycleConfiguration(BucketLifecycleConfiguration.builder().rules(rule).build())
+            .build());
   }
 
   @SneakyThrows
-  private String createSqsQueue(final SqsClient client) {
-    log.debug("Create queue with name {}", QUEUE_NAME);
+  private String createSqsQueue(final SqsClient client, final String queueName) {
+    log.debug("Create queue with name {}", queueName);
     final CreateQueueResponse createQueueResponse =
-        client.createQueue(CreateQueueRequest.builder().queueName(QUEUE_NAME).build());
+        client.createQueue(CreateQueueRequest.builder().queueName(queueName).build());
 
     final String createdQueueUrl = createQueueResponse.queueUrl();
     log.debug("Created queue {}", createdQueueUrl);
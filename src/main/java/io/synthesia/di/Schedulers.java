@@ -0,0 +1,18 @@
+package io.synthesia.di;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+final class Schedulers {
+  private Schedulers() {}
+
+  /** Single threaded scheduler for background housekeeping that must not delay JVM shutdown. */
+  static ScheduledExecutorService newDaemonScheduler(String threadName) {
+    return Executors.newSingleThreadScheduledExecutor(
+        runnable -> {
+          var thread = new Thread(runnable, threadName);
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+}
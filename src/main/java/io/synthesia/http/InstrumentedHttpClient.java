@@ -0,0 +1,163 @@
+package io.synthesia.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+
+/**
+ * Publishes how an {@link HttpClient} is being used: requests in flight, which with HTTP/2 are the
+ * streams multiplexed over the open connections, and request latency by negotiated protocol
+ * version, which shows whether the remote end actually upgraded to HTTP/2.
+ *
+ * <p>The JDK client does not expose its connection pool, so connection counts and connect latency
+ * are not available here.
+ */
+public class InstrumentedHttpClient extends HttpClient {
+  private final HttpClient delegate;
+  private final String name;
+  private final MeterRegistry meterRegistry;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final Counter errors;
+
+  public InstrumentedHttpClient(HttpClient delegate, String name, MeterRegistry meterRegistry) {
+    this.delegate = delegate;
+    this.name = name;
+    this.meterRegistry = meterRegistry;
+
+    Gauge.builder("http_client_in_flight", this.inFlight, AtomicInteger::get)
+        .tag("client", name)
+        .register(meterRegistry);
+    this.errors = Counter.builder("http_client_error").tag("client", name).register(meterRegistry);
+  }
+
+  @Override
+  public <T> HttpResponse<T> send(
+      HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler)
+      throws IOException, InterruptedException {
+    var start = System.nanoTime();
+    this.inFlight.incrementAndGet();
+
+    try {
+      var response = this.delegate.send(request, responseBodyHandler);
+      record(response, start);
+      return response;
+    } catch (IOException | RuntimeException e) {
+      this.errors.increment();
+      throw e;
+    } finally {
+      this.inFlight.decrementAndGet();
+    }
+  }
+
+  @Override
+  public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+      HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+    return instrument(() -> this.delegate.sendAsync(request, responseBodyHandler));
+  }
+
+  @Override
+  public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+      HttpRequest request,
+      HttpResponse.BodyHandler<T> responseBodyHandler,
+      HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+    return instrument(
+        () -> this.delegate.sendAsync(request, responseBodyHandler, pushPromiseHandler));
+  }
+
+  @Override
+  public Optional<CookieHandler> cookieHandler() {
+    return this.delegate.cookieHandler();
+  }
+
+  @Override
+  public Optional<Duration> connectTimeout() {
+    return this.delegate.connectTimeout();
+  }
+
+  @Override
+  public Redirect followRedirects() {
+    return this.delegate.followRedirects();
+  }
+
+  @Override
+  public Optional<ProxySelector> proxy() {
+    return this.delegate.proxy();
+  }
+
+  @Override
+  public SSLContext sslContext() {
+    return this.delegate.sslContext();
+  }
+
+  @Override
+  public SSLParameters sslParameters() {
+    return this.delegate.sslParameters();
+  }
+
+  @Override
+  public Optional<Authenticator> authenticator() {
+    return this.delegate.authenticator();
+  }
+
+  @Override
+  public Version version() {
+    return this.delegate.version();
+  }
+
+  @Override
+  public Optional<Executor> executor() {
+    return this.delegate.executor();
+  }
+
+  private <T> CompletableFuture<HttpResponse<T>> instrument(
+      Supplier<CompletableFuture<HttpResponse<T>>> send) {
+    var start = System.nanoTime();
+    this.inFlight.incrementAndGet();
+
+    CompletableFuture<HttpResponse<T>> response;
+
+    try {
+      response = send.get();
+    } catch (RuntimeException e) {
+      this.inFlight.decrementAndGet();
+      this.errors.increment();
+      throw e;
+    }
+
+    return response.whenComplete(
+        (result, error) -> {
+          this.inFlight.decrementAndGet();
+
+          if (error != null) {
+            this.errors.increment();
+          } else {
+            record(result, start);
+          }
+        });
+  }
+
+  private void record(HttpResponse<?> response, long start) {
+    Timer.builder("http_client_request")
+        .tag("client", this.name)
+        .tag("version", response.version().name())
+        .register(this.meterRegistry)
+        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+  }
+}
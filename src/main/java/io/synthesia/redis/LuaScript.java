@@ -0,0 +1,65 @@
+package io.synthesia.redis;
+
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import lombok.SneakyThrows;
+
+/**
+ * Lua script loaded from the classpath. It is called by its digest, and only sent in full when
+ * Redis does not have it cached yet.
+ */
+public class LuaScript {
+  private final String source;
+  private final String digest;
+
+  private LuaScript(String source) {
+    this.source = source;
+    this.digest = sha1(source);
+  }
+
+  @SneakyThrows
+  public static LuaScript load(String path) {
+    try (InputStream script = LuaScript.class.getResourceAsStream(path)) {
+      return new LuaScript(new String(script.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  public <T> CompletableFuture<T> run(
+      RedisAsyncCommands<String, String> commands,
+      ScriptOutputType outputType,
+      String[] keys,
+      String... args) {
+    return commands
+        .<T>evalsha(this.digest, outputType, keys, args)
+        .toCompletableFuture()
+        .handle(
+            (result, error) -> {
+              if (error == null) {
+                return CompletableFuture.completedFuture(result);
+              }
+
+              var cause = error instanceof CompletionException ? error.getCause() : error;
+
+              if (cause instanceof RedisNoScriptException) {
+                return commands.<T>eval(this.source, outputType, keys, args).toCompletableFuture();
+              }
+
+              return CompletableFuture.<T>failedFuture(cause);
+            })
+        .thenCompose(result -> result);
+  }
+
+  @SneakyThrows
+  private static String sha1(String script) {
+    var digest = MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8));
+
+    return String.format("%040x", new BigInteger(1, digest));
+  }
+}
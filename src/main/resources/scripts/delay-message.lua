@@ -0,0 +1,14 @@
+-- Moves a received message from the stream to the sorted set of delayed messages, so that a crash
+-- cannot leave it in both and have it delivered twice.
+-- KEYS[1]: stream, KEYS[2]: sorted set of delayed messages
+-- ARGV[1]: consumer group, ARGV[2]: stream id, ARGV[3]: time it becomes visible in milliseconds,
+-- ARGV[4]: member, "<original id>:<attempts>:<body>"
+-- Returns 1 when the message was moved, 0 when it had already been acknowledged.
+if redis.call('XACK', KEYS[1], ARGV[1], ARGV[2]) == 0 then
+  return 0
+end
+
+redis.call('XDEL', KEYS[1], ARGV[2])
+redis.call('ZADD', KEYS[2], ARGV[3], ARGV[4])
+
+return 1
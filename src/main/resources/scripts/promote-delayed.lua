@@ -0,0 +1,14 @@
+-- Moves released messages whose delay has passed back onto the stream.
+-- KEYS[1]: sorted set of delayed messages, KEYS[2]: stream
+-- ARGV[1]: current time in milliseconds, ARGV[2]: maximum number of messages to move
+-- Members are "<original id>:<attempts>:<body>", scored by the time they become visible.
+local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2]))
+
+for _, member in ipairs(due) do
+  local _, attempts, body = string.match(member, '^([^:]+):(%d+):(.*)$')
+
+  redis.call('XADD', KEYS[2], '*', 'body', body, 'attempts', attempts)
+  redis.call('ZREM', KEYS[1], member)
+end
+
+return #due
@@ -0,0 +1,71 @@
+-- Token bucket split between the sync and async lanes, checked and updated in a single round trip.
+-- KEYS[1]: allocation key
+-- ARGV[1]: capacity, ARGV[2]: refill period in microseconds, ARGV[3]: sync share,
+-- ARGV[4]: async share, ARGV[5]: lane ('sync' or 'async'), ARGV[6]: tokens to take (1, or 0 to peek)
+-- Returns {taken (1 or 0), borrowed (1 or 0), tokens left to the lane, microseconds until the next one}
+local capacity = tonumber(ARGV[1])
+local period = tonumber(ARGV[2])
+local shares = {sync = tonumber(ARGV[3]), async = tonumber(ARGV[4])}
+local lane = ARGV[5]
+local requested = tonumber(ARGV[6])
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+
+local state = redis.call('HMGET', KEYS[1], 'tokens', 'sync', 'async', 'updated')
+local tokens = tonumber(state[1]) or capacity
+local remaining = {sync = tonumber(state[2]) or shares.sync, async = tonumber(state[3]) or shares.async}
+local updated = tonumber(state[4]) or now
+local elapsed = math.max(0, now - updated)
+
+tokens = math.min(capacity, tokens + elapsed * capacity / period)
+for name, share in pairs(shares) do
+  remaining[name] = math.min(share, remaining[name] + elapsed * share / period)
+end
+
+-- What is left of both shares stays reserved, only the tokens above them can be borrowed
+local function surplus()
+  return tokens - remaining.sync - remaining.async
+end
+
+local taken = 0
+local borrowed = 0
+if requested > 0 then
+  if remaining[lane] >= 1 and tokens >= 1 then
+    remaining[lane] = remaining[lane] - 1
+    tokens = tokens - 1
+    taken = 1
+  elseif surplus() >= 1 then
+    tokens = tokens - 1
+    taken = 1
+    borrowed = 1
+  end
+
+  redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'sync', tostring(remaining.sync),
+    'async', tostring(remaining.async), 'updated', tostring(now))
+  redis.call('PEXPIRE', KEYS[1], math.ceil(period / 1000) * 2)
+end
+
+local available = math.floor(math.min(remaining[lane], tokens)) + math.floor(math.max(0, surplus()))
+
+local wait = 0
+if available < 1 then
+  -- The lane gets a token either from its own share or once the surplus reaches one
+  wait = math.huge
+  if shares[lane] > 0 then
+    wait = math.max((1 - remaining[lane]) * period / shares[lane], (1 - tokens) * period / capacity)
+  end
+
+  local surplusRate = capacity - shares.sync - shares.async
+  if surplusRate > 0 then
+    wait = math.min(wait, (1 - surplus()) * period / surplusRate)
+  end
+
+  if wait == math.huge then
+    wait = period
+  end
+
+  wait = math.ceil(wait)
+end
+
+return {taken, borrowed, available, wait}
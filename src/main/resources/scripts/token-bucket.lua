@@ -0,0 +1,34 @@
+-- Token bucket checked and updated in a single round trip.
+-- KEYS[1]: bucket key
+-- ARGV[1]: capacity, ARGV[2]: refill period in microseconds, ARGV[3]: tokens to take (0 to peek)
+-- Returns {taken (1 or 0), tokens left, microseconds until the next token}
+local capacity = tonumber(ARGV[1])
+local period = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+
+local state = redis.call('HMGET', KEYS[1], 'tokens', 'updated')
+local tokens = tonumber(state[1]) or capacity
+local updated = tonumber(state[2]) or now
+
+tokens = math.min(capacity, tokens + math.max(0, now - updated) * capacity / period)
+
+local taken = 0
+if requested > 0 and tokens >= requested then
+  tokens = tokens - requested
+  taken = 1
+end
+
+if requested > 0 then
+  redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'updated', tostring(now))
+  redis.call('PEXPIRE', KEYS[1], math.ceil(period / 1000) * 2)
+end
+
+local wait = 0
+if tokens < 1 then
+  wait = math.ceil((1 - tokens) * period / capacity)
+end
+
+return {taken, math.floor(tokens), wait}
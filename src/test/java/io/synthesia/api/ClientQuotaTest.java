@@ -0,0 +1,202 @@
+package io.synthesia.api;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
+import io.javalin.http.Context;
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class ClientQuotaTest {
+  private static final String API_KEY = "key";
+  private static final String API_KEY_DIGEST =
+      "2c70e12b7a0646f92279f427c7b38e7334d8e5389cff167a1dc30e73f826b683";
+  private static final int MAX_REJECTED_CLIENTS = 2;
+
+  @Mock private Bucket bucket;
+
+  @Mock private Context context;
+
+  @Mock private Clock clock;
+
+  private List<String> requestedClients;
+
+  private Counter localRejectionsCounter;
+
+  private ClientQuota sut;
+
+  @BeforeEach
+  void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    var registry = new SimpleMeterRegistry();
+    this.localRejectionsCounter = Counter.builder("local").register(registry);
+    this.requestedClients = new ArrayList<>();
+
+    givenCurrentTime(0);
+
+    this.sut =
+        new ClientQuota(
+            clientId -> {
+              this.requestedClients.add(clientId);
+              return this.bucket;
+            },
+            List.of(API_KEY),
+            MAX_REJECTED_CLIENTS,
+            this.clock,
+            this.localRejectionsCounter,
+            Counter.builder("shared").register(registry),
+            Counter.builder("errors").register(registry));
+  }
+
+  @Test
+  void tryAcquire_whenWithinQuota_allowsRequest() {
+    givenApiKey(API_KEY);
+    whenBucketConsumes();
+
+    assertTrue(this.sut.tryAcquire(this.context));
+
+    verify(this.context, times(0)).status(429);
+  }
+
+  @Test
+  void tryAcquire_whenQuotaExhausted_returns429WithRetryAfter() {
+    givenApiKey(API_KEY);
+    whenBucketRejects(Duration.ofMillis(2500));
+
+    assertFalse(this.sut.tryAcquire(this.context));
+
+    assertRejected("3");
+  }
+
+  @Test
+  void tryAcquire_whenRecentlyRejected_rejectsWithoutBucket() {
+    givenApiKey(API_KEY);
+    whenBucketRejects(Duration.ofSeconds(10));
+
+    this.sut.tryAcquire(this.context);
+    givenCurrentTime(4000);
+
+    assertFalse(this.sut.tryAcquire(this.context));
+
+    verify(this.bucket, times(1)).tryConsumeAndReturnRemaining(anyLong());
+    Assertions.assertEquals(1, this.localRejectionsCounter.count());
+    verify(this.context).header("Retry-After", "6");
+  }
+
+  @Test
+  void tryAcquire_whenRejectionExpired_checksBucketAgain() {
+    givenApiKey(API_KEY);
+    whenBucketRejects(Duration.ofSeconds(10));
+
+    this.sut.tryAcquire(this.context);
+    givenCurrentTime(10000);
+    whenBucketConsumes();
+
+    assertTrue(this.sut.tryAcquire(this.context));
+  }
+
+  @Test
+  void tryAcquire_whenKnownApiKey_usesKeyDigestAsClient() {
+    givenApiKey(API_KEY);
+    whenBucketConsumes();
+
+    this.sut.tryAcquire(this.context);
+
+    Assertions.assertEquals(List.of("key:" + API_KEY_DIGEST), this.requestedClients);
+  }
+
+  @Test
+  void tryAcquire_whenUnknownOrNoApiKey_fallsBackToIp() {
+    when(this.context.ip()).thenReturn("10.0.0.1");
+    whenBucketConsumes();
+
+    givenApiKey("made up");
+    this.sut.tryAcquire(this.context);
+
+    givenApiKey(null);
+    this.sut.tryAcquire(this.context);
+
+    Assertions.assertEquals(List.of("ip:10.0.0.1", "ip:10.0.0.1"), this.requestedClients);
+  }
+
+  @Test
+  void tryAcquire_whenBucketFails_allowsRequest() {
+    givenApiKey(API_KEY);
+    when(this.bucket.tryConsumeAndReturnRemaining(1))
+        .thenThrow(new RedisCommandTimeoutException("timeout"));
+
+    assertTrue(this.sut.tryAcquire(this.context));
+
+    verify(this.context, times(0)).status(429);
+  }
+
+  @Test
+  void tryAcquire_whenTooManyClientsRejected_checksBucketForNewOnes() {
+    whenBucketRejects(Duration.ofSeconds(10));
+
+    for (var ip : List.of("10.0.0.1", "10.0.0.2", "10.0.0.3", "10.0.0.3")) {
+      when(this.context.ip()).thenReturn(ip);
+      this.sut.tryAcquire(this.context);
+    }
+
+    verify(this.bucket, times(4)).tryConsumeAndReturnRemaining(anyLong());
+    Assertions.assertEquals(0, this.localRejectionsCounter.count());
+  }
+
+  @Test
+  void tryAcquire_whenTooManyClientsRejected_dropsLapsedRejections() {
+    whenBucketRejects(Duration.ofSeconds(10));
+
+    for (var ip : List.of("10.0.0.1", "10.0.0.2")) {
+      when(this.context.ip()).thenReturn(ip);
+      this.sut.tryAcquire(this.context);
+    }
+
+    givenCurrentTime(10000);
+    when(this.context.ip()).thenReturn("10.0.0.3");
+    this.sut.tryAcquire(this.context);
+    this.sut.tryAcquire(this.context);
+
+    verify(this.bucket, times(3)).tryConsumeAndReturnRemaining(anyLong());
+    Assertions.assertEquals(1, this.localRejectionsCounter.count());
+  }
+
+  private void givenApiKey(String apiKey) {
+    when(this.context.header(ClientQuota.API_KEY_HEADER)).thenReturn(apiKey);
+  }
+
+  private void givenCurrentTime(long millis) {
+    when(this.clock.millis()).thenReturn(millis);
+  }
+
+  private void whenBucketConsumes() {
+    when(this.bucket.tryConsumeAndReturnRemaining(1)).thenReturn(ConsumptionProbe.consumed(1, 0));
+  }
+
+  private void whenBucketRejects(Duration wait) {
+    when(this.bucket.tryConsumeAndReturnRemaining(1))
+        .thenReturn(ConsumptionProbe.rejected(0, wait.toNanos(), wait.toNanos()));
+  }
+
+  private void assertRejected(String retryAfterSeconds) {
+    verify(this.context).header("Retry-After", retryAfterSeconds);
+    verify(this.context, times(1)).status(429);
+  }
+}
@@ -8,10 +8,16 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import io.javalin.http.Context;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.synthesia.api.dto.SignRequestDTO;
 import io.synthesia.async.MessageSigningQueue;
+import io.synthesia.async.WebhookClient;
 import io.synthesia.crypto.CryptoClient;
+import io.synthesia.crypto.limiter.RateLimiter;
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -22,6 +28,10 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 public class SignApiTest {
+  private static final Duration RESPONSE_BUDGET = Duration.ofMillis(100);
+
+  private static final int MAX_ATTEMPTS = 3;
+
   private static String SIGNED_MESSAGE = "signed";
 
   private static SignRequestDTO VALID_SIGN_REQUEST =
@@ -33,13 +43,22 @@ public class SignApiTest {
 
   @Mock private MessageSigningQueue messageSigningQueue;
 
+  @Mock private WebhookClient webhookClient;
+
+  @Mock private RateLimiter rateLimiter;
+
   private SignApi sut;
 
   @BeforeEach
   public void beforeEach() {
     MockitoAnnotations.initMocks(this);
 
-    this.sut = new SignApi(this.cryptoClient, this.messageSigningQueue);
+    when(this.messageSigningQueue.scheduleMessageSigningAsync(any()))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    this.sut =
+        new SignApi(
+            this.cryptoClient, this.messageSigningQueue, this.webhookClient, RESPONSE_BUDGET);
   }
 
   @ParameterizedTest
@@ -94,21 +113,175 @@ public class SignApiTest {
     assertAccepted();
   }
 
+  @Test
+  void sign_whenSignCompletesExceptionally_schedulesMessageSigningAndReturns202() {
+    givenRequestBody(VALID_SIGN_REQUEST);
+
+    when(this.cryptoClient.signAsync(any()))
+        .thenReturn(CompletableFuture.failedFuture(new RuntimeException()));
+
+    this.sut.sign(this.context);
+
+    assertMessageSigningScheduled();
+    assertAccepted();
+  }
+
+  @Test
+  void sign_whenSignExceedsResponseBudget_returns202WithoutScheduling() {
+    givenRequestBody(VALID_SIGN_REQUEST);
+
+    whenSignIsPending();
+
+    this.sut.sign(this.context);
+
+    assertAccepted();
+    assertMessageSigningNotScheduled();
+    assertLateMessageSigningNotScheduled();
+  }
+
+  @Test
+  void sign_whenSignExceedsResponseBudgetThenSucceeds_notifiesWebhookWithoutScheduling() {
+    givenRequestBody(VALID_SIGN_REQUEST);
+
+    var pendingSignature = whenSignIsPending();
+    whenWebhookNotified(true);
+
+    this.sut.sign(this.context);
+    pendingSignature.complete(Optional.of(SIGNED_MESSAGE));
+
+    verify(this.webhookClient).notifyAsync(VALID_SIGN_REQUEST.getWebhookUrl(), SIGNED_MESSAGE);
+    assertLateMessageSigningNotScheduled();
+  }
+
+  @Test
+  void sign_whenSignExceedsResponseBudgetThenFails_schedulesMessageSigning() {
+    givenRequestBody(VALID_SIGN_REQUEST);
+
+    var pendingSignature = whenSignIsPending();
+
+    this.sut.sign(this.context);
+    pendingSignature.complete(Optional.empty());
+
+    verify(this.webhookClient, times(0)).notifyAsync(any(), any());
+    assertLateMessageSigningScheduled();
+  }
+
+  @Test
+  void sign_whenSignExceedsResponseBudgetThenWebhookRejects_schedulesMessageSigning() {
+    givenRequestBody(VALID_SIGN_REQUEST);
+
+    var pendingSignature = whenSignIsPending();
+    whenWebhookNotified(false);
+
+    this.sut.sign(this.context);
+    pendingSignature.complete(Optional.of(SIGNED_MESSAGE));
+
+    assertLateMessageSigningScheduled();
+  }
+
+  @Test
+  void sign_whenFirstAttemptFailsFastAndTokensLeft_retriesAndReturnsSignedMessage() {
+    givenRequestBody(VALID_SIGN_REQUEST);
+    givenRetryPolicy(Duration.ofMillis(10), 5);
+
+    when(this.cryptoClient.signAsync(any()))
+        .thenReturn(CompletableFuture.completedFuture(Optional.empty()))
+        .thenReturn(CompletableFuture.completedFuture(Optional.of(SIGNED_MESSAGE)));
+
+    this.sut.sign(this.context);
+
+    assertSignedMessageReturned();
+    assertMessageSigningNotScheduled();
+  }
+
+  @Test
+  void sign_whenNoTokensLeft_doesNotRetry() {
+    givenRequestBody(VALID_SIGN_REQUEST);
+    givenRetryPolicy(Duration.ofMillis(10), 0);
+
+    whenSignFails();
+
+    this.sut.sign(this.context);
+
+    verify(this.cryptoClient, times(1)).signAsync(any());
+    assertMessageSigningScheduled();
+    assertAccepted();
+  }
+
+  @Test
+  void sign_whenAttemptWouldNotFitInRemainingBudget_doesNotRetry() {
+    givenRequestBody(VALID_SIGN_REQUEST);
+    givenRetryPolicy(RESPONSE_BUDGET.multipliedBy(2), 5);
+
+    whenSignFails();
+
+    this.sut.sign(this.context);
+
+    verify(this.cryptoClient, times(1)).signAsync(any());
+    assertMessageSigningScheduled();
+  }
+
+  @Test
+  void sign_whenEveryAttemptFails_stopsAtMaxAttempts() {
+    givenRequestBody(VALID_SIGN_REQUEST);
+    givenRetryPolicy(Duration.ofMillis(10), 5);
+
+    whenSignFails();
+
+    this.sut.sign(this.context);
+
+    verify(this.cryptoClient, times(MAX_ATTEMPTS)).signAsync(any());
+    assertMessageSigningScheduled();
+  }
+
+  private void givenRetryPolicy(Duration estimatedAttemptLatency, long availableTokens) {
+    when(this.rateLimiter.availableTokens()).thenReturn(availableTokens);
+
+    var retryPolicy =
+        new SyncRetryPolicy(
+            this.rateLimiter,
+            MAX_ATTEMPTS,
+            estimatedAttemptLatency,
+            Counter.builder("retries").register(new SimpleMeterRegistry()));
+
+    this.sut =
+        new SignApi(
+            this.cryptoClient,
+            this.messageSigningQueue,
+            this.webhookClient,
+            RESPONSE_BUDGET,
+            retryPolicy);
+  }
+
   private void givenRequestBody(SignRequestDTO requestDTO) {
     when(this.context.queryParam(eq("message"))).thenReturn(requestDTO.getMessage());
     when(this.context.queryParam(eq("webhookUrl"))).thenReturn(requestDTO.getWebhookUrl());
   }
 
   private void whenSignSucceeds() {
-    when(this.cryptoClient.sign(any())).thenReturn(Optional.of(SIGNED_MESSAGE));
+    when(this.cryptoClient.signAsync(any()))
+        .thenReturn(CompletableFuture.completedFuture(Optional.of(SIGNED_MESSAGE)));
   }
 
   private void whenSignFails() {
-    when(this.cryptoClient.sign(any())).thenReturn(Optional.empty());
+    when(this.cryptoClient.signAsync(any()))
+        .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
   }
 
   private void whenSignThrows() {
-    when(this.cryptoClient.sign(any())).thenThrow(RuntimeException.class);
+    when(this.cryptoClient.signAsync(any())).thenThrow(RuntimeException.class);
+  }
+
+  private CompletableFuture<Optional<String>> whenSignIsPending() {
+    CompletableFuture<Optional<String>> pendingSignature = new CompletableFuture<>();
+    when(this.cryptoClient.signAsync(any())).thenReturn(pendingSignature);
+
+    return pendingSignature;
+  }
+
+  private void whenWebhookNotified(boolean delivered) {
+    when(this.webhookClient.notifyAsync(any(), any()))
+        .thenReturn(CompletableFuture.completedFuture(delivered));
   }
 
   private void whenScheduleMessageSigningThrows() {
@@ -135,6 +308,18 @@ public class SignApiTest {
     verify(this.messageSigningQueue, times(1)).scheduleMessageSigning(any());
   }
 
+  private void assertMessageSigningNotScheduled() {
+    verify(this.messageSigningQueue, times(0)).scheduleMessageSigning(any());
+  }
+
+  private void assertLateMessageSigningScheduled() {
+    verify(this.messageSigningQueue, times(1)).scheduleMessageSigningAsync(any());
+  }
+
+  private void assertLateMessageSigningNotScheduled() {
+    verify(this.messageSigningQueue, times(0)).scheduleMessageSigningAsync(any());
+  }
+
   private void assertSignThrows() {
     Assertions.assertThrows(Exception.class, () -> this.sut.sign(this.context));
   }
@@ -0,0 +1,182 @@
+package io.synthesia.async;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.synthesia.async.dto.SignRequestMessage;
+import io.synthesia.crypto.CryptoClient;
+import io.synthesia.crypto.SignRejectedException;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+public class AsyncMessageSigningProcessorTest {
+  private static final int MAX_IN_FLIGHT = 3;
+
+  @Mock private CryptoClient cryptoClient;
+
+  @Mock private WebhookClient webhookClient;
+
+  private BlockingQueue<SignRequestMessage> processorsQueue;
+
+  @Mock private MessageSigningQueue messageSigningQueue;
+
+  @Mock private SigningRetryPolicy retryPolicy;
+
+  private AsyncMessageSigningProcessor sut;
+
+  @BeforeEach
+  public void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    this.processorsQueue = new LinkedBlockingQueue<>();
+
+    this.sut =
+        AsyncMessageSigningProcessor.builder()
+            .cryptoClient(this.cryptoClient)
+            .webhookClient(this.webhookClient)
+            .processorsQueue(this.processorsQueue)
+            .producerQueueTimeoutInSeconds(1)
+            .messageSigningQueue(this.messageSigningQueue)
+            .inFlight(new Semaphore(MAX_IN_FLIGHT))
+            .retryPolicy(this.retryPolicy)
+            .build();
+  }
+
+  @Test
+  void run_whenNoMessagesInProcessorQueue_doesNotAttemptToSign() {
+    this.runSut();
+
+    verify(this.cryptoClient, Mockito.times(0)).signAsync(any());
+  }
+
+  @Test
+  void run_whenSignFails_doesNotCallTheWebhook() {
+    givenSignRequestMessagesToProcess(1);
+
+    when(this.cryptoClient.signAsync(any()))
+        .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+    this.runSut();
+
+    verify(this.webhookClient, Mockito.times(0)).notifyAsync(any(), any());
+  }
+
+  @Test
+  void run_whenSignFails_countsTheAttempt() {
+    givenSignRequestMessagesToProcess(1);
+
+    when(this.cryptoClient.signAsync(any()))
+        .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+    this.runSut();
+
+    verify(this.retryPolicy).signFailed(any());
+    verify(this.retryPolicy, Mockito.times(0)).signRejected(any());
+  }
+
+  @Test
+  void run_whenSignRejected_releasesWithoutCountingTheAttempt() {
+    givenSignRequestMessagesToProcess(1);
+
+    when(this.cryptoClient.signAsync(any()))
+        .thenReturn(CompletableFuture.failedFuture(new SignRejectedException("Circuit is open")));
+
+    this.runSut();
+
+    verify(this.retryPolicy).signRejected(any());
+    verify(this.retryPolicy, Mockito.times(0)).signFailed(any());
+    verify(this.webhookClient, Mockito.times(0)).notifyAsync(any(), any());
+  }
+
+  @Test
+  void run_whenSignThrows_doesNotCallTheWebhook() {
+    givenSignRequestMessagesToProcess(1);
+
+    when(this.cryptoClient.signAsync(any())).thenThrow(RuntimeException.class);
+
+    this.runSut();
+
+    verify(this.webhookClient, Mockito.times(0)).notifyAsync(any(), any());
+  }
+
+  @Test
+  void run_whenWebhookFails_doesNotAcknowledgeMessage() {
+    givenSignRequestMessagesToProcess(1);
+
+    whenSigningSucceeds();
+    when(this.webhookClient.notifyAsync(any(), any()))
+        .thenReturn(CompletableFuture.completedFuture(false));
+
+    this.runSut();
+
+    verify(this.messageSigningQueue, Mockito.times(0)).acknowledge(any());
+  }
+
+  @Test
+  void run_whenWebhookSucceeds_acknowledgesMessage() {
+    givenSignRequestMessagesToProcess(1);
+
+    whenSigningSucceeds();
+    when(this.webhookClient.notifyAsync(any(), any()))
+        .thenReturn(CompletableFuture.completedFuture(true));
+
+    this.runSut();
+
+    verify(this.messageSigningQueue, Mockito.times(1)).acknowledge(any());
+  }
+
+  @Test
+  void run_whenWebhooksPending_keepsAtMostMaxInFlightMessages() {
+    givenSignRequestMessagesToProcess(MAX_IN_FLIGHT + 2);
+
+    whenSigningSucceeds();
+    when(this.webhookClient.notifyAsync(any(), any())).thenReturn(new CompletableFuture<>());
+
+    this.runSut();
+
+    verify(this.webhookClient, Mockito.times(MAX_IN_FLIGHT)).notifyAsync(any(), any());
+  }
+
+  @SneakyThrows
+  private void runSut() {
+    ExecutorService carrier = Executors.newSingleThreadExecutor();
+
+    carrier.execute(this.sut);
+
+    Thread.sleep(1000);
+
+    carrier.shutdownNow();
+
+    carrier.awaitTermination(2, TimeUnit.SECONDS);
+  }
+
+  private void givenSignRequestMessagesToProcess(int count) {
+    IntStream.range(0, count)
+        .forEach(
+            i -> {
+              var signRequestMessage = new SignRequestMessage("message", "webhook");
+              signRequestMessage.setReceiptHandle("receipt");
+
+              this.processorsQueue.add(signRequestMessage);
+            });
+  }
+
+  private void whenSigningSucceeds() {
+    when(this.cryptoClient.signAsync(any()))
+        .thenReturn(CompletableFuture.completedFuture(Optional.of("signedMessage")));
+  }
+}
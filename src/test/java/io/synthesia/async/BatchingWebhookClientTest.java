@@ -0,0 +1,178 @@
+package io.synthesia.async;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class BatchingWebhookClientTest {
+  private static final String WEBHOOK = "http://webhook.example.com/webhook";
+  private static final String OTHER_WEBHOOK = "http://other.example.com/webhook";
+  private static final String UNLISTED_WEBHOOK = "http://unlisted.example.com/webhook";
+  private static final Duration LINGER = Duration.ofMillis(50);
+  private static final int MAX_BATCH_SIZE = 3;
+
+  @Mock private WebhookClient delegate;
+
+  private BatchingWebhookClient sut;
+
+  @BeforeEach
+  public void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    this.sut =
+        new BatchingWebhookClient(
+            this.delegate,
+            Set.of("webhook.example.com", "other.example.com"),
+            LINGER,
+            MAX_BATCH_SIZE,
+            Executors.newSingleThreadScheduledExecutor(),
+            DistributionSummary.builder("batch_size").register(new SimpleMeterRegistry()));
+  }
+
+  @AfterEach
+  void afterEach() {
+    this.sut.close();
+  }
+
+  @Test
+  void notifyAsync_whenBatchIsFull_sendsImmediately() {
+    whenDelegateReturns(WEBHOOK, List.of(true, true, true));
+
+    var results =
+        List.of(
+            this.sut.notifyAsync(WEBHOOK, "a"),
+            this.sut.notifyAsync(WEBHOOK, "b"),
+            this.sut.notifyAsync(WEBHOOK, "c"));
+
+    verify(this.delegate).notifyBatchAsync(WEBHOOK, List.of("a", "b", "c"));
+    results.forEach(result -> assertTrue(result.join()));
+  }
+
+  @Test
+  void notifyAsync_whenLingerElapses_sendsPartialBatch() {
+    whenDelegateReturns(WEBHOOK, List.of(true, true));
+
+    var first = this.sut.notifyAsync(WEBHOOK, "a");
+    var second = this.sut.notifyAsync(WEBHOOK, "b");
+
+    verify(this.delegate, timeout(1000)).notifyBatchAsync(WEBHOOK, List.of("a", "b"));
+    assertTrue(first.join());
+    assertTrue(second.join());
+  }
+
+  @Test
+  void notifyAsync_groupsNotificationsByWebhookUrl() {
+    whenDelegateReturns(WEBHOOK, List.of(true));
+    whenDelegateReturns(OTHER_WEBHOOK, List.of(true));
+
+    this.sut.notifyAsync(WEBHOOK, "a");
+    this.sut.notifyAsync(OTHER_WEBHOOK, "b");
+
+    verify(this.delegate, timeout(1000)).notifyBatchAsync(WEBHOOK, List.of("a"));
+    verify(this.delegate, timeout(1000)).notifyBatchAsync(OTHER_WEBHOOK, List.of("b"));
+  }
+
+  @Test
+  void notifyAsync_reportsEachNotificationOnItsOwn() {
+    whenDelegateReturns(WEBHOOK, List.of(true, false, true));
+
+    var first = this.sut.notifyAsync(WEBHOOK, "a");
+    var second = this.sut.notifyAsync(WEBHOOK, "b");
+    var third = this.sut.notifyAsync(WEBHOOK, "c");
+
+    assertTrue(first.join());
+    assertFalse(second.join());
+    assertTrue(third.join());
+  }
+
+  @Test
+  void notifyAsync_whenBatchFails_failsEveryNotification() {
+    when(this.delegate.notifyBatchAsync(eq(WEBHOOK), anyList()))
+        .thenReturn(CompletableFuture.failedFuture(new RuntimeException()));
+
+    var first = this.sut.notifyAsync(WEBHOOK, "a");
+    var second = this.sut.notifyAsync(WEBHOOK, "b");
+
+    assertThrows(CompletionException.class, first::join);
+    assertThrows(CompletionException.class, second::join);
+    verify(this.delegate, never()).notifyAsync(any(), any());
+  }
+
+  @Test
+  void notifyAsync_whenHostIsNotListed_sendsWithoutBatching() {
+    when(this.delegate.notifyAsync(UNLISTED_WEBHOOK, "a"))
+        .thenReturn(CompletableFuture.completedFuture(true));
+
+    assertTrue(this.sut.notifyAsync(UNLISTED_WEBHOOK, "a").join());
+
+    verify(this.delegate, never()).notifyBatchAsync(any(), anyList());
+  }
+
+  @Test
+  void notifyAsync_matchesHostsIgnoringCase() {
+    whenDelegateReturns("http://WEBHOOK.example.com/webhook", List.of(true));
+
+    this.sut.notifyAsync("http://WEBHOOK.example.com/webhook", "a");
+
+    verify(this.delegate, timeout(1000))
+        .notifyBatchAsync("http://WEBHOOK.example.com/webhook", List.of("a"));
+    verify(this.delegate, never()).notifyAsync(any(), any());
+  }
+
+  @Test
+  void notify_sendsWithoutBatching() {
+    when(this.delegate.notify(WEBHOOK, "a")).thenReturn(true);
+
+    assertTrue(this.sut.notify(WEBHOOK, "a"));
+
+    verify(this.delegate, never()).notifyBatchAsync(any(), anyList());
+  }
+
+  @Test
+  void close_sendsBufferedNotifications() {
+    whenDelegateReturns(WEBHOOK, List.of(true));
+
+    var result = this.sut.notifyAsync(WEBHOOK, "a");
+    this.sut.close();
+
+    assertTrue(result.isDone());
+    assertTrue(result.join());
+    verify(this.delegate).notifyBatchAsync(WEBHOOK, List.of("a"));
+  }
+
+  @Test
+  void notifyAsync_whenClosed_fails() {
+    this.sut.close();
+
+    var result = this.sut.notifyAsync(WEBHOOK, "a");
+
+    assertThrows(CompletionException.class, result::join);
+    verify(this.delegate, never()).notifyBatchAsync(any(), anyList());
+  }
+
+  private void whenDelegateReturns(String webhookUrl, List<Boolean> results) {
+    when(this.delegate.notifyBatchAsync(eq(webhookUrl), anyList()))
+        .thenReturn(CompletableFuture.completedFuture(results));
+  }
+}
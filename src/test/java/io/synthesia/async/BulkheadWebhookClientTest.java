@@ -0,0 +1,183 @@
+package io.synthesia.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.http.HttpTimeoutException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class BulkheadWebhookClientTest {
+  private static final String SLOW_WEBHOOK = "http://slow.example.com/webhook";
+  private static final String FAST_WEBHOOK = "http://fast.example.com/webhook";
+  private static final int MAX_CONCURRENCY = 1;
+  private static final Duration PERMIT_WAIT = Duration.ofMillis(50);
+  private static final int MAX_HOSTS = 2;
+  private static final int FAILURE_THRESHOLD = 2;
+  private static final long COOLDOWN_IN_MILLIS = 1000;
+
+  @Mock private WebhookClient delegate;
+  @Mock private Clock clock;
+
+  private SimpleMeterRegistry meterRegistry;
+
+  private BulkheadWebhookClient sut;
+
+  @BeforeEach
+  public void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    this.meterRegistry = new SimpleMeterRegistry();
+
+    this.sut =
+        new BulkheadWebhookClient(
+            this.delegate,
+            MAX_CONCURRENCY,
+            PERMIT_WAIT,
+            MAX_HOSTS,
+            FAILURE_THRESHOLD,
+            COOLDOWN_IN_MILLIS,
+            this.clock,
+            this.meterRegistry);
+
+    givenTimeIs(0);
+  }
+
+  @Test
+  void notifyAsync_whenHostStaysAtCapacity_failsWithoutCallingDelegate() {
+    when(this.delegate.notifyAsync(SLOW_WEBHOOK, "signed")).thenReturn(new CompletableFuture<>());
+
+    this.sut.notifyAsync(SLOW_WEBHOOK, "signed");
+    var rejected = this.sut.notifyAsync(SLOW_WEBHOOK, "signed").join();
+
+    assertFalse(rejected);
+    verify(this.delegate, times(1)).notifyAsync(SLOW_WEBHOOK, "signed");
+    assertEquals(1, gauge("webhook_in_flight"));
+  }
+
+  @Test
+  void notifyAsync_whenHostIsAtCapacity_deliversOnceAPermitIsFree() {
+    var firstDelivery = new CompletableFuture<Boolean>();
+    when(this.delegate.notifyAsync(SLOW_WEBHOOK, "signed"))
+        .thenReturn(firstDelivery)
+        .thenReturn(CompletableFuture.completedFuture(true));
+
+    this.sut.notifyAsync(SLOW_WEBHOOK, "signed");
+    var secondDelivery = this.sut.notifyAsync(SLOW_WEBHOOK, "signed");
+    firstDelivery.complete(true);
+
+    assertTrue(secondDelivery.join());
+    verify(this.delegate, times(2)).notifyAsync(SLOW_WEBHOOK, "signed");
+    assertEquals(0, gauge("webhook_in_flight"));
+  }
+
+  @Test
+  void notify_whenMoreHostsThanTracked_forgetsIdleHosts() {
+    when(this.delegate.notify(any(), any())).thenReturn(true);
+
+    for (int i = 0; i < MAX_HOSTS * 3; i++) {
+      this.sut.notify("http://host-" + i + ".example.com/webhook", "signed");
+    }
+
+    assertTrue(gauge("webhook_tracked_hosts") <= MAX_HOSTS);
+  }
+
+  @Test
+  void notifyAsync_whenOtherHostIsAtCapacity_stillDelivers() {
+    when(this.delegate.notifyAsync(SLOW_WEBHOOK, "signed")).thenReturn(new CompletableFuture<>());
+    when(this.delegate.notifyAsync(FAST_WEBHOOK, "signed"))
+        .thenReturn(CompletableFuture.completedFuture(true));
+
+    this.sut.notifyAsync(SLOW_WEBHOOK, "signed");
+    var delivered = this.sut.notifyAsync(FAST_WEBHOOK, "signed").join();
+
+    assertTrue(delivered);
+  }
+
+  @Test
+  void notify_whenHostKeepsTimingOut_skipsHost() {
+    whenSlowHostTimesOut();
+
+    failSlowHost(FAILURE_THRESHOLD);
+    var skipped = this.sut.notify(SLOW_WEBHOOK, "signed");
+
+    assertFalse(skipped);
+    verify(this.delegate, times(FAILURE_THRESHOLD)).notify(eq(SLOW_WEBHOOK), any());
+    assertEquals(1, gauge("webhook_unhealthy_hosts"));
+  }
+
+  @Test
+  void notify_whenCooldownHasPassedAndProbeSucceeds_closesHost() {
+    whenSlowHostTimesOut();
+    failSlowHost(FAILURE_THRESHOLD);
+
+    givenTimeIs(COOLDOWN_IN_MILLIS);
+    doReturn(true).when(this.delegate).notify(SLOW_WEBHOOK, "signed");
+
+    assertTrue(this.sut.notify(SLOW_WEBHOOK, "signed"));
+    assertTrue(this.sut.notify(SLOW_WEBHOOK, "signed"));
+    assertEquals(0, gauge("webhook_unhealthy_hosts"));
+  }
+
+  @Test
+  void notify_whenProbeFails_keepsSkippingHost() {
+    whenSlowHostTimesOut();
+    failSlowHost(FAILURE_THRESHOLD);
+
+    givenTimeIs(COOLDOWN_IN_MILLIS);
+    failSlowHost(1);
+
+    assertFalse(this.sut.notify(SLOW_WEBHOOK, "signed"));
+    verify(this.delegate, times(FAILURE_THRESHOLD + 1)).notify(eq(SLOW_WEBHOOK), any());
+  }
+
+  @Test
+  void notifyAsync_whenHostTimesOut_countsTowardsSkippingHost() {
+    when(this.delegate.notifyAsync(SLOW_WEBHOOK, "signed"))
+        .thenReturn(CompletableFuture.failedFuture(new HttpTimeoutException("timed out")));
+
+    for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+      assertThrows(
+          CompletionException.class, () -> this.sut.notifyAsync(SLOW_WEBHOOK, "signed").join());
+    }
+
+    assertFalse(this.sut.notifyAsync(SLOW_WEBHOOK, "signed").join());
+  }
+
+  private void givenTimeIs(long millis) {
+    when(this.clock.millis()).thenReturn(millis);
+  }
+
+  private void whenSlowHostTimesOut() {
+    when(this.delegate.notify(SLOW_WEBHOOK, "signed"))
+        .thenAnswer(
+            invocation -> {
+              throw new HttpTimeoutException("timed out");
+            });
+  }
+
+  private void failSlowHost(int times) {
+    for (int i = 0; i < times; i++) {
+      assertThrows(HttpTimeoutException.class, () -> this.sut.notify(SLOW_WEBHOOK, "signed"));
+    }
+  }
+
+  private double gauge(String name) {
+    return this.meterRegistry.get(name).gauge().value();
+  }
+}
@@ -0,0 +1,118 @@
+package io.synthesia.async;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the deque that hands messages from the consumer to the processors with the ring buffer
+ * and its wait strategies, for several producer to consumer ratios. The consumer to processors
+ * handoff in production is {@code oneToFour}.
+ *
+ * <p>Producers and consumers use timed operations, so that threads left waiting when an iteration
+ * ends give up instead of blocking forever.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class HandoffQueueBenchmark {
+  private static final Object MESSAGE = new Object();
+  private static final long TIMEOUT_IN_MILLIS = 10;
+
+  @Param({"100"})
+  public int capacity;
+
+  @Param({"deque", "blocking", "yielding", "busy-spin"})
+  public String queue;
+
+  private BlockingQueue<Object> handoff;
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    this.handoff =
+        "deque".equals(this.queue)
+            ? new LinkedBlockingDeque<>(this.capacity)
+            : new RingBufferBlockingQueue<>(this.capacity, WaitStrategy.named(this.queue));
+  }
+
+  @Benchmark
+  @Group("oneToOne")
+  @GroupThreads(1)
+  public boolean oneToOneProduce() throws InterruptedException {
+    return produce();
+  }
+
+  @Benchmark
+  @Group("oneToOne")
+  @GroupThreads(1)
+  public Object oneToOneConsume() throws InterruptedException {
+    return consume();
+  }
+
+  @Benchmark
+  @Group("oneToFour")
+  @GroupThreads(1)
+  public boolean oneToFourProduce() throws InterruptedException {
+    return produce();
+  }
+
+  @Benchmark
+  @Group("oneToFour")
+  @GroupThreads(4)
+  public Object oneToFourConsume() throws InterruptedException {
+    return consume();
+  }
+
+  @Benchmark
+  @Group("fourToFour")
+  @GroupThreads(4)
+  public boolean fourToFourProduce() throws InterruptedException {
+    return produce();
+  }
+
+  @Benchmark
+  @Group("fourToFour")
+  @GroupThreads(4)
+  public Object fourToFourConsume() throws InterruptedException {
+    return consume();
+  }
+
+  @Benchmark
+  @Group("fourToOne")
+  @GroupThreads(4)
+  public boolean fourToOneProduce() throws InterruptedException {
+    return produce();
+  }
+
+  @Benchmark
+  @Group("fourToOne")
+  @GroupThreads(1)
+  public Object fourToOneConsume() throws InterruptedException {
+    return consume();
+  }
+
+  private boolean produce() throws InterruptedException {
+    return this.handoff.offer(MESSAGE, TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  private Object consume() throws InterruptedException {
+    return this.handoff.poll(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
+  }
+}
@@ -0,0 +1,76 @@
+package io.synthesia.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class HttpWebhookClientTest {
+  private static final String WEBHOOK = "http://webhook.example.com/webhook";
+  private static final List<String> MESSAGES = List.of("a", "b");
+
+  @Mock private HttpClient httpClient;
+  @Mock private HttpResponse<String> response;
+
+  private HttpWebhookClient sut;
+
+  @BeforeEach
+  public void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    when(this.httpClient.<String>sendAsync(any(), any()))
+        .thenReturn(CompletableFuture.completedFuture(this.response));
+
+    this.sut = new HttpWebhookClient(this.httpClient, Duration.ofSeconds(1), new ObjectMapper());
+  }
+
+  @Test
+  void notifyBatchAsync_whenWebhookReportsEachMessage_returnsItsResults() {
+    whenWebhookAnswers(200, "[true, false]");
+
+    assertEquals(List.of(true, false), this.sut.notifyBatchAsync(WEBHOOK, MESSAGES).join());
+  }
+
+  @Test
+  void notifyBatchAsync_whenWebhookFails_failsEveryMessage() {
+    whenWebhookAnswers(500, "[true, true]");
+
+    assertEquals(List.of(false, false), this.sut.notifyBatchAsync(WEBHOOK, MESSAGES).join());
+  }
+
+  @Test
+  void notifyBatchAsync_whenBodyIsNotAnArray_failsEveryMessage() {
+    whenWebhookAnswers(200, "OK");
+
+    assertEquals(List.of(false, false), this.sut.notifyBatchAsync(WEBHOOK, MESSAGES).join());
+  }
+
+  @Test
+  void notifyBatchAsync_whenAResultIsMissing_failsEveryMessage() {
+    whenWebhookAnswers(200, "[true]");
+
+    assertEquals(List.of(false, false), this.sut.notifyBatchAsync(WEBHOOK, MESSAGES).join());
+  }
+
+  @Test
+  void notifyBatchAsync_whenAResultIsNotABoolean_failsEveryMessage() {
+    whenWebhookAnswers(200, "[true, null]");
+
+    assertEquals(List.of(false, false), this.sut.notifyBatchAsync(WEBHOOK, MESSAGES).join());
+  }
+
+  private void whenWebhookAnswers(int statusCode, String body) {
+    when(this.response.statusCode()).thenReturn(statusCode);
+    when(this.response.body()).thenReturn(body);
+  }
+}
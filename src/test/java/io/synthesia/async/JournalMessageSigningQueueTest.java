@@ -0,0 +1,227 @@
+package io.synthesia.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.synthesia.async.codec.JsonMessageCodec;
+import io.synthesia.async.dto.SignRequestMessage;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class JournalMessageSigningQueueTest {
+  private static final int SEGMENT_SIZE = 4096;
+  private static final Duration WAIT_TIME = Duration.ofMillis(50);
+  private static final Duration VISIBILITY_TIMEOUT = Duration.ofMillis(200);
+
+  @TempDir Path directory;
+
+  @Mock private MessageSigningQueue deadLetterQueue;
+
+  private JournalMessageSigningQueue sut;
+
+  @BeforeEach
+  void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    this.sut = newQueue();
+  }
+
+  @Test
+  void getMessagesToSign_whenMessagesScheduled_returnsThemInOrder() {
+    givenMessages(3);
+
+    var messages = this.sut.getMessagesToSign();
+
+    assertEquals(List.of("message-0", "message-1", "message-2"), bodies(messages));
+    assertEquals(1, messages.get(0).getAttempt());
+  }
+
+  @Test
+  void getMessagesToSign_whenEmpty_waitsAndReturnsNothing() {
+    var start = System.nanoTime();
+
+    assertTrue(this.sut.getMessagesToSign().isEmpty());
+    assertTrue(System.nanoTime() - start >= WAIT_TIME.toNanos());
+  }
+
+  @Test
+  void getMessagesToSign_whenReceived_hidesMessageUntilVisibilityTimeout() throws Exception {
+    givenMessages(1);
+
+    this.sut.getMessagesToSign();
+
+    assertTrue(this.sut.getMessagesToSign().isEmpty());
+
+    Thread.sleep(VISIBILITY_TIMEOUT.toMillis());
+
+    var redelivered = this.sut.getMessagesToSign();
+    assertEquals(1, redelivered.size());
+    assertEquals(2, redelivered.get(0).getAttempt());
+  }
+
+  @Test
+  void acknowledge_removesMessage() throws Exception {
+    givenMessages(1);
+
+    this.sut.acknowledge(this.sut.getMessagesToSign().get(0));
+    Thread.sleep(VISIBILITY_TIMEOUT.toMillis());
+
+    assertTrue(this.sut.getMessagesToSign().isEmpty());
+  }
+
+  @Test
+  void release_makesMessageVisibleAfterDelay() {
+    givenMessages(1);
+
+    var message = this.sut.getMessagesToSign().get(0);
+    this.sut.release(message, Duration.ZERO);
+
+    assertEquals(1, this.sut.getMessagesToSign().size());
+  }
+
+  @Test
+  void retry_whenReleasedBefore_countsOnlyFailedAttempts() {
+    givenMessages(1);
+
+    var message = this.sut.getMessagesToSign().get(0);
+    for (var i = 0; i < 5; i++) {
+      this.sut.release(message, Duration.ZERO);
+      message = this.sut.getMessagesToSign().get(0);
+    }
+    this.sut.retry(message, Duration.ZERO);
+
+    assertEquals(1, message.getAttempt());
+    assertEquals(2, this.sut.getMessagesToSign().get(0).getAttempt());
+  }
+
+  @Test
+  void deadLetter_movesMessageToDeadLetterQueue() throws Exception {
+    givenMessages(1);
+
+    var message = this.sut.getMessagesToSign().get(0);
+    this.sut.deadLetter(message);
+    Thread.sleep(VISIBILITY_TIMEOUT.toMillis());
+
+    verify(this.deadLetterQueue).scheduleMessageSigning(message);
+    assertTrue(this.sut.getMessagesToSign().isEmpty());
+  }
+
+  @Test
+  void recover_whenReopened_redeliversOnlyUnacknowledgedMessages() {
+    givenMessages(3);
+
+    var messages = this.sut.getMessagesToSign();
+    this.sut.acknowledge(messages.get(1));
+    this.sut.close();
+
+    var reopened = newQueue();
+
+    assertEquals(List.of("message-0", "message-2"), bodies(reopened.getMessagesToSign()));
+
+    reopened.scheduleMessageSigning(new SignRequestMessage("message-3", "https://url.com"));
+    assertEquals(List.of("message-3"), bodies(reopened.getMessagesToSign()));
+  }
+
+  @Test
+  void recover_whenLastRecordTorn_ignoresIt() {
+    givenMessages(2);
+    this.sut.close();
+
+    corruptLastByteOfPayload();
+
+    assertEquals(List.of("message-0"), bodies(newQueue().getMessagesToSign()));
+  }
+
+  @Test
+  void acknowledge_whenSegmentFullyAcknowledged_deletesIt() {
+    givenMessages(60);
+
+    var segmentsBefore = segmentFiles().size();
+    assertTrue(segmentsBefore > 1);
+
+    IntStream.range(0, 6).forEach(i -> this.sut.getMessagesToSign().forEach(this.sut::acknowledge));
+
+    assertEquals(1, segmentFiles().size());
+    assertTrue(newQueue().getMessagesToSign().isEmpty());
+  }
+
+  @Test
+  void acknowledge_whenOldSegmentMostlyAcknowledged_compactsIt() {
+    givenMessages(60);
+
+    var received = this.sut.getMessagesToSign();
+    this.sut.release(received.get(0), Duration.ofMinutes(1));
+    received.subList(1, received.size()).forEach(this.sut::acknowledge);
+
+    IntStream.range(0, 6).forEach(i -> this.sut.getMessagesToSign().forEach(this.sut::acknowledge));
+    givenMessages(60);
+    IntStream.range(0, 6).forEach(i -> this.sut.getMessagesToSign().forEach(this.sut::acknowledge));
+
+    assertTrue(segmentFiles().size() <= 2);
+
+    this.sut.close();
+    assertEquals(List.of("message-0"), bodies(newQueue().getMessagesToSign()));
+  }
+
+  private JournalMessageSigningQueue newQueue() {
+    return new JournalMessageSigningQueue(
+        this.directory,
+        SEGMENT_SIZE,
+        WAIT_TIME,
+        VISIBILITY_TIMEOUT,
+        false,
+        new JsonMessageCodec(new ObjectMapper()),
+        this.deadLetterQueue);
+  }
+
+  private void givenMessages(int count) {
+    IntStream.range(0, count)
+        .forEach(
+            i ->
+                this.sut.scheduleMessageSigning(
+                    new SignRequestMessage("message-" + i, "https://url.com")));
+  }
+
+  @SneakyThrows
+  private List<Path> segmentFiles() {
+    try (var files = Files.list(this.directory)) {
+      return files.collect(Collectors.toList());
+    }
+  }
+
+  /** Flips the byte before the first zeroed region, which is the end of the last payload. */
+  @SneakyThrows
+  private void corruptLastByteOfPayload() {
+    var segment = segmentFiles().get(0);
+
+    try (var file = new RandomAccessFile(segment.toFile(), "rw")) {
+      var bytes = new byte[SEGMENT_SIZE];
+      file.readFully(bytes);
+
+      var end = SEGMENT_SIZE;
+      while (bytes[end - 1] == 0) {
+        end--;
+      }
+
+      file.seek(end - 1);
+      file.write(bytes[end - 1] ^ 0xFF);
+    }
+  }
+
+  private static List<String> bodies(List<SignRequestMessage> messages) {
+    return messages.stream().map(SignRequestMessage::getMessage).collect(Collectors.toList());
+  }
+}
@@ -1,11 +1,16 @@
 package io.synthesia.async;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import io.synthesia.async.dto.SignRequestMessage;
+import io.synthesia.crypto.CryptoClient;
+import io.synthesia.crypto.limiter.ReservingRateLimiter;
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
@@ -20,6 +25,8 @@ import org.mockito.MockitoAnnotations;
 
 public class MessageSigningConsumerTest {
   @Mock private MessageSigningQueue messageSigningQueue;
+  @Mock private ReservingRateLimiter rateLimiter;
+  @Mock private CryptoClient cryptoClient;
 
   private BlockingQueue<SignRequestMessage> processorsQueue;
 
@@ -63,6 +70,45 @@ public class MessageSigningConsumerTest {
     assertMessageSigningConsumerRetriesReadingFromQueue();
   }
 
+  @Test
+  void run_whenTokenGated_onlyReceivesAsManyMessagesAsAvailableTokens() {
+    var message = new SignRequestMessage("message", "webhook");
+    whenTokenGated(2);
+    when(this.messageSigningQueue.getMessagesToSign(2)).thenReturn(List.of(message));
+
+    this.runSut();
+
+    assertSignRequestInProcessorsQueue(message);
+    verify(this.messageSigningQueue, never()).getMessagesToSign();
+  }
+
+  @Test
+  void run_whenTokenGatedAndLimiterIsDry_doesNotReceiveMessages() {
+    whenTokenGated(0);
+    when(this.rateLimiter.timeUntilAvailable()).thenReturn(Duration.ofMillis(100));
+
+    this.runSut();
+
+    verify(this.messageSigningQueue, never()).getMessagesToSign(anyInt());
+    assertNoSignRequestAddedToProcessorsQueue();
+  }
+
+  private void whenTokenGated(long availableTokens) {
+    when(this.rateLimiter.timeUntilAvailable()).thenReturn(Duration.ZERO);
+    when(this.rateLimiter.availableTokens()).thenReturn(availableTokens);
+
+    var tokenGate =
+        new TokenGate(
+            this.rateLimiter,
+            this.cryptoClient,
+            this.messageSigningQueue,
+            this.processorsQueue,
+            Duration.ofSeconds(2));
+
+    this.sut =
+        new MessageSigningConsumer(this.messageSigningQueue, this.processorsQueue, tokenGate);
+  }
+
   private void whenMessageSigningQueueIsEmpty() {
     when(this.messageSigningQueue.getMessagesToSign()).thenReturn(List.of());
   }
@@ -4,8 +4,11 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.synthesia.async.claimcheck.BlobStore;
+import io.synthesia.async.claimcheck.ClaimCheck;
 import io.synthesia.async.dto.SignRequestMessage;
 import io.synthesia.crypto.CryptoClient;
+import io.synthesia.crypto.SignRejectedException;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
@@ -29,6 +32,12 @@ public class MessageSigningProcessorTest {
 
   @Mock private MessageSigningQueue messageSigningQueue;
 
+  @Mock private MessageSigningQueue deliveryQueue;
+
+  @Mock private SigningRetryPolicy retryPolicy;
+
+  @Mock private BlobStore blobStore;
+
   private MessageSingingProcessor sut;
 
   @BeforeEach
@@ -38,12 +47,14 @@ public class MessageSigningProcessorTest {
     this.processorsQueue = new LinkedBlockingQueue<>();
 
     this.sut =
-        new MessageSingingProcessor(
-            this.cryptoClient,
-            this.webhookClient,
-            this.processorsQueue,
-            1,
-            this.messageSigningQueue);
+        MessageSingingProcessor.builder()
+            .cryptoClient(this.cryptoClient)
+            .webhookClient(this.webhookClient)
+            .processorsQueue(this.processorsQueue)
+            .producerQueueTimeoutInSeconds(1)
+            .messageSigningQueue(this.messageSigningQueue)
+            .retryPolicy(this.retryPolicy)
+            .build();
   }
 
   @Test
@@ -64,6 +75,31 @@ public class MessageSigningProcessorTest {
     assertWebhookNotCalled();
   }
 
+  @Test
+  void run_whenMessagesInProcessorQueueAndSignFails_countsTheAttempt() {
+    givenSignRequestMessageToProcess();
+
+    whenSigningFails();
+
+    this.runSut();
+
+    verify(this.retryPolicy).signFailed(any());
+    verify(this.retryPolicy, Mockito.times(0)).signRejected(any());
+  }
+
+  @Test
+  void run_whenMessagesInProcessorQueueAndSignRejected_releasesWithoutCountingTheAttempt() {
+    givenSignRequestMessageToProcess();
+
+    when(this.cryptoClient.sign(any())).thenThrow(new SignRejectedException("Circuit is open"));
+
+    this.runSut();
+
+    verify(this.retryPolicy).signRejected(any());
+    verify(this.retryPolicy, Mockito.times(0)).signFailed(any());
+    assertWebhookNotCalled();
+  }
+
   @Test
   void run_whenMessagesInProcessorQueueAndSignThrows_doesNotCallTheWebhook() {
     givenSignRequestMessageToProcess();
@@ -114,6 +150,109 @@ public class MessageSigningProcessorTest {
     assertMessageSigningRequestAcknowledged();
   }
 
+  @Test
+  void run_whenDeliveryQueuePresentAndSignSucceeds_handsOffSignedMessageAndAcknowledges() {
+    givenDeliveryStage();
+    givenSignRequestMessageToProcess();
+
+    whenSigningSucceeds();
+
+    this.runSut();
+
+    verify(this.deliveryQueue)
+        .scheduleMessageSigning(new SignRequestMessage("message", "webhook", "signedMessage"));
+    assertMessageSigningRequestAcknowledged();
+    assertWebhookNotCalled();
+  }
+
+  @Test
+  void run_whenMessageAlreadySigned_notifiesWebhookWithoutSigningAgain() {
+    var signRequestMessage = new SignRequestMessage("message", "webhook", "signedMessage");
+    signRequestMessage.setReceiptHandle("receipt");
+    this.processorsQueue.add(signRequestMessage);
+
+    whenWebhookSucceeds();
+
+    this.runSut();
+
+    assertNoMessageSigningAttempted();
+    assertMessageSigningRequestAcknowledged();
+  }
+
+  @Test
+  void run_whenPayloadCheckedIn_signsFetchedPayload() {
+    givenClaimCheck(null);
+    givenCheckedInSignRequestMessageToProcess();
+    when(this.blobStore.get("reference")).thenReturn("payload");
+
+    whenSigningSucceeds();
+    whenWebhookSucceeds();
+
+    this.runSut();
+
+    verify(this.cryptoClient).sign("payload");
+    assertMessageSigningRequestAcknowledged();
+  }
+
+  @Test
+  void run_whenPayloadCannotBeFetched_doesNotSign() {
+    givenClaimCheck(null);
+    givenCheckedInSignRequestMessageToProcess();
+    when(this.blobStore.get("reference")).thenThrow(RuntimeException.class);
+
+    this.runSut();
+
+    assertNoMessageSigningAttempted();
+    assertMessageSigningRequestNotAcknowledged();
+  }
+
+  @Test
+  void run_whenPayloadCheckedInAndDeliveryQueuePresent_handsOffWithoutReference() {
+    givenClaimCheck(this.deliveryQueue);
+    givenCheckedInSignRequestMessageToProcess();
+    when(this.blobStore.get("reference")).thenReturn("payload");
+
+    whenSigningSucceeds();
+
+    this.runSut();
+
+    verify(this.deliveryQueue)
+        .scheduleMessageSigning(new SignRequestMessage(null, "webhook", "signedMessage"));
+    assertMessageSigningRequestAcknowledged();
+  }
+
+  private void givenClaimCheck(MessageSigningQueue deliveryQueue) {
+    this.sut =
+        MessageSingingProcessor.builder()
+            .cryptoClient(this.cryptoClient)
+            .webhookClient(this.webhookClient)
+            .processorsQueue(this.processorsQueue)
+            .producerQueueTimeoutInSeconds(1)
+            .messageSigningQueue(this.messageSigningQueue)
+            .deliveryQueue(deliveryQueue)
+            .claimCheck(new ClaimCheck(this.blobStore, 1024))
+            .build();
+  }
+
+  private void givenCheckedInSignRequestMessageToProcess() {
+    var signRequestMessage = new SignRequestMessage(null, "webhook", null, "reference");
+    signRequestMessage.setReceiptHandle("receipt");
+
+    this.processorsQueue.add(signRequestMessage);
+  }
+
+  private void givenDeliveryStage() {
+    this.sut =
+        MessageSingingProcessor.builder()
+            .cryptoClient(this.cryptoClient)
+            .webhookClient(this.webhookClient)
+            .processorsQueue(this.processorsQueue)
+            .producerQueueTimeoutInSeconds(1)
+            .messageSigningQueue(this.messageSigningQueue)
+            .deliveryQueue(this.deliveryQueue)
+            .build();
+  }
+
   @SneakyThrows
   private void runSut() {
     ExecutorService carrier = Executors.newSingleThreadExecutor();
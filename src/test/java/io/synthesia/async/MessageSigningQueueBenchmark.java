@@ -0,0 +1,168 @@
+package io.synthesia.async;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.synthesia.async.codec.JsonMessageCodec;
+import io.synthesia.async.dto.SignRequestMessage;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.localstack.LocalStackContainer;
+import org.testcontainers.containers.localstack.LocalStackContainer.Service;
+import org.testcontainers.utility.DockerImageName;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.CreateQueueRequest;
+
+/**
+ * Compares the SQS queue (through LocalStack) with the Redis Streams one. {@code enqueue} reports
+ * the latency of scheduling a single message, {@code drain} the number of messages per second that
+ * can be received and acknowledged in batches of {@link #BATCH_SIZE}.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class MessageSigningQueueBenchmark {
+  private static final int BATCH_SIZE = 10;
+  private static final SignRequestMessage MESSAGE =
+      new SignRequestMessage("message", "https://webhook.url.com");
+
+  @Param({"sqs", "redis-stream"})
+  public String backend;
+
+  private GenericContainer<?> container;
+
+  private RedisClient redisClient;
+
+  private StatefulRedisConnection<String, String> connection;
+
+  private SqsClient sqsClient;
+
+  private MessageSigningQueue queue;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    if ("redis-stream".equals(this.backend)) {
+      this.container =
+          new GenericContainer<>(DockerImageName.parse("redis:7-alpine")).withExposedPorts(6379);
+      this.container.start();
+
+      this.redisClient =
+          RedisClient.create(
+              "redis://" + this.container.getHost() + ":" + this.container.getMappedPort(6379));
+      this.connection = this.redisClient.connect();
+      this.queue =
+          new RedisStreamMessageSigningQueue(
+              this.connection.async(),
+              this.redisClient.connect(),
+              "benchmark",
+              "signers",
+              "consumer-" + UUID.randomUUID(),
+              Duration.ofSeconds(1),
+              Duration.ofSeconds(20),
+              new JsonMessageCodec(new ObjectMapper()),
+              null);
+      return;
+    }
+
+    var localstack =
+        new LocalStackContainer(DockerImageName.parse("localstack/localstack:2.2"))
+            .withServices(Service.SQS);
+    localstack.start();
+    this.container = localstack;
+
+    this.sqsClient =
+        SqsClient.builder()
+            .endpointOverride(localstack.getEndpointOverride(Service.SQS))
+            .credentialsProvider(
+                StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(
+                        localstack.getAccessKey(), localstack.getSecretKey())))
+            .region(Region.of(localstack.getRegion()))
+            .build();
+
+    var queueUrl =
+        this.sqsClient
+            .createQueue(CreateQueueRequest.builder().queueName("benchmark").build())
+            .queueUrl();
+
+    this.queue =
+        SqsMessageSigningQueue.builder()
+            .client(this.sqsClient)
+            .queueUrl(queueUrl)
+            .waitTimeInSeconds(1)
+            .visibilityTimeout(20)
+            .codec(new JsonMessageCodec(new ObjectMapper()))
+            .build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    this.queue.close();
+
+    if (this.redisClient != null) {
+      this.connection.close();
+      this.redisClient.shutdown();
+    }
+
+    if (this.sqsClient != null) {
+      this.sqsClient.close();
+    }
+
+    this.container.stop();
+  }
+
+  /** Schedules a batch before every drain call, outside of the measured time. */
+  @State(Scope.Thread)
+  public static class Backlog {
+    @Setup(Level.Invocation)
+    public void fill(MessageSigningQueueBenchmark benchmark) {
+      for (int i = 0; i < BATCH_SIZE; i++) {
+        benchmark.queue.scheduleMessageSigning(MESSAGE);
+      }
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void enqueue() {
+    this.queue.scheduleMessageSigningAsync(MESSAGE).join();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(BATCH_SIZE)
+  public int drain(Backlog backlog) {
+    var drained = 0;
+
+    while (drained < BATCH_SIZE) {
+      for (var message : this.queue.getMessagesToSign(BATCH_SIZE - drained)) {
+        this.queue.acknowledge(message);
+        drained++;
+      }
+    }
+
+    return drained;
+  }
+}
@@ -0,0 +1,244 @@
+package io.synthesia.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.synthesia.async.codec.JsonMessageCodec;
+import io.synthesia.async.dto.SignRequestMessage;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+@Testcontainers
+public class RedisStreamMessageSigningQueueTest {
+  private static final Duration WAIT_TIME = Duration.ofMillis(100);
+  private static final Duration VISIBILITY_TIMEOUT = Duration.ofMillis(300);
+
+  @Container
+  private static final GenericContainer<?> redis =
+      new GenericContainer<>(DockerImageName.parse("redis:7-alpine")).withExposedPorts(6379);
+
+  @Mock private MessageSigningQueue deadLetterQueue;
+
+  private RedisClient redisClient;
+
+  private StatefulRedisConnection<String, String> connection;
+
+  private String stream;
+
+  private RedisStreamMessageSigningQueue sut;
+
+  @BeforeEach
+  void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    this.redisClient =
+        RedisClient.create("redis://" + redis.getHost() + ":" + redis.getMappedPort(6379));
+    this.connection = this.redisClient.connect();
+    this.stream = UUID.randomUUID().toString();
+
+    this.sut = newQueue("consumer-1");
+  }
+
+  @AfterEach
+  void afterEach() {
+    this.sut.close();
+    this.connection.close();
+    this.redisClient.shutdown();
+  }
+
+  @Test
+  void getMessagesToSign_whenMessagesScheduled_returnsThemInOrder() {
+    givenMessages(3);
+
+    var messages = this.sut.getMessagesToSign();
+
+    assertEquals(List.of("message-0", "message-1", "message-2"), bodies(messages));
+    assertEquals(1, messages.get(0).getAttempt());
+  }
+
+  @Test
+  void getMessagesToSign_respectsMaxMessages() {
+    givenMessages(5);
+
+    assertEquals(2, this.sut.getMessagesToSign(2).size());
+    assertEquals(3, this.sut.getMessagesToSign(10).size());
+  }
+
+  @Test
+  void getMessagesToSign_whenEmpty_blocksForWaitTime() {
+    var start = System.nanoTime();
+
+    assertTrue(this.sut.getMessagesToSign().isEmpty());
+    assertTrue(System.nanoTime() - start >= WAIT_TIME.toNanos());
+  }
+
+  @Test
+  void acknowledge_removesMessageFromStream() throws Exception {
+    givenMessages(1);
+
+    this.sut.acknowledge(this.sut.getMessagesToSign().get(0));
+    Thread.sleep(VISIBILITY_TIMEOUT.toMillis());
+
+    assertTrue(this.sut.getMessagesToSign().isEmpty());
+    assertEquals(0, this.connection.sync().xlen(this.stream));
+  }
+
+  @Test
+  void getMessagesToSign_whenConsumerDied_claimsItsMessages() throws Exception {
+    givenMessages(1);
+
+    newQueue("consumer-2").getMessagesToSign();
+    assertTrue(this.sut.getMessagesToSign().isEmpty());
+
+    Thread.sleep(VISIBILITY_TIMEOUT.toMillis());
+
+    assertEquals(List.of("message-0"), bodies(this.sut.getMessagesToSign()));
+  }
+
+  @Test
+  void getMessagesToSign_whenClaimed_countsTimedOutDeliveries() throws Exception {
+    givenMessages(1);
+
+    var consumer = newQueue("consumer-2");
+    consumer.getMessagesToSign();
+    consumer.close();
+
+    Thread.sleep(VISIBILITY_TIMEOUT.toMillis());
+    var claimed = this.sut.getMessagesToSign();
+
+    Thread.sleep(VISIBILITY_TIMEOUT.toMillis());
+    var claimedAgain = this.sut.getMessagesToSign();
+
+    assertEquals(2, claimed.get(0).getAttempt());
+    assertEquals(3, claimedAgain.get(0).getAttempt());
+  }
+
+  @Test
+  void getMessagesToSign_whenRedisUnavailable_backsOff() {
+    var consumer = newQueue("consumer-2");
+    consumer.close();
+
+    var start = System.nanoTime();
+
+    assertTrue(consumer.getMessagesToSign().isEmpty());
+    assertTrue(System.nanoTime() - start >= WAIT_TIME.toNanos() / 2);
+  }
+
+  @Test
+  void release_redeliversAfterDelayWithoutCountingAttempt() throws Exception {
+    givenMessages(1);
+
+    this.sut.release(this.sut.getMessagesToSign().get(0), Duration.ofMillis(200));
+
+    assertTrue(this.sut.getMessagesToSign().isEmpty());
+
+    Thread.sleep(200);
+
+    var redelivered = this.sut.getMessagesToSign();
+    assertEquals(List.of("message-0"), bodies(redelivered));
+    assertEquals(1, redelivered.get(0).getAttempt());
+  }
+
+  @Test
+  void release_whenAlreadyAcknowledged_doesNotRedeliver() {
+    givenMessages(1);
+
+    var message = this.sut.getMessagesToSign().get(0);
+    this.sut.acknowledge(message);
+    this.sut.release(message, Duration.ZERO);
+
+    assertTrue(this.sut.getMessagesToSign().isEmpty());
+  }
+
+  @Test
+  void getMessagesToSign_whenBodyUnreadable_dropsMessage() throws Exception {
+    this.connection.sync().xadd(this.stream, Map.of("body", "not a message", "attempts", "0"));
+
+    assertTrue(this.sut.getMessagesToSign().isEmpty());
+    Thread.sleep(VISIBILITY_TIMEOUT.toMillis());
+
+    assertTrue(this.sut.getMessagesToSign().isEmpty());
+    assertEquals(0, this.connection.sync().xlen(this.stream));
+  }
+
+  @Test
+  void retry_whenReleasedBefore_countsOnlyFailedAttempts() {
+    givenMessages(1);
+
+    var message = this.sut.getMessagesToSign().get(0);
+    for (var i = 0; i < 5; i++) {
+      this.sut.release(message, Duration.ZERO);
+      message = this.sut.getMessagesToSign().get(0);
+    }
+    this.sut.retry(message, Duration.ZERO);
+
+    assertEquals(1, message.getAttempt());
+    assertEquals(2, this.sut.getMessagesToSign().get(0).getAttempt());
+  }
+
+  @Test
+  void deadLetter_movesMessageToDeadLetterQueue() {
+    givenMessages(1);
+
+    var message = this.sut.getMessagesToSign().get(0);
+    this.sut.deadLetter(message);
+
+    verify(this.deadLetterQueue).scheduleMessageSigning(message);
+    assertEquals(0, this.connection.sync().xlen(this.stream));
+  }
+
+  @Test
+  void scheduleMessageSigningAsync_completesOnceAdded() {
+    IntStream.range(0, 20)
+        .mapToObj(
+            i ->
+                this.sut.scheduleMessageSigningAsync(
+                    new SignRequestMessage("message-" + i, "https://url.com")))
+        .collect(Collectors.toList())
+        .forEach(future -> future.join());
+
+    assertEquals(20, this.connection.sync().xlen(this.stream));
+  }
+
+  private RedisStreamMessageSigningQueue newQueue(String consumerName) {
+    return new RedisStreamMessageSigningQueue(
+        this.connection.async(),
+        this.redisClient.connect(),
+        this.stream,
+        "signers",
+        consumerName,
+        WAIT_TIME,
+        VISIBILITY_TIMEOUT,
+        new JsonMessageCodec(new ObjectMapper()),
+        this.deadLetterQueue);
+  }
+
+  private void givenMessages(int count) {
+    IntStream.range(0, count)
+        .forEach(
+            i ->
+                this.sut.scheduleMessageSigning(
+                    new SignRequestMessage("message-" + i, "https://url.com")));
+  }
+
+  private static List<String> bodies(List<SignRequestMessage> messages) {
+    return messages.stream().map(SignRequestMessage::getMessage).collect(Collectors.toList());
+  }
+}
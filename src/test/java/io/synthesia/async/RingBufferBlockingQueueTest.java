@@ -0,0 +1,212 @@
+package io.synthesia.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class RingBufferBlockingQueueTest {
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @AfterEach
+  void afterEach() {
+    this.executor.shutdownNow();
+  }
+
+  @Test
+  void poll_returnsElementsInOrder() {
+    var sut = new RingBufferBlockingQueue<Integer>(3, WaitStrategy.named(WaitStrategy.BLOCKING));
+
+    IntStream.range(0, 3).forEach(sut::offer);
+
+    assertEquals(0, sut.poll());
+    assertEquals(1, sut.poll());
+    assertEquals(2, sut.poll());
+    assertNull(sut.poll());
+  }
+
+  @Test
+  void offer_whenFull_returnsFalse() {
+    var sut = new RingBufferBlockingQueue<Integer>(3, WaitStrategy.named(WaitStrategy.BLOCKING));
+
+    IntStream.range(0, 3).forEach(sut::offer);
+
+    assertFalse(sut.offer(3));
+    assertEquals(3, sut.size());
+    assertEquals(0, sut.remainingCapacity());
+  }
+
+  @Test
+  void offer_wrapsAroundTheBuffer() {
+    var sut = new RingBufferBlockingQueue<Integer>(3, WaitStrategy.named(WaitStrategy.BLOCKING));
+
+    for (int i = 0; i < 10; i++) {
+      assertTrue(sut.offer(i));
+      assertEquals(i, sut.peek());
+      assertEquals(i, sut.poll());
+    }
+
+    assertTrue(sut.isEmpty());
+  }
+
+  @Test
+  void constructor_whenSingleSlot_throws() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new RingBufferBlockingQueue<Integer>(1, WaitStrategy.named(WaitStrategy.BLOCKING)));
+  }
+
+  @Test
+  void offer_whenNull_throws() {
+    var sut = new RingBufferBlockingQueue<Integer>(3, WaitStrategy.named(WaitStrategy.BLOCKING));
+
+    assertThrows(NullPointerException.class, () -> sut.offer(null));
+  }
+
+  @Test
+  void drainTo_respectsMaxElements() {
+    var sut = new RingBufferBlockingQueue<Integer>(5, WaitStrategy.named(WaitStrategy.BLOCKING));
+    List<Integer> drained = new ArrayList<>();
+
+    IntStream.range(0, 5).forEach(sut::offer);
+
+    assertEquals(2, sut.drainTo(drained, 2));
+    assertEquals(3, sut.drainTo(drained));
+    assertEquals(List.of(0, 1, 2, 3, 4), drained);
+  }
+
+  @Test
+  void iterator_returnsQueuedElements() {
+    var sut = new RingBufferBlockingQueue<Integer>(5, WaitStrategy.named(WaitStrategy.BLOCKING));
+
+    IntStream.range(0, 4).forEach(sut::offer);
+    sut.poll();
+
+    assertEquals("[1, 2, 3]", sut.toString());
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {WaitStrategy.BLOCKING, WaitStrategy.YIELDING, WaitStrategy.BUSY_SPIN})
+  void poll_whenEmpty_waitsForTimeout(String waitStrategy) throws Exception {
+    var sut = new RingBufferBlockingQueue<Integer>(3, WaitStrategy.named(waitStrategy));
+    var start = System.nanoTime();
+
+    assertNull(sut.poll(50, TimeUnit.MILLISECONDS));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {WaitStrategy.BLOCKING, WaitStrategy.YIELDING, WaitStrategy.BUSY_SPIN})
+  void take_whenEmpty_waitsForProducer(String waitStrategy) throws Exception {
+    var sut = new RingBufferBlockingQueue<Integer>(3, WaitStrategy.named(waitStrategy));
+
+    Future<Integer> taken = this.executor.submit(sut::take);
+    Thread.sleep(50);
+    assertFalse(taken.isDone());
+
+    sut.put(1);
+
+    assertEquals(1, taken.get(1, TimeUnit.SECONDS));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {WaitStrategy.BLOCKING, WaitStrategy.YIELDING, WaitStrategy.BUSY_SPIN})
+  void put_whenFull_waitsForConsumer(String waitStrategy) throws Exception {
+    var sut = new RingBufferBlockingQueue<Integer>(2, WaitStrategy.named(waitStrategy));
+    sut.put(0);
+    sut.put(1);
+
+    Future<?> put =
+        this.executor.submit(
+            () -> {
+              sut.put(2);
+              return null;
+            });
+    Thread.sleep(50);
+    assertFalse(put.isDone());
+
+    assertEquals(0, sut.poll());
+
+    put.get(1, TimeUnit.SECONDS);
+    assertEquals(1, sut.poll());
+    assertEquals(2, sut.poll());
+  }
+
+  @Test
+  void take_whenInterrupted_throws() throws Exception {
+    var sut = new RingBufferBlockingQueue<Integer>(3, WaitStrategy.named(WaitStrategy.BLOCKING));
+    var interrupted = new CountDownLatch(1);
+
+    var thread =
+        new Thread(
+            () -> {
+              try {
+                sut.take();
+              } catch (InterruptedException e) {
+                interrupted.countDown();
+              }
+            });
+    thread.start();
+    thread.interrupt();
+
+    assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+  }
+
+  // Busy spinning is left out, eight spinning threads take too long on a single core build agent
+  @ParameterizedTest
+  @ValueSource(strings = {WaitStrategy.BLOCKING, WaitStrategy.YIELDING})
+  void manyProducersAndConsumers_deliverEveryElementOnce(String waitStrategy) throws Exception {
+    var sut = new RingBufferBlockingQueue<Integer>(8, WaitStrategy.named(waitStrategy));
+    var producers = 4;
+    var consumers = 4;
+    var perProducer = 10_000;
+    Set<Integer> received = ConcurrentHashMap.newKeySet();
+    List<Future<?>> futures = new ArrayList<>();
+
+    for (int p = 0; p < producers; p++) {
+      var offset = p * perProducer;
+      futures.add(
+          this.executor.submit(
+              () -> {
+                for (int i = 0; i < perProducer; i++) {
+                  sut.put(offset + i);
+                }
+                return null;
+              }));
+    }
+
+    for (int c = 0; c < consumers; c++) {
+      futures.add(
+          this.executor.submit(
+              () -> {
+                for (int i = 0; i < producers * perProducer / consumers; i++) {
+                  assertTrue(received.add(sut.take()));
+                }
+                return null;
+              }));
+    }
+
+    for (var future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+
+    assertEquals(producers * perProducer, received.size());
+    assertTrue(sut.isEmpty());
+  }
+}
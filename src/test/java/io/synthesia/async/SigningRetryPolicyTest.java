@@ -0,0 +1,119 @@
+package io.synthesia.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.Counter;
+import io.synthesia.async.dto.SignRequestMessage;
+import io.synthesia.crypto.limiter.RateLimiter;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class SigningRetryPolicyTest {
+  private static final int MAX_ATTEMPTS = 3;
+  private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+  @Mock private MessageSigningQueue messageSigningQueue;
+  @Mock private RateLimiter rateLimiter;
+  @Mock private Counter retriedCounter;
+  @Mock private Counter deadLetteredCounter;
+
+  private SigningRetryPolicy sut;
+
+  @BeforeEach
+  public void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    when(this.rateLimiter.timeUntilAvailable()).thenReturn(Duration.ZERO);
+
+    this.sut =
+        new SigningRetryPolicy(
+            this.messageSigningQueue,
+            this.rateLimiter,
+            MAX_ATTEMPTS,
+            MAX_BACKOFF,
+            () -> 1.0,
+            this.retriedCounter,
+            this.deadLetteredCounter);
+  }
+
+  @Test
+  void backoff_doublesOnEveryAttempt() {
+    assertEquals(Duration.ofSeconds(5), this.sut.backoff(SigningFailure.SIGN_FAILED, 1));
+    assertEquals(Duration.ofSeconds(10), this.sut.backoff(SigningFailure.SIGN_FAILED, 2));
+    assertEquals(Duration.ofSeconds(20), this.sut.backoff(SigningFailure.SIGN_FAILED, 3));
+  }
+
+  @Test
+  void backoff_isCappedAtMaxBackoff() {
+    assertEquals(MAX_BACKOFF, this.sut.backoff(SigningFailure.WEBHOOK_FAILED, 10));
+    assertEquals(MAX_BACKOFF, this.sut.backoff(SigningFailure.WEBHOOK_FAILED, 100));
+  }
+
+  @Test
+  void signFailed_whenAttemptsLeft_retriesMessageWithBackoff() {
+    var message = givenMessageReceived(2);
+
+    this.sut.signFailed(message);
+
+    verify(this.messageSigningQueue).retry(message, Duration.ofSeconds(10));
+    verify(this.retriedCounter).increment();
+  }
+
+  @Test
+  void signFailed_whenRateLimited_releasesUntilNextTokenWithoutDeadLettering() {
+    var message = givenMessageReceived(MAX_ATTEMPTS);
+    when(this.rateLimiter.timeUntilAvailable()).thenReturn(Duration.ofSeconds(7));
+
+    this.sut.signFailed(message);
+
+    verify(this.messageSigningQueue).release(message, Duration.ofSeconds(8));
+    verify(this.messageSigningQueue, never()).retry(any(), any());
+    verify(this.messageSigningQueue, never()).deadLetter(any());
+  }
+
+  @Test
+  void signRejected_whenOutOfAttempts_releasesWithoutDeadLettering() {
+    var message = givenMessageReceived(MAX_ATTEMPTS);
+
+    this.sut.signRejected(message);
+
+    verify(this.messageSigningQueue).release(message, Duration.ofSeconds(1));
+    verify(this.messageSigningQueue, never()).retry(any(), any());
+    verify(this.messageSigningQueue, never()).deadLetter(any());
+  }
+
+  @Test
+  void webhookFailed_whenAttemptsLeft_retriesMessageWithBackoff() {
+    var message = givenMessageReceived(1);
+
+    this.sut.webhookFailed(message);
+
+    verify(this.messageSigningQueue).retry(message, Duration.ofSeconds(30));
+  }
+
+  @Test
+  void webhookFailed_whenOutOfAttempts_deadLettersMessage() {
+    var message = givenMessageReceived(MAX_ATTEMPTS);
+
+    this.sut.webhookFailed(message);
+
+    verify(this.messageSigningQueue).deadLetter(message);
+    verify(this.messageSigningQueue, never()).retry(any(), any());
+    verify(this.deadLetteredCounter).increment();
+  }
+
+  private SignRequestMessage givenMessageReceived(int attempt) {
+    var message = new SignRequestMessage("message", "webhook");
+    message.setReceiptHandle("receipt");
+    message.setAttempt(attempt);
+
+    return message;
+  }
+}
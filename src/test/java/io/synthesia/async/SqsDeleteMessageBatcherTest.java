@@ -0,0 +1,130 @@
+package io.synthesia.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+
+public class SqsDeleteMessageBatcherTest {
+  private static final Duration INTERVAL = Duration.ofMillis(50);
+
+  @Mock private SqsClient sqsClient;
+
+  private SqsDeleteMessageBatcher sut;
+
+  @BeforeEach
+  void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    MeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+    this.sut =
+        new SqsDeleteMessageBatcher(
+            this.sqsClient,
+            "queueUrl",
+            INTERVAL,
+            Executors.newSingleThreadScheduledExecutor(),
+            DistributionSummary.builder("fill").register(registry),
+            Timer.builder("flush").register(registry));
+  }
+
+  @AfterEach
+  void afterEach() {
+    this.sut.close();
+  }
+
+  @SneakyThrows
+  @Test
+  void delete_groupsReceiptHandlesIntoSingleBatch() {
+    whenBatchSucceeds();
+
+    await(delete(SqsBatcher.MAX_BATCH_SIZE));
+
+    var requests = captureBatchRequests(1);
+    assertEquals(SqsBatcher.MAX_BATCH_SIZE, requests.get(0).entries().size());
+  }
+
+  @SneakyThrows
+  @Test
+  void delete_whenEntryRejected_retriesOnlyThatEntry() {
+    when(this.sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class)))
+        .thenReturn(rejecting("1"))
+        .thenReturn(DeleteMessageBatchResponse.builder().build());
+
+    await(delete(3));
+
+    var requests = captureBatchRequests(2);
+    assertEquals(
+        List.of("receipt 1"),
+        requests.get(1).entries().stream()
+            .map(DeleteMessageBatchRequestEntry::receiptHandle)
+            .collect(Collectors.toList()));
+  }
+
+  @Test
+  void delete_whenEntryKeepsBeingRejected_givesUpAfterMaxAttempts() {
+    when(this.sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class)))
+        .thenReturn(rejecting("0"));
+
+    var results = delete(1);
+
+    assertThrows(Exception.class, () -> results.get(0).get(1, TimeUnit.SECONDS));
+    captureBatchRequests(3);
+  }
+
+  private List<CompletableFuture<Void>> delete(int count) {
+    return IntStream.range(0, count)
+        .mapToObj(i -> this.sut.delete("receipt " + i))
+        .collect(Collectors.toList());
+  }
+
+  @SneakyThrows
+  private void await(List<CompletableFuture<Void>> results) {
+    CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(1, TimeUnit.SECONDS);
+  }
+
+  private void whenBatchSucceeds() {
+    when(this.sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class)))
+        .thenReturn(DeleteMessageBatchResponse.builder().build());
+  }
+
+  private DeleteMessageBatchResponse rejecting(String id) {
+    return DeleteMessageBatchResponse.builder()
+        .failed(BatchResultErrorEntry.builder().id(id).code("InternalError").build())
+        .build();
+  }
+
+  private List<DeleteMessageBatchRequest> captureBatchRequests(int count) {
+    var captor = ArgumentCaptor.forClass(DeleteMessageBatchRequest.class);
+    verify(this.sqsClient, times(count)).deleteMessageBatch(captor.capture());
+
+    return captor.getAllValues();
+  }
+}
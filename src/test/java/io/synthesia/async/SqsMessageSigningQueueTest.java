@@ -1,16 +1,32 @@
 package io.synthesia.async;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.synthesia.async.claimcheck.ClaimCheck;
+import io.synthesia.async.claimcheck.FileSystemBlobStore;
+import io.synthesia.async.codec.JsonMessageCodec;
 import io.synthesia.async.dto.SignRequestMessage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.testcontainers.containers.localstack.LocalStackContainer;
 import org.testcontainers.containers.localstack.LocalStackContainer.Service;
 import org.testcontainers.junit.jupiter.Container;
@@ -24,6 +40,7 @@ import software.amazon.awssdk.services.sqs.model.CreateQueueRequest;
 import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest;
 import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
 import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SqsException;
 
 @Testcontainers
 public class SqsMessageSigningQueueTest {
@@ -54,7 +71,14 @@ public class SqsMessageSigningQueueTest {
 
     this.queueUrl = this.createQueue();
 
-    this.sut = new SqsMessageSigningQueue(this.sqsClient, queueUrl, 10, 20, OBJECT_MAPPER);
+    this.sut =
+        SqsMessageSigningQueue.builder()
+            .client(this.sqsClient)
+            .queueUrl(this.queueUrl)
+            .waitTimeInSeconds(10)
+            .visibilityTimeout(20)
+            .codec(new JsonMessageCodec(OBJECT_MAPPER))
+            .build();
   }
 
   @Test
@@ -69,6 +93,40 @@ public class SqsMessageSigningQueueTest {
     assertEquals(signRequestMessage, actualMessage);
   }
 
+  @Test
+  void scheduleMessageSigningAsync_whenBatchingEnabled_addsMessagesToQueue() {
+    var registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    var batcher =
+        new SqsSendMessageBatcher(
+            this.sqsClient,
+            this.queueUrl,
+            Duration.ofMillis(20),
+            Executors.newSingleThreadScheduledExecutor(),
+            DistributionSummary.builder("fill").register(registry),
+            Timer.builder("flush").register(registry));
+    var batchingQueue =
+        SqsMessageSigningQueue.builder()
+            .client(this.sqsClient)
+            .queueUrl(this.queueUrl)
+            .waitTimeInSeconds(10)
+            .visibilityTimeout(20)
+            .codec(new JsonMessageCodec(OBJECT_MAPPER))
+            .sendBatcher(batcher)
+            .build();
+
+    var signRequestMessage = new SignRequestMessage("message", "webhookUrl");
+
+    var results =
+        IntStream.range(0, 3)
+            .mapToObj(i -> batchingQueue.scheduleMessageSigningAsync(signRequestMessage))
+            .toArray(CompletableFuture[]::new);
+    CompletableFuture.allOf(results).join();
+    batchingQueue.close();
+
+    var messages = this.sut.getMessagesToSign();
+    assertEquals(3, messages.size());
+  }
+
   @Test
   void getMessagesToSign_readsAtMost10messages() {
     var signRequestMessage = new SignRequestMessage("message", "webhookUrl");
@@ -113,6 +171,106 @@ public class SqsMessageSigningQueueTest {
         (int) queueAttributes.get(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES_NOT_VISIBLE));
   }
 
+  @Test
+  void retry_whenReleasedBefore_countsOnlyFailedAttempts() {
+    var signRequestMessage = new SignRequestMessage("message", "webhookUrl");
+    this.sut.scheduleMessageSigning(signRequestMessage);
+
+    var delivery = this.sut.getMessagesToSign().get(0);
+    for (var i = 0; i < 5; i++) {
+      this.sut.release(delivery, Duration.ZERO);
+      delivery = this.sut.getMessagesToSign().get(0);
+    }
+    this.sut.retry(delivery, Duration.ZERO);
+
+    var retried = this.sut.getMessagesToSign().get(0);
+
+    assertEquals(1, delivery.getAttempt());
+    assertEquals(2, retried.getAttempt());
+    assertEquals(signRequestMessage, retried);
+  }
+
+  @Test
+  void scheduleMessageSigning_whenClaimCheckAndLargeMessage_onlySendsReference(@TempDir Path blobs)
+      throws Exception {
+    var claimCheck = new ClaimCheck(new FileSystemBlobStore(blobs), 1024);
+    var claimCheckQueue =
+        SqsMessageSigningQueue.builder()
+            .client(this.sqsClient)
+            .queueUrl(this.queueUrl)
+            .waitTimeInSeconds(10)
+            .visibilityTimeout(20)
+            .codec(new JsonMessageCodec(OBJECT_MAPPER))
+            .claimCheck(claimCheck)
+            .build();
+    // Larger than the 256 KB SQS accepts
+    var payload = "a".repeat(300 * 1024);
+
+    claimCheckQueue.scheduleMessageSigning(new SignRequestMessage(payload, "webhookUrl"));
+
+    var actualMessage = claimCheckQueue.getMessagesToSign().get(0);
+    assertNull(actualMessage.getMessage());
+    assertEquals(payload, claimCheck.payload(actualMessage));
+
+    claimCheckQueue.acknowledge(actualMessage);
+
+    try (var files = Files.list(blobs)) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  void scheduleMessageSigning_whenSendFails_deletesStoredPayload(@TempDir Path blobs)
+      throws Exception {
+    var missingQueue =
+        SqsMessageSigningQueue.builder()
+            .client(this.sqsClient)
+            .queueUrl(this.queueUrl + "-missing")
+            .waitTimeInSeconds(10)
+            .visibilityTimeout(20)
+            .codec(new JsonMessageCodec(OBJECT_MAPPER))
+            .claimCheck(new ClaimCheck(new FileSystemBlobStore(blobs), 1024))
+            .build();
+    var signRequestMessage = new SignRequestMessage("a".repeat(2048), "webhookUrl");
+
+    assertThrows(SqsException.class, () -> missingQueue.scheduleMessageSigning(signRequestMessage));
+
+    try (var files = Files.list(blobs)) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  void deadLetter_movesMessageToDeadLetterQueue() {
+    var deadLetterQueueUrl = this.createQueue();
+    var queueWithDeadLetters =
+        SqsMessageSigningQueue.builder()
+            .client(this.sqsClient)
+            .queueUrl(this.queueUrl)
+            .waitTimeInSeconds(10)
+            .visibilityTimeout(20)
+            .codec(new JsonMessageCodec(OBJECT_MAPPER))
+            .deadLetterQueueUrl(deadLetterQueueUrl)
+            .build();
+    var signRequestMessage = new SignRequestMessage("message", "webhookUrl");
+    queueWithDeadLetters.scheduleMessageSigning(signRequestMessage);
+
+    var actualMessage = queueWithDeadLetters.getMessagesToSign().get(0);
+    queueWithDeadLetters.deadLetter(actualMessage);
+
+    var deadLetters =
+        SqsMessageSigningQueue.builder()
+            .client(this.sqsClient)
+            .queueUrl(deadLetterQueueUrl)
+            .waitTimeInSeconds(10)
+            .visibilityTimeout(20)
+            .codec(new JsonMessageCodec(OBJECT_MAPPER))
+            .build()
+            .getMessagesToSign();
+    assertEquals(List.of(signRequestMessage), deadLetters);
+    assertEquals(0, this.sut.getMessagesToSign().size());
+  }
+
   private String createQueue() {
     var request = CreateQueueRequest.builder().queueName("queue-" + UUID.randomUUID()).build();
     var response = this.sqsClient.createQueue(request);
@@ -0,0 +1,151 @@
+package io.synthesia.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+
+public class SqsSendMessageBatcherTest {
+  private static final Duration LINGER = Duration.ofMillis(100);
+
+  @Mock private SqsClient sqsClient;
+
+  private DistributionSummary batchFillRatio;
+
+  private SqsSendMessageBatcher sut;
+
+  @BeforeEach
+  void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    MeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    this.batchFillRatio = DistributionSummary.builder("fill").register(registry);
+
+    whenBatchSucceeds();
+
+    this.sut =
+        new SqsSendMessageBatcher(
+            this.sqsClient,
+            "queueUrl",
+            LINGER,
+            Executors.newSingleThreadScheduledExecutor(),
+            this.batchFillRatio,
+            Timer.builder("flush").register(registry));
+  }
+
+  @AfterEach
+  void afterEach() {
+    this.sut.close();
+  }
+
+  @SneakyThrows
+  @Test
+  void send_whenBatchIsFull_flushesImmediately() {
+    var results = send(SqsBatcher.MAX_BATCH_SIZE);
+
+    CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+        .get(LINGER.toMillis() / 2, TimeUnit.MILLISECONDS);
+
+    var request = captureBatchRequest();
+    assertEquals(SqsBatcher.MAX_BATCH_SIZE, request.entries().size());
+    assertEquals(1.0, this.batchFillRatio.max());
+  }
+
+  @SneakyThrows
+  @Test
+  void send_whenBatchIsNotFull_flushesAfterLinger() {
+    var results = send(3);
+
+    Thread.sleep(LINGER.toMillis() / 2);
+    verify(this.sqsClient, never()).sendMessageBatch(any(SendMessageBatchRequest.class));
+
+    CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(1, TimeUnit.SECONDS);
+
+    assertEquals(3, captureBatchRequest().entries().size());
+  }
+
+  @Test
+  void send_whenEntryRejected_failsOnlyThatEntry() {
+    whenBatchRejectsEntry("1");
+
+    var results = send(3);
+
+    results.get(0).join();
+    assertThrows(Exception.class, () -> results.get(1).join());
+    results.get(2).join();
+  }
+
+  @Test
+  void send_whenBatchRequestThrows_failsEveryEntry() {
+    when(this.sqsClient.sendMessageBatch(any(SendMessageBatchRequest.class)))
+        .thenThrow(RuntimeException.class);
+
+    var results = send(2);
+
+    results.forEach(result -> assertThrows(Exception.class, result::join));
+  }
+
+  @Test
+  void close_flushesBufferedEntries() {
+    var results = send(2);
+
+    this.sut.close();
+
+    assertTrue(results.stream().allMatch(CompletableFuture::isDone));
+    verify(this.sqsClient, times(1)).sendMessageBatch(any(SendMessageBatchRequest.class));
+  }
+
+  private List<CompletableFuture<Void>> send(int count) {
+    return IntStream.range(0, count)
+        .mapToObj(i -> this.sut.send("message " + i))
+        .collect(Collectors.toList());
+  }
+
+  private void whenBatchSucceeds() {
+    when(this.sqsClient.sendMessageBatch(any(SendMessageBatchRequest.class)))
+        .thenReturn(SendMessageBatchResponse.builder().build());
+  }
+
+  private void whenBatchRejectsEntry(String id) {
+    when(this.sqsClient.sendMessageBatch(any(SendMessageBatchRequest.class)))
+        .thenReturn(
+            SendMessageBatchResponse.builder()
+                .failed(BatchResultErrorEntry.builder().id(id).code("InternalError").build())
+                .build());
+  }
+
+  private SendMessageBatchRequest captureBatchRequest() {
+    var captor = ArgumentCaptor.forClass(SendMessageBatchRequest.class);
+    verify(this.sqsClient).sendMessageBatch(captor.capture());
+
+    return captor.getValue();
+  }
+}
@@ -0,0 +1,192 @@
+package io.synthesia.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.synthesia.async.dto.SignRequestMessage;
+import io.synthesia.crypto.CryptoClient;
+import io.synthesia.crypto.limiter.ReservingRateLimiter;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class TokenGateTest {
+  private static final Duration RELEASE_THRESHOLD = Duration.ofSeconds(2);
+  private static final Duration MAX_WAIT = Duration.ofMillis(10);
+
+  @Mock private ReservingRateLimiter rateLimiter;
+  @Mock private CryptoClient cryptoClient;
+  @Mock private MessageSigningQueue messageSigningQueue;
+
+  private BlockingQueue<SignRequestMessage> processorsQueue;
+
+  private TokenGate sut;
+
+  @BeforeEach
+  public void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    this.processorsQueue = new LinkedBlockingQueue<>();
+
+    this.sut =
+        new TokenGate(
+            this.rateLimiter,
+            this.cryptoClient,
+            this.messageSigningQueue,
+            this.processorsQueue,
+            RELEASE_THRESHOLD);
+  }
+
+  @SneakyThrows
+  @Test
+  void awaitToken_whenTokenAvailable_returnsTrue() {
+    whenTokenAvailableIn(Duration.ZERO);
+
+    var result = this.sut.awaitToken(MAX_WAIT);
+
+    assertTrue(result);
+  }
+
+  @SneakyThrows
+  @Test
+  void awaitToken_whenNextTokenIsSoon_keepsBufferedMessages() {
+    bufferedMessage();
+    whenTokenAvailableIn(Duration.ofMillis(500));
+
+    var result = this.sut.awaitToken(MAX_WAIT);
+
+    assertFalse(result);
+    assertEquals(1, this.processorsQueue.size());
+    verify(this.messageSigningQueue, never()).release(any(), any());
+  }
+
+  @SneakyThrows
+  @Test
+  void awaitToken_whenNextTokenIsFarAway_releasesBufferedMessages() {
+    var message = bufferedMessage();
+    var wait = Duration.ofSeconds(30);
+    whenTokenAvailableIn(wait);
+
+    var result = this.sut.awaitToken(MAX_WAIT);
+
+    assertFalse(result);
+    assertEquals(0, this.processorsQueue.size());
+    verify(this.messageSigningQueue).release(message, wait);
+  }
+
+  @SneakyThrows
+  @Test
+  void reserveToken_whenTokenAvailable_reservesIt() {
+    when(this.rateLimiter.reserve()).thenReturn(true);
+    when(this.cryptoClient.cached(any())).thenReturn(Optional.empty());
+
+    var result = this.sut.reserveToken(new SignRequestMessage("message", "webhook"));
+
+    assertTrue(result);
+    verify(this.rateLimiter).reserve();
+  }
+
+  @SneakyThrows
+  @Test
+  void reserveToken_whenNextTokenIsSoon_waitsForIt() {
+    when(this.rateLimiter.reserve()).thenReturn(false, true);
+    when(this.cryptoClient.cached(any())).thenReturn(Optional.empty());
+    whenTokenAvailableIn(Duration.ofMillis(10));
+
+    var result = this.sut.reserveToken(new SignRequestMessage("message", "webhook"));
+
+    assertTrue(result);
+    verify(this.messageSigningQueue, never()).release(any(), any());
+  }
+
+  @SneakyThrows
+  @Test
+  void reserveToken_whenNextTokenIsFarAway_releasesMessageAndBufferedMessages() {
+    var buffered = bufferedMessage();
+    var message = new SignRequestMessage("other", "webhook");
+    var wait = Duration.ofSeconds(30);
+    when(this.rateLimiter.reserve()).thenReturn(false);
+    when(this.cryptoClient.cached(any())).thenReturn(Optional.empty());
+    whenTokenAvailableIn(wait);
+
+    var result = this.sut.reserveToken(message);
+
+    assertFalse(result);
+    assertEquals(0, this.processorsQueue.size());
+    verify(this.messageSigningQueue).release(message, wait);
+    verify(this.messageSigningQueue).release(buffered, wait);
+  }
+
+  @SneakyThrows
+  @Test
+  void reserveToken_whenAlreadySigned_doesNotReserve() {
+    var message = new SignRequestMessage("message", "webhook").withSignedMessage("signed");
+
+    var result = this.sut.reserveToken(message);
+
+    assertTrue(result);
+    verify(this.rateLimiter, never()).reserve();
+  }
+
+  @SneakyThrows
+  @Test
+  void reserveToken_whenSignatureIsCached_doesNotReserve() {
+    when(this.cryptoClient.cached("message")).thenReturn(Optional.of("signed"));
+
+    var result = this.sut.reserveToken(new SignRequestMessage("message", "webhook"));
+
+    assertTrue(result);
+    verify(this.rateLimiter, never()).reserve();
+  }
+
+  @Test
+  void availableDispatches_isCappedAtMax() {
+    when(this.rateLimiter.availableTokens()).thenReturn(50L);
+
+    assertEquals(10, this.sut.availableDispatches(10));
+  }
+
+  @Test
+  void releaseIfRateLimited_whenLimiterIsDry_releasesUntilNextToken() {
+    var message = new SignRequestMessage("message", "webhook");
+    var wait = Duration.ofSeconds(5);
+    whenTokenAvailableIn(wait);
+
+    this.sut.releaseIfRateLimited(message);
+
+    verify(this.messageSigningQueue).release(message, wait);
+  }
+
+  @Test
+  void releaseIfRateLimited_whenTokensAvailable_doesNotRelease() {
+    var message = new SignRequestMessage("message", "webhook");
+    whenTokenAvailableIn(Duration.ZERO);
+
+    this.sut.releaseIfRateLimited(message);
+
+    verify(this.messageSigningQueue, never()).release(any(), any());
+  }
+
+  private void whenTokenAvailableIn(Duration wait) {
+    when(this.rateLimiter.timeUntilAvailable()).thenReturn(wait);
+  }
+
+  private SignRequestMessage bufferedMessage() {
+    var message = new SignRequestMessage("message", "webhook");
+
+    this.processorsQueue.add(message);
+
+    return message;
+  }
+}
@@ -0,0 +1,109 @@
+package io.synthesia.async;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.synthesia.async.dto.SignRequestMessage;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class WebhookDeliveryProcessorTest {
+  @Mock private WebhookClient webhookClient;
+
+  @Mock private MessageSigningQueue deliveryQueue;
+
+  @Mock private SigningRetryPolicy retryPolicy;
+
+  private BlockingQueue<SignRequestMessage> deliveriesQueue;
+
+  private WebhookDeliveryProcessor sut;
+
+  @BeforeEach
+  public void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    this.deliveriesQueue = new LinkedBlockingQueue<>();
+
+    this.sut =
+        new WebhookDeliveryProcessor(
+            this.webhookClient, this.deliveriesQueue, 1, this.deliveryQueue, this.retryPolicy);
+  }
+
+  @Test
+  void run_whenWebhookSucceeds_acknowledgesMessage() {
+    var message = givenSignedMessageToDeliver();
+    when(this.webhookClient.notify("webhook", "signedMessage")).thenReturn(true);
+
+    this.runSut();
+
+    verify(this.deliveryQueue).acknowledge(message);
+    verify(this.retryPolicy, never()).webhookFailed(any());
+  }
+
+  @Test
+  void run_whenWebhookFails_retriesDeliveryOnly() {
+    var message = givenSignedMessageToDeliver();
+    when(this.webhookClient.notify(any(), any())).thenReturn(false);
+
+    this.runSut();
+
+    verify(this.retryPolicy).webhookFailed(message);
+    verify(this.deliveryQueue, never()).acknowledge(any());
+  }
+
+  @Test
+  void run_whenWebhookThrows_retriesDeliveryOnly() {
+    var message = givenSignedMessageToDeliver();
+    when(this.webhookClient.notify(any(), any())).thenThrow(RuntimeException.class);
+
+    this.runSut();
+
+    verify(this.retryPolicy).webhookFailed(message);
+    verify(this.deliveryQueue, never()).acknowledge(any());
+  }
+
+  @Test
+  void run_whenMessageIsNotSigned_doesNotCallTheWebhook() {
+    var message = new SignRequestMessage("message", "webhook");
+    message.setReceiptHandle("receipt");
+    this.deliveriesQueue.add(message);
+
+    this.runSut();
+
+    verify(this.webhookClient, never()).notify(any(), any());
+  }
+
+  private SignRequestMessage givenSignedMessageToDeliver() {
+    var message = new SignRequestMessage("message", "webhook", "signedMessage");
+    message.setReceiptHandle("receipt");
+
+    this.deliveriesQueue.add(message);
+
+    return message;
+  }
+
+  @SneakyThrows
+  private void runSut() {
+    ExecutorService carrier = Executors.newSingleThreadExecutor();
+
+    carrier.execute(this.sut);
+
+    Thread.sleep(1000);
+
+    carrier.shutdown();
+
+    carrier.awaitTermination(2, TimeUnit.SECONDS);
+
+    carrier.shutdownNow();
+  }
+}
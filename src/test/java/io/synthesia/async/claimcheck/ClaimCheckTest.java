@@ -0,0 +1,107 @@
+package io.synthesia.async.claimcheck;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.synthesia.async.dto.SignRequestMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class ClaimCheckTest {
+  private static final int THRESHOLD_IN_BYTES = 10;
+
+  @Mock private BlobStore blobStore;
+
+  private ClaimCheck sut;
+
+  @BeforeEach
+  void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    this.sut = new ClaimCheck(this.blobStore, THRESHOLD_IN_BYTES);
+  }
+
+  @Test
+  void checkIn_whenBelowThreshold_keepsMessage() {
+    var signRequestMessage = new SignRequestMessage("a".repeat(10), "webhook");
+
+    assertSame(signRequestMessage, this.sut.checkIn(signRequestMessage));
+    verify(this.blobStore, never()).put(any());
+  }
+
+  @Test
+  void checkIn_whenAboveThreshold_storesPayloadAndKeepsReference() {
+    when(this.blobStore.put("a".repeat(11))).thenReturn("reference");
+
+    var checkedIn = this.sut.checkIn(new SignRequestMessage("a".repeat(11), "webhook"));
+
+    assertEquals(new SignRequestMessage(null, "webhook", null, "reference"), checkedIn);
+  }
+
+  @Test
+  void checkIn_countsEncodedBytes() {
+    // Four characters, twelve bytes once encoded
+    var message = "€€€€";
+    when(this.blobStore.put(message)).thenReturn("reference");
+
+    assertNull(this.sut.checkIn(new SignRequestMessage(message, "webhook")).getMessage());
+  }
+
+  @Test
+  void payload_whenCheckedIn_fetchesFromBlobStore() {
+    when(this.blobStore.get("reference")).thenReturn("payload");
+
+    assertEquals(
+        "payload", this.sut.payload(new SignRequestMessage(null, "webhook", null, "reference")));
+  }
+
+  @Test
+  void payload_whenNotCheckedIn_returnsMessage() {
+    assertEquals("message", this.sut.payload(new SignRequestMessage("message", "webhook")));
+    verify(this.blobStore, never()).get(any());
+  }
+
+  @Test
+  void checkOut_dropsReference() {
+    var checkedIn = new SignRequestMessage(null, "webhook", null, "reference");
+
+    assertEquals(
+        new SignRequestMessage(null, "webhook", "signedMessage"),
+        this.sut.checkOut(checkedIn, "signedMessage"));
+  }
+
+  @Test
+  void disabled_keepsLargeMessagesAndCannotFetch() {
+    var signRequestMessage = new SignRequestMessage("a".repeat(11), "webhook");
+
+    assertSame(signRequestMessage, ClaimCheck.disabled().checkIn(signRequestMessage));
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            ClaimCheck.disabled()
+                .payload(new SignRequestMessage(null, "webhook", null, "reference")));
+  }
+
+  @Test
+  void discard_deletesStoredPayload() {
+    this.sut.discard(new SignRequestMessage(null, "webhook", null, "reference"));
+
+    verify(this.blobStore).delete("reference");
+  }
+
+  @Test
+  void discard_whenDeleteFails_doesNotThrow() {
+    doThrow(RuntimeException.class).when(this.blobStore).delete("reference");
+
+    this.sut.discard(new SignRequestMessage(null, "webhook", null, "reference"));
+  }
+}
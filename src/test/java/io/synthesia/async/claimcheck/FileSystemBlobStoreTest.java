@@ -0,0 +1,74 @@
+package io.synthesia.async.claimcheck;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FileSystemBlobStoreTest {
+  @TempDir Path directory;
+
+  private FileSystemBlobStore sut;
+
+  @BeforeEach
+  void beforeEach() {
+    this.sut = new FileSystemBlobStore(this.directory.resolve("blobs"));
+  }
+
+  @Test
+  void get_returnsStoredContent() {
+    var key = this.sut.put("content ✓");
+
+    assertEquals("content ✓", this.sut.get(key));
+  }
+
+  @Test
+  void put_usesNewKeyEveryTime() {
+    var first = this.sut.put("content");
+    var second = this.sut.put("content");
+
+    assertEquals(2, Set.of(first, second).size());
+  }
+
+  @Test
+  void delete_removesContent() throws Exception {
+    var key = this.sut.put("content");
+
+    this.sut.delete(key);
+    this.sut.delete(key);
+
+    assertThrows(UncheckedIOException.class, () -> this.sut.get(key));
+    try (var files = Files.list(this.directory.resolve("blobs"))) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  void deleteOlderThan_onlyDeletesExpiredContent() throws Exception {
+    var now = Instant.now();
+    var expired = this.sut.put("expired");
+    var kept = this.sut.put("kept");
+    Files.setLastModifiedTime(
+        this.directory.resolve("blobs").resolve(expired),
+        FileTime.from(now.minus(Duration.ofDays(15))));
+
+    assertEquals(1, this.sut.deleteOlderThan(now.minus(Duration.ofDays(14))));
+
+    assertThrows(UncheckedIOException.class, () -> this.sut.get(expired));
+    assertEquals("kept", this.sut.get(kept));
+  }
+
+  @Test
+  void get_whenKeyOutsideDirectory_throws() {
+    assertThrows(IllegalArgumentException.class, () -> this.sut.get("../secret"));
+  }
+}
@@ -0,0 +1,67 @@
+package io.synthesia.async.claimcheck;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.localstack.LocalStackContainer;
+import org.testcontainers.containers.localstack.LocalStackContainer.Service;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+@Testcontainers
+public class S3BlobStoreTest {
+  @Container
+  private static final LocalStackContainer localstack =
+      new LocalStackContainer(DockerImageName.parse("localstack/localstack:2.2"))
+          .withServices(Service.S3);
+
+  private S3BlobStore sut;
+
+  @BeforeEach
+  void beforeEach() {
+    var s3Client =
+        S3Client.builder()
+            .endpointOverride(localstack.getEndpointOverride(Service.S3))
+            .credentialsProvider(
+                StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(
+                        localstack.getAccessKey(), localstack.getSecretKey())))
+            .region(Region.of(localstack.getRegion()))
+            .forcePathStyle(true)
+            .build();
+
+    var bucket = UUID.randomUUID().toString();
+    s3Client.createBucket(CreateBucketRequest.builder().bucket(bucket).build());
+
+    this.sut = new S3BlobStore(s3Client, bucket, "messages/");
+  }
+
+  @Test
+  void get_returnsStoredContent() {
+    var key = this.sut.put("content ✓");
+
+    assertTrue(key.startsWith("messages/"));
+    assertEquals("content ✓", this.sut.get(key));
+  }
+
+  @Test
+  void delete_removesContent() {
+    var key = this.sut.put("content");
+
+    this.sut.delete(key);
+    this.sut.delete(key);
+
+    assertThrows(NoSuchKeyException.class, () -> this.sut.get(key));
+  }
+}
@@ -0,0 +1,110 @@
+package io.synthesia.async.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.synthesia.async.dto.SignRequestMessage;
+import java.util.Arrays;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+
+public class BinaryMessageCodecTest {
+  private static final int COMPRESSION_THRESHOLD = 256;
+
+  private final JsonMessageCodec jsonCodec = new JsonMessageCodec(new ObjectMapper());
+
+  private final BinaryMessageCodec sut =
+      new BinaryMessageCodec(COMPRESSION_THRESHOLD, this.jsonCodec);
+
+  @Test
+  void decode_returnsEncodedMessage() {
+    var signRequestMessage =
+        new SignRequestMessage("message ✓", "https://url.com/hook", "signature");
+
+    assertEquals(signRequestMessage, this.sut.decode(this.sut.encode(signRequestMessage)));
+  }
+
+  @Test
+  void decode_keepsNullFieldsNull() {
+    var signRequestMessage = new SignRequestMessage("", null);
+
+    var decoded = this.sut.decode(this.sut.encode(signRequestMessage));
+
+    assertEquals("", decoded.getMessage());
+    assertNull(decoded.getWebhookUrl());
+    assertNull(decoded.getSignedMessage());
+  }
+
+  @Test
+  void encode_isSmallerThanJson() {
+    var signRequestMessage = new SignRequestMessage("message", "https://url.com/hook");
+
+    assertTrue(
+        this.sut.encode(signRequestMessage).length()
+            < this.jsonCodec.encode(signRequestMessage).length());
+  }
+
+  @Test
+  void encode_leavesOutReceiptHandle() {
+    var signRequestMessage = new SignRequestMessage("message", "https://url.com");
+    signRequestMessage.setReceiptHandle("receipt");
+
+    assertNull(this.sut.decode(this.sut.encode(signRequestMessage)).getReceiptHandle());
+  }
+
+  @Test
+  void encode_whenAboveThreshold_compresses() {
+    var signRequestMessage = new SignRequestMessage("a".repeat(10_000), "https://url.com");
+
+    var body = this.sut.encode(signRequestMessage);
+
+    assertTrue(body.length() < 1_000);
+    assertEquals(1, Base64.getDecoder().decode(body)[1]);
+    assertEquals(signRequestMessage, this.sut.decode(body));
+  }
+
+  @Test
+  void encode_whenBelowThreshold_doesNotCompress() {
+    var signRequestMessage = new SignRequestMessage("a".repeat(100), "https://url.com");
+
+    assertEquals(0, Base64.getDecoder().decode(this.sut.encode(signRequestMessage))[1]);
+  }
+
+  @Test
+  void decode_whenJson_usesJsonCodec() {
+    var signRequestMessage = new SignRequestMessage("message", "https://url.com");
+
+    assertEquals(signRequestMessage, this.sut.decode(this.jsonCodec.encode(signRequestMessage)));
+  }
+
+  @Test
+  void decode_keepsMessageReference() {
+    var signRequestMessage = new SignRequestMessage(null, "https://url.com", null, "reference");
+
+    assertEquals(signRequestMessage, this.sut.decode(this.sut.encode(signRequestMessage)));
+  }
+
+  @Test
+  void decode_whenUnknownVersion_throws() {
+    var body = Base64.getEncoder().encodeToString(new byte[] {2, 0, 0, 0, 0, 0});
+
+    assertThrows(MessageCodecException.class, () -> this.sut.decode(body));
+  }
+
+  @Test
+  void decode_whenTruncated_throws() {
+    var body = this.sut.encode(new SignRequestMessage("message", "https://url.com"));
+    var bytes = Base64.getDecoder().decode(body);
+    var truncated = Base64.getEncoder().encodeToString(Arrays.copyOf(bytes, 6));
+
+    assertThrows(MessageCodecException.class, () -> this.sut.decode(truncated));
+  }
+
+  @Test
+  void decode_whenNotBase64_throws() {
+    assertThrows(MessageCodecException.class, () -> this.sut.decode("not base64!"));
+  }
+}
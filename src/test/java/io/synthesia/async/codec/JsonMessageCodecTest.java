@@ -0,0 +1,42 @@
+package io.synthesia.async.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.synthesia.async.dto.SignRequestMessage;
+import org.junit.jupiter.api.Test;
+
+public class JsonMessageCodecTest {
+  private final JsonMessageCodec sut = new JsonMessageCodec(new ObjectMapper());
+
+  @Test
+  void encode_leavesOutReceiptHandle() {
+    var signRequestMessage = new SignRequestMessage("message", "https://url.com");
+    signRequestMessage.setReceiptHandle("receipt");
+
+    var body = this.sut.encode(signRequestMessage);
+
+    assertFalse(body.contains("receipt"));
+    assertEquals(signRequestMessage, this.sut.decode(body));
+  }
+
+  @Test
+  void decode_whenBodyHasReceiptHandle_ignoresIt() {
+    var body =
+        "{\"receiptHandle\":\"stale\",\"message\":\"message\","
+            + "\"webhookUrl\":\"https://url.com\",\"signedMessage\":null}";
+
+    var signRequestMessage = this.sut.decode(body);
+
+    assertEquals(new SignRequestMessage("message", "https://url.com"), signRequestMessage);
+    assertNull(signRequestMessage.getReceiptHandle());
+  }
+
+  @Test
+  void decode_whenMalformed_throws() {
+    assertThrows(MessageCodecException.class, () -> this.sut.decode("{\"message\":"));
+  }
+}
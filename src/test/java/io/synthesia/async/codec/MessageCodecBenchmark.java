@@ -0,0 +1,108 @@
+package io.synthesia.async.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.synthesia.async.dto.SignRequestMessage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the reflective {@code ObjectMapper} calls the SQS queue used to make with the JSON and
+ * binary codecs. {@code bodyLength} reports the size of the encoded body. Allocations per message
+ * are reported by running with {@code -Dbenchmark="MessageCodecBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class MessageCodecBenchmark {
+  private static final String WEBHOOK_URL = "https://webhook.example.com/synthesia/signatures";
+
+  @Param({"mapper", "json", "binary"})
+  public String codec;
+
+  /** Length of the message to sign, the larger one is above the compression threshold. */
+  @Param({"64", "4096"})
+  public int messageLength;
+
+  private ObjectMapper mapper;
+
+  private MessageCodec messageCodec;
+
+  private SignRequestMessage signRequestMessage;
+
+  private String body;
+
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class BodySize {
+    public long bodyLength;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      this.bodyLength = 0;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.mapper = new ObjectMapper();
+
+    var jsonCodec = new JsonMessageCodec(this.mapper);
+    this.messageCodec =
+        "binary".equals(this.codec) ? new BinaryMessageCodec(1024, jsonCodec) : jsonCodec;
+
+    // Text that compresses about as well as a typical message does
+    var message = new StringBuilder();
+    while (message.length() < this.messageLength) {
+      message.append("Lorem ipsum dolor sit amet, ").append(message.length()).append(' ');
+    }
+
+    this.signRequestMessage =
+        new SignRequestMessage(message.substring(0, this.messageLength), WEBHOOK_URL);
+    this.signRequestMessage.setReceiptHandle("AQEBwJnKyrHigUMZj6rYigCgxlaS3SLy0a".repeat(10));
+    this.body = encode(this.signRequestMessage);
+  }
+
+  @Benchmark
+  public String encode(BodySize bodySize) {
+    var encoded = encode(this.signRequestMessage);
+
+    bodySize.bodyLength = encoded.length();
+    return encoded;
+  }
+
+  @Benchmark
+  public SignRequestMessage decode() throws Exception {
+    if ("mapper".equals(this.codec)) {
+      return this.mapper.readValue(this.body, SignRequestMessage.class);
+    }
+
+    return this.messageCodec.decode(this.body);
+  }
+
+  private String encode(SignRequestMessage signRequestMessage) {
+    if (!"mapper".equals(this.codec)) {
+      return this.messageCodec.encode(signRequestMessage);
+    }
+
+    try {
+      return this.mapper.writeValueAsString(signRequestMessage);
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package io.synthesia.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.synthesia.crypto.limiter.RateLimiter;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class ApiKeyPoolTest {
+  private static final Duration SIDELINE_DURATION = Duration.ofSeconds(60);
+
+  @Mock private RateLimiter firstRateLimiter;
+
+  @Mock private RateLimiter secondRateLimiter;
+
+  @Mock private Clock clock;
+
+  private MeterRegistry registry;
+
+  private ApiKeyPool sut;
+
+  @BeforeEach
+  void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    this.registry = new SimpleMeterRegistry();
+
+    givenCurrentTime(0);
+
+    this.sut =
+        new ApiKeyPool(
+            List.of("first", "second"),
+            List.of(this.firstRateLimiter, this.secondRateLimiter),
+            SIDELINE_DURATION,
+            this.clock,
+            this.registry);
+  }
+
+  @Test
+  void acquireKey_whenBothKeysHaveTokens_alternatesKeys() {
+    when(this.firstRateLimiter.tryAcquire()).thenReturn(true);
+    when(this.secondRateLimiter.tryAcquire()).thenReturn(true);
+
+    assertEquals(Optional.of("first"), this.sut.acquireKey());
+    assertEquals(Optional.of("second"), this.sut.acquireKey());
+    assertEquals(Optional.of("first"), this.sut.acquireKey());
+  }
+
+  @Test
+  void acquireKey_whenKeyExhausted_usesNextKey() {
+    when(this.firstRateLimiter.tryAcquire()).thenReturn(false);
+    when(this.secondRateLimiter.tryAcquire()).thenReturn(true);
+
+    assertEquals(Optional.of("second"), this.sut.acquireKey());
+  }
+
+  @Test
+  void acquireKey_whenAllKeysExhausted_returnsEmpty() {
+    assertEquals(Optional.empty(), this.sut.acquireKey());
+  }
+
+  @Test
+  void acquireKey_whenKeySidelined_skipsItUntilRetryAfter() {
+    when(this.firstRateLimiter.tryAcquire()).thenReturn(true);
+    when(this.secondRateLimiter.tryAcquire()).thenReturn(false);
+
+    this.sut.onRateLimited("first", Duration.ofSeconds(10));
+
+    assertEquals(Optional.empty(), this.sut.acquireKey());
+    verify(this.firstRateLimiter, never()).tryAcquire();
+    assertEquals(
+        1,
+        this.registry
+            .get("client_api_key_sidelined")
+            .tag("key", ApiKeyPool.keyId("first"))
+            .gauge()
+            .value());
+
+    givenCurrentTime(Duration.ofSeconds(10).toMillis());
+
+    assertEquals(Optional.of("first"), this.sut.acquireKey());
+  }
+
+  @Test
+  void onRateLimited_whenNoRetryAfter_usesDefaultSideline() {
+    this.sut.onRateLimited("first", Duration.ZERO);
+
+    givenCurrentTime(SIDELINE_DURATION.toMillis() - 1);
+    assertEquals(
+        1,
+        this.registry
+            .get("client_api_key_sidelined")
+            .tag("key", ApiKeyPool.keyId("first"))
+            .gauge()
+            .value());
+
+    givenCurrentTime(SIDELINE_DURATION.toMillis());
+    assertEquals(
+        0,
+        this.registry
+            .get("client_api_key_sidelined")
+            .tag("key", ApiKeyPool.keyId("first"))
+            .gauge()
+            .value());
+  }
+
+  @Test
+  void availableTokens_sumsKeysInUse() {
+    when(this.firstRateLimiter.availableTokens()).thenReturn(3L);
+    when(this.secondRateLimiter.availableTokens()).thenReturn(2L);
+
+    assertEquals(5, this.sut.availableTokens());
+
+    this.sut.onRateLimited("second", Duration.ZERO);
+
+    assertEquals(3, this.sut.availableTokens());
+  }
+
+  @Test
+  void timeUntilAvailable_returnsEarliestKey() {
+    when(this.firstRateLimiter.timeUntilAvailable()).thenReturn(Duration.ofSeconds(20));
+    when(this.secondRateLimiter.timeUntilAvailable()).thenReturn(Duration.ofSeconds(5));
+
+    assertEquals(Duration.ofSeconds(5), this.sut.timeUntilAvailable());
+
+    this.sut.onRateLimited("second", Duration.ofSeconds(30));
+
+    assertEquals(Duration.ofSeconds(20), this.sut.timeUntilAvailable());
+  }
+
+  private void givenCurrentTime(long millis) {
+    when(this.clock.millis()).thenReturn(millis);
+  }
+}
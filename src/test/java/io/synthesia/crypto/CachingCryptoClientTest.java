@@ -0,0 +1,142 @@
+package io.synthesia.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class CachingCryptoClientTest {
+  private static final String MESSAGE = "message";
+  private static final String SIGNED_MESSAGE = "signed message";
+
+  @Mock private CryptoClient delegate;
+
+  @Mock private SignatureCache localCache;
+
+  @Mock private SignatureCache sharedCache;
+
+  private CachingCryptoClient sut;
+
+  @BeforeEach
+  void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    MeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+    when(this.localCache.get(any())).thenReturn(Optional.empty());
+    when(this.sharedCache.get(any())).thenReturn(Optional.empty());
+
+    this.sut =
+        new CachingCryptoClient(
+            this.delegate,
+            this.localCache,
+            this.sharedCache,
+            Counter.builder("").register(registry),
+            Counter.builder("").register(registry),
+            Counter.builder("").register(registry));
+  }
+
+  @Test
+  void sign_whenLocalCacheHit_returnsCachedSignatureWithoutCallingDelegate() {
+    whenLocalCacheContainsSignature();
+
+    assertSignReturnsSignedMessage();
+    assertDelegateNotCalled();
+  }
+
+  @Test
+  void sign_whenSharedCacheHit_returnsCachedSignatureAndPopulatesLocalCache() {
+    whenSharedCacheContainsSignature();
+
+    assertSignReturnsSignedMessage();
+    assertDelegateNotCalled();
+    verify(this.localCache).put(MESSAGE, SIGNED_MESSAGE);
+  }
+
+  @Test
+  void sign_whenCacheMissAndSignSucceeds_populatesBothCaches() {
+    whenDelegateSucceeds();
+
+    assertSignReturnsSignedMessage();
+    verify(this.localCache).put(MESSAGE, SIGNED_MESSAGE);
+    verify(this.sharedCache).put(MESSAGE, SIGNED_MESSAGE);
+  }
+
+  @Test
+  void sign_whenCacheMissAndSignFails_returnsEmptyAndDoesNotPopulateCaches() {
+    whenDelegateFails();
+
+    assertEquals(Optional.empty(), this.sut.sign(MESSAGE));
+    verify(this.localCache, never()).put(any(), any());
+    verify(this.sharedCache, never()).put(any(), any());
+  }
+
+  @Test
+  void signAsync_whenCacheHit_returnsCachedSignatureWithoutCallingDelegate() {
+    whenLocalCacheContainsSignature();
+
+    assertEquals(Optional.of(SIGNED_MESSAGE), this.sut.signAsync(MESSAGE).join());
+    verify(this.delegate, never()).signAsync(any());
+  }
+
+  @Test
+  void signAsync_whenCacheMissAndSignSucceeds_populatesBothCaches() {
+    when(this.delegate.signAsync(MESSAGE))
+        .thenReturn(CompletableFuture.completedFuture(Optional.of(SIGNED_MESSAGE)));
+
+    assertEquals(Optional.of(SIGNED_MESSAGE), this.sut.signAsync(MESSAGE).join());
+    verify(this.localCache).put(MESSAGE, SIGNED_MESSAGE);
+    verify(this.sharedCache).put(MESSAGE, SIGNED_MESSAGE);
+  }
+
+  @Test
+  void cached_whenSharedCacheHit_returnsSignatureAndPopulatesLocalCache() {
+    whenSharedCacheContainsSignature();
+
+    assertEquals(Optional.of(SIGNED_MESSAGE), this.sut.cached(MESSAGE));
+    verify(this.localCache).put(MESSAGE, SIGNED_MESSAGE);
+    assertDelegateNotCalled();
+  }
+
+  @Test
+  void cached_whenCacheMiss_returnsEmptyWithoutCallingDelegate() {
+    assertEquals(Optional.empty(), this.sut.cached(MESSAGE));
+    assertDelegateNotCalled();
+  }
+
+  private void whenLocalCacheContainsSignature() {
+    when(this.localCache.get(MESSAGE)).thenReturn(Optional.of(SIGNED_MESSAGE));
+  }
+
+  private void whenSharedCacheContainsSignature() {
+    when(this.sharedCache.get(MESSAGE)).thenReturn(Optional.of(SIGNED_MESSAGE));
+  }
+
+  private void whenDelegateSucceeds() {
+    when(this.delegate.sign(MESSAGE)).thenReturn(Optional.of(SIGNED_MESSAGE));
+  }
+
+  private void whenDelegateFails() {
+    when(this.delegate.sign(MESSAGE)).thenReturn(Optional.empty());
+  }
+
+  private void assertSignReturnsSignedMessage() {
+    assertEquals(Optional.of(SIGNED_MESSAGE), this.sut.sign(MESSAGE));
+  }
+
+  private void assertDelegateNotCalled() {
+    verify(this.delegate, never()).sign(any());
+  }
+}
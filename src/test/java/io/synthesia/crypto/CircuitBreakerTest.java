@@ -0,0 +1,152 @@
+package io.synthesia.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.synthesia.crypto.CircuitBreaker.State;
+import java.time.Clock;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class CircuitBreakerTest {
+  private static final int WINDOW_SIZE = 4;
+  private static final int MINIMUM_CALLS = 2;
+  private static final Duration SLOW_CALL = Duration.ofSeconds(1);
+  private static final Duration OPEN_DURATION = Duration.ofSeconds(10);
+  private static final Duration FAST = Duration.ofMillis(10);
+
+  @Mock private Clock clock;
+
+  private SimpleMeterRegistry meterRegistry;
+
+  private CircuitBreaker sut;
+
+  @BeforeEach
+  public void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    this.meterRegistry = new SimpleMeterRegistry();
+
+    this.sut =
+        new CircuitBreaker(
+            WINDOW_SIZE,
+            MINIMUM_CALLS,
+            0.5,
+            0.5,
+            SLOW_CALL,
+            OPEN_DURATION,
+            1,
+            clock,
+            meterRegistry);
+
+    givenTimeIs(0);
+  }
+
+  @Test
+  void whenFailuresBelowMinimumCalls_staysClosed() {
+    this.sut.onFailure(FAST);
+
+    assertEquals(State.CLOSED, this.sut.getState());
+    assertTrue(this.sut.tryAcquirePermission());
+  }
+
+  @Test
+  void whenFailureRateReachesThreshold_opensAndRejects() {
+    this.sut.onSuccess(FAST);
+    this.sut.onFailure(FAST);
+
+    assertEquals(State.OPEN, this.sut.getState());
+    assertFalse(this.sut.tryAcquirePermission());
+    assertEquals(1, this.meterRegistry.get("client_circuit_rejection").counter().count());
+  }
+
+  @Test
+  void whenSlowCallRateReachesThreshold_opens() {
+    this.sut.onSuccess(SLOW_CALL);
+    this.sut.onSuccess(SLOW_CALL);
+
+    assertEquals(State.OPEN, this.sut.getState());
+  }
+
+  @Test
+  void whenOldFailuresLeaveTheWindow_staysClosed() {
+    this.sut.onSuccess(FAST);
+    this.sut.onSuccess(FAST);
+    this.sut.onSuccess(FAST);
+    this.sut.onFailure(FAST);
+    this.sut.onSuccess(FAST);
+
+    assertEquals(State.CLOSED, this.sut.getState());
+  }
+
+  @Test
+  void whenOpenDurationElapses_letsASingleProbeThrough() {
+    givenOpenCircuit();
+
+    givenTimeIs(OPEN_DURATION.toMillis());
+
+    assertTrue(this.sut.tryAcquirePermission());
+    assertEquals(State.HALF_OPEN, this.sut.getState());
+    assertFalse(this.sut.tryAcquirePermission());
+  }
+
+  @Test
+  void whenProbeSucceeds_closes() {
+    givenOpenCircuit();
+    givenTimeIs(OPEN_DURATION.toMillis());
+    this.sut.tryAcquirePermission();
+
+    this.sut.onSuccess(FAST);
+
+    assertEquals(State.CLOSED, this.sut.getState());
+    assertTrue(this.sut.tryAcquirePermission());
+  }
+
+  @Test
+  void whenProbeFails_opensAgain() {
+    givenOpenCircuit();
+    givenTimeIs(OPEN_DURATION.toMillis());
+    this.sut.tryAcquirePermission();
+
+    this.sut.onFailure(FAST);
+
+    assertEquals(State.OPEN, this.sut.getState());
+    assertFalse(this.sut.tryAcquirePermission());
+  }
+
+  @Test
+  void whenProbePermissionIsReleased_letsAnotherProbeThrough() {
+    givenOpenCircuit();
+    givenTimeIs(OPEN_DURATION.toMillis());
+    this.sut.tryAcquirePermission();
+
+    this.sut.release();
+
+    assertTrue(this.sut.tryAcquirePermission());
+  }
+
+  @Test
+  void transitionsArePublished() {
+    givenOpenCircuit();
+
+    assertEquals(
+        1, this.meterRegistry.get("client_circuit_transition").tag("to", "OPEN").counter().count());
+    assertEquals(
+        State.OPEN.ordinal(), this.meterRegistry.get("client_circuit_state").gauge().value());
+  }
+
+  private void givenOpenCircuit() {
+    this.sut.onFailure(FAST);
+    this.sut.onFailure(FAST);
+  }
+
+  private void givenTimeIs(long millis) {
+    when(this.clock.millis()).thenReturn(millis);
+  }
+}
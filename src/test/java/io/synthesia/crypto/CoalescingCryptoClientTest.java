@@ -0,0 +1,163 @@
+package io.synthesia.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class CoalescingCryptoClientTest {
+  private static final int CALLERS = 5;
+
+  @Mock private CryptoClient delegate;
+
+  private DistributionSummary callersPerFlight;
+
+  private ExecutorService callers;
+
+  private CoalescingCryptoClient sut;
+
+  @BeforeEach
+  void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    MeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    this.callersPerFlight = DistributionSummary.builder("callers").register(registry);
+
+    this.callers = Executors.newFixedThreadPool(CALLERS);
+
+    this.sut = new CoalescingCryptoClient(this.delegate, this.callersPerFlight);
+  }
+
+  @AfterEach
+  void afterEach() {
+    this.callers.shutdownNow();
+  }
+
+  @Test
+  void sign_whenCalledSequentially_callsDelegateEveryTime() {
+    when(this.delegate.sign(any())).thenReturn(Optional.of("signed"));
+
+    this.sut.sign("message");
+    this.sut.sign("message");
+
+    verify(this.delegate, times(2)).sign("message");
+  }
+
+  @SneakyThrows
+  @Test
+  void sign_whenCalledConcurrentlyForSameMessage_sharesSingleDelegateCall() {
+    var release = whenDelegateBlocksUntilReleased();
+
+    var results = signConcurrently("message");
+
+    awaitCallersJoined();
+    release.countDown();
+
+    for (var result : results) {
+      assertEquals(Optional.of("signed"), result.get(1, TimeUnit.SECONDS));
+    }
+
+    verify(this.delegate, times(1)).sign("message");
+    assertEquals(CALLERS, this.callersPerFlight.totalAmount());
+  }
+
+  @SneakyThrows
+  @Test
+  void sign_whenDelegateThrows_propagatesErrorToEveryCaller() {
+    var release = new CountDownLatch(1);
+    when(this.delegate.sign(any()))
+        .thenAnswer(
+            invocation -> {
+              release.await();
+              throw new IllegalStateException();
+            });
+
+    var results = signConcurrently("message");
+
+    awaitCallersJoined();
+    release.countDown();
+
+    for (var result : results) {
+      Assertions.assertThrows(Exception.class, () -> result.get(1, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  void sign_whenDelegateThrowsError_landsFlight() {
+    when(this.delegate.sign(any()))
+        .thenThrow(new AssertionError())
+        .thenReturn(Optional.of("signed"));
+
+    Assertions.assertThrows(AssertionError.class, () -> this.sut.sign("message"));
+
+    assertEquals(
+        Optional.of("signed"),
+        Assertions.assertTimeoutPreemptively(
+            Duration.ofSeconds(1), () -> this.sut.sign("message")));
+  }
+
+  @Test
+  void signAsync_whenFlightInProgress_sharesSingleDelegateCall() {
+    var pending = new CompletableFuture<Optional<String>>();
+    when(this.delegate.signAsync(any())).thenReturn(pending);
+
+    var first = this.sut.signAsync("message");
+    var second = this.sut.signAsync("message");
+
+    pending.complete(Optional.of("signed"));
+
+    assertEquals(Optional.of("signed"), first.join());
+    assertEquals(Optional.of("signed"), second.join());
+    verify(this.delegate, times(1)).signAsync("message");
+    assertEquals(2, this.callersPerFlight.totalAmount());
+  }
+
+  private CountDownLatch whenDelegateBlocksUntilReleased() {
+    var release = new CountDownLatch(1);
+
+    when(this.delegate.sign(any()))
+        .thenAnswer(
+            invocation -> {
+              release.await();
+              return Optional.of("signed");
+            });
+
+    return release;
+  }
+
+  private List<Future<Optional<String>>> signConcurrently(String message) {
+    return IntStream.range(0, CALLERS)
+        .mapToObj(i -> this.callers.submit(() -> this.sut.sign(message)))
+        .collect(Collectors.toList());
+  }
+
+  /** Gives every caller time to either start the flight or join it before it lands. */
+  @SneakyThrows
+  private void awaitCallersJoined() {
+    Thread.sleep(500);
+  }
+}
@@ -0,0 +1,14 @@
+package io.synthesia.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class HashesTest {
+  @Test
+  void sha256Hex_returnsPaddedLowercaseHex() {
+    assertEquals(
+        "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+        Hashes.sha256Hex("abc"));
+  }
+}
@@ -1,8 +1,12 @@
 package io.synthesia.crypto;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.github.tomakehurst.wiremock.WireMockServer;
@@ -13,9 +17,11 @@ import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.prometheus.PrometheusConfig;
 import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.synthesia.crypto.limiter.BucketRateLimiter;
 import java.net.http.HttpClient;
 import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -27,6 +33,10 @@ public class HttpRateLimitedCryptoClientTest {
 
   @Mock private Bucket bucket;
 
+  @Mock private CircuitBreaker circuitBreaker;
+
+  @Mock private ApiKeyPool apiKeyPool;
+
   private WireMockServer wireMockServer;
 
   private HttpRateLimitedCryptoClient sut;
@@ -44,16 +54,17 @@ public class HttpRateLimitedCryptoClientTest {
     MeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
 
     this.sut =
-        new HttpRateLimitedCryptoClient(
-            httpClient,
-            this.bucket,
-            baseUrlString,
-            "",
-            Duration.ofSeconds(TIMEOUT_IN_SECONDS),
-            Counter.builder("").register(registry),
-            Counter.builder("").register(registry),
-            Counter.builder("").register(registry),
-            Counter.builder("").register(registry));
+        HttpRateLimitedCryptoClient.builder()
+            .client(httpClient)
+            .rateLimiter(new BucketRateLimiter(this.bucket))
+            .apiKey("")
+            .baseUrl(baseUrlString)
+            .timeout(Duration.ofSeconds(TIMEOUT_IN_SECONDS))
+            .success(Counter.builder("").register(registry))
+            .errors(Counter.builder("").register(registry))
+            .apiRateLimitError(Counter.builder("").register(registry))
+            .rateLimit(Counter.builder("").register(registry))
+            .build();
   }
 
   @AfterEach
@@ -62,17 +73,17 @@ public class HttpRateLimitedCryptoClientTest {
   }
 
   @Test
-  void sign_whenTryConsumeFails_returnsEmpty() {
+  void sign_whenTryConsumeFails_rejectsSign() {
     whenBucketTryConsumeFails();
 
-    assertSignReturnsEmpty("message");
+    assertSignRejected("message");
   }
 
   @Test
-  void sign_whenTryConsumeThrows_returnsEmpty() {
+  void sign_whenTryConsumeThrows_rejectsSign() {
     whenBucketTryConsumeThrows();
 
-    assertSignReturnsEmpty("message");
+    assertSignRejected("message");
   }
 
   @Test
@@ -99,6 +110,39 @@ public class HttpRateLimitedCryptoClientTest {
     assertSignReturnsSignedMessage("message", "signed message");
   }
 
+  @Test
+  void signAsync_whenTryConsumeFails_rejectsSign() {
+    whenBucketTryConsumeFails();
+
+    assertSignAsyncRejected("message");
+  }
+
+  @Test
+  void signAsync_whenStatusCodeNot200_returnsEmpty() {
+    whenBucketTryConsumeSucceeds();
+    whenRemoteApiFails();
+
+    assertSignAsyncReturnsEmpty("message");
+  }
+
+  @Test
+  void signAsync_whenClientTimesOut_returnsEmpty() {
+    whenBucketTryConsumeSucceeds();
+    whenRemoteApiReturnsLateResponse();
+
+    assertSignAsyncReturnsEmpty("message");
+  }
+
+  @Test
+  void signAsync_whenStatus200_returnsResponseBody() {
+    whenBucketTryConsumeSucceeds();
+    whenRemoteApiReturnsResponse();
+
+    var maybeSignedMessage = this.sut.signAsync("message").join();
+
+    assertEquals(Optional.of("signed message"), maybeSignedMessage);
+  }
+
   private void whenBucketTryConsumeFails() {
     when(this.bucket.tryConsume(anyLong())).thenReturn(false);
   }
@@ -134,12 +178,131 @@ public class HttpRateLimitedCryptoClientTest {
                     .withFixedDelay((int) Duration.ofSeconds(TIMEOUT_IN_SECONDS + 1).toMillis())));
   }
 
+  @Test
+  void sign_whenCircuitIsOpen_rejectsSignWithoutTakingToken() {
+    givenCircuitBreaker();
+    when(this.circuitBreaker.tryAcquirePermission()).thenReturn(false);
+
+    assertSignRejected("message");
+    verify(this.bucket, never()).tryConsume(anyLong());
+  }
+
+  @Test
+  void sign_whenRateLimitedBehindClosedCircuit_releasesPermission() {
+    givenCircuitBreaker();
+    when(this.circuitBreaker.tryAcquirePermission()).thenReturn(true);
+    whenBucketTryConsumeFails();
+
+    assertSignRejected("message");
+    verify(this.circuitBreaker).release();
+  }
+
+  @Test
+  void sign_whenRemoteApiFails_recordsFailureOnCircuit() {
+    givenCircuitBreaker();
+    when(this.circuitBreaker.tryAcquirePermission()).thenReturn(true);
+    whenBucketTryConsumeSucceeds();
+    whenRemoteApiReturnsServerError();
+
+    assertSignReturnsEmpty("message");
+    verify(this.circuitBreaker).onFailure(any());
+  }
+
+  @Test
+  void sign_whenApiKeyPool_callsWithPickedKey() {
+    givenApiKeyPool();
+    when(this.apiKeyPool.acquireKey()).thenReturn(Optional.of("key-2"));
+    this.wireMockServer.stubFor(
+        WireMock.get(WireMock.urlPathEqualTo("/crypto/sign"))
+            .withHeader("Authorization", WireMock.equalTo("key-2"))
+            .willReturn(WireMock.aResponse().withStatus(200).withBody("signed message")));
+
+    assertSignReturnsSignedMessage("message", "signed message");
+    verify(this.bucket, never()).tryConsume(anyLong());
+  }
+
+  @Test
+  void sign_whenApiKeyPoolHasNoToken_rejectsSign() {
+    givenApiKeyPool();
+    when(this.apiKeyPool.acquireKey()).thenReturn(Optional.empty());
+
+    assertSignRejected("message");
+  }
+
+  @Test
+  void sign_whenKeyThrottledUpstream_sidelinesKey() {
+    givenApiKeyPool();
+    when(this.apiKeyPool.acquireKey()).thenReturn(Optional.of("key-1"));
+    this.wireMockServer.stubFor(
+        WireMock.get(WireMock.urlPathEqualTo("/crypto/sign"))
+            .willReturn(WireMock.aResponse().withStatus(429).withHeader("Retry-After", "12")));
+
+    assertSignReturnsEmpty("message");
+    verify(this.apiKeyPool).onRateLimited("key-1", Duration.ofSeconds(12));
+  }
+
+  private void givenApiKeyPool() {
+    MeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+    this.sut =
+        HttpRateLimitedCryptoClient.builder()
+            .client(HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build())
+            .baseUrl(this.wireMockServer.baseUrl())
+            .timeout(Duration.ofSeconds(TIMEOUT_IN_SECONDS))
+            .success(Counter.builder("").register(registry))
+            .errors(Counter.builder("").register(registry))
+            .apiRateLimitError(Counter.builder("").register(registry))
+            .rateLimit(Counter.builder("").register(registry))
+            .apiKeyPool(this.apiKeyPool)
+            .build();
+  }
+
+  private void givenCircuitBreaker() {
+    MeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+    this.sut =
+        HttpRateLimitedCryptoClient.builder()
+            .client(HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build())
+            .rateLimiter(new BucketRateLimiter(this.bucket))
+            .apiKey("")
+            .baseUrl(this.wireMockServer.baseUrl())
+            .timeout(Duration.ofSeconds(TIMEOUT_IN_SECONDS))
+            .success(Counter.builder("").register(registry))
+            .errors(Counter.builder("").register(registry))
+            .apiRateLimitError(Counter.builder("").register(registry))
+            .rateLimit(Counter.builder("").register(registry))
+            .circuitBreaker(this.circuitBreaker)
+            .build();
+  }
+
+  private void whenRemoteApiReturnsServerError() {
+    this.wireMockServer.stubFor(
+        WireMock.get(WireMock.urlPathEqualTo("/crypto/sign"))
+            .willReturn(WireMock.aResponse().withStatus(503)));
+  }
+
   private void assertSignReturnsEmpty(String message) {
     var maybeSignedMessage = this.sut.sign(message);
 
     assertEquals(Optional.empty(), maybeSignedMessage);
   }
 
+  private void assertSignAsyncReturnsEmpty(String message) {
+    var maybeSignedMessage = this.sut.signAsync(message).join();
+
+    assertEquals(Optional.empty(), maybeSignedMessage);
+  }
+
+  private void assertSignRejected(String message) {
+    assertThrows(SignRejectedException.class, () -> this.sut.sign(message));
+  }
+
+  private void assertSignAsyncRejected(String message) {
+    var error = assertThrows(CompletionException.class, () -> this.sut.signAsync(message).join());
+
+    assertTrue(SignRejectedException.isRejection(error));
+  }
+
   private void assertSignReturnsSignedMessage(String message, String signedMessage) {
     var maybeSignedMessage = this.sut.sign("message");
 
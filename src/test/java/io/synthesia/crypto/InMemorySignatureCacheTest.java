@@ -0,0 +1,80 @@
+package io.synthesia.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class InMemorySignatureCacheTest {
+  private static final Duration TTL = Duration.ofSeconds(10);
+
+  @Mock private Clock clock;
+
+  private Counter evictions;
+
+  private InMemorySignatureCache sut;
+
+  @BeforeEach
+  void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    MeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    this.evictions = Counter.builder("evictions").register(registry);
+
+    givenCurrentTime(0);
+
+    this.sut = new InMemorySignatureCache(2, TTL, this.clock, this.evictions);
+  }
+
+  @Test
+  void get_whenMessageNotCached_returnsEmpty() {
+    assertEquals(Optional.empty(), this.sut.get("message"));
+  }
+
+  @Test
+  void get_whenMessageCachedAndNotExpired_returnsSignature() {
+    this.sut.put("message", "signed");
+
+    givenCurrentTime(TTL.toMillis() - 1);
+
+    assertEquals(Optional.of("signed"), this.sut.get("message"));
+  }
+
+  @Test
+  void get_whenMessageExpired_returnsEmptyAndCountsEviction() {
+    this.sut.put("message", "signed");
+
+    givenCurrentTime(TTL.toMillis());
+
+    assertEquals(Optional.empty(), this.sut.get("message"));
+    assertEquals(1, this.evictions.count());
+  }
+
+  @Test
+  void put_whenCacheFull_evictsLeastRecentlyUsedMessage() {
+    this.sut.put("first", "signed first");
+    this.sut.put("second", "signed second");
+    this.sut.get("first");
+
+    this.sut.put("third", "signed third");
+
+    assertEquals(Optional.of("signed first"), this.sut.get("first"));
+    assertEquals(Optional.empty(), this.sut.get("second"));
+    assertEquals(Optional.of("signed third"), this.sut.get("third"));
+    assertEquals(1, this.evictions.count());
+  }
+
+  private void givenCurrentTime(long millis) {
+    when(this.clock.millis()).thenReturn(millis);
+  }
+}
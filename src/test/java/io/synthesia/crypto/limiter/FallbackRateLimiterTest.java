@@ -0,0 +1,135 @@
+package io.synthesia.crypto.limiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.github.bucket4j.Bucket;
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class FallbackRateLimiterTest {
+  private static final Duration LATENCY_THRESHOLD = Duration.ofMillis(50);
+  private static final Duration PROBE_INTERVAL = Duration.ofSeconds(5);
+
+  @Mock private RateLimiter sharedRateLimiter;
+
+  @Mock private Bucket localBucket;
+
+  @Mock private Clock clock;
+
+  private MeterRegistry registry;
+
+  private FallbackRateLimiter sut;
+
+  @BeforeEach
+  void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    this.registry = new SimpleMeterRegistry();
+
+    givenCurrentTime(0);
+
+    this.sut =
+        new FallbackRateLimiter(
+            this.sharedRateLimiter,
+            this.localBucket,
+            LATENCY_THRESHOLD,
+            PROBE_INTERVAL,
+            this.clock,
+            "client",
+            this.registry);
+  }
+
+  @Test
+  void tryAcquire_whenRedisHealthy_usesSharedLimiter() {
+    when(this.sharedRateLimiter.tryAcquire()).thenReturn(true);
+
+    assertTrue(this.sut.tryAcquire());
+
+    verify(this.localBucket, never()).tryConsume(1);
+    assertMode(FallbackRateLimiter.Mode.SHARED);
+  }
+
+  @Test
+  void tryAcquire_whenRedisFails_fallsBackToLocalBucket() {
+    when(this.sharedRateLimiter.tryAcquire()).thenThrow(new RedisCommandTimeoutException());
+    when(this.localBucket.tryConsume(1)).thenReturn(true);
+
+    assertTrue(this.sut.tryAcquire());
+
+    assertMode(FallbackRateLimiter.Mode.LOCAL);
+    assertEquals(1, this.registry.get("rate_limiter_mode").gauge().value());
+  }
+
+  @Test
+  void tryAcquire_whenRedisSlow_keepsResultAndFallsBack() {
+    when(this.clock.millis()).thenReturn(0L, 100L, 100L);
+    when(this.sharedRateLimiter.tryAcquire()).thenReturn(true);
+
+    assertTrue(this.sut.tryAcquire());
+
+    assertMode(FallbackRateLimiter.Mode.LOCAL);
+    verify(this.localBucket, never()).tryConsume(1);
+  }
+
+  @Test
+  void tryAcquire_whenInLocalModeBeforeProbe_skipsRedis() {
+    givenLocalMode();
+    givenCurrentTime(1000);
+
+    this.sut.tryAcquire();
+
+    verify(this.sharedRateLimiter, times(1)).tryAcquire();
+    verify(this.localBucket, times(2)).tryConsume(1);
+  }
+
+  @Test
+  void tryAcquire_whenProbeSucceeds_switchesBackToShared() {
+    givenLocalMode();
+    givenCurrentTime(PROBE_INTERVAL.toMillis());
+    doReturn(true).when(this.sharedRateLimiter).tryAcquire();
+
+    assertTrue(this.sut.tryAcquire());
+
+    assertMode(FallbackRateLimiter.Mode.SHARED);
+  }
+
+  @Test
+  void tryAcquire_whenProbeFails_staysLocal() {
+    givenLocalMode();
+    givenCurrentTime(PROBE_INTERVAL.toMillis());
+
+    this.sut.tryAcquire();
+    givenCurrentTime(PROBE_INTERVAL.toMillis() + 1000);
+    this.sut.tryAcquire();
+
+    verify(this.sharedRateLimiter, times(2)).tryAcquire();
+    assertMode(FallbackRateLimiter.Mode.LOCAL);
+  }
+
+  private void givenLocalMode() {
+    when(this.sharedRateLimiter.tryAcquire()).thenThrow(new RedisCommandTimeoutException());
+
+    this.sut.tryAcquire();
+  }
+
+  private void givenCurrentTime(long millis) {
+    when(this.clock.millis()).thenReturn(millis);
+  }
+
+  private void assertMode(FallbackRateLimiter.Mode mode) {
+    assertEquals(mode, this.sut.getMode());
+  }
+}
@@ -0,0 +1,147 @@
+package io.synthesia.crypto.limiter;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.EstimationProbe;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class LeasingRateLimiterTest {
+  private static final long LEASE_SIZE = 3;
+  private static final Duration LEASE_DURATION = Duration.ofSeconds(5);
+
+  @Mock private Bucket bucket;
+
+  @Mock private Clock clock;
+
+  private LeasingRateLimiter sut;
+
+  @BeforeEach
+  void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    MeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+    givenCurrentTime(0);
+
+    this.sut =
+        new LeasingRateLimiter(
+            this.bucket,
+            LEASE_SIZE,
+            LEASE_DURATION,
+            this.clock,
+            Counter.builder("").register(registry),
+            Counter.builder("").register(registry),
+            Counter.builder("").register(registry));
+  }
+
+  @Test
+  void tryAcquire_whenLeaseAvailable_servesTokensLocally() {
+    whenBucketLeases(LEASE_SIZE);
+
+    assertTrue(this.sut.tryAcquire());
+    assertTrue(this.sut.tryAcquire());
+    assertTrue(this.sut.tryAcquire());
+
+    verify(this.bucket, times(1)).tryConsumeAsMuchAsPossible(LEASE_SIZE);
+  }
+
+  @Test
+  void tryAcquire_whenLeaseExhausted_leasesAgain() {
+    whenBucketLeases(1);
+
+    assertTrue(this.sut.tryAcquire());
+    assertTrue(this.sut.tryAcquire());
+
+    verify(this.bucket, times(2)).tryConsumeAsMuchAsPossible(LEASE_SIZE);
+  }
+
+  @Test
+  void tryAcquire_whenBucketKnownToBeDry_rejectsWithoutCallingTheBucket() {
+    whenBucketIsDry(Duration.ofSeconds(2));
+
+    assertFalse(this.sut.tryAcquire());
+
+    givenCurrentTime(1000);
+
+    assertFalse(this.sut.tryAcquire());
+
+    verify(this.bucket, times(1)).tryConsumeAsMuchAsPossible(LEASE_SIZE);
+  }
+
+  @Test
+  void tryAcquire_whenBucketExpectedToHaveRefilled_callsTheBucketAgain() {
+    whenBucketIsDry(Duration.ofSeconds(2));
+
+    assertFalse(this.sut.tryAcquire());
+
+    givenCurrentTime(2000);
+
+    assertFalse(this.sut.tryAcquire());
+
+    verify(this.bucket, times(2)).tryConsumeAsMuchAsPossible(LEASE_SIZE);
+  }
+
+  @Test
+  void tryAcquire_whenLeaseExpired_returnsUnusedTokensBeforeLeasingAgain() {
+    whenBucketLeases(LEASE_SIZE);
+
+    assertTrue(this.sut.tryAcquire());
+
+    givenCurrentTime(LEASE_DURATION.toMillis());
+
+    assertTrue(this.sut.tryAcquire());
+
+    verify(this.bucket).addTokens(LEASE_SIZE - 1);
+    verify(this.bucket, times(2)).tryConsumeAsMuchAsPossible(LEASE_SIZE);
+  }
+
+  @Test
+  void expireLease_whenLeaseNotExpired_keepsTokens() {
+    whenBucketLeases(LEASE_SIZE);
+
+    this.sut.tryAcquire();
+    this.sut.expireLease();
+
+    verify(this.bucket, never()).addTokens(anyLong());
+  }
+
+  @Test
+  void close_returnsUnusedTokens() {
+    whenBucketLeases(LEASE_SIZE);
+
+    this.sut.tryAcquire();
+    this.sut.close();
+
+    verify(this.bucket).addTokens(LEASE_SIZE - 1);
+  }
+
+  private void givenCurrentTime(long millis) {
+    when(this.clock.millis()).thenReturn(millis);
+  }
+
+  private void whenBucketLeases(long tokens) {
+    when(this.bucket.tryConsumeAsMuchAsPossible(anyLong())).thenReturn(tokens);
+  }
+
+  private void whenBucketIsDry(Duration timeToRefill) {
+    when(this.bucket.tryConsumeAsMuchAsPossible(anyLong())).thenReturn(0L);
+    when(this.bucket.estimateAbilityToConsume(anyLong()))
+        .thenReturn(EstimationProbe.canNotBeConsumed(0, timeToRefill.toNanos()));
+  }
+}
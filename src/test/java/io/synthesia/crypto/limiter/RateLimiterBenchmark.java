@@ -0,0 +1,107 @@
+package io.synthesia.crypto.limiter;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.distributed.ExpirationAfterWriteStrategy;
+import io.github.bucket4j.redis.lettuce.cas.LettuceBasedProxyManager;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * Compares the CAS based Bucket4j limiter with the scripted one while many threads compete for the
+ * same key. The capacity is large enough that no call is ever rejected, so the numbers only reflect
+ * the cost of talking to Redis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(32)
+public class RateLimiterBenchmark {
+  private static final long CAPACITY = 1_000_000_000L;
+  private static final String KEY_PREFIX = "benchmark:";
+
+  @Param({"cas", "script"})
+  public String backend;
+
+  private GenericContainer<?> redis;
+
+  private RedisClient redisClient;
+
+  private StatefulRedisConnection<String, String> connection;
+
+  private RateLimiter rateLimiter;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    // Pinned to the Redis version the published numbers were measured against
+    this.redis =
+        new GenericContainer<>(DockerImageName.parse("redis:6.2-alpine")).withExposedPorts(6379);
+    this.redis.start();
+
+    this.redisClient =
+        RedisClient.create(
+            "redis://" + this.redis.getHost() + ":" + this.redis.getMappedPort(6379));
+    this.connection = this.redisClient.connect();
+
+    if ("script".equals(this.backend)) {
+      this.rateLimiter =
+          new RedisScriptRateLimiter(
+              this.connection.async(),
+              KEY_PREFIX + this.backend,
+              CAPACITY,
+              Duration.ofSeconds(1),
+              Duration.ofSeconds(5));
+      return;
+    }
+
+    var configuration =
+        BucketConfiguration.builder()
+            .addLimit(Bandwidth.simple(CAPACITY, Duration.ofSeconds(1)))
+            .build();
+
+    var bucket =
+        LettuceBasedProxyManager.builderFor(this.redisClient)
+            .withExpirationStrategy(
+                ExpirationAfterWriteStrategy.basedOnTimeForRefillingBucketUpToMax(
+                    Duration.ofSeconds(10)))
+            .build()
+            .builder()
+            .build((KEY_PREFIX + this.backend).getBytes(StandardCharsets.UTF_8), configuration);
+
+    this.rateLimiter = new BucketRateLimiter(bucket);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    this.connection.close();
+    this.redisClient.shutdown();
+    this.redis.stop();
+  }
+
+  @Benchmark
+  public boolean tryAcquire() {
+    return this.rateLimiter.tryAcquire();
+  }
+}
@@ -0,0 +1,128 @@
+package io.synthesia.crypto.limiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+@Testcontainers
+public class RedisScriptRateLimiterTest {
+  private static final long CAPACITY = 5;
+  private static final Duration PERIOD = Duration.ofMinutes(1);
+
+  @Container
+  private static final GenericContainer<?> redis =
+      new GenericContainer<>(DockerImageName.parse("redis:7-alpine")).withExposedPorts(6379);
+
+  private RedisClient redisClient;
+
+  private StatefulRedisConnection<String, String> connection;
+
+  private RedisScriptRateLimiter sut;
+
+  @BeforeEach
+  void beforeEach() {
+    this.redisClient =
+        RedisClient.create("redis://" + redis.getHost() + ":" + redis.getMappedPort(6379));
+    this.connection = this.redisClient.connect();
+
+    this.sut = newRateLimiter(UUID.randomUUID().toString(), PERIOD);
+  }
+
+  @AfterEach
+  void afterEach() {
+    this.connection.close();
+    this.redisClient.shutdown();
+  }
+
+  @Test
+  void tryAcquire_whenBucketFull_allowsUpToCapacity() {
+    IntStream.range(0, (int) CAPACITY).forEach(i -> assertTrue(this.sut.tryAcquire()));
+
+    assertFalse(this.sut.tryAcquire());
+  }
+
+  @Test
+  void tryAcquire_whenScriptNotCached_loadsIt() {
+    this.connection.sync().scriptFlush();
+
+    assertTrue(this.sut.tryAcquire());
+    assertTrue(this.sut.tryAcquire());
+  }
+
+  @Test
+  void tryAcquire_whenCalledConcurrently_neverExceedsCapacity() {
+    var executor = Executors.newFixedThreadPool(16);
+    var acquired = new AtomicInteger();
+
+    var calls =
+        IntStream.range(0, 100)
+            .mapToObj(
+                i ->
+                    CompletableFuture.runAsync(
+                        () -> {
+                          if (this.sut.tryAcquire()) {
+                            acquired.incrementAndGet();
+                          }
+                        },
+                        executor))
+            .toArray(CompletableFuture[]::new);
+
+    CompletableFuture.allOf(calls).join();
+    executor.shutdown();
+
+    assertEquals(CAPACITY, acquired.get());
+  }
+
+  @Test
+  void availableTokens_doesNotConsume() {
+    assertEquals(CAPACITY, this.sut.availableTokens());
+    assertEquals(CAPACITY, this.sut.availableTokens());
+
+    this.sut.tryAcquire();
+
+    assertEquals(CAPACITY - 1, this.sut.availableTokens());
+  }
+
+  @Test
+  void timeUntilAvailable_whenEmpty_returnsRefillTime() {
+    IntStream.range(0, (int) CAPACITY).forEach(i -> this.sut.tryAcquire());
+
+    var wait = this.sut.timeUntilAvailable();
+
+    assertTrue(wait.compareTo(Duration.ZERO) > 0);
+    assertTrue(wait.compareTo(PERIOD.dividedBy(CAPACITY)) <= 0);
+  }
+
+  @Test
+  void tryAcquire_afterRefill_allowsAgain() throws InterruptedException {
+    var fastRefilling = newRateLimiter(UUID.randomUUID().toString(), Duration.ofMillis(500));
+
+    IntStream.range(0, (int) CAPACITY).forEach(i -> fastRefilling.tryAcquire());
+    assertFalse(fastRefilling.tryAcquire());
+
+    Thread.sleep(200);
+
+    assertTrue(fastRefilling.tryAcquire());
+  }
+
+  private RedisScriptRateLimiter newRateLimiter(String key, Duration period) {
+    return new RedisScriptRateLimiter(
+        this.connection.async(), key, CAPACITY, period, Duration.ofSeconds(1));
+  }
+}
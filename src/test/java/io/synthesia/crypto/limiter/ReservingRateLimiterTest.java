@@ -0,0 +1,63 @@
+package io.synthesia.crypto.limiter;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class ReservingRateLimiterTest {
+  @Mock private RateLimiter delegate;
+
+  private ReservingRateLimiter sut;
+
+  @BeforeEach
+  void beforeEach() {
+    MockitoAnnotations.initMocks(this);
+
+    this.sut = new ReservingRateLimiter(this.delegate);
+  }
+
+  @Test
+  void tryAcquire_whenTokenReserved_spendsItWithoutCallingDelegate() {
+    when(this.delegate.tryAcquire()).thenReturn(true, false);
+
+    assertTrue(this.sut.reserve());
+    assertTrue(this.sut.tryAcquire());
+
+    verify(this.delegate, times(1)).tryAcquire();
+  }
+
+  @Test
+  void tryAcquire_whenTokenReservedByAnotherThread_usesDelegate() {
+    when(this.delegate.tryAcquire()).thenReturn(true, false);
+
+    assertTrue(CompletableFuture.supplyAsync(this.sut::reserve).join());
+
+    assertFalse(this.sut.tryAcquire());
+  }
+
+  @Test
+  void reserve_whenTokenNotSpent_keepsItForNextReservation() {
+    when(this.delegate.tryAcquire()).thenReturn(true, false);
+
+    assertTrue(this.sut.reserve());
+    assertTrue(this.sut.reserve());
+    assertTrue(this.sut.tryAcquire());
+    assertFalse(this.sut.tryAcquire());
+  }
+
+  @Test
+  void reserve_whenDelegateIsDry_returnsFalse() {
+    when(this.delegate.tryAcquire()).thenReturn(false);
+
+    assertFalse(this.sut.reserve());
+    assertFalse(this.sut.tryAcquire());
+  }
+}
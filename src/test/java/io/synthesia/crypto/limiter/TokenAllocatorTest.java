@@ -0,0 +1,153 @@
+package io.synthesia.crypto.limiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+@Testcontainers
+public class TokenAllocatorTest {
+  private static final long CAPACITY = 6;
+  private static final long SYNC_SHARE = 2;
+  private static final long ASYNC_SHARE = 3;
+  private static final Duration PERIOD = Duration.ofMinutes(1);
+
+  @Container
+  private static final GenericContainer<?> redis =
+      new GenericContainer<>(DockerImageName.parse("redis:7-alpine")).withExposedPorts(6379);
+
+  private RedisClient redisClient;
+
+  private StatefulRedisConnection<String, String> connection;
+
+  private Counter syncBorrowedCounter;
+
+  private RateLimiter sync;
+
+  private RateLimiter async;
+
+  @BeforeEach
+  void beforeEach() {
+    this.redisClient =
+        RedisClient.create("redis://" + redis.getHost() + ":" + redis.getMappedPort(6379));
+    this.connection = this.redisClient.connect();
+
+    MeterRegistry registry = new SimpleMeterRegistry();
+    this.syncBorrowedCounter = Counter.builder("sync").register(registry);
+
+    var sut =
+        new TokenAllocator(
+            this.connection.async(),
+            UUID.randomUUID().toString(),
+            CAPACITY,
+            PERIOD,
+            Map.of(TokenAllocator.Lane.SYNC, SYNC_SHARE, TokenAllocator.Lane.ASYNC, ASYNC_SHARE),
+            Map.of(
+                TokenAllocator.Lane.SYNC,
+                this.syncBorrowedCounter,
+                TokenAllocator.Lane.ASYNC,
+                Counter.builder("async").register(registry)),
+            Duration.ofSeconds(1));
+
+    this.sync = sut.rateLimiterFor(TokenAllocator.Lane.SYNC);
+    this.async = sut.rateLimiterFor(TokenAllocator.Lane.ASYNC);
+  }
+
+  @AfterEach
+  void afterEach() {
+    this.connection.close();
+    this.redisClient.shutdown();
+  }
+
+  @Test
+  void tryAcquire_whenWithinShare_doesNotBorrow() {
+    IntStream.range(0, (int) SYNC_SHARE).forEach(i -> assertTrue(this.sync.tryAcquire()));
+
+    assertEquals(0, this.syncBorrowedCounter.count());
+  }
+
+  @Test
+  void tryAcquire_whenShareUsed_onlyBorrowsAboveBothShares() {
+    IntStream.range(0, (int) SYNC_SHARE).forEach(i -> this.sync.tryAcquire());
+
+    assertTrue(this.sync.tryAcquire());
+    assertFalse(this.sync.tryAcquire());
+
+    assertEquals(1, this.syncBorrowedCounter.count());
+  }
+
+  @Test
+  void tryAcquire_whenOtherLaneBorrowed_keepsFullShareOfIdleLane() {
+    while (this.sync.tryAcquire()) {}
+
+    IntStream.range(0, (int) ASYNC_SHARE).forEach(i -> assertTrue(this.async.tryAcquire()));
+    assertFalse(this.async.tryAcquire());
+  }
+
+  @Test
+  void tryAcquire_whenCalledConcurrently_neverExceedsCapacity() {
+    var executor = Executors.newFixedThreadPool(16);
+    var acquired = new AtomicInteger();
+
+    var calls =
+        IntStream.range(0, 100)
+            .mapToObj(
+                i ->
+                    CompletableFuture.runAsync(
+                        () -> {
+                          var lane = i % 2 == 0 ? this.sync : this.async;
+
+                          if (lane.tryAcquire()) {
+                            acquired.incrementAndGet();
+                          }
+                        },
+                        executor))
+            .toArray(CompletableFuture[]::new);
+
+    CompletableFuture.allOf(calls).join();
+    executor.shutdown();
+
+    assertEquals(CAPACITY, acquired.get());
+  }
+
+  @Test
+  void availableTokens_excludesOtherLaneShare() {
+    assertEquals(CAPACITY - ASYNC_SHARE, this.sync.availableTokens());
+    assertEquals(CAPACITY - SYNC_SHARE, this.async.availableTokens());
+
+    this.sync.tryAcquire();
+
+    assertEquals(CAPACITY - ASYNC_SHARE - 1, this.sync.availableTokens());
+    assertEquals(CAPACITY - SYNC_SHARE, this.async.availableTokens());
+  }
+
+  @Test
+  void timeUntilAvailable_whenShareAndSurplusUsed_returnsRefillTime() {
+    while (this.sync.tryAcquire()) {}
+
+    var wait = this.sync.timeUntilAvailable();
+
+    assertTrue(wait.compareTo(Duration.ZERO) > 0);
+    assertTrue(wait.compareTo(PERIOD.dividedBy(SYNC_SHARE)) <= 0);
+    assertEquals(Duration.ZERO, this.async.timeUntilAvailable());
+  }
+}
@@ -0,0 +1,96 @@
+package io.synthesia.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletionException;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class InstrumentedHttpClientTest {
+  private WireMockServer wireMockServer;
+
+  private SimpleMeterRegistry meterRegistry;
+
+  private InstrumentedHttpClient sut;
+
+  @BeforeEach
+  void beforeEach() {
+    this.wireMockServer = new WireMockServer(WireMockConfiguration.options().dynamicPort());
+    this.wireMockServer.start();
+
+    this.meterRegistry = new SimpleMeterRegistry();
+
+    var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    this.sut = new InstrumentedHttpClient(client, "test", this.meterRegistry);
+  }
+
+  @AfterEach
+  void afterEach() {
+    this.wireMockServer.stop();
+  }
+
+  @SneakyThrows
+  @Test
+  void send_recordsLatencyByProtocolVersion() {
+    givenRemoteReturns200();
+
+    this.sut.send(request(), HttpResponse.BodyHandlers.discarding());
+
+    assertEquals(1, requestCount("HTTP_1_1"));
+    assertEquals(0, inFlight());
+  }
+
+  @Test
+  void sendAsync_recordsLatencyByProtocolVersion() {
+    givenRemoteReturns200();
+
+    this.sut.sendAsync(request(), HttpResponse.BodyHandlers.discarding()).join();
+
+    assertEquals(1, requestCount("HTTP_1_1"));
+    assertEquals(0, inFlight());
+  }
+
+  @Test
+  void sendAsync_whenConnectionFails_countsError() {
+    var port = this.wireMockServer.port();
+    this.wireMockServer.stop();
+
+    var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/")).build();
+
+    assertThrows(
+        CompletionException.class,
+        () -> this.sut.sendAsync(request, HttpResponse.BodyHandlers.discarding()).join());
+    assertEquals(1, this.meterRegistry.get("http_client_error").counter().count());
+    assertEquals(0, inFlight());
+  }
+
+  private void givenRemoteReturns200() {
+    this.wireMockServer.stubFor(
+        WireMock.get(WireMock.urlPathEqualTo("/"))
+            .willReturn(WireMock.aResponse().withStatus(200)));
+  }
+
+  private HttpRequest request() {
+    return HttpRequest.newBuilder(URI.create(this.wireMockServer.baseUrl() + "/")).build();
+  }
+
+  private long requestCount(String version) {
+    return this.meterRegistry.get("http_client_request").tag("version", version).timer().count();
+  }
+
+  private double inFlight() {
+    return this.meterRegistry.get("http_client_in_flight").gauge().value();
+  }
+}